@@ -22,6 +22,7 @@ import android.widget.FrameLayout
 import androidx.appcompat.app.AppCompatActivity
 import org.fs.compress.Compression
 import org.fs.compress.CompressionCallback
+import org.fs.compress.data.CompressionReport
 import org.fs.compress.format.MediaFormatStrategyCompat
 import org.fs.compress.format.ScaleV8FormatStrategy
 import org.fs.compress.util.Constants.*
@@ -39,8 +40,7 @@ class MainActivity: AppCompatActivity(), CompressionCallback {
   private val strategy480p by lazy { MediaFormatStrategyCompat.new480pMpegStrategy() }
   private val strategy360p by lazy { MediaFormatStrategyCompat.new360pMpegStrategy() }
 
-  private var futurea: Future<*>? = null
-  private var futureb: Future<*>? = null
+  private var future: Future<*>? = null
 
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
@@ -51,15 +51,14 @@ class MainActivity: AppCompatActivity(), CompressionCallback {
     super.onStart()
     if (input.exists()) {
       val compression = Compression.newInstance()
-      futurea = compression.execute(input, output480p, strategy480p,this)
-      futureb = compression.execute(input, output360p, strategy360p, this)
+      // both renditions come out of one decode
+      future = compression.execute(input, listOf(output480p, output360p), listOf(strategy480p, strategy360p), this)
     }
   }
 
   override fun onStop() {
     super.onStop().also {
-      futurea?.cancel(true)
-      futureb?.cancel(true)
+      future?.cancel(true)
     }
   }
 
@@ -71,6 +70,10 @@ class MainActivity: AppCompatActivity(), CompressionCallback {
     Log.println(Log.ERROR, "completed", "task")
   }
 
+  override fun completed(report: CompressionReport) {
+    Log.println(Log.ERROR, "completed", "ratio ${report.compressionRatio}, realtime ${report.realtimeFactor}")
+  }
+
   override fun error(throwable: Exception?) {
     Log.println(Log.ERROR, "failed", throwable.toString())
   }
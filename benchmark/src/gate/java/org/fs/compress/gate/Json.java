@@ -0,0 +1,168 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.gate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads json of jmh results in to maps, lists, strings, doubles, booleans and nulls. Enough for results jmh writes and
+ * baselines copied from them, nothing more.
+ */
+final class Json {
+
+  private final String text;
+  private int position;
+
+  private Json(String text) {
+    this.text = text;
+  }
+
+  static Object parse(String text) {
+    Json json = new Json(text);
+    Object value = json.value();
+    json.whitespace();
+    if (json.position != text.length()) throw json.error("trailing content");
+    return value;
+  }
+
+  private Object value() {
+    whitespace();
+    if (position >= text.length()) throw error("unexpected end");
+    char c = text.charAt(position);
+    switch (c) {
+      case '{': return object();
+      case '[': return array();
+      case '"': return string();
+      case 't': return literal("true", Boolean.TRUE);
+      case 'f': return literal("false", Boolean.FALSE);
+      case 'n': return literal("null", null);
+      default: return number();
+    }
+  }
+
+  private Map<String, Object> object() {
+    Map<String, Object> object = new LinkedHashMap<>();
+    position++;
+    whitespace();
+    if (peek() == '}') {
+      position++;
+      return object;
+    }
+    while (true) {
+      whitespace();
+      String key = string();
+      whitespace();
+      expect(':');
+      object.put(key, value());
+      whitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect('}');
+        return object;
+      }
+    }
+  }
+
+  private List<Object> array() {
+    List<Object> array = new ArrayList<>();
+    position++;
+    whitespace();
+    if (peek() == ']') {
+      position++;
+      return array;
+    }
+    while (true) {
+      array.add(value());
+      whitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect(']');
+        return array;
+      }
+    }
+  }
+
+  private String string() {
+    expect('"');
+    StringBuilder builder = new StringBuilder();
+    while (true) {
+      if (position >= text.length()) throw error("unterminated string");
+      char c = text.charAt(position++);
+      if (c == '"') return builder.toString();
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      char escaped = text.charAt(position++);
+      switch (escaped) {
+        case 'b': builder.append('\b'); break;
+        case 'f': builder.append('\f'); break;
+        case 'n': builder.append('\n'); break;
+        case 'r': builder.append('\r'); break;
+        case 't': builder.append('\t'); break;
+        case 'u':
+          builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+          position += 4;
+          break;
+        default: builder.append(escaped);
+      }
+    }
+  }
+
+  private Double number() {
+    int start = position;
+    while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+      position++;
+    }
+    if (start == position) throw error("unexpected character " + text.charAt(position));
+    String number = text.substring(start, position);
+    try {
+      return Double.valueOf(number);
+    } catch (NumberFormatException e) {
+      throw error("not a number " + number);
+    }
+  }
+
+  private Object literal(String literal, Object value) {
+    if (!text.startsWith(literal, position)) throw error("expected " + literal);
+    position += literal.length();
+    return value;
+  }
+
+  private void expect(char c) {
+    if (peek() != c) throw error("expected " + c);
+    position++;
+  }
+
+  private char peek() {
+    return position < text.length() ? text.charAt(position) : 0;
+  }
+
+  private void whitespace() {
+    while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+      position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at " + position);
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.gate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Compares jmh results with checked in baseline, scenario by scenario, and fails once throughput drops or allocation per
+ * operation grows past tolerance. A scenario without a baseline fails as well, missing or empty baseline file fails
+ * every one of them, so a gate never passes on nothing; a new benchmark has its baseline taken once with update.
+ *
+ *   RegressionGate results.json baseline.json tolerances.properties report.json [--update]
+ *
+ * Update copies results over baseline instead of comparing.
+ */
+public final class RegressionGate {
+
+  private static final String KEY_THROUGHPUT = "throughput";
+  private static final String KEY_ALLOCATION = "allocation";
+  private static final String KEY_ALLOCATION_BYTES = "allocationBytes";
+
+  private static final double DEFAULT_THROUGHPUT = 0.10;
+  private static final double DEFAULT_ALLOCATION = 0.10;
+  private static final double DEFAULT_ALLOCATION_BYTES = 64;
+
+  private static final String MODE_THROUGHPUT = "thrpt";
+  private static final String METRIC_ALLOCATION = "gc.alloc.rate.norm";
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      throw new IllegalArgumentException("usage: results baseline tolerances report [--update]");
+    }
+    File results = new File(args[0]);
+    File baseline = new File(args[1]);
+    if (args.length > 4 && "--update".equals(args[4])) {
+      Files.copy(results.toPath(), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("baseline updated from " + results);
+      return;
+    }
+    Properties tolerances = new Properties();
+    try (InputStream in = new FileInputStream(args[2])) {
+      tolerances.load(in);
+    }
+    // without a baseline file every scenario counts as missing one
+    Map<String, Score> baselineScores = baseline.exists() ? read(baseline) : new TreeMap<String, Score>();
+    List<Comparison> comparisons = compare(baselineScores, read(results), tolerances);
+    if (comparisons.isEmpty()) {
+      throw new IllegalStateException("no scenarios in " + results);
+    }
+
+    int regressions = 0;
+    for (Comparison comparison : comparisons) {
+      System.out.println(comparison);
+      if (comparison.regressed()) regressions++;
+    }
+    writeReport(new File(args[3]), comparisons);
+    if (regressions > 0) {
+      System.err.println(regressions + " of " + comparisons.size() + " scenarios regressed against " + baseline
+          + ", scenarios missing a baseline take one with --update");
+      System.exit(1);
+    }
+  }
+
+  static List<Comparison> compare(Map<String, Score> baseline, Map<String, Score> current, Properties tolerances) {
+    List<Comparison> comparisons = new ArrayList<>();
+    for (Map.Entry<String, Score> entry : current.entrySet()) {
+      Score score = entry.getValue();
+      comparisons.add(new Comparison(entry.getKey(), baseline.get(entry.getKey()), score,
+          tolerance(tolerances, score.benchmark, KEY_THROUGHPUT, DEFAULT_THROUGHPUT),
+          tolerance(tolerances, score.benchmark, KEY_ALLOCATION, DEFAULT_ALLOCATION),
+          tolerance(tolerances, score.benchmark, KEY_ALLOCATION_BYTES, DEFAULT_ALLOCATION_BYTES)));
+    }
+    return comparisons;
+  }
+
+  // benchmark specific tolerance wins over general one
+  private static double tolerance(Properties tolerances, String benchmark, String key, double fallback) {
+    String value = tolerances.getProperty(benchmark + "." + key, tolerances.getProperty(key));
+    return value != null ? Double.parseDouble(value.trim()) : fallback;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Score> read(File file) throws IOException {
+    Object json = Json.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    Map<String, Score> scores = new TreeMap<>();
+    for (Object item : (List<Object>) json) {
+      Map<String, Object> result = (Map<String, Object>) item;
+      String benchmark = (String) result.get("benchmark");
+      StringBuilder key = new StringBuilder(benchmark);
+      Map<String, Object> params = (Map<String, Object>) result.get("params");
+      if (params != null) {
+        for (Map.Entry<String, Object> param : new TreeMap<>(params).entrySet()) {
+          key.append(' ').append(param.getKey()).append('=').append(param.getValue());
+        }
+      }
+      Map<String, Object> primary = (Map<String, Object>) result.get("primaryMetric");
+      double allocation = Double.NaN;
+      Map<String, Object> secondary = (Map<String, Object>) result.get("secondaryMetrics");
+      if (secondary != null) {
+        // older jmh puts a middle dot in front of profiler metrics
+        for (Map.Entry<String, Object> metric : secondary.entrySet()) {
+          if (metric.getKey().endsWith(METRIC_ALLOCATION)) {
+            allocation = number(((Map<String, Object>) metric.getValue()).get("score"));
+          }
+        }
+      }
+      scores.put(key.toString(), new Score(benchmark, (String) result.get("mode"), number(primary.get("score")),
+          (String) primary.get("scoreUnit"), allocation));
+    }
+    return scores;
+  }
+
+  // jmh writes scores it could not measure as "NaN"
+  private static double number(Object value) {
+    if (value instanceof Double) return (Double) value;
+    if (value instanceof String) return Double.parseDouble((String) value);
+    return Double.NaN;
+  }
+
+  private static void writeReport(File file, List<Comparison> comparisons) throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("can not create " + parent);
+    }
+    try (PrintStream out = new PrintStream(file, "UTF-8")) {
+      out.println("[");
+      for (int i = 0, size = comparisons.size(); i < size; i++) {
+        Comparison comparison = comparisons.get(i);
+        out.print("  {\"scenario\": \"" + comparison.scenario.replace("\"", "\\\"") + "\""
+            + ", \"score\": " + json(comparison.current.score)
+            + ", \"baselineScore\": " + (comparison.baseline != null ? json(comparison.baseline.score) : "null")
+            + ", \"allocation\": " + json(comparison.current.allocation)
+            + ", \"baselineAllocation\": " + (comparison.baseline != null ? json(comparison.baseline.allocation) : "null")
+            + ", \"missing\": " + comparison.missing
+            + ", \"regressed\": " + comparison.regressed() + "}");
+        out.println(i + 1 < size ? "," : "");
+      }
+      out.println("]");
+    }
+  }
+
+  private static String json(double value) {
+    return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+  }
+
+  static final class Score {
+
+    final String benchmark;
+    final String mode;
+    final double score;
+    final String unit;
+    // bytes per operation, nan without gc profiler
+    final double allocation;
+
+    Score(String benchmark, String mode, double score, String unit, double allocation) {
+      this.benchmark = benchmark;
+      this.mode = mode;
+      this.score = score;
+      this.unit = unit;
+      this.allocation = allocation;
+    }
+  }
+
+  static final class Comparison {
+
+    final String scenario;
+    final Score baseline;
+    final Score current;
+    final boolean missing;
+    final boolean slower;
+    final boolean allocates;
+
+    Comparison(String scenario, Score baseline, Score current, double throughput, double allocation, double allocationBytes) {
+      this.scenario = scenario;
+      this.baseline = baseline;
+      this.current = current;
+      missing = baseline == null;
+      if (missing) {
+        slower = false;
+        allocates = false;
+      } else {
+        // throughput mode is better higher, time modes are better lower
+        slower = MODE_THROUGHPUT.equals(current.mode)
+            ? current.score < baseline.score * (1.0 - throughput)
+            : current.score > baseline.score * (1.0 + throughput);
+        allocates = !Double.isNaN(current.allocation) && !Double.isNaN(baseline.allocation)
+            && current.allocation > baseline.allocation * (1.0 + allocation) + allocationBytes;
+      }
+    }
+
+    boolean regressed() {
+      return missing || slower || allocates;
+    }
+
+    @Override public String toString() {
+      if (baseline == null) {
+        return String.format(Locale.US, "MISS  %s %.3f %s, no baseline", scenario, current.score, current.unit);
+      }
+      String status = slower ? "SLOW " : allocates ? "ALLOC" : "OK   ";
+      return String.format(Locale.US, "%s %s %.3f -> %.3f %s (%+.1f%%), %.1f -> %.1f B/op", status, scenario,
+          baseline.score, current.score, current.unit, (current.score / baseline.score - 1.0) * 100.0,
+          baseline.allocation, current.allocation);
+    }
+  }
+
+  private RegressionGate() {
+    throw new IllegalArgumentException("creating new instance of this object is forbidden.");
+  }
+}
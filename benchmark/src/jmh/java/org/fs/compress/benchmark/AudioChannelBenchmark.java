@@ -0,0 +1,90 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.audio.AudioChannel;
+import org.fs.compress.data.AudioBuffer;
+import org.fs.compress.spi.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+
+/**
+ * Decoder buffer twice the size of encoder buffer, so every remix spills half of it in to overflow which next encoder
+ * buffer takes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AudioChannelBenchmark {
+
+  private static final int SAMPLE_RATE = 44100;
+  private static final int ENCODER_BUFFER_SIZE = 8 * 1024;
+  private static final int DECODER_BUFFER_SIZE = ENCODER_BUFFER_SIZE * 2;
+
+  // input and output channel counts, picks down, up or pass through remix
+  @Param({ "2:1", "1:2", "2:2" })
+  public String channels;
+
+  private AudioChannel channel;
+  private AudioBuffer in;
+  private ShortBuffer out;
+
+  @Setup public void setup() {
+    String[] counts = channels.split(":");
+    int inputChannels = Integer.parseInt(counts[0]);
+    int outputChannels = Integer.parseInt(counts[1]);
+
+    MediaFormat decodeFormat = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, inputChannels);
+    decodeFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, DECODER_BUFFER_SIZE);
+    MediaFormat encodeFormat = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, outputChannels);
+    encodeFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, ENCODER_BUFFER_SIZE);
+
+    Codec decoder = Codec.newJvmInstance(false, 2, 0);
+    decoder.configure(decodeFormat, 0);
+    decoder.start();
+    Codec encoder = Codec.newJvmInstance(true, 2, 0);
+    encoder.configure(encodeFormat, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    encoder.start();
+
+    channel = AudioChannel.newInstance(decoder, encoder, encodeFormat);
+    channel.actualDecoderFormat(decodeFormat);
+    // first decoded buffer sizes overflow buffer
+    channel.drainDecoderFormatAndQueueu(0, 0);
+
+    in = new AudioBuffer();
+    in.bufferIndex = 0;
+    in.data = AudioRemixBenchmark.newShortBuffer(DECODER_BUFFER_SIZE / 2);
+    out = AudioRemixBenchmark.newShortBuffer(ENCODER_BUFFER_SIZE / 2);
+  }
+
+  @Benchmark public long remixAndOverflow() {
+    in.presentationTimeUs += 23219;
+    long presentationTimeUs = channel.remixAndOverflow(in, out);
+    return presentationTimeUs + channel.overflow(out);
+  }
+}
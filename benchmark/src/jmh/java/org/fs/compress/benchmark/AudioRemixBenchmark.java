@@ -0,0 +1,111 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.common.audio.DownMixAudioRemix;
+import org.fs.compress.common.audio.PassThroughAudioRemix;
+import org.fs.compress.common.audio.UpMixAudioRemix;
+import org.fs.compress.remix.AudioRemix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Remixes one decoder buffer worth of pcm, java remixes next to their kotlin counterparts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AudioRemixBenchmark {
+
+  // samples per channel, 1024 is a single aac frame
+  @Param({ "1024", "4096" })
+  public int samples;
+
+  private ShortBuffer stereo;
+  private ShortBuffer mono;
+  private ShortBuffer stereoOut;
+  private ShortBuffer monoOut;
+
+  @Setup public void setup() {
+    stereo = newShortBuffer(samples * 2);
+    mono = newShortBuffer(samples);
+    stereoOut = newShortBuffer(samples * 2);
+    monoOut = newShortBuffer(samples);
+    for (int i = 0; i < samples; i++) {
+      // saw wave covering both quiet and loud halves of down mix
+      short sample = (short) ((i * 64) - Short.MAX_VALUE);
+      stereo.put(sample).put((short) -sample);
+      mono.put(sample);
+    }
+  }
+
+  @Benchmark public ShortBuffer downMix() {
+    return remix(AudioRemix.DOWN_MIX, stereo, monoOut);
+  }
+
+  @Benchmark public ShortBuffer upMix() {
+    return remix(AudioRemix.UP_MIX, mono, stereoOut);
+  }
+
+  @Benchmark public ShortBuffer passThroughMix() {
+    return remix(AudioRemix.PASS_THROUGH_MIX, mono, monoOut);
+  }
+
+  @Benchmark public ShortBuffer downMixKotlin() {
+    stereo.clear();
+    monoOut.clear();
+    DownMixAudioRemix.shared().remix(stereo, monoOut);
+    return monoOut;
+  }
+
+  @Benchmark public ShortBuffer upMixKotlin() {
+    mono.clear();
+    stereoOut.clear();
+    UpMixAudioRemix.shared().remix(mono, stereoOut);
+    return stereoOut;
+  }
+
+  @Benchmark public ShortBuffer passThroughMixKotlin() {
+    mono.clear();
+    monoOut.clear();
+    PassThroughAudioRemix.shared().remix(mono, monoOut);
+    return monoOut;
+  }
+
+  private static ShortBuffer remix(AudioRemix remix, ShortBuffer in, ShortBuffer out) {
+    in.clear();
+    out.clear();
+    remix.remix(in, out);
+    return out;
+  }
+
+  // decoder output is direct and native ordered, so are these
+  static ShortBuffer newShortBuffer(int size) {
+    return ByteBuffer.allocateDirect(size * 2)
+        .order(ByteOrder.nativeOrder())
+        .asShortBuffer();
+  }
+}
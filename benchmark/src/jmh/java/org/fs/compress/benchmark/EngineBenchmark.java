@@ -0,0 +1,172 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.engine.CoderEngine;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.format.MediaFormatStrategyCompat;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * Whole job through {@link CoderEngine} on jvm codec provider, extractor, coders, muxer queue and writer included.
+ * Score is video frames per second. Transcode sends video through a strategy of {@link MediaFormatStrategyCompat};
+ * pass-through keeps video as is. Audio is re-encoded in every scenario, remixed from channels of source in to
+ * channels of remix mode. Regression gate keeps baselines for all of them, next to per frame ones of
+ * {@link ScenarioBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class EngineBenchmark {
+
+  static final int FRAMES = 60;
+
+  private static final long FRAME_TIME_US = 33333;
+  private static final int AUDIO_SAMPLE_SIZE = 4096;
+  private static final long AUDIO_SAMPLE_TIME_US = 23220; // 1024 frames at 44.1 khz
+  private static final int COMPRESSION_RATIO = 20; // encoded frame against raw one
+
+  @Param({ "1280x720", "640x360" })
+  public String source;
+
+  @Param({ "360pMpeg", "720pMpeg", "360pV8", "720pV8", "pass-through" })
+  public String strategy;
+
+  // stereo in to stereo, stereo in to mono and mono in to stereo
+  @Param({ "pass-through", "down-mix", "up-mix" })
+  public String remix;
+
+  private File input;
+  private File output;
+  private MediaFormatStrategy formatStrategy;
+
+  @Setup public void setup() throws IOException {
+    String[] size = source.split("x");
+    input = File.createTempFile("engine", ".jvm");
+    output = File.createTempFile("engine", ".mp4");
+    writeInput(input, Integer.parseInt(size[0]), Integer.parseInt(size[1]), "up-mix".equals(remix) ? 1 : 2);
+    formatStrategy = new RemixStrategy("pass-through".equals(strategy) ? null : ScenarioBenchmark.newStrategy(strategy),
+        "down-mix".equals(remix) ? 1 : 2);
+  }
+
+  @TearDown public void tearDown() {
+    input.delete();
+    output.delete();
+  }
+
+  @Benchmark @OperationsPerInvocation(FRAMES) public long job() throws IOException, InterruptedException {
+    try (FileInputStream in = new FileInputStream(input)) {
+      CoderEngine engine = CoderEngine.newInstance(formatStrategy, in.getFD());
+      EngineOptions options = new EngineOptions();
+      options.codecProvider = CodecProvider.newJvmInstance(2, 0);
+      engine.options(options);
+      engine.start(output);
+      CompressionReport report = engine.report();
+      return report.outputBytes;
+    }
+  }
+
+  // avc video of FRAMES key frames interleaved with aac audio of channels, in sample file of jvm provider
+  static void writeInput(File file, int width, int height, int channels) throws IOException {
+    int frameSize = width * height * 3 / 2 / COMPRESSION_RATIO;
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, width, height);
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, frameSize);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 44100, channels);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+
+    ContainerWriter writer = CodecProvider.newJvmInstance(2, 0).newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    try {
+      int videoTrack = writer.addTrack(video);
+      int audioTrack = writer.addTrack(audio);
+      writer.start();
+      ByteBuffer frame = ByteBuffer.allocateDirect(frameSize);
+      ByteBuffer sample = ByteBuffer.allocateDirect(AUDIO_SAMPLE_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      long audioTimeUs = 0;
+      for (int i = 0; i < FRAMES; i++) {
+        long videoTimeUs = i * FRAME_TIME_US;
+        info.set(0, frame.capacity(), videoTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+        writer.writeSampleData(videoTrack, frame, info);
+        for (; audioTimeUs < videoTimeUs + FRAME_TIME_US; audioTimeUs += AUDIO_SAMPLE_TIME_US) {
+          info.set(0, AUDIO_SAMPLE_SIZE, audioTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+          writer.writeSampleData(audioTrack, sample, info);
+        }
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+  }
+
+  // video goes through strategy or is written as it is read when there is none, audio goes through codecs in to channels
+  private static final class RemixStrategy implements MediaFormatStrategy {
+
+    private final MediaFormatStrategy video;
+    private final int channels;
+
+    RemixStrategy(MediaFormatStrategy video, int channels) {
+      this.video = video;
+      this.channels = channels;
+    }
+
+    @Override public boolean isStrategySupported(String mime) {
+      return video != null ? video.isStrategySupported(mime) : MIME_TYPE_VIDEO_AVC.equals(mime);
+    }
+
+    @Override public MediaFormat videoOutputFormat(MediaFormat source) {
+      return video != null ? video.videoOutputFormat(source) : null;
+    }
+
+    @Override public MediaFormat audioOutputFormat(MediaFormat source) {
+      MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC,
+          source.getInteger(MediaFormat.KEY_SAMPLE_RATE), channels);
+      format.setInteger(MediaFormat.KEY_BIT_RATE, 128000);
+      return format;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.spi.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * One sample through reference codec of jvm backend, from dequeue of its input to release of its output. What is left
+ * is queue handling and copy coders pay on top of a codec, pipeline runs off device are bound by it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JvmCodecBenchmark {
+
+  // 4 kb audio buffer or a 640x480 yuv frame
+  @Param({ "4096", "460800" })
+  public int sampleSize;
+
+  private Codec codec;
+  private ByteBuffer sample;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+  private long presentationTimeUs;
+
+  @Setup public void setup() {
+    MediaFormat format = new MediaFormat();
+    format.setString(MediaFormat.KEY_MIME, MIME_TYPE_VIDEO_AVC);
+    format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, sampleSize);
+    codec = Codec.newJvmInstance(true, 2, 0);
+    codec.configure(format, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    codec.start();
+    // output format is told before first buffer
+    codec.dequeueOutputBuffer(bufferInfo, 0);
+
+    sample = ByteBuffer.allocateDirect(sampleSize);
+  }
+
+  @TearDown public void tearDown() {
+    codec.stop();
+    codec.release();
+  }
+
+  @Benchmark public int roundTrip() {
+    int input = codec.dequeueInputBuffer(0);
+    sample.clear();
+    codec.getInputBuffer(input).put(sample);
+    codec.queueInputBuffer(input, 0, sampleSize, presentationTimeUs += 33333, 0);
+
+    int output = codec.dequeueOutputBuffer(bufferInfo, 0);
+    codec.releaseOutputBuffer(output, false);
+    return bufferInfo.size;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.util.MpegCsdUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MpegCsdBenchmark {
+
+  // sps of a 1280x720 high profile stream, with 4 byte start code
+  private static final byte[] CSD = {
+      0x00, 0x00, 0x00, 0x01, 0x67, 0x64, 0x00, 0x1f, (byte) 0xac, (byte) 0xd9, 0x40, 0x50, 0x05, (byte) 0xbb,
+      0x01, 0x10, 0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0x20, (byte) 0xf1, (byte) 0x83, 0x19, 0x60
+  };
+
+  private MediaFormat format;
+
+  @Setup public void setup() {
+    format = new MediaFormat();
+    // codec hands csd over as direct buffer
+    ByteBuffer csd = ByteBuffer.allocateDirect(CSD.length);
+    csd.put(CSD).flip();
+    format.setByteBuffer("csd-0", csd);
+  }
+
+  @Benchmark public ByteBuffer spsBuffer() {
+    return MpegCsdUtil.spsBuffer(format);
+  }
+}
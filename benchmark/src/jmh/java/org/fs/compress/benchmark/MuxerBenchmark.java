@@ -0,0 +1,87 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.ContainerWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static org.fs.compress.util.Constants.DEFAULT_MUXER_QUEUE_BYTES;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+/**
+ * Samples of video and audio written before output formats are known are queued by muxer, then flushed once both
+ * arrive and it starts. Every invocation covers a whole queue and flush cycle of a fresh muxer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MuxerBenchmark {
+
+  private static final int SAMPLE_SIZE = 1024;
+
+  // kept under in memory queue of muxer so nothing spills in to a file
+  @Param({ "16", "64" })
+  public int samples;
+
+  private MediaMuxer mediaMuxer;
+  private MediaFormat videoFormat;
+  private MediaFormat audioFormat;
+  private ByteBuffer sample;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+  @Setup public void setup() {
+    videoFormat = new MediaFormat();
+    videoFormat.setString(MediaFormat.KEY_MIME, MIME_TYPE_VIDEO_AVC);
+    audioFormat = new MediaFormat();
+    audioFormat.setString(MediaFormat.KEY_MIME, MIME_TYPE_AUDIO_AAC);
+    sample = ByteBuffer.allocateDirect(SAMPLE_SIZE).order(ByteOrder.nativeOrder());
+  }
+
+  @Setup(Level.Invocation) public void setupMuxer() {
+    mediaMuxer = new MediaMuxer("benchmark.mp4", MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+  }
+
+  @Benchmark public long bufferAndFlush() {
+    Muxer muxer = Muxer.newInstance(ContainerWriter.newInstance(mediaMuxer), null, SAMPLE_VIDEO | SAMPLE_AUDIO,
+        DEFAULT_MUXER_QUEUE_BYTES, null);
+    for (int i = 0; i < samples; i++) {
+      sample.clear();
+      bufferInfo.set(0, SAMPLE_SIZE, i * 33333L, i == 0 ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+      muxer.writeSample(i % 4 == 0 ? SAMPLE_AUDIO : SAMPLE_VIDEO, sample, bufferInfo);
+    }
+    muxer.outputFormat(SAMPLE_VIDEO, videoFormat);
+    muxer.outputFormat(SAMPLE_AUDIO, audioFormat);
+    return mediaMuxer.bytes();
+  }
+}
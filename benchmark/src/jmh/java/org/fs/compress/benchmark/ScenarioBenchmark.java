@@ -0,0 +1,140 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.benchmark;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.format.MediaFormatStrategyCompat;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+/**
+ * Scenario matrix regression gate keeps baselines for, one video frame per invocation from source resolution through
+ * a strategy of {@link MediaFormatStrategyCompat}. Transcode sends a frame of size strategy decides through jvm encoder
+ * in to muxer; pass-through writes source sized sample to muxer as is. Scaling itself happens on gpu and is not here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class ScenarioBenchmark {
+
+  private static final int COMPRESSION_RATIO = 20; // encoded frame against raw one
+
+  @Param({ "1920x1080", "1280x720" })
+  public String source;
+
+  @Param({ "360pMpeg", "480pMpeg", "540pMpeg", "720pMpeg", "360pV8", "480pV8", "540pV8", "720pV8" })
+  public String strategy;
+
+  @Param({ "transcode", "pass-through" })
+  public String mode;
+
+  private Codec encoder;
+  private Muxer muxer;
+  private ByteBuffer frame;
+  private int frameSize;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+  private long presentationTimeUs;
+
+  @Setup public void setup() {
+    String[] size = source.split("x");
+    MediaFormat sourceFormat = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+    MediaFormat outputFormat = newStrategy(strategy).videoOutputFormat(sourceFormat);
+
+    MediaMuxer mediaMuxer = new MediaMuxer("benchmark.mp4", MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    muxer = Muxer.newInstance(mediaMuxer, null);
+
+    if ("transcode".equals(mode)) {
+      frameSize = yuvSize(outputFormat);
+      outputFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, frameSize);
+      encoder = Codec.newJvmInstance(true, 2, 0);
+      encoder.configure(outputFormat, MediaCodec.CONFIGURE_FLAG_ENCODE);
+      encoder.start();
+      // output format is told before first buffer, muxer starts with it
+      encoder.dequeueOutputBuffer(bufferInfo, 0);
+      muxer.outputFormat(SAMPLE_VIDEO, encoder.getOutputFormat());
+    } else {
+      frameSize = yuvSize(sourceFormat) / COMPRESSION_RATIO;
+      muxer.outputFormat(SAMPLE_VIDEO, sourceFormat);
+    }
+    frame = ByteBuffer.allocateDirect(frameSize);
+  }
+
+  @TearDown public void tearDown() {
+    if (encoder != null) {
+      encoder.stop();
+      encoder.release();
+    }
+  }
+
+  @Benchmark public int frame() {
+    presentationTimeUs += 33333;
+    frame.clear();
+    if (encoder == null) {
+      bufferInfo.set(0, frameSize, presentationTimeUs, 0);
+      muxer.writeSample(SAMPLE_VIDEO, frame, bufferInfo);
+      return bufferInfo.size;
+    }
+
+    int input = encoder.dequeueInputBuffer(0);
+    encoder.getInputBuffer(input).put(frame);
+    encoder.queueInputBuffer(input, 0, frameSize, presentationTimeUs, 0);
+
+    int output = encoder.dequeueOutputBuffer(bufferInfo, 0);
+    muxer.writeSample(SAMPLE_VIDEO, encoder.getOutputBuffer(output), bufferInfo);
+    encoder.releaseOutputBuffer(output, false);
+    return bufferInfo.size;
+  }
+
+  private static int yuvSize(MediaFormat format) {
+    return format.getInteger(MediaFormat.KEY_WIDTH) * format.getInteger(MediaFormat.KEY_HEIGHT) * 3 / 2;
+  }
+
+  // engine benchmark shares names of strategies
+  static MediaFormatStrategy newStrategy(String name) {
+    switch (name) {
+      case "360pMpeg": return MediaFormatStrategyCompat.new360pMpegStrategy();
+      case "480pMpeg": return MediaFormatStrategyCompat.new480pMpegStrategy();
+      case "540pMpeg": return MediaFormatStrategyCompat.new540pMpegStrategy();
+      case "720pMpeg": return MediaFormatStrategyCompat.new720pMpegStrategy();
+      case "360pV8": return MediaFormatStrategyCompat.new360pV8Strategy();
+      case "480pV8": return MediaFormatStrategyCompat.new480pV8Strategy();
+      case "540pV8": return MediaFormatStrategyCompat.new540pV8Strategy();
+      case "720pV8": return MediaFormatStrategyCompat.new720pV8Strategy();
+      default: throw new IllegalArgumentException("unknown strategy " + name);
+    }
+  }
+}
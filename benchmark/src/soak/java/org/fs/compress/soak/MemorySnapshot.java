@@ -0,0 +1,111 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.soak;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.ObjectName;
+
+/**
+ * Heap, direct buffers and live instance counts at one point in time. Taken from a class histogram of live objects,
+ * which runs a full collection first, so heap is what survives and not what garbage is pending.
+ */
+final class MemorySnapshot {
+
+  private static final int SETTLE_ATTEMPTS = 20;
+  private static final long SETTLE_WAIT_MS = 10;
+
+  // classes counted, everything of library and views of direct buffers it allocates
+  private static final String[] TRACKED_PREFIXES = { "org.fs.compress.", "android.media.", "java.nio.Direct" };
+
+  final long heapBytes;
+  final long directBytes;
+  final long directCount;
+  final Map<String, Long> instances;
+
+  private MemorySnapshot(long heapBytes, long directBytes, long directCount, Map<String, Long> instances) {
+    this.heapBytes = heapBytes;
+    this.directBytes = directBytes;
+    this.directCount = directCount;
+    this.instances = instances;
+  }
+
+  static MemorySnapshot take() {
+    BufferPoolMXBean direct = direct();
+    // direct memory is given back by cleaners after collection, on a thread of its own, so it is read once it settles
+    long directBytes = -1;
+    for (int i = 0; i < SETTLE_ATTEMPTS && directBytes != direct.getMemoryUsed(); i++) {
+      directBytes = direct.getMemoryUsed();
+      System.gc();
+      try {
+        Thread.sleep(SETTLE_WAIT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    Map<String, Long> instances = instances();
+    long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    return new MemorySnapshot(heapBytes, direct.getMemoryUsed(), direct.getCount(), instances);
+  }
+
+  private static BufferPoolMXBean direct() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(pool.getName())) return pool;
+    }
+    throw new IllegalArgumentException("direct buffer pool is not available on this vm");
+  }
+
+  long instances(String className) {
+    Long count = instances.get(className);
+    return count != null ? count : 0;
+  }
+
+  @Override public String toString() {
+    return "heap " + heapBytes + " direct " + directBytes + " in " + directCount + " buffers";
+  }
+
+  // lines look like "   12:     3456     78901  org.fs.compress.data.Sample (module)" where module is optional
+  private static Map<String, Long> instances() {
+    String histogram;
+    try {
+      ObjectName name = new ObjectName("com.sun.management:type=DiagnosticCommand");
+      histogram = (String) ManagementFactory.getPlatformMBeanServer()
+          .invoke(name, "gcClassHistogram", new Object[] { new String[0] }, new String[] { String[].class.getName() });
+    } catch (Exception e) {
+      throw new IllegalArgumentException("class histogram is not available on this vm", e);
+    }
+    Map<String, Long> instances = new HashMap<>();
+    for (String line : histogram.split("\n")) {
+      String[] columns = line.trim().split("\\s+");
+      if (columns.length < 4 || !columns[0].endsWith(":")) continue;
+      String className = columns[3];
+      if (tracked(className)) {
+        instances.put(className, Long.parseLong(columns[1]));
+      }
+    }
+    return instances;
+  }
+
+  private static boolean tracked(String className) {
+    for (String prefix : TRACKED_PREFIXES) {
+      if (className.startsWith(prefix)) return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.soak;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import org.fs.compress.common.muxer.QueuedMuxer;
+import org.fs.compress.muxer.Muxer;
+import org.junit.Test;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts bytes muxers allocate on their own thread while samples wait for start, while they are replayed and once they
+ * are written straight through. Queue columns and payload buffer are created by the first sample and sized for every
+ * sample of a round, so anything counted after that is per sample cost.
+ */
+public class MuxerAllocationTest {
+
+  // below initial capacity of sample queue and payload buffer, growth is amortized and not what is measured here
+  private static final int SAMPLES = 48;
+  private static final int SAMPLE_SIZE = 1024;
+
+  // warm up goes on until as many rounds in a row allocate nothing, so compiled code is settled before measuring
+  private static final int MAX_WARMUP_ROUNDS = 50000;
+  private static final int STABLE_ROUNDS = 1000;
+  private static final int ROUNDS = 200;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final ByteBuffer sample = ByteBuffer.allocateDirect(SAMPLE_SIZE);
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+  private final MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 640, 480);
+
+  @Test public void muxerQueuesAndReplaysWithoutAllocation() {
+    check("muxer", new Round() {
+
+      private Muxer muxer;
+
+      @Override public void prepare() {
+        muxer = Muxer.newInstance(new MediaMuxer("muxer", MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4), null);
+        write(0);
+      }
+
+      @Override public void write(int index) {
+        bufferInfo.set(0, SAMPLE_SIZE, index * 33333L, 0);
+        muxer.writeSample(SAMPLE_VIDEO, sample, bufferInfo);
+      }
+
+      @Override public void start() {
+        muxer.outputFormat(SAMPLE_VIDEO, format);
+      }
+    });
+  }
+
+  @Test public void queuedMuxerQueuesAndReplaysWithoutAllocation() {
+    check("queued muxer", new Round() {
+
+      private QueuedMuxer muxer;
+
+      @Override public void prepare() {
+        muxer = new QueuedMuxer(new MediaMuxer("queued", MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4), () -> { });
+        write(0);
+      }
+
+      @Override public void write(int index) {
+        bufferInfo.set(0, SAMPLE_SIZE, index * 33333L, 0);
+        muxer.writeSampleData(SAMPLE_VIDEO, sample, bufferInfo);
+      }
+
+      @Override public void start() {
+        muxer.outputFormat(SAMPLE_VIDEO, format);
+      }
+    });
+  }
+
+  private static void check(String name, Round round) {
+    long overhead = overhead();
+    int stableRounds = 0;
+    for (int i = 0; i < MAX_WARMUP_ROUNDS && stableRounds < STABLE_ROUNDS; i++) {
+      stableRounds = run(round) - overhead > 0 ? 0 : stableRounds + 1;
+    }
+    assertTrue(name + " still allocates after " + MAX_WARMUP_ROUNDS + " warm up rounds",
+        stableRounds == STABLE_ROUNDS);
+    int allocatingRounds = 0;
+    long maxAllocated = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long allocated = run(round) - overhead;
+      if (allocated > 0) {
+        allocatingRounds++;
+        maxAllocated = Math.max(maxAllocated, allocated);
+      }
+    }
+    assertTrue(name + " allocated in " + allocatingRounds + " of " + ROUNDS + " rounds, at most " + maxAllocated
+        + " bytes", allocatingRounds == 0);
+  }
+
+  // queued writes, start with replay, then writes after start; setup of round itself is not counted
+  private static long run(Round round) {
+    round.prepare();
+    final long id = Thread.currentThread().getId();
+    final long before = THREADS.getThreadAllocatedBytes(id);
+    for (int i = 1; i < SAMPLES; i++) {
+      round.write(i);
+    }
+    round.start();
+    for (int i = SAMPLES; i < SAMPLES * 2; i++) {
+      round.write(i);
+    }
+    return THREADS.getThreadAllocatedBytes(id) - before;
+  }
+
+  // reading allocated bytes may allocate itself on some jvms
+  private static long overhead() {
+    final long id = Thread.currentThread().getId();
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 16; i++) {
+      final long before = THREADS.getThreadAllocatedBytes(id);
+      overhead = Math.min(overhead, THREADS.getThreadAllocatedBytes(id) - before);
+    }
+    return overhead;
+  }
+
+  private interface Round {
+
+    // new muxer with its first sample queued, which creates queue and payload buffer
+    void prepare();
+
+    void write(int index);
+
+    void start();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.soak;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import org.fs.compress.spi.Extractor;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * Source of avc video and aac audio that makes samples up as they are read, in order of their time, so hours of media
+ * cost no memory of their own. Listener is told media time every time reading passes another interval.
+ */
+final class SoakExtractor implements Extractor {
+
+  static final int VIDEO_TRACK = 0;
+  static final int AUDIO_TRACK = 1;
+
+  static final int SAMPLE_RATE = 44100;
+  static final int CHANNELS = 2;
+  static final int AUDIO_SAMPLE_SIZE = 4096;
+  // pcm frames of one sample
+  static final long AUDIO_SAMPLE_US = AUDIO_SAMPLE_SIZE / 2 / CHANNELS * 1000000L / SAMPLE_RATE;
+
+  static final int WIDTH = 64;
+  static final int HEIGHT = 48;
+  static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2;
+  static final long FRAME_US = 33333;
+  static final int I_FRAME_INTERVAL = 30;
+
+  private final MediaFormat[] formats = new MediaFormat[2];
+  private final boolean[] selected = new boolean[2];
+  private final long durationUs;
+  private final long intervalUs;
+  private final SoakJob.Listener listener;
+
+  private long videoUs;
+  private long audioUs;
+  private long nextUs;
+
+  SoakExtractor(long durationUs, long intervalUs, SoakJob.Listener listener) {
+    this.durationUs = durationUs;
+    this.intervalUs = intervalUs;
+    this.listener = listener;
+    nextUs = intervalUs;
+
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, WIDTH, HEIGHT);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, FRAME_SIZE);
+    video.setLong(MediaFormat.KEY_DURATION, durationUs);
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, CHANNELS);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+    audio.setLong(MediaFormat.KEY_DURATION, durationUs);
+    formats[VIDEO_TRACK] = video;
+    formats[AUDIO_TRACK] = audio;
+  }
+
+  @Override public int getTrackCount() {
+    return formats.length;
+  }
+
+  @Override public MediaFormat getTrackFormat(int index) {
+    return MediaFormatUtil.copy(formats[index]);
+  }
+
+  @Override public void selectTrack(int index) {
+    selected[index] = true;
+  }
+
+  @Override public int getSampleTrackIndex() {
+    boolean video = selected[VIDEO_TRACK] && videoUs < durationUs;
+    boolean audio = selected[AUDIO_TRACK] && audioUs < durationUs;
+    if (video && audio) return videoUs <= audioUs ? VIDEO_TRACK : AUDIO_TRACK;
+    return video ? VIDEO_TRACK : audio ? AUDIO_TRACK : -1;
+  }
+
+  @Override public long getSampleTime() {
+    int track = getSampleTrackIndex();
+    return track == VIDEO_TRACK ? videoUs : track == AUDIO_TRACK ? audioUs : -1;
+  }
+
+  @Override public int getSampleFlags() {
+    int track = getSampleTrackIndex();
+    if (track == -1) return -1;
+    // every i frame interval is a sync sample, as an encoder would mark them
+    boolean sync = track == AUDIO_TRACK || (videoUs / FRAME_US) % I_FRAME_INTERVAL == 0;
+    return sync ? MediaExtractor.SAMPLE_FLAG_SYNC : 0;
+  }
+
+  @Override public int readSampleData(ByteBuffer byteBuffer, int offset) {
+    int track = getSampleTrackIndex();
+    if (track == -1) return -1;
+    int size = track == VIDEO_TRACK ? FRAME_SIZE : AUDIO_SAMPLE_SIZE;
+    if (size > byteBuffer.capacity() - offset) {
+      throw new IllegalArgumentException("buffer can not hold sample of size " + size);
+    }
+    // content does not matter to jvm codecs, a marker of time is enough to tell samples apart
+    byteBuffer.clear();
+    byteBuffer.putLong(offset, track == VIDEO_TRACK ? videoUs : audioUs);
+    byteBuffer.limit(offset + size).position(offset);
+    return size;
+  }
+
+  @Override public boolean advance() {
+    int track = getSampleTrackIndex();
+    if (track == -1) return false;
+    if (track == VIDEO_TRACK) {
+      videoUs += FRAME_US;
+    } else {
+      audioUs += AUDIO_SAMPLE_US;
+    }
+    long mediaTimeUs = Math.min(selected[VIDEO_TRACK] ? videoUs : Long.MAX_VALUE, selected[AUDIO_TRACK] ? audioUs : Long.MAX_VALUE);
+    if (listener != null && mediaTimeUs >= nextUs && mediaTimeUs < durationUs) {
+      listener.mediaTime(mediaTimeUs);
+      nextUs += intervalUs;
+    }
+    return getSampleTrackIndex() != -1;
+  }
+
+  @Override public void seekTo(long timeUs, int mode) {
+    // sync samples of video fall on every i frame interval
+    long syncUs = I_FRAME_INTERVAL * FRAME_US;
+    videoUs = mode == MediaExtractor.SEEK_TO_NEXT_SYNC ? (timeUs + syncUs - 1) / syncUs * syncUs : timeUs / syncUs * syncUs;
+    audioUs = videoUs / AUDIO_SAMPLE_US * AUDIO_SAMPLE_US;
+  }
+
+  @Override public int orientation() {
+    return 0;
+  }
+
+  @Override public long durationTimeUs() {
+    return durationUs;
+  }
+
+  @Override public void release() {
+    videoUs = durationUs;
+    audioUs = durationUs;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.soak;
+
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.engine.CoderEngine;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+import org.fs.compress.spi.Codec;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * One job of synthetic media through {@link CoderEngine} on jvm codecs, so scheduler, audio, video and pass-through
+ * coders, muxer and what engine allocates per job are all soaked. Audio is decoded, remixed from stereo to mono and
+ * encoded; video is transcoded, or passed through as it is read. Samples come from {@link SoakExtractor} and output
+ * goes to a muxer that only counts bytes, so hours of media cost no memory or disk of their own.
+ */
+final class SoakJob {
+
+  interface Listener {
+    void mediaTime(long presentationTimeUs);
+  }
+
+  private static final int OUTPUT_CHANNELS = 1;
+  private static final int BIT_RATE = 256000;
+  private static final int AUDIO_BIT_RATE = 64000;
+  private static final int FRAME_RATE = 30;
+
+  private static final int QUEUE_DEPTH = 4;
+
+  private final MediaMuxer mediaMuxer = new MediaMuxer("soak.mp4", MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+
+  private final long durationUs;
+  private final boolean videoPassThrough;
+
+  SoakJob(long durationUs, boolean videoPassThrough) {
+    this.durationUs = durationUs;
+    this.videoPassThrough = videoPassThrough;
+  }
+
+  /**
+   * Runs job to its end, listener is told media time every time it passes another {@code intervalUs}.
+   */
+  void run(long intervalUs, Listener listener) throws IOException, InterruptedException {
+    EngineOptions options = new EngineOptions();
+    options.codecProvider = new Provider(new SoakExtractor(durationUs, intervalUs, listener));
+    // extractor of provider makes input up, descriptor is never read
+    CoderEngine engine = CoderEngine.newInstance(new Strategy(videoPassThrough), new FileDescriptor());
+    engine.options(options);
+    engine.start(new File("soak.mp4"));
+  }
+
+  long bytes() {
+    return mediaMuxer.bytes();
+  }
+
+  // output formats of soak, video keeps its size
+  private static final class Strategy implements MediaFormatStrategy {
+
+    private final boolean videoPassThrough;
+
+    Strategy(boolean videoPassThrough) {
+      this.videoPassThrough = videoPassThrough;
+    }
+
+    @Override public boolean isStrategySupported(String mime) {
+      return MIME_TYPE_VIDEO_AVC.equals(mime);
+    }
+
+    @Override public MediaFormat videoOutputFormat(MediaFormat source) {
+      if (videoPassThrough) return null;
+      MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC,
+          source.getInteger(MediaFormat.KEY_WIDTH), source.getInteger(MediaFormat.KEY_HEIGHT));
+      format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+      format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+      format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, SoakExtractor.I_FRAME_INTERVAL / FRAME_RATE);
+      return format;
+    }
+
+    @Override public MediaFormat audioOutputFormat(MediaFormat source) {
+      MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SoakExtractor.SAMPLE_RATE, OUTPUT_CHANNELS);
+      format.setInteger(MediaFormat.KEY_BIT_RATE, AUDIO_BIT_RATE);
+      format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, SoakExtractor.AUDIO_SAMPLE_SIZE);
+      return format;
+    }
+  }
+
+  // jvm codecs and surfaces, with input of soak extractor and output to counting muxer of job
+  private final class Provider implements CodecProvider {
+
+    private final CodecProvider jvm = CodecProvider.newJvmInstance(QUEUE_DEPTH, 0);
+    private final Extractor extractor;
+
+    Provider(Extractor extractor) {
+      this.extractor = extractor;
+    }
+
+    @Override public boolean limited() {
+      return jvm.limited();
+    }
+
+    @Override public Codec newDecoder(String mime, OutputSurface surface, EventLoop eventLoop) {
+      return jvm.newDecoder(mime, surface, eventLoop);
+    }
+
+    @Override public Codec newEncoder(String mime, EventLoop eventLoop) {
+      return jvm.newEncoder(mime, eventLoop);
+    }
+
+    @Override public InputSurface newInputSurface(Codec encoder, InputSurface shared) {
+      return jvm.newInputSurface(encoder, shared);
+    }
+
+    @Override public OutputSurface newOutputSurface() {
+      return jvm.newOutputSurface();
+    }
+
+    @Override public Extractor newExtractor(FileDescriptor input) {
+      return extractor;
+    }
+
+    @Override public ContainerWriter newWriter(File output, int format) {
+      return ContainerWriter.newInstance(mediaMuxer);
+    }
+  }
+}
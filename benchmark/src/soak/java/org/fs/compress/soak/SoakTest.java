@@ -0,0 +1,85 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.soak;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Runs hours of simulated media through coder engine and fails once memory grows past its budget. First interval warms
+ * up codecs, coders and muxer; every later snapshot is compared with the one taken after it.
+ *
+ *   ./gradlew :benchmark:soak -PsoakHours=3
+ */
+public class SoakTest {
+
+  private static final long MICROS_PER_HOUR = 3600L * 1000000L;
+  private static final long MICROS_PER_MINUTE = 60L * 1000000L;
+
+  private static final double HOURS = Double.parseDouble(System.getProperty("soak.hours", "3"));
+  private static final long INTERVAL_US = Long.getLong("soak.intervalMinutes", 10) * MICROS_PER_MINUTE;
+  private static final int JOBS = Integer.getInteger("soak.jobs", 20);
+
+  private static final long HEAP_BUDGET = Long.getLong("soak.heapBudgetBytes", 4L * 1024 * 1024);
+  private static final long DIRECT_BUDGET = Long.getLong("soak.directBudgetBytes", 256L * 1024);
+  private static final long INSTANCE_BUDGET = Long.getLong("soak.instanceBudget", 64);
+
+  @Test public void longJobKeepsMemoryFlat() throws Exception {
+    SoakJob job = new SoakJob((long) (HOURS * MICROS_PER_HOUR), false);
+    List<MemorySnapshot> snapshots = new ArrayList<>();
+    job.run(INTERVAL_US, presentationTimeUs -> snapshots.add(MemorySnapshot.take()));
+    if (snapshots.size() < 2) {
+      fail("soak of " + HOURS + " hours is shorter than two intervals of " + INTERVAL_US + " us");
+    }
+    check("long job", snapshots.get(0), snapshots.subList(1, snapshots.size()));
+  }
+
+  @Test public void repeatedJobsGiveBackMemory() throws Exception {
+    List<MemorySnapshot> snapshots = new ArrayList<>();
+    for (int i = 0; i < JOBS; i++) {
+      // every other job passes video through, so both coders of video are soaked
+      SoakJob job = new SoakJob(INTERVAL_US, i % 2 == 1);
+      job.run(INTERVAL_US, null);
+      snapshots.add(MemorySnapshot.take());
+    }
+    check("repeated jobs", snapshots.get(0), snapshots.subList(1, snapshots.size()));
+  }
+
+  private static void check(String name, MemorySnapshot baseline, List<MemorySnapshot> snapshots) {
+    StringBuilder failures = new StringBuilder();
+    for (int i = 0; i < snapshots.size(); i++) {
+      MemorySnapshot snapshot = snapshots.get(i);
+      String at = name + " snapshot " + (i + 1) + ": ";
+      if (snapshot.heapBytes - baseline.heapBytes > HEAP_BUDGET) {
+        failures.append(at).append("heap grew from ").append(baseline).append(" to ").append(snapshot).append('\n');
+      }
+      if (snapshot.directBytes - baseline.directBytes > DIRECT_BUDGET) {
+        failures.append(at).append("direct memory grew from ").append(baseline).append(" to ").append(snapshot).append('\n');
+      }
+      for (Map.Entry<String, Long> entry : snapshot.instances.entrySet()) {
+        long growth = entry.getValue() - baseline.instances(entry.getKey());
+        if (growth > INSTANCE_BUDGET) {
+          failures.append(at).append(entry.getKey()).append(" grew by ").append(growth).append(" instances\n");
+        }
+      }
+    }
+    if (failures.length() > 0) fail(failures.toString());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+import android.os.Handler;
+import android.view.Surface;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// constants and buffer info work, codecs themselves are device only; benchmarks take theirs from jvm backend of library
+public final class MediaCodec {
+
+  public static final int INFO_TRY_AGAIN_LATER = -1;
+  public static final int INFO_OUTPUT_FORMAT_CHANGED = -2;
+  public static final int INFO_OUTPUT_BUFFERS_CHANGED = -3;
+
+  public static final int BUFFER_FLAG_SYNC_FRAME = 1;
+  public static final int BUFFER_FLAG_KEY_FRAME = 1;
+  public static final int BUFFER_FLAG_CODEC_CONFIG = 2;
+  public static final int BUFFER_FLAG_END_OF_STREAM = 4;
+
+  public static final int CONFIGURE_FLAG_ENCODE = 1;
+
+  public static final class BufferInfo {
+
+    public int offset;
+    public int size;
+    public long presentationTimeUs;
+    public int flags;
+
+    public void set(int newOffset, int newSize, long newTimeUs, int newFlags) {
+      offset = newOffset;
+      size = newSize;
+      presentationTimeUs = newTimeUs;
+      flags = newFlags;
+    }
+  }
+
+  public abstract static class Callback {
+
+    public abstract void onInputBufferAvailable(MediaCodec codec, int index);
+
+    public abstract void onOutputBufferAvailable(MediaCodec codec, int index, BufferInfo info);
+
+    public abstract void onError(MediaCodec codec, CodecException e);
+
+    public abstract void onOutputFormatChanged(MediaCodec codec, MediaFormat format);
+  }
+
+  public static final class CodecException extends IllegalStateException {
+
+    CodecException(String message) {
+      super(message);
+    }
+  }
+
+  public static MediaCodec createDecoderByType(String type) throws IOException {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static MediaCodec createEncoderByType(String type) throws IOException {
+    throw new RuntimeException("Stub!");
+  }
+
+  public String getName() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void configure(MediaFormat format, Surface surface, MediaCrypto crypto, int flags) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public Surface createInputSurface() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void setCallback(Callback cb, Handler handler) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void setCallback(Callback cb) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void start() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public int dequeueInputBuffer(long timeoutUs) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public ByteBuffer getInputBuffer(int index) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public ByteBuffer[] getInputBuffers() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public int dequeueOutputBuffer(BufferInfo info, long timeoutUs) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public ByteBuffer getOutputBuffer(int index) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public ByteBuffer[] getOutputBuffers() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void releaseOutputBuffer(int index, boolean render) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void signalEndOfInputStream() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public MediaFormat getOutputFormat() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void stop() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void release() {
+    throw new RuntimeException("Stub!");
+  }
+
+  private MediaCodec() {
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+// constants strategies put in to output formats, values as on platform; codec listing is device only
+public final class MediaCodecInfo {
+
+  public static final class CodecCapabilities {
+
+    public static final int COLOR_FormatSurface = 0x7f000789;
+
+    public int getMaxSupportedInstances() {
+      throw new RuntimeException("Stub!");
+    }
+  }
+
+  public static final class CodecProfileLevel {
+
+    public static final int AACObjectLC = 2;
+    public static final int VP8ProfileMain = 0x01;
+  }
+
+  public String getName() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public boolean isEncoder() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public String[] getSupportedTypes() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public CodecCapabilities getCapabilitiesForType(String type) {
+    throw new RuntimeException("Stub!");
+  }
+
+  private MediaCodecInfo() {
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// sync flags and seek modes work, reading media is device only
+public final class MediaExtractor {
+
+  public static final int SEEK_TO_PREVIOUS_SYNC = 0;
+  public static final int SEEK_TO_NEXT_SYNC = 1;
+  public static final int SEEK_TO_CLOSEST_SYNC = 2;
+
+  public static final int SAMPLE_FLAG_SYNC = 1;
+
+  public int getTrackCount() {
+    return 0;
+  }
+
+  public MediaFormat getTrackFormat(int index) {
+    throw new IllegalArgumentException("no tracks");
+  }
+
+  public void setDataSource(String path) throws IOException {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void setDataSource(FileDescriptor fd) throws IOException {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void selectTrack(int index) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public int getSampleTrackIndex() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public long getSampleTime() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public int getSampleFlags() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public int readSampleData(ByteBuffer byteBuf, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public boolean advance() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void seekTo(long timeUs, int mode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void release() {
+    throw new RuntimeException("Stub!");
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+// map backed as platform one, only keys benchmarks touch are declared
+public final class MediaFormat {
+
+  public static final String KEY_MIME = "mime";
+  public static final String KEY_SAMPLE_RATE = "sample-rate";
+  public static final String KEY_CHANNEL_COUNT = "channel-count";
+  public static final String KEY_WIDTH = "width";
+  public static final String KEY_HEIGHT = "height";
+  public static final String KEY_MAX_INPUT_SIZE = "max-input-size";
+  public static final String KEY_COLOR_FORMAT = "color-format";
+  public static final String KEY_BIT_RATE = "bitrate";
+  public static final String KEY_FRAME_RATE = "frame-rate";
+  public static final String KEY_I_FRAME_INTERVAL = "i-frame-interval";
+  public static final String KEY_AAC_PROFILE = "aac-profile";
+  public static final String KEY_DURATION = "durationUs";
+  public static final String KEY_LANGUAGE = "language";
+
+  private final Map<String, Object> values = new HashMap<>();
+
+  public static MediaFormat createAudioFormat(String mime, int sampleRate, int channelCount) {
+    MediaFormat format = new MediaFormat();
+    format.setString(KEY_MIME, mime);
+    format.setInteger(KEY_SAMPLE_RATE, sampleRate);
+    format.setInteger(KEY_CHANNEL_COUNT, channelCount);
+    return format;
+  }
+
+  public static MediaFormat createVideoFormat(String mime, int width, int height) {
+    MediaFormat format = new MediaFormat();
+    format.setString(KEY_MIME, mime);
+    format.setInteger(KEY_WIDTH, width);
+    format.setInteger(KEY_HEIGHT, height);
+    return format;
+  }
+
+  public boolean containsKey(String name) {
+    return values.containsKey(name);
+  }
+
+  public int getInteger(String name) {
+    Object value = values.get(name);
+    if (value == null) throw new NullPointerException(name);
+    return (Integer) value;
+  }
+
+  public int getInteger(String name, int defaultValue) {
+    Object value = values.get(name);
+    return value == null ? defaultValue : (Integer) value;
+  }
+
+  public void setInteger(String name, int value) {
+    values.put(name, value);
+  }
+
+  public long getLong(String name) {
+    Object value = values.get(name);
+    if (value == null) throw new NullPointerException(name);
+    return (Long) value;
+  }
+
+  public void setLong(String name, long value) {
+    values.put(name, value);
+  }
+
+  public float getFloat(String name) {
+    Object value = values.get(name);
+    if (value == null) throw new NullPointerException(name);
+    return (Float) value;
+  }
+
+  public void setFloat(String name, float value) {
+    values.put(name, value);
+  }
+
+  public String getString(String name) {
+    return (String) values.get(name);
+  }
+
+  public void setString(String name, String value) {
+    values.put(name, value);
+  }
+
+  public ByteBuffer getByteBuffer(String name) {
+    return (ByteBuffer) values.get(name);
+  }
+
+  public void setByteBuffer(String name, ByteBuffer bytes) {
+    values.put(name, bytes);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+import java.io.FileDescriptor;
+
+// device only, jvm extractor reads rotation and duration from its own file
+public class MediaMetadataRetriever {
+
+  public static final int METADATA_KEY_DURATION = 9;
+  public static final int METADATA_KEY_VIDEO_ROTATION = 24;
+
+  public MediaMetadataRetriever() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void setDataSource(FileDescriptor fd) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public String extractMetadata(int keyCode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void release() {
+    throw new RuntimeException("Stub!");
+  }
+}
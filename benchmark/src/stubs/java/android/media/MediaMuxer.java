@@ -0,0 +1,60 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.media;
+
+import java.nio.ByteBuffer;
+
+// consumes every sample as platform muxer does, without writing it anywhere
+public final class MediaMuxer {
+
+  public static final class OutputFormat {
+
+    public static final int MUXER_OUTPUT_MPEG_4 = 0;
+    public static final int MUXER_OUTPUT_WEBM = 1;
+    public static final int MUXER_OUTPUT_3GPP = 2;
+    public static final int MUXER_OUTPUT_OGG = 4;
+  }
+
+  private int tracks;
+  private long bytes;
+
+  public MediaMuxer(String path, int format) {
+  }
+
+  public int addTrack(MediaFormat format) {
+    return tracks++;
+  }
+
+  public void setOrientationHint(int degrees) {
+  }
+
+  public void start() {
+  }
+
+  public void writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo) {
+    bytes += bufferInfo.size;
+  }
+
+  public void stop() {
+  }
+
+  public void release() {
+  }
+
+  public long bytes() {
+    return bytes;
+  }
+}
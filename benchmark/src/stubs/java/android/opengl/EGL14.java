@@ -0,0 +1,91 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.opengl;
+
+// device only, EGL contexts belong to platform input surfaces which benchmarks never create
+public final class EGL14 {
+
+  public static final int EGL_DEFAULT_DISPLAY = 0;
+  public static final int EGL_SUCCESS = 0x3000;
+  public static final int EGL_BLUE_SIZE = 0x3022;
+  public static final int EGL_GREEN_SIZE = 0x3023;
+  public static final int EGL_RED_SIZE = 0x3024;
+  public static final int EGL_NONE = 0x3038;
+  public static final int EGL_RENDERABLE_TYPE = 0x3040;
+  public static final int EGL_HEIGHT = 0x3056;
+  public static final int EGL_WIDTH = 0x3057;
+  public static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+  public static final int EGL_OPENGL_ES2_BIT = 4;
+
+  public static final EGLDisplay EGL_NO_DISPLAY = null;
+  public static final EGLContext EGL_NO_CONTEXT = null;
+  public static final EGLSurface EGL_NO_SURFACE = null;
+
+  public static EGLDisplay eglGetDisplay(int displayId) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglInitialize(EGLDisplay dpy, int[] major, int majorOffset, int[] minor, int minorOffset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglChooseConfig(EGLDisplay dpy, int[] attribList, int attribListOffset, EGLConfig[] configs, int configsOffset, int configSize, int[] numConfig, int numConfigOffset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static EGLContext eglCreateContext(EGLDisplay dpy, EGLConfig config, EGLContext shareContext, int[] attribList, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static EGLSurface eglCreateWindowSurface(EGLDisplay dpy, EGLConfig config, Object win, int[] attribList, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglDestroySurface(EGLDisplay dpy, EGLSurface surface) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglDestroyContext(EGLDisplay dpy, EGLContext ctx) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglReleaseThread() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglTerminate(EGLDisplay dpy) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglMakeCurrent(EGLDisplay dpy, EGLSurface draw, EGLSurface read, EGLContext ctx) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglSwapBuffers(EGLDisplay dpy, EGLSurface surface) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static boolean eglQuerySurface(EGLDisplay dpy, EGLSurface surface, int attribute, int[] value, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int eglGetError() {
+    throw new RuntimeException("Stub!");
+  }
+
+  private EGL14() {
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.opengl;
+
+import java.nio.Buffer;
+
+// device only, frames of jvm backend are copied rather than drawn
+public final class GLES20 {
+
+  public static final int GL_FALSE = 0;
+  public static final int GL_NO_ERROR = 0;
+  public static final int GL_TRIANGLE_STRIP = 5;
+  public static final int GL_DEPTH_BUFFER_BIT = 0x100;
+  public static final int GL_FLOAT = 0x1406;
+  public static final int GL_LINEAR = 0x2601;
+  public static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+  public static final int GL_TEXTURE_MIN_FILTER = 0x2801;
+  public static final int GL_TEXTURE_WRAP_S = 0x2802;
+  public static final int GL_TEXTURE_WRAP_T = 0x2803;
+  public static final int GL_COLOR_BUFFER_BIT = 0x4000;
+  public static final int GL_CLAMP_TO_EDGE = 0x812f;
+  public static final int GL_TEXTURE0 = 0x84c0;
+  public static final int GL_FRAGMENT_SHADER = 0x8b30;
+  public static final int GL_VERTEX_SHADER = 0x8b31;
+  public static final int GL_COMPILE_STATUS = 0x8b81;
+  public static final int GL_LINK_STATUS = 0x8b82;
+
+  public static void glClearColor(float red, float green, float blue, float alpha) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glClear(int mask) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glUseProgram(int program) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glActiveTexture(int texture) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glBindTexture(int target, int texture) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glEnableVertexAttribArray(int index) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glDrawArrays(int mode, int first, int count) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glFinish() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int glGetAttribLocation(int program, String name) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int glGetUniformLocation(int program, String name) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glGenTextures(int n, int[] textures, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glTexParameterf(int target, int pname, float param) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glTexParameteri(int target, int pname, int param) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int glCreateShader(int type) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glShaderSource(int shader, String string) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glCompileShader(int shader) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glDeleteShader(int shader) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int glCreateProgram() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glAttachShader(int program, int shader) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glLinkProgram(int program) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static void glDeleteProgram(int program) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static int glGetError() {
+    throw new RuntimeException("Stub!");
+  }
+
+  private GLES20() {
+  }
+}
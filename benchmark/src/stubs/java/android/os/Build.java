@@ -0,0 +1,33 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+// benchmarks run as latest platform, so V21 buffer and queue paths are measured
+public final class Build {
+
+  public static final class VERSION {
+
+    public static final int SDK_INT = VERSION_CODES.Q;
+  }
+
+  public static final class VERSION_CODES {
+
+    public static final int LOLLIPOP = 21;
+    public static final int M = 23;
+    public static final int O = 26;
+    public static final int Q = 29;
+  }
+}
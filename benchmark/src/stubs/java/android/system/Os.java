@@ -0,0 +1,39 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.system;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+// size of descriptor through its channel, so progress and reports of jobs on jvm know their input
+public final class Os {
+
+  private static final int EBADF = 9;
+
+  public static StructStat fstat(FileDescriptor fd) throws ErrnoException {
+    // stream is not closed, it would close descriptor of caller
+    FileInputStream in = new FileInputStream(fd);
+    try {
+      return new StructStat(in.getChannel().size());
+    } catch (IOException e) {
+      throw new ErrnoException("fstat", EBADF);
+    }
+  }
+
+  private Os() {
+  }
+}
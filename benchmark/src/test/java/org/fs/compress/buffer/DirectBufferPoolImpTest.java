@@ -0,0 +1,111 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.data.Leak;
+import org.fs.compress.leak.LeakTracker;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.fs.compress.util.Constants.RESOURCE_BUFFER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Releases buffers of a pool twice, with leak tracker off and on, and checks pool refuses them and keeps its counts.
+ *
+ *   ./gradlew :benchmark:test --tests '*DirectBufferPoolImpTest'
+ */
+public class DirectBufferPoolImpTest {
+
+  private static final int SIZE = 4096;
+
+  private final DirectBufferPoolImp pool = new DirectBufferPoolImp();
+  private final List<Leak> leaks = new ArrayList<>();
+
+  @After public void tearDown() {
+    LeakTracker.shared().callback(null);
+  }
+
+  @Test public void idleBufferReleasedTwiceIsRefused() {
+    ByteBuffer buffer = pool.lease(SIZE);
+    // another lease out, so count of leases alone would let it through
+    pool.lease(SIZE);
+    pool.release(buffer);
+    assertRefused(buffer);
+
+    assertEquals(SIZE, pool.stats().outstandingBytes);
+    assertEquals(SIZE, pool.stats().pooledBytes);
+    // it is queued once, so two leases never share its memory
+    assertNotSame(pool.lease(SIZE), pool.lease(SIZE));
+  }
+
+  @Test public void droppedBufferReleasedTwiceIsRefused() {
+    pool.maxPooledBytes(0);
+    ByteBuffer buffer = pool.lease(SIZE);
+    pool.release(buffer);
+    assertRefused(buffer);
+
+    assertEquals(0, pool.stats().outstandingBytes);
+  }
+
+  @Test public void trackedBufferReleasedTwiceIsRefused() {
+    LeakTracker.shared().callback(leaks::add);
+    pool.maxPooledBytes(0);
+    ByteBuffer buffer = pool.lease(SIZE);
+    ByteBuffer other = pool.lease(SIZE);
+    pool.release(buffer);
+    // other one is still out, only tracking tells which of them came back
+    assertRefused(buffer);
+
+    assertEquals(SIZE, pool.stats().outstandingBytes);
+    pool.release(other);
+    assertEquals(0, pool.stats().outstandingBytes);
+  }
+
+  @Test public void trackedBufferNeverReleasedIsReported() {
+    LeakTracker.shared().callback(leaks::add);
+    LeakTracker.Scope scope = LeakTracker.shared().openScope("pool");
+    pool.release(pool.lease(SIZE));
+    ByteBuffer leaked = pool.lease(SIZE);
+    scope.close();
+
+    assertEquals(1, leaks.size());
+    assertEquals(RESOURCE_BUFFER, leaks.get(0).kind);
+    pool.release(leaked);
+  }
+
+  @Test public void bufferLeasedBeforeTrackingIsTakenBack() {
+    ByteBuffer buffer = pool.lease(SIZE);
+    LeakTracker.shared().callback(leaks::add);
+    pool.release(buffer);
+    assertRefused(buffer);
+
+    assertEquals(0, pool.stats().outstandingBytes);
+  }
+
+  private void assertRefused(ByteBuffer buffer) {
+    try {
+      pool.release(buffer);
+      fail("released twice");
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.format.MediaFormatStrategyCompat;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+import org.fs.compress.spi.Codec;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Preempts a job on jvm codecs at one of its gops and checks it parks with none of its codecs alive, then resumes
+ * with new ones and still writes every frame of source at its time.
+ *
+ *   ./gradlew :benchmark:test --tests '*MpegCoderEngineTest'
+ */
+public class MpegCoderEngineTest {
+
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 360;
+  private static final int FRAMES = 60;
+  private static final int GOP = 10;
+  private static final long FRAME_US = 33333;
+  private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2 / 20;
+  private static final int AUDIO_SAMPLE_SIZE = 4096;
+  private static final long AUDIO_SAMPLE_US = 23220;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CountingProvider provider = new CountingProvider(CodecProvider.newJvmInstance(2, 0));
+
+  @Test public void preemptedJobLetsGoOfCodecs() throws Exception {
+    File input = folder.newFile("input.jvm");
+    File output = folder.newFile("output.jvm");
+    writeInput(input);
+
+    EngineOptions options = new EngineOptions();
+    options.codecProvider = provider;
+    // some gops in, so codecs have frames in flight when they are let go
+    PreemptingGate gate = new PreemptingGate(GOP * 2);
+    CompressionReport report;
+    try (FileInputStream in = new FileInputStream(input)) {
+      CoderEngine engine = CoderEngine.newInstance(new TranscodeStrategy(), in.getFD(), options);
+      engine.options(options);
+      engine.gate(gate);
+      engine.start(output);
+      report = engine.report();
+    }
+    assertEquals(1, gate.parked);
+    assertEquals("codecs alive while parked", 0, gate.aliveWhileParked);
+    // decoder and encoder of both tracks, once before and once after job was parked
+    assertEquals(8, provider.created.get());
+    assertEquals(0, provider.alive.get());
+    assertEquals(FRAMES, report.video.framesEncoded);
+
+    try (FileInputStream in = new FileInputStream(output)) {
+      Extractor extractor = provider.newExtractor(in.getFD());
+      try {
+        assertEquals(2, extractor.getTrackCount());
+        extractor.selectTrack(0);
+        extractor.selectTrack(1);
+        ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT * 3 / 2);
+        long[] lastTimesUs = { -1, -1 };
+        int[] counts = new int[2];
+        while (extractor.getSampleTrackIndex() != -1) {
+          int track = extractor.getSampleTrackIndex();
+          long timeUs = extractor.getSampleTime();
+          if (extractor.readSampleData(buffer, 0) > 0) {
+            assertTrue("track " + track + " goes back to " + timeUs + " after " + lastTimesUs[track], timeUs > lastTimesUs[track]);
+            if (track == 0) {
+              assertEquals("time of frame " + counts[0], counts[0] * FRAME_US, timeUs);
+            }
+            lastTimesUs[track] = timeUs;
+            counts[track]++;
+          }
+          extractor.advance();
+        }
+        assertEquals(FRAMES, counts[0]);
+        // encoder frames pcm in its own sizes, so audio is only checked to go on after job resumed
+        assertTrue("audio ends at " + lastTimesUs[1], lastTimesUs[1] >= (FRAMES - GOP) * FRAME_US);
+      } finally {
+        extractor.release();
+      }
+    }
+  }
+
+  // video is scaled down by 360p strategy, audio keeps source format but goes through codecs
+  private static final class TranscodeStrategy implements MediaFormatStrategy {
+
+    private final MediaFormatStrategy strategy = MediaFormatStrategyCompat.new360pMpegStrategy();
+
+    @Override public boolean isStrategySupported(String mime) {
+      return strategy.isStrategySupported(mime);
+    }
+
+    @Override public MediaFormat videoOutputFormat(MediaFormat source) {
+      return strategy.videoOutputFormat(source);
+    }
+
+    @Override public MediaFormat audioOutputFormat(MediaFormat source) {
+      MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC,
+          source.getInteger(MediaFormat.KEY_SAMPLE_RATE), source.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+      format.setInteger(MediaFormat.KEY_BIT_RATE, 128000);
+      return format;
+    }
+  }
+
+  // asks job to step aside once codecs took enough buffers, and counts codecs still alive when job parks
+  private final class PreemptingGate implements CoderEngineGate {
+
+    private final int buffers;
+    private int parked;
+    private int aliveWhileParked = -1;
+
+    PreemptingGate(int buffers) {
+      this.buffers = buffers;
+    }
+
+    @Override public void checkpoint() {
+      if (preempted()) {
+        parked++;
+        aliveWhileParked = provider.alive.get();
+      }
+    }
+
+    @Override public boolean preempted() {
+      return parked == 0 && provider.queued.get() >= buffers;
+    }
+
+    @Override public void waiting(boolean waiting) {
+    }
+  }
+
+  private static final class CountingProvider implements CodecProvider {
+
+    private final CodecProvider provider;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger alive = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    CountingProvider(CodecProvider provider) {
+      this.provider = provider;
+    }
+
+    @Override public boolean limited() {
+      return provider.limited();
+    }
+
+    @Override public Codec newDecoder(String mime, OutputSurface surface, EventLoop eventLoop) {
+      return new CountingCodec(provider.newDecoder(mime, surface, eventLoop));
+    }
+
+    @Override public Codec newEncoder(String mime, EventLoop eventLoop) {
+      return new CountingCodec(provider.newEncoder(mime, eventLoop));
+    }
+
+    // surfaces are handed the codec they were created for
+    @Override public InputSurface newInputSurface(Codec encoder, InputSurface shared) {
+      return provider.newInputSurface(((CountingCodec) encoder).codec, shared);
+    }
+
+    @Override public OutputSurface newOutputSurface() {
+      return provider.newOutputSurface();
+    }
+
+    @Override public Extractor newExtractor(FileDescriptor input) throws IOException {
+      return provider.newExtractor(input);
+    }
+
+    @Override public ContainerWriter newWriter(File output, int format) throws IOException {
+      return provider.newWriter(output, format);
+    }
+
+    private final class CountingCodec implements Codec {
+
+      private final Codec codec;
+
+      CountingCodec(Codec codec) {
+        this.codec = codec;
+        created.incrementAndGet();
+        alive.incrementAndGet();
+      }
+
+      @Override public String name() {
+        return codec.name();
+      }
+
+      @Override public void configure(MediaFormat format, int flags) {
+        codec.configure(format, flags);
+      }
+
+      @Override public void start() {
+        codec.start();
+      }
+
+      @Override public int dequeueInputBuffer(long timeoutUs) {
+        return codec.dequeueInputBuffer(timeoutUs);
+      }
+
+      @Override public ByteBuffer getInputBuffer(int index) {
+        return codec.getInputBuffer(index);
+      }
+
+      @Override public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+        codec.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+        queued.incrementAndGet();
+      }
+
+      @Override public int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeoutUs) {
+        return codec.dequeueOutputBuffer(bufferInfo, timeoutUs);
+      }
+
+      @Override public ByteBuffer getOutputBuffer(int index) {
+        return codec.getOutputBuffer(index);
+      }
+
+      @Override public void releaseOutputBuffer(int index, boolean render) {
+        codec.releaseOutputBuffer(index, render);
+      }
+
+      @Override public void signalEndOfInputStream() {
+        codec.signalEndOfInputStream();
+      }
+
+      @Override public MediaFormat getOutputFormat() {
+        return codec.getOutputFormat();
+      }
+
+      @Override public void stop() {
+        codec.stop();
+      }
+
+      @Override public void release() {
+        codec.release();
+        alive.decrementAndGet();
+      }
+    }
+  }
+
+  // avc video with a sync sample every gop, interleaved with aac audio
+  private void writeInput(File file) throws IOException {
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, WIDTH, HEIGHT);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, FRAME_SIZE);
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 44100, 2);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+
+    ContainerWriter writer = provider.newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    try {
+      int videoTrack = writer.addTrack(video);
+      int audioTrack = writer.addTrack(audio);
+      writer.start();
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+      ByteBuffer sample = ByteBuffer.allocate(AUDIO_SAMPLE_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      long audioTimeUs = 0;
+      for (int i = 0; i < FRAMES; i++) {
+        long videoTimeUs = i * FRAME_US;
+        info.set(0, FRAME_SIZE, videoTimeUs, i % GOP == 0 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+        writer.writeSampleData(videoTrack, frame, info);
+        for (; audioTimeUs < videoTimeUs + FRAME_US; audioTimeUs += AUDIO_SAMPLE_US) {
+          info.set(0, AUDIO_SAMPLE_SIZE, audioTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+          writer.writeSampleData(audioTrack, sample, info);
+        }
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+  }
+}
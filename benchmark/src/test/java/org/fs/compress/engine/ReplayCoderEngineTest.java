@@ -0,0 +1,219 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.format.MediaFormatStrategyCompat;
+import org.fs.compress.replay.SampleRecording;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.RECORD_ENCODED;
+import static org.fs.compress.util.Constants.RECORD_EXTRACTED;
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a job of jvm codecs, replays recording without them and checks replayed output has samples of job output,
+ * track by track and in same order.
+ *
+ *   ./gradlew :benchmark:test --tests '*ReplayCoderEngineTest'
+ */
+public class ReplayCoderEngineTest {
+
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 360;
+  private static final int FRAMES = 30;
+  private static final long FRAME_US = 33333;
+  private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2 / 20;
+  private static final int AUDIO_SAMPLE_SIZE = 4096;
+  private static final long AUDIO_SAMPLE_US = 23220;
+  private static final long WINDOW_US = 100000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CodecProvider provider = CodecProvider.newJvmInstance(2, 0);
+
+  @Test public void replayWritesSamplesOfRecordedJob() throws Exception {
+    File input = folder.newFile("input.jvm");
+    File output = folder.newFile("output.jvm");
+    File recordingFile = folder.newFile("job.rec");
+    File replayed = folder.newFile("replayed.jvm");
+    int audioSamples = writeInput(input);
+
+    EngineOptions options = new EngineOptions();
+    options.codecProvider = provider;
+    options.sampleRecording = recordingFile;
+    try (FileInputStream in = new FileInputStream(input)) {
+      CoderEngine engine = CoderEngine.newInstance(MediaFormatStrategyCompat.new360pMpegStrategy(), in.getFD());
+      engine.options(options);
+      engine.start(output);
+    }
+
+    SampleRecording recording = SampleRecording.newInstance(recordingFile);
+    assertEquals(FRAMES, count(recording, RECORD_EXTRACTED, SAMPLE_VIDEO));
+    assertEquals(FRAMES, count(recording, RECORD_ENCODED, SAMPLE_VIDEO));
+    assertEquals(audioSamples, count(recording, RECORD_EXTRACTED, SAMPLE_AUDIO));
+    assertEquals(audioSamples, count(recording, RECORD_ENCODED, SAMPLE_AUDIO));
+
+    EngineOptions replayOptions = new EngineOptions();
+    replayOptions.codecProvider = provider;
+    replayOptions.interleaveWindowUs = WINDOW_US;
+    CoderEngine replay = CoderEngine.newReplayInstance(recordingFile, false);
+    replay.options(replayOptions);
+    replay.start(replayed);
+
+    List<Written> expected = read(output);
+    List<Written> actual = read(replayed);
+    assertEquals(FRAMES + audioSamples, expected.size());
+    assertEquals(expected.size(), actual.size());
+    // scheduler interleaves replay by its own pace, so tracks are compared one by one
+    for (String mime : new String[] { MIME_TYPE_VIDEO_AVC, MIME_TYPE_AUDIO_AAC }) {
+      List<Written> job = track(expected, mime);
+      List<Written> samples = track(actual, mime);
+      assertEquals(mime, job.size(), samples.size());
+      for (int i = 0; i < job.size(); i++) {
+        assertEquals("time of " + mime + " sample " + i, job.get(i).timeUs, samples.get(i).timeUs);
+        assertEquals("size of " + mime + " sample " + i, job.get(i).size, samples.get(i).size);
+        assertEquals("flags of " + mime + " sample " + i, job.get(i).flags, samples.get(i).flags);
+      }
+    }
+
+    // samples of a track leave in order of their time, and no track runs ahead of other by more than window
+    long[] lastTimesUs = { -1, -1 };
+    long[] endTimesUs = { track(actual, MIME_TYPE_VIDEO_AVC).get(FRAMES - 1).timeUs,
+        track(actual, MIME_TYPE_AUDIO_AAC).get(audioSamples - 1).timeUs };
+    for (int i = 0; i < actual.size(); i++) {
+      Written sample = actual.get(i);
+      int other = 1 - sample.track;
+      assertTrue("sample " + i + " goes back in time", sample.timeUs > lastTimesUs[sample.track]);
+      if (lastTimesUs[other] >= 0 && lastTimesUs[other] < endTimesUs[other]) {
+        assertTrue("sample " + i + " runs ahead of other track", sample.timeUs - lastTimesUs[other] <= WINDOW_US + FRAME_US);
+      }
+      lastTimesUs[sample.track] = sample.timeUs;
+    }
+  }
+
+  private static List<Written> track(List<Written> samples, String mime) {
+    List<Written> track = new ArrayList<>();
+    for (Written sample : samples) {
+      if (mime.equals(sample.mime)) track.add(sample);
+    }
+    return track;
+  }
+
+  // end of stream reaches muxer as an empty sample, it is recorded but never written
+  private static int count(SampleRecording recording, int kind, int sampleType) {
+    int count = 0;
+    for (int i = 0, size = recording.size(); i < size; i++) {
+      if (recording.kind(i) == kind && recording.sampleType(i) == sampleType && recording.sampleSize(i) > 0) count++;
+    }
+    return count;
+  }
+
+  // avc video interleaved with aac audio, returns how many audio samples are written
+  private int writeInput(File file) throws IOException {
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, WIDTH, HEIGHT);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, FRAME_SIZE);
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 44100, 2);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+
+    ContainerWriter writer = provider.newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    int audioSamples = 0;
+    try {
+      int videoTrack = writer.addTrack(video);
+      int audioTrack = writer.addTrack(audio);
+      writer.start();
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+      ByteBuffer sample = ByteBuffer.allocate(AUDIO_SAMPLE_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      long audioTimeUs = 0;
+      for (int i = 0; i < FRAMES; i++) {
+        long videoTimeUs = i * FRAME_US;
+        info.set(0, FRAME_SIZE, videoTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+        writer.writeSampleData(videoTrack, frame, info);
+        for (; audioTimeUs < videoTimeUs + FRAME_US; audioTimeUs += AUDIO_SAMPLE_US) {
+          info.set(0, AUDIO_SAMPLE_SIZE, audioTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+          writer.writeSampleData(audioTrack, sample, info);
+          audioSamples++;
+        }
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+    return audioSamples;
+  }
+
+  // samples of every track, in order they were written
+  private List<Written> read(File file) throws IOException {
+    List<Written> samples = new ArrayList<>();
+    try (FileInputStream in = new FileInputStream(file)) {
+      Extractor extractor = provider.newExtractor(in.getFD());
+      try {
+        assertEquals(2, extractor.getTrackCount());
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+          extractor.selectTrack(i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT * 3 / 2);
+        while (extractor.getSampleTrackIndex() != -1) {
+          int track = extractor.getSampleTrackIndex();
+          Written sample = new Written();
+          sample.track = track;
+          sample.mime = extractor.getTrackFormat(track).getString(MediaFormat.KEY_MIME);
+          sample.timeUs = extractor.getSampleTime();
+          sample.flags = extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC;
+          sample.size = extractor.readSampleData(buffer, 0);
+          samples.add(sample);
+          extractor.advance();
+        }
+      } finally {
+        extractor.release();
+      }
+    }
+    return samples;
+  }
+
+  private static final class Written {
+    int track;
+    String mime;
+    long timeUs;
+    int size;
+    int flags;
+  }
+}
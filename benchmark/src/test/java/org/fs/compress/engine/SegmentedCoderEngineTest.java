@@ -0,0 +1,150 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.format.MediaFormatStrategyCompat;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a segmented job on jvm codecs and checks stitched output has every frame of source at its time, with no
+ * segment file left behind.
+ *
+ *   ./gradlew :benchmark:test --tests '*SegmentedCoderEngineTest'
+ */
+public class SegmentedCoderEngineTest {
+
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 360;
+  private static final int FRAMES = 60;
+  private static final int GOP = 10;
+  private static final long FRAME_US = 33333;
+  private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2 / 20;
+  private static final int AUDIO_SAMPLE_SIZE = 4096;
+  private static final long AUDIO_SAMPLE_US = 23220;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CodecProvider provider = CodecProvider.newJvmInstance(2, 0);
+
+  @Test public void segmentsAreStitchedInOrder() throws Exception {
+    File input = folder.newFile("input.jvm");
+    File output = folder.newFile("output.jvm");
+    int audioSamples = writeInput(input);
+
+    EngineOptions options = new EngineOptions();
+    options.codecProvider = provider;
+    options.segments = 3;
+    CompressionReport report;
+    try (FileInputStream in = new FileInputStream(input)) {
+      CoderEngine engine = CoderEngine.newInstance(MediaFormatStrategyCompat.new360pMpegStrategy(), in.getFD(), options);
+      engine.options(options);
+      engine.start(output);
+      report = engine.report();
+    }
+    assertEquals(FRAMES, report.video.framesEncoded);
+
+    try (FileInputStream in = new FileInputStream(output)) {
+      Extractor extractor = provider.newExtractor(in.getFD());
+      try {
+        assertEquals(2, extractor.getTrackCount());
+        extractor.selectTrack(0);
+        extractor.selectTrack(1);
+        ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT * 3 / 2);
+        long[] lastTimesUs = { -1, -1 };
+        int[] counts = new int[2];
+        while (extractor.getSampleTrackIndex() != -1) {
+          int track = extractor.getSampleTrackIndex();
+          long timeUs = extractor.getSampleTime();
+          if (extractor.readSampleData(buffer, 0) > 0) {
+            assertTrue("track " + track + " goes back to " + timeUs + " after " + lastTimesUs[track], timeUs > lastTimesUs[track]);
+            if (track == 0) {
+              assertEquals("time of frame " + counts[0], counts[0] * FRAME_US, timeUs);
+            }
+            lastTimesUs[track] = timeUs;
+            counts[track]++;
+          }
+          extractor.advance();
+        }
+        assertEquals(FRAMES, counts[0]);
+        assertEquals(audioSamples, counts[1]);
+      } finally {
+        extractor.release();
+      }
+    }
+    for (int i = 0; i < options.segments; i++) {
+      assertFalse(new File(output.getParentFile(), output.getName() + ".segment" + i).exists());
+    }
+    assertFalse(new File(output.getParentFile(), output.getName() + ".audio").exists());
+  }
+
+  // avc video with a sync sample every gop, interleaved with aac audio; returns how many audio samples are written
+  private int writeInput(File file) throws IOException {
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, WIDTH, HEIGHT);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, FRAME_SIZE);
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 44100, 2);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+
+    ContainerWriter writer = provider.newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    int audioSamples = 0;
+    try {
+      int videoTrack = writer.addTrack(video);
+      int audioTrack = writer.addTrack(audio);
+      writer.start();
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+      ByteBuffer sample = ByteBuffer.allocate(AUDIO_SAMPLE_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      long audioTimeUs = 0;
+      for (int i = 0; i < FRAMES; i++) {
+        long videoTimeUs = i * FRAME_US;
+        info.set(0, FRAME_SIZE, videoTimeUs, i % GOP == 0 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+        writer.writeSampleData(videoTrack, frame, info);
+        for (; audioTimeUs < videoTimeUs + FRAME_US; audioTimeUs += AUDIO_SAMPLE_US) {
+          info.set(0, AUDIO_SAMPLE_SIZE, audioTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+          writer.writeSampleData(audioTrack, sample, info);
+          audioSamples++;
+        }
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+    return audioSamples;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.CompressionCallback;
+import org.fs.compress.CompressionFuture;
+import org.fs.compress.data.CodecSlotUsage;
+import org.fs.compress.slot.CodecSlotManager;
+import org.junit.Test;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.PRIORITY_BACKGROUND;
+import static org.fs.compress.util.Constants.PRIORITY_IMMEDIATE;
+import static org.fs.compress.util.Constants.PRIORITY_NORMAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs jobs with room for two of them but codec slots for one, and checks a job above the one holding slots gets them
+ * at its next gop instead of waiting for it to end.
+ *
+ *   ./gradlew :benchmark:test --tests '*JobSchedulerImpTest'
+ */
+public class JobSchedulerImpTest {
+
+  private static final List<String> MIMES = Collections.singletonList(MIME_TYPE_VIDEO_AVC);
+  private static final int GOPS = 400;
+  private static final long GOP_MS = 5;
+  private static final long TIMEOUT_MS = 10000;
+
+  private final Slots slots = new Slots();
+  private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+  @Test public void jobAboveTakesSlotsOfPreemptedJob() throws Exception {
+    int[] priorityCaps = new int[PRIORITY_IMMEDIATE + 1];
+    priorityCaps[PRIORITY_BACKGROUND] = 2;
+    priorityCaps[PRIORITY_NORMAL] = 2;
+    priorityCaps[PRIORITY_IMMEDIATE] = 2;
+    JobScheduler scheduler = JobScheduler.newInstance(2, priorityCaps, TimeUnit.MINUTES.toMillis(1), Thread::new);
+
+    CountDownLatch holding = new CountDownLatch(1);
+    CompressionFuture low = scheduler.submit(PRIORITY_BACKGROUND, gate -> {
+      CodecSlotManager.Lease lease = slots.acquire(MIMES, MIMES, gate);
+      holding.countDown();
+      for (int i = 0; i < GOPS; i++) {
+        Thread.sleep(GOP_MS);
+        // codecs go before job parks, same as engines do at a sync sample
+        if (gate.preempted()) {
+          lease.release();
+          events.add("low parked");
+          gate.checkpoint();
+          lease = slots.acquire(MIMES, MIMES, gate);
+          events.add("low resumed");
+        }
+      }
+      lease.release();
+      events.add("low done");
+      return null;
+    }, new Callback());
+    assertTrue(holding.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    CompressionFuture high = scheduler.submit(PRIORITY_IMMEDIATE, gate -> {
+      CodecSlotManager.Lease lease = slots.acquire(MIMES, MIMES, gate);
+      events.add("high running");
+      Thread.sleep(GOP_MS);
+      lease.release();
+      events.add("high done");
+      return null;
+    }, new Callback());
+
+    high.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    low.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    // job below does not take slots back while job above waits for them
+    assertEquals(events.toString(), 0, events.indexOf("low parked"));
+    assertEquals(events.toString(), 1, events.indexOf("high running"));
+    assertTrue(events.toString(), events.indexOf("low resumed") > 1);
+    assertTrue(events.toString(), events.indexOf("high done") < events.indexOf("low done"));
+    assertEquals(0, slots.waiting());
+  }
+
+  // a single codec slot, whatever codecs are asked for
+  private static final class Slots implements CodecSlotManager {
+
+    private boolean taken;
+    private int waiting;
+
+    @Override public synchronized Lease acquire(List<String> decoderMimes, List<String> encoderMimes) throws InterruptedException {
+      waiting++;
+      try {
+        while (taken) {
+          wait();
+        }
+      } finally {
+        waiting--;
+      }
+      return newLease();
+    }
+
+    @Override public synchronized Lease tryAcquire(List<String> decoderMimes, List<String> encoderMimes) {
+      return taken ? null : newLease();
+    }
+
+    private Lease newLease() {
+      taken = true;
+      return () -> {
+        synchronized (Slots.this) {
+          taken = false;
+          Slots.this.notifyAll();
+        }
+      };
+    }
+
+    @Override public int maxInstances(String codecName) {
+      return 1;
+    }
+
+    @Override public synchronized List<CodecSlotUsage> usage() {
+      CodecSlotUsage usage = new CodecSlotUsage();
+      usage.name = MIME_TYPE_VIDEO_AVC;
+      usage.capacity = 1;
+      usage.inUse = taken ? 1 : 0;
+      return Collections.singletonList(usage);
+    }
+
+    @Override public synchronized int waiting() {
+      return waiting;
+    }
+  }
+
+  private static final class Callback implements CompressionCallback {
+
+    @Override public void percentage(double percent) {
+    }
+
+    @Override public void completed() {
+    }
+
+    @Override public void canceled() {
+    }
+
+    @Override public void error(Exception throwable) {
+    }
+  }
+}
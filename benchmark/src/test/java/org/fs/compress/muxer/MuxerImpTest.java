@@ -0,0 +1,157 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.fs.compress.spi.ContainerWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queues samples in muxer before formats of its tracks are known and checks what reaches writer once it starts.
+ *
+ *   ./gradlew :benchmark:test --tests '*MuxerImpTest'
+ */
+public class MuxerImpTest {
+
+  private static final int SAMPLE_SIZE = 10 * 1024;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final RecordingWriter writer = new RecordingWriter();
+  private final List<byte[]> written = new ArrayList<>();
+
+  @Test public void writerWaitsForFormatOfEveryTrack() throws IOException {
+    Muxer muxer = Muxer.newInstance(writer, null, SAMPLE_VIDEO | SAMPLE_AUDIO, 1024 * 1024, folder.getRoot());
+    muxer.outputFormat(SAMPLE_VIDEO, MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240));
+    write(muxer, SAMPLE_VIDEO, 0);
+    assertFalse(writer.started);
+
+    muxer.outputFormat(SAMPLE_AUDIO, MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 16000, 1));
+    assertTrue(writer.started);
+    assertEquals(2, writer.tracks.size());
+    assertEquals(1, writer.samples.size());
+  }
+
+  @Test public void samplesBeyondMemoryCapSpillAndReplayInOrder() throws IOException {
+    // two chunks of 64 kb stay in memory, rest goes to file
+    Muxer muxer = Muxer.newInstance(writer, null, SAMPLE_VIDEO | SAMPLE_AUDIO, 128 * 1024, folder.getRoot());
+    muxer.outputFormat(SAMPLE_VIDEO, MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240));
+    for (int i = 0; i < 100; i++) {
+      write(muxer, i % 4 == 0 ? SAMPLE_AUDIO : SAMPLE_VIDEO, i);
+    }
+    assertEquals(1, folder.getRoot().list().length);
+
+    muxer.outputFormat(SAMPLE_AUDIO, MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 16000, 1));
+    assertEquals(100, writer.samples.size());
+    for (int i = 0; i < 100; i++) {
+      assertArrayEquals("sample " + i, written.get(i), writer.samples.get(i));
+      assertEquals(i * 1000L, writer.timesUs.get(i).longValue());
+      assertEquals(i % 4 == 0 ? 1 : 0, writer.trackIndices.get(i).intValue());
+    }
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test public void trackWithoutFormatDoesNotHoldBackOthers() throws IOException {
+    Muxer muxer = Muxer.newInstance(writer, null, SAMPLE_VIDEO | SAMPLE_AUDIO, 1024 * 1024, folder.getRoot());
+    muxer.outputFormat(SAMPLE_VIDEO, MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240));
+    write(muxer, SAMPLE_VIDEO, 0);
+    muxer.dispatchOutputFormatSet();
+
+    assertTrue(writer.started);
+    assertEquals(1, writer.tracks.size());
+    assertEquals(1, writer.samples.size());
+  }
+
+  @Test public void releaseDeletesSpillOfMuxerThatNeverStarted() throws IOException {
+    Muxer muxer = Muxer.newInstance(writer, null, SAMPLE_VIDEO | SAMPLE_AUDIO, 0, folder.getRoot());
+    write(muxer, SAMPLE_VIDEO, 0);
+    assertEquals(1, folder.getRoot().list().length);
+
+    muxer.release();
+    assertEquals(0, folder.getRoot().list().length);
+    assertFalse(writer.started);
+  }
+
+  // payload sits at an offset of a bigger buffer, as codecs hand them out
+  private void write(Muxer muxer, int sampleType, int index) {
+    byte[] sample = new byte[SAMPLE_SIZE + index];
+    Arrays.fill(sample, (byte) index);
+    written.add(sample);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(sample.length + 16);
+    buffer.position(5);
+    buffer.put(sample);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(5, sample.length, index * 1000L, 0);
+    muxer.writeSample(sampleType, buffer, bufferInfo);
+  }
+
+  private static final class RecordingWriter implements ContainerWriter {
+
+    final List<MediaFormat> tracks = new ArrayList<>();
+    final List<byte[]> samples = new ArrayList<>();
+    final List<Long> timesUs = new ArrayList<>();
+    final List<Integer> trackIndices = new ArrayList<>();
+    boolean started;
+
+    @Override public int addTrack(MediaFormat format) {
+      if (started) throw new IllegalStateException("track added after start");
+      tracks.add(format);
+      return tracks.size() - 1;
+    }
+
+    @Override public void setOrientationHint(int degrees) {
+    }
+
+    @Override public void start() {
+      started = true;
+    }
+
+    @Override public void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+      if (!started) throw new IllegalStateException("sample written before start");
+      byte[] sample = new byte[bufferInfo.size];
+      for (int i = 0; i < sample.length; i++) {
+        sample[i] = byteBuffer.get(bufferInfo.offset + i);
+      }
+      samples.add(sample);
+      timesUs.add(bufferInfo.presentationTimeUs);
+      trackIndices.add(trackIndex);
+    }
+
+    @Override public void stop() {
+    }
+
+    @Override public void release() {
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stitches segments written from zero, as platform writer leaves them, with jvm provider and checks every sample of
+ * output comes after one before it and segments land at start of their ranges.
+ *
+ *   ./gradlew :benchmark:test --tests '*SegmentStitcherTest'
+ */
+public class SegmentStitcherTest {
+
+  private static final int FRAMES = 15;
+  private static final long FRAME_US = 33333;
+  private static final int FRAME_SIZE = 1024;
+  private static final int AUDIO_SAMPLE_SIZE = 256;
+  private static final long AUDIO_SAMPLE_US = 23220;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CodecProvider provider = CodecProvider.newJvmInstance(2, 0);
+
+  @Test public void segmentsStartAtTheirRanges() throws Exception {
+    File first = folder.newFile("output.segment0");
+    File second = folder.newFile("output.segment1");
+    File audio = folder.newFile("output.audio");
+    File output = folder.newFile("output.jvm");
+    writeVideo(first);
+    writeVideo(second);
+    int audioSamples = writeAudio(audio, 2 * FRAMES * FRAME_US);
+
+    long[] startTimesUs = { 0, FRAMES * FRAME_US };
+    ContainerWriter writer = provider.newWriter(output, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    try {
+      SegmentStitcher.newInstance(provider).stitch(Arrays.asList(first, second), startTimesUs, audio, writer, 90);
+    } finally {
+      writer.release();
+    }
+
+    try (FileInputStream in = new FileInputStream(output)) {
+      Extractor extractor = provider.newExtractor(in.getFD());
+      try {
+        assertEquals(2, extractor.getTrackCount());
+        assertEquals(90, extractor.orientation());
+        extractor.selectTrack(0);
+        extractor.selectTrack(1);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE);
+        long[] lastTimesUs = { -1, -1 };
+        int[] counts = new int[2];
+        long lastUs = -1;
+        while (extractor.getSampleTrackIndex() != -1) {
+          int track = extractor.getSampleTrackIndex();
+          long timeUs = extractor.getSampleTime();
+          assertTrue("track " + track + " goes back to " + timeUs + " after " + lastTimesUs[track], timeUs > lastTimesUs[track]);
+          // tracks are interleaved by time
+          assertTrue("sample at " + timeUs + " written after " + lastUs, timeUs >= lastUs);
+          if (track == 0) {
+            assertEquals("time of frame " + counts[0], counts[0] * FRAME_US, timeUs);
+          }
+          extractor.readSampleData(buffer, 0);
+          lastTimesUs[track] = timeUs;
+          lastUs = timeUs;
+          counts[track]++;
+          extractor.advance();
+        }
+        assertEquals(2 * FRAMES, counts[0]);
+        assertEquals(audioSamples, counts[1]);
+      } finally {
+        extractor.release();
+      }
+    }
+  }
+
+  // a segment as platform writer leaves it, first frame at zero whatever range it was cut from
+  private void writeVideo(File file) throws IOException {
+    MediaFormat video = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 640, 360);
+    video.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    video.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    video.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, FRAME_SIZE);
+    ContainerWriter writer = provider.newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    try {
+      int track = writer.addTrack(video);
+      writer.start();
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      for (int i = 0; i < FRAMES; i++) {
+        info.set(0, FRAME_SIZE, i * FRAME_US, i == 0 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+        writer.writeSampleData(track, frame, info);
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+  }
+
+  private int writeAudio(File file, long durationUs) throws IOException {
+    MediaFormat audio = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, 44100, 2);
+    audio.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AUDIO_SAMPLE_SIZE);
+    ContainerWriter writer = provider.newWriter(file, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    int samples = 0;
+    try {
+      int track = writer.addTrack(audio);
+      writer.start();
+      ByteBuffer sample = ByteBuffer.allocate(AUDIO_SAMPLE_SIZE);
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      for (long timeUs = 0; timeUs < durationUs; timeUs += AUDIO_SAMPLE_US) {
+        info.set(0, AUDIO_SAMPLE_SIZE, timeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+        writer.writeSampleData(track, sample, info);
+        samples++;
+      }
+      writer.stop();
+    } finally {
+      writer.release();
+    }
+    return samples;
+  }
+}
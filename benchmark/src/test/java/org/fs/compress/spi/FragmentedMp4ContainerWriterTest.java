@@ -0,0 +1,293 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.fs.compress.data.Mp4Options;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams avc and aac samples through fragmented mp4 writer in to a channel and reads fragments back as they arrive.
+ *
+ *   ./gradlew :benchmark:test --tests '*FragmentedMp4ContainerWriterTest'
+ */
+public class FragmentedMp4ContainerWriterTest {
+
+  private static final long FRAME_US = 40000; // 25 fps, whole ticks of 90 khz
+  private static final int SAMPLE_RATE = 16000;
+  private static final long AUDIO_FRAME_US = 64000; // 1024 samples at 16 khz
+  private static final int KEY_FRAME_INTERVAL = 10;
+  private static final long FRAGMENT_US = 1000000;
+
+  private static final int TRUN_COMPOSITION_OFFSETS = 0x000800;
+  private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final List<byte[]> videoSamples = new ArrayList<>();
+  private final List<byte[]> audioSamples = new ArrayList<>();
+
+  @Test public void initSegmentIsWrittenAtStart() {
+    ContainerWriter writer = writer();
+    writer.addTrack(videoFormat());
+    writer.addTrack(audioFormat());
+    writer.start();
+    List<Mp4Box> boxes = Mp4Box.parse(output.toByteArray());
+
+    assertEquals(Arrays.asList("ftyp", "moov"), Mp4Box.types(boxes));
+    Mp4Box moov = boxes.get(1);
+    assertEquals(2, moov.find("mvex").all("trex").size());
+    for (Mp4Box trak : moov.all("trak")) {
+      ByteBuffer stsz = trak.find("mdia", "minf", "stbl", "stsz").fullContent();
+      stsz.getInt();
+      assertEquals(0, stsz.getInt());
+    }
+  }
+
+  @Test public void fragmentIsWrittenOnceNextOneStarts() {
+    ContainerWriter writer = writer();
+    int video = writer.addTrack(videoFormat());
+    writer.start();
+    int initSize = output.size();
+    // sync samples at 0, 400 and 800 ms are all within first second
+    for (int i = 0; i < 30; i++) {
+      writeVideo(writer, video, i, i * FRAME_US);
+    }
+    assertEquals(initSize, output.size());
+
+    writeVideo(writer, video, 30, 30 * FRAME_US);
+    assertEquals(Arrays.asList("ftyp", "moov", "moof", "mdat"), Mp4Box.types(Mp4Box.parse(output.toByteArray())));
+    writer.stop();
+  }
+
+  @Test public void fragmentsStartAtSyncSamples() {
+    byte[] bytes = write(100, 0);
+    List<Mp4Box> moofs = moofs(bytes);
+
+    assertEquals(4, moofs.size());
+    int[] counts = { 30, 30, 30, 10 };
+    for (int i = 0; i < moofs.size(); i++) {
+      Mp4Box moof = moofs.get(i);
+      assertEquals(i + 1, moof.find("mfhd").fullContent().getInt());
+      Mp4Box traf = moof.find("traf");
+      ByteBuffer tfdt = traf.find("tfdt").fullContent();
+      assertEquals(1, traf.find("tfdt").version());
+      assertEquals(i * 30 * 3600L, tfdt.getLong());
+      ByteBuffer trun = traf.find("trun").fullContent();
+      assertEquals(counts[i], trun.getInt());
+      trun.getInt(); // data offset
+      trun.getInt(); // duration
+      trun.getInt(); // size
+      assertEquals(SAMPLE_FLAGS_SYNC, trun.getInt());
+    }
+  }
+
+  @Test public void audioAloneIsCutByDuration() {
+    ContainerWriter writer = writer();
+    int audio = writer.addTrack(audioFormat());
+    writer.start();
+    for (int i = 0; i < 40; i++) {
+      writeAudio(writer, audio, i);
+    }
+    writer.stop();
+    List<Mp4Box> moofs = moofs(output.toByteArray());
+
+    // 16 frames of 64 ms make a second
+    assertEquals(3, moofs.size());
+    assertEquals(16, moofs.get(0).find("traf", "trun").fullContent().getInt());
+    assertEquals(16, moofs.get(1).find("traf", "trun").fullContent().getInt());
+    assertEquals(8, moofs.get(2).find("traf", "trun").fullContent().getInt());
+  }
+
+  @Test public void runsLeadToEverySample() {
+    byte[] bytes = write(100, 60);
+    List<byte[]> video = new ArrayList<>();
+    List<byte[]> audio = new ArrayList<>();
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+    for (int i = 0; i < boxes.size(); i++) {
+      Mp4Box moof = boxes.get(i);
+      if (!moof.type.equals("moof")) continue;
+      // samples of runs are in mdat right after moof
+      Mp4Box mdat = boxes.get(i + 1);
+      assertEquals("mdat", mdat.type);
+      for (Mp4Box traf : moof.all("traf")) {
+        int trackId = traf.find("tfhd").fullContent().getInt();
+        ByteBuffer trun = traf.find("trun").fullContent();
+        int flags = traf.find("trun").content().getInt() & 0xffffff;
+        int count = trun.getInt();
+        long offset = moof.offset + trun.getInt();
+        for (int j = 0; j < count; j++) {
+          trun.getInt();
+          int size = trun.getInt();
+          trun.getInt();
+          if ((flags & TRUN_COMPOSITION_OFFSETS) != 0) trun.getInt();
+          assertTrue(offset >= mdat.offset + mdat.headerSize && offset + size <= mdat.offset + mdat.size);
+          (trackId == 1 ? video : audio).add(Arrays.copyOfRange(bytes, (int) offset, (int) offset + size));
+          offset += size;
+        }
+      }
+    }
+
+    assertEquals(videoSamples.size(), video.size());
+    assertEquals(audioSamples.size(), audio.size());
+    for (int i = 0; i < video.size(); i++) {
+      assertArrayEquals("video sample " + i, videoSamples.get(i), video.get(i));
+    }
+    for (int i = 0; i < audio.size(); i++) {
+      assertArrayEquals("audio sample " + i, audioSamples.get(i), audio.get(i));
+    }
+  }
+
+  @Test public void reorderedFramesGetCompositionOffsets() {
+    ContainerWriter writer = writer();
+    int video = writer.addTrack(videoFormat());
+    writer.start();
+    // decode order of i p b b
+    int[] frames = { 0, 3, 1, 2, 6, 4, 5, 9, 7, 8 };
+    for (int i = 0; i < frames.length; i++) {
+      writeVideo(writer, video, i, frames[i] * FRAME_US);
+    }
+    writer.stop();
+    Mp4Box trun = moofs(output.toByteArray()).get(0).find("traf", "trun");
+
+    assertEquals(1, trun.version());
+    assertTrue((trun.content().getInt() & TRUN_COMPOSITION_OFFSETS) != 0);
+    ByteBuffer content = trun.fullContent();
+    assertEquals(frames.length, content.getInt());
+    content.getInt();
+    for (int i = 0; i < frames.length; i++) {
+      assertEquals(3600, content.getInt());
+      content.getInt();
+      content.getInt();
+      // decode time plus offset is presentation time
+      assertEquals(frames[i] * 3600, i * 3600 + content.getInt());
+    }
+  }
+
+  @Test public void fileOutputIsFragmentedWhenOptionsAskForIt() throws IOException {
+    File file = folder.newFile();
+    Mp4Options options = new Mp4Options();
+    options.fragmentDurationUs = FRAGMENT_US;
+    ContainerWriter writer = ContainerWriter.newMp4Instance(file, options);
+    int video = writer.addTrack(videoFormat());
+    writer.start();
+    for (int i = 0; i < 50; i++) {
+      writeVideo(writer, video, i, i * FRAME_US);
+    }
+    writer.stop();
+    List<Mp4Box> boxes = Mp4Box.parse(Files.readAllBytes(file.toPath()));
+
+    assertEquals(Arrays.asList("ftyp", "moov", "moof", "mdat", "moof", "mdat"), Mp4Box.types(boxes));
+    assertNotNull(boxes.get(1).find("mvex", "trex"));
+  }
+
+  private byte[] write(int videoFrames, int audioFrames) {
+    ContainerWriter writer = writer();
+    int video = writer.addTrack(videoFormat());
+    int audio = audioFrames > 0 ? writer.addTrack(audioFormat()) : -1;
+    writer.start();
+    int v = 0;
+    int a = 0;
+    while (v < videoFrames || a < audioFrames) {
+      if (a >= audioFrames || (v < videoFrames && v * FRAME_US <= a * AUDIO_FRAME_US)) {
+        writeVideo(writer, video, v, v * FRAME_US);
+        v++;
+      } else {
+        writeAudio(writer, audio, a);
+        a++;
+      }
+    }
+    writer.stop();
+    return output.toByteArray();
+  }
+
+  private ContainerWriter writer() {
+    Mp4Options options = new Mp4Options();
+    options.fragmentDurationUs = FRAGMENT_US;
+    return ContainerWriter.newFragmentedMp4Instance(Channels.newChannel(output), options);
+  }
+
+  // annex b slice, stored with a four byte length instead of start code
+  private void writeVideo(ContainerWriter writer, int track, int index, long timeUs) {
+    int sliceSize = 20 + index % 7;
+    byte type = index % KEY_FRAME_INTERVAL == 0 ? (byte) 0x65 : (byte) 0x41;
+    ByteBuffer annexB = ByteBuffer.allocate(4 + sliceSize);
+    ByteBuffer stored = ByteBuffer.allocate(4 + sliceSize);
+    annexB.putInt(1).put(type);
+    stored.putInt(sliceSize).put(type);
+    for (int i = 1; i < sliceSize; i++) {
+      annexB.put((byte) (0x10 + index));
+      stored.put((byte) (0x10 + index));
+    }
+    annexB.flip();
+    videoSamples.add(stored.array());
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(0, annexB.remaining(), timeUs, type == 0x65 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+    writer.writeSampleData(track, annexB, bufferInfo);
+  }
+
+  private void writeAudio(ContainerWriter writer, int track, int index) {
+    byte[] sample = new byte[100 + index % 5];
+    Arrays.fill(sample, (byte) index);
+    audioSamples.add(sample);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(0, sample.length, index * AUDIO_FRAME_US, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+    writer.writeSampleData(track, ByteBuffer.wrap(sample), bufferInfo);
+  }
+
+  private static List<Mp4Box> moofs(byte[] bytes) {
+    List<Mp4Box> moofs = new ArrayList<>();
+    for (Mp4Box box : Mp4Box.parse(bytes)) {
+      if (box.type.equals("moof")) moofs.add(box);
+    }
+    return moofs;
+  }
+
+  private static MediaFormat videoFormat() {
+    MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240);
+    format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    format.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    return format;
+  }
+
+  private static MediaFormat audioFormat() {
+    MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, 1);
+    format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0x14, 0x08 })); // aac lc, 16 khz, mono
+    return format;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Box of an iso base media file as tests read it back, containers are parsed down to their leaves.
+ */
+final class Mp4Box {
+
+  private static final List<String> CONTAINERS = Arrays.asList(
+      "moov", "trak", "edts", "mdia", "minf", "dinf", "stbl", "mvex", "moof", "traf");
+
+  final String type;
+  final long offset;
+  final long size;
+  final int headerSize;
+  final List<Mp4Box> children = new ArrayList<>();
+
+  private final ByteBuffer file;
+
+  private Mp4Box(ByteBuffer file, String type, long offset, long size, int headerSize) {
+    this.file = file;
+    this.type = type;
+    this.offset = offset;
+    this.size = size;
+    this.headerSize = headerSize;
+  }
+
+  // top level boxes of file, sizes must cover it exactly
+  static List<Mp4Box> parse(byte[] bytes) {
+    ByteBuffer file = ByteBuffer.wrap(bytes);
+    return parse(file, 0, bytes.length);
+  }
+
+  private static List<Mp4Box> parse(ByteBuffer file, long start, long end) {
+    List<Mp4Box> boxes = new ArrayList<>();
+    long offset = start;
+    while (offset < end) {
+      if (end - offset < 8) throw new IllegalArgumentException("box header cut at " + offset);
+      long size = file.getInt((int) offset) & 0xffffffffL;
+      byte[] type = new byte[4];
+      for (int i = 0; i < 4; i++) {
+        type[i] = file.get((int) offset + 4 + i);
+      }
+      int headerSize = 8;
+      if (size == 1) {
+        size = file.getLong((int) offset + 8);
+        headerSize = 16;
+      } else if (size == 0) {
+        size = end - offset;
+      }
+      if (size < headerSize || offset + size > end) {
+        throw new IllegalArgumentException(new String(type) + " at " + offset + " has size " + size);
+      }
+      Mp4Box box = new Mp4Box(file, new String(type), offset, size, headerSize);
+      if (CONTAINERS.contains(box.type)) {
+        box.children.addAll(parse(file, offset + headerSize, offset + size));
+      }
+      boxes.add(box);
+      offset += size;
+    }
+    return boxes;
+  }
+
+  static List<String> types(List<Mp4Box> boxes) {
+    List<String> types = new ArrayList<>();
+    for (Mp4Box box : boxes) {
+      types.add(box.type);
+    }
+    return types;
+  }
+
+  // first box down path of types, null if there is none
+  Mp4Box find(String... path) {
+    Mp4Box box = this;
+    for (String type : path) {
+      Mp4Box next = null;
+      for (Mp4Box child : box.children) {
+        if (child.type.equals(type)) {
+          next = child;
+          break;
+        }
+      }
+      if (next == null) return null;
+      box = next;
+    }
+    return box;
+  }
+
+  List<Mp4Box> all(String type) {
+    List<Mp4Box> boxes = new ArrayList<>();
+    for (Mp4Box child : children) {
+      if (child.type.equals(type)) boxes.add(child);
+    }
+    return boxes;
+  }
+
+  // content after header, positioned at start of it
+  ByteBuffer content() {
+    ByteBuffer content = file.duplicate();
+    content.limit((int) (offset + size));
+    content.position((int) (offset + headerSize));
+    return content.slice();
+  }
+
+  // content of a full box after its version and flags
+  ByteBuffer fullContent() {
+    ByteBuffer content = content();
+    content.position(4);
+    return content.slice();
+  }
+
+  int version() {
+    return content().get(0) & 0xff;
+  }
+
+  @Override public String toString() {
+    return type + "@" + offset + "+" + size;
+  }
+}
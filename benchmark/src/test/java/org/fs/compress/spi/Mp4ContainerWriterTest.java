@@ -0,0 +1,506 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.fs.compress.data.Mp4Options;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.util.Mp4FaststartUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.MP4_LAYOUT_MOOV_LAST;
+import static org.fs.compress.util.Constants.MP4_LAYOUT_RESERVED;
+import static org.fs.compress.util.Constants.MP4_LAYOUT_TWO_PASS;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes short avc and aac streams and reads boxes of output back, sample tables must lead to every sample written.
+ *
+ *   ./gradlew :benchmark:test --tests '*Mp4ContainerWriterTest'
+ */
+public class Mp4ContainerWriterTest {
+
+  private static final long FRAME_US = 40000; // 25 fps, whole ticks of 90 khz
+  private static final int SAMPLE_RATE = 16000;
+  private static final long AUDIO_FRAME_US = 64000; // 1024 samples at 16 khz
+  private static final int KEY_FRAME_INTERVAL = 10;
+
+  private static final byte[] SPS = { 0x67, 0x42, (byte) 0xc0, 0x1e, (byte) 0xda, 0x02, (byte) 0x80 };
+  private static final byte[] PPS = { 0x68, (byte) 0xce, 0x3c, (byte) 0x80 };
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  // samples as they must be found in mdat, per track
+  private final List<byte[]> videoSamples = new ArrayList<>();
+  private final List<byte[]> audioSamples = new ArrayList<>();
+
+  @Test public void moovLastLayoutPutsMoovAfterMdat() throws IOException {
+    byte[] bytes = write(options(MP4_LAYOUT_MOOV_LAST), 50, 30);
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+
+    assertEquals(Arrays.asList("ftyp", "mdat", "moov"), Mp4Box.types(boxes));
+    assertEquals(16, boxes.get(1).headerSize);
+    assertSamples(boxes.get(2), bytes);
+  }
+
+  @Test public void reservedLayoutWritesMoovInPlaceOfFreeBox() throws IOException {
+    Mp4Options options = options(MP4_LAYOUT_RESERVED);
+    options.reservedMoovBytes = 64 * 1024;
+    byte[] bytes = write(options, 50, 30);
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+
+    assertEquals(Arrays.asList("ftyp", "moov", "free", "mdat"), Mp4Box.types(boxes));
+    // mdat stays where it was written
+    assertEquals(boxes.get(0).size + options.reservedMoovBytes, boxes.get(3).offset);
+    assertSamples(boxes.get(1), bytes);
+  }
+
+  @Test public void reservedLayoutMovesMdatWhenMoovDoesNotFit() throws IOException {
+    Mp4Options options = options(MP4_LAYOUT_RESERVED);
+    options.reservedMoovBytes = 64;
+    byte[] bytes = write(options, 50, 30);
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+
+    assertEquals(Arrays.asList("ftyp", "moov", "mdat"), Mp4Box.types(boxes));
+    assertSamples(boxes.get(1), bytes);
+  }
+
+  @Test public void reservedLayoutLeavesNoGapTooSmallForFreeBox() throws IOException {
+    // moov size of same stream, then room for it and four bytes more which no box fits in
+    int moovSize = (int) Mp4Box.parse(write(options(MP4_LAYOUT_TWO_PASS), 20, 0)).get(1).size;
+    videoSamples.clear();
+    Mp4Options options = options(MP4_LAYOUT_RESERVED);
+    options.reservedMoovBytes = moovSize + 4;
+    byte[] bytes = write(options, 20, 0);
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+
+    assertEquals(Arrays.asList("ftyp", "moov", "free", "mdat"), Mp4Box.types(boxes));
+    assertEquals(8, boxes.get(2).size);
+    assertSamples(boxes.get(1), bytes);
+  }
+
+  @Test public void twoPassLayoutPutsMoovBeforeMdat() throws IOException {
+    byte[] bytes = write(options(MP4_LAYOUT_TWO_PASS), 50, 30);
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+
+    assertEquals(Arrays.asList("ftyp", "moov", "mdat"), Mp4Box.types(boxes));
+    assertEquals(boxes.get(0).size + boxes.get(1).size, boxes.get(2).offset);
+    assertSamples(boxes.get(1), bytes);
+  }
+
+  @Test public void chunksCloseOnceTheyAreLongEnough() throws IOException {
+    Mp4Options options = options(MP4_LAYOUT_MOOV_LAST);
+    options.chunkDurationUs = 200000;
+    Mp4Box moov = moov(write(options, 60, 0));
+    ByteBuffer stsc = track(moov, "vide").find("mdia", "minf", "stbl", "stsc").fullContent();
+
+    // five frames span 200 ms from first to last, so six go in to each chunk
+    assertEquals(1, stsc.getInt());
+    assertEquals(1, stsc.getInt());
+    assertEquals(6, stsc.getInt());
+    assertEquals(10, chunkOffsets(track(moov, "vide")).length);
+  }
+
+  @Test public void zeroChunkDurationWritesEverySampleAsChunk() throws IOException {
+    Mp4Options options = options(MP4_LAYOUT_MOOV_LAST);
+    options.chunkDurationUs = 0;
+    byte[] bytes = write(options, 20, 10);
+    Mp4Box moov = moov(bytes);
+
+    assertEquals(20, chunkOffsets(track(moov, "vide")).length);
+    assertEquals(10, chunkOffsets(track(moov, "soun")).length);
+    assertSamples(moov, bytes);
+  }
+
+  @Test public void chunksOfTracksInterleave() throws IOException {
+    Mp4Options options = options(MP4_LAYOUT_MOOV_LAST);
+    options.chunkDurationUs = 500000;
+    Mp4Box moov = moov(write(options, 100, 60));
+    long[] video = chunkOffsets(track(moov, "vide"));
+    long[] audio = chunkOffsets(track(moov, "soun"));
+
+    assertTrue(video.length > 2 && audio.length > 2);
+    // second audio chunk sits between video chunks, not after all of them
+    assertTrue(audio[1] > video[0] && audio[1] < video[video.length - 1]);
+  }
+
+  @Test public void syncSamplesAreListed() throws IOException {
+    Mp4Box moov = moov(write(options(MP4_LAYOUT_MOOV_LAST), 35, 10));
+    ByteBuffer stss = track(moov, "vide").find("mdia", "minf", "stbl", "stss").fullContent();
+
+    assertEquals(4, stss.getInt());
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i * KEY_FRAME_INTERVAL + 1, stss.getInt());
+    }
+    // every audio sample is a sync sample
+    assertNull(track(moov, "soun").find("mdia", "minf", "stbl", "stss"));
+  }
+
+  @Test public void sampleEntriesHoldCodecConfiguration() throws IOException {
+    Mp4Box moov = moov(write(options(MP4_LAYOUT_MOOV_LAST), 10, 10));
+
+    ByteBuffer stsd = track(moov, "vide").find("mdia", "minf", "stbl", "stsd").fullContent();
+    assertEquals(1, stsd.getInt());
+    stsd.getInt(); // size of avc1
+    assertEquals("avc1", fourcc(stsd));
+    stsd.position(stsd.position() + 24);
+    assertEquals(320, stsd.getShort());
+    assertEquals(240, stsd.getShort());
+    stsd.position(stsd.position() + 50);
+    stsd.getInt();
+    assertEquals("avcC", fourcc(stsd));
+    assertEquals(1, stsd.get());
+    assertEquals(SPS[1], stsd.get());
+    assertEquals(SPS[2], stsd.get());
+    assertEquals(SPS[3], stsd.get());
+    assertEquals((byte) 0xff, stsd.get()); // four byte nal lengths
+    assertEquals((byte) 0xe1, stsd.get());
+    assertArrayEquals(SPS, bytes(stsd, stsd.getShort()));
+    assertEquals(1, stsd.get());
+    assertArrayEquals(PPS, bytes(stsd, stsd.getShort()));
+
+    Mp4Box soun = track(moov, "soun");
+    ByteBuffer mp4a = soun.find("mdia", "minf", "stbl", "stsd").fullContent();
+    mp4a.getInt();
+    mp4a.getInt();
+    assertEquals("mp4a", fourcc(mp4a));
+    mp4a.position(mp4a.position() + 16);
+    assertEquals(1, mp4a.getShort()); // channels
+    mp4a.position(mp4a.position() + 6);
+    assertEquals(SAMPLE_RATE, mp4a.getInt() >>> 16);
+    mp4a.getInt();
+    assertEquals("esds", fourcc(mp4a));
+  }
+
+  @Test public void timesAreInTimescaleOfTrack() throws IOException {
+    Mp4Box moov = moov(write(options(MP4_LAYOUT_MOOV_LAST), 50, 20));
+
+    ByteBuffer mdhd = track(moov, "vide").find("mdia", "mdhd").fullContent();
+    mdhd.position(8);
+    assertEquals(90000, mdhd.getInt());
+    assertEquals(50 * 3600, mdhd.getInt());
+    ByteBuffer stts = track(moov, "vide").find("mdia", "minf", "stbl", "stts").fullContent();
+    assertEquals(1, stts.getInt());
+    assertEquals(50, stts.getInt());
+    assertEquals(3600, stts.getInt());
+
+    mdhd = track(moov, "soun").find("mdia", "mdhd").fullContent();
+    mdhd.position(8);
+    assertEquals(SAMPLE_RATE, mdhd.getInt());
+    assertEquals(20 * 1024, mdhd.getInt());
+
+    ByteBuffer mvhd = moov.find("mvhd").fullContent();
+    mvhd.position(8);
+    assertEquals(1000, mvhd.getInt());
+    assertEquals(2000, mvhd.getInt()); // 50 frames of 40 ms
+  }
+
+  @Test public void reorderedFramesGetCompositionOffsets() throws IOException {
+    File output = folder.newFile();
+    ContainerWriter writer = ContainerWriter.newMp4Instance(output, options(MP4_LAYOUT_MOOV_LAST));
+    writer.addTrack(videoFormat());
+    writer.start();
+    // decode order of i p b b, presentation order differs
+    int[] frames = { 0, 3, 1, 2, 6, 4, 5, 9, 7, 8 };
+    for (int i = 0; i < frames.length; i++) {
+      writeVideo(writer, 0, i, frames[i] * FRAME_US);
+    }
+    writer.stop();
+    Mp4Box trak = track(moov(Files.readAllBytes(output.toPath())), "vide");
+
+    ByteBuffer ctts = trak.find("mdia", "minf", "stbl", "ctts").fullContent();
+    int[] offsets = runs(ctts, frames.length);
+    ByteBuffer elst = trak.find("edts", "elst").fullContent();
+    assertEquals(1, elst.getInt());
+    elst.getInt();
+    int mediaTime = elst.getInt();
+    for (int i = 0; i < frames.length; i++) {
+      // decode time plus offset, less what edit skips, is presentation time
+      assertTrue(offsets[i] >= 0);
+      assertEquals(frames[i] * 3600, i * 3600 + offsets[i] - mediaTime);
+    }
+  }
+
+  @Test public void orientationRotatesVideoTrack() throws IOException {
+    File output = folder.newFile();
+    ContainerWriter writer = ContainerWriter.newMp4Instance(output, options(MP4_LAYOUT_MOOV_LAST));
+    writer.addTrack(videoFormat());
+    writer.setOrientationHint(90);
+    writer.start();
+    writeVideo(writer, 0, 0, 0);
+    writer.stop();
+    ByteBuffer tkhd = track(moov(Files.readAllBytes(output.toPath())), "vide").find("tkhd").fullContent();
+
+    tkhd.position(36);
+    assertEquals(0, tkhd.getInt());
+    assertEquals(0x00010000, tkhd.getInt());
+    tkhd.getInt();
+    assertEquals(-0x00010000, tkhd.getInt());
+    tkhd.position(72);
+    assertEquals(320 << 16, tkhd.getInt());
+  }
+
+  @Test public void writesThroughMuxer() throws IOException {
+    File output = folder.newFile();
+    ContainerWriter writer = ContainerWriter.newMp4Instance(output, options(MP4_LAYOUT_TWO_PASS));
+    Muxer muxer = Muxer.newInstance(writer, null);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    // samples written before format are queued by muxer until writer starts
+    for (int i = 0; i < 30; i++) {
+      byte[] sample = videoSample(i);
+      bufferInfo.set(0, sample.length, i * FRAME_US, i % KEY_FRAME_INTERVAL == 0 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+      muxer.writeSample(SAMPLE_VIDEO, ByteBuffer.wrap(sample), bufferInfo);
+      if (i == 5) muxer.outputFormat(SAMPLE_VIDEO, videoFormat());
+    }
+    writer.stop();
+    byte[] bytes = Files.readAllBytes(output.toPath());
+
+    assertEquals(Arrays.asList("ftyp", "moov", "mdat"), Mp4Box.types(Mp4Box.parse(bytes)));
+    assertSamples(moov(bytes), bytes);
+  }
+
+  @Test public void faststartMovesMoovOfFinishedFile() throws IOException {
+    File output = writeFile(options(MP4_LAYOUT_MOOV_LAST), 50, 30);
+    // a box after moov keeps its place
+    try (FileOutputStream out = new FileOutputStream(output, true)) {
+      out.write(new byte[] { 0, 0, 0, 12, 'f', 'r', 'e', 'e', 1, 2, 3, 4 });
+    }
+    long size = output.length();
+
+    assertTrue(Mp4FaststartUtil.faststart(output));
+    byte[] bytes = Files.readAllBytes(output.toPath());
+    List<Mp4Box> boxes = Mp4Box.parse(bytes);
+    assertEquals(Arrays.asList("ftyp", "moov", "mdat", "free"), Mp4Box.types(boxes));
+    assertEquals(size, bytes.length);
+    assertSamples(boxes.get(1), bytes);
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test public void faststartLeavesFastFileAsIs() throws IOException {
+    File output = writeFile(options(MP4_LAYOUT_TWO_PASS), 50, 30);
+    byte[] before = Files.readAllBytes(output.toPath());
+
+    assertFalse(Mp4FaststartUtil.faststart(output));
+    assertArrayEquals(before, Files.readAllBytes(output.toPath()));
+  }
+
+  private byte[] write(Mp4Options options, int videoFrames, int audioFrames) throws IOException {
+    return Files.readAllBytes(writeFile(options, videoFrames, audioFrames).toPath());
+  }
+
+  private File writeFile(Mp4Options options, int videoFrames, int audioFrames) throws IOException {
+    File output = folder.newFile();
+    ContainerWriter writer = ContainerWriter.newMp4Instance(output, options);
+    int video = writer.addTrack(videoFormat());
+    int audio = audioFrames > 0 ? writer.addTrack(audioFormat()) : -1;
+    writer.start();
+    // in time order, as muxer writes them
+    int v = 0;
+    int a = 0;
+    while (v < videoFrames || a < audioFrames) {
+      if (a >= audioFrames || (v < videoFrames && v * FRAME_US <= a * AUDIO_FRAME_US)) {
+        writeVideo(writer, video, v, v * FRAME_US);
+        v++;
+      } else {
+        writeAudio(writer, audio, a);
+        a++;
+      }
+    }
+    writer.stop();
+    writer.release();
+    return output;
+  }
+
+  private void writeVideo(ContainerWriter writer, int track, int index, long timeUs) {
+    byte[] sample = videoSample(index);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    // offset in to a bigger buffer, as codecs hand them out
+    ByteBuffer buffer = ByteBuffer.allocateDirect(sample.length + 16);
+    buffer.position(7);
+    buffer.put(sample);
+    bufferInfo.set(7, sample.length, timeUs, index % KEY_FRAME_INTERVAL == 0 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+    writer.writeSampleData(track, buffer, bufferInfo);
+  }
+
+  // annex b slice after a four byte start code, then sei after a three byte one
+  private byte[] videoSample(int index) {
+    int sliceSize = 20 + index % 7;
+    ByteBuffer annexB = ByteBuffer.allocate(4 + sliceSize + 3 + 6);
+    ByteBuffer stored = ByteBuffer.allocate(4 + sliceSize + 4 + 6);
+    byte type = index % KEY_FRAME_INTERVAL == 0 ? (byte) 0x65 : (byte) 0x41;
+    annexB.putInt(1).put(type);
+    stored.putInt(sliceSize).put(type);
+    for (int i = 1; i < sliceSize; i++) {
+      annexB.put((byte) (0x10 + index));
+      stored.put((byte) (0x10 + index));
+    }
+    annexB.put((byte) 0).put((byte) 0).put((byte) 1);
+    stored.putInt(6);
+    for (int i = 0; i < 6; i++) {
+      annexB.put((byte) (i == 0 ? 0x06 : 0x44));
+      stored.put((byte) (i == 0 ? 0x06 : 0x44));
+    }
+    if (videoSamples.size() == index) videoSamples.add(stored.array());
+    return annexB.array();
+  }
+
+  private void writeAudio(ContainerWriter writer, int track, int index) {
+    byte[] sample = new byte[100 + index % 5];
+    Arrays.fill(sample, (byte) index);
+    audioSamples.add(sample);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(0, sample.length, index * AUDIO_FRAME_US, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+    writer.writeSampleData(track, ByteBuffer.wrap(sample), bufferInfo);
+  }
+
+  // every sample of both tracks is where sample tables say it is
+  private void assertSamples(Mp4Box moov, byte[] bytes) {
+    assertSamples(track(moov, "vide"), bytes, videoSamples);
+    if (!audioSamples.isEmpty()) {
+      assertSamples(track(moov, "soun"), bytes, audioSamples);
+    }
+  }
+
+  private void assertSamples(Mp4Box trak, byte[] bytes, List<byte[]> expected) {
+    Mp4Box stbl = trak.find("mdia", "minf", "stbl");
+    ByteBuffer stsz = stbl.find("stsz").fullContent();
+    assertEquals(0, stsz.getInt());
+    assertEquals(expected.size(), stsz.getInt());
+    long[] chunks = chunkOffsets(trak);
+    ByteBuffer stsc = stbl.find("stsc").fullContent();
+    int entries = stsc.getInt();
+    int[] firstChunks = new int[entries + 1];
+    int[] samplesPerChunk = new int[entries];
+    for (int i = 0; i < entries; i++) {
+      firstChunks[i] = stsc.getInt();
+      samplesPerChunk[i] = stsc.getInt();
+      assertEquals(1, stsc.getInt());
+    }
+    firstChunks[entries] = chunks.length + 1;
+
+    int sample = 0;
+    for (int entry = 0; entry < entries; entry++) {
+      for (int chunk = firstChunks[entry]; chunk < firstChunks[entry + 1]; chunk++) {
+        long offset = chunks[chunk - 1];
+        for (int i = 0; i < samplesPerChunk[entry]; i++) {
+          int size = stsz.getInt();
+          assertArrayEquals("sample " + sample, expected.get(sample),
+              Arrays.copyOfRange(bytes, (int) offset, (int) offset + size));
+          offset += size;
+          sample++;
+        }
+      }
+    }
+    assertEquals(expected.size(), sample);
+  }
+
+  private static long[] chunkOffsets(Mp4Box trak) {
+    Mp4Box stbl = trak.find("mdia", "minf", "stbl");
+    Mp4Box stco = stbl.find("stco");
+    ByteBuffer content = (stco != null ? stco : stbl.find("co64")).fullContent();
+    long[] offsets = new long[content.getInt()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = stco != null ? content.getInt() & 0xffffffffL : content.getLong();
+    }
+    return offsets;
+  }
+
+  private static int[] runs(ByteBuffer content, int count) {
+    int[] values = new int[count];
+    int runs = content.getInt();
+    int index = 0;
+    for (int i = 0; i < runs; i++) {
+      int run = content.getInt();
+      int value = content.getInt();
+      for (int j = 0; j < run; j++) {
+        values[index++] = value;
+      }
+    }
+    assertEquals(count, index);
+    return values;
+  }
+
+  private static Mp4Box moov(byte[] bytes) {
+    for (Mp4Box box : Mp4Box.parse(bytes)) {
+      if (box.type.equals("moov")) return box;
+    }
+    throw new AssertionError("no moov");
+  }
+
+  private static Mp4Box track(Mp4Box moov, String handler) {
+    for (Mp4Box trak : moov.all("trak")) {
+      ByteBuffer hdlr = trak.find("mdia", "hdlr").fullContent();
+      hdlr.getInt();
+      if (fourcc(hdlr).equals(handler)) return trak;
+    }
+    throw new AssertionError("no " + handler + " track");
+  }
+
+  private static String fourcc(ByteBuffer buffer) {
+    return new String(bytes(buffer, 4));
+  }
+
+  private static byte[] bytes(ByteBuffer buffer, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static MediaFormat videoFormat() {
+    MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240);
+    format.setByteBuffer(KEY_CSD_0, withStartCode(SPS));
+    format.setByteBuffer(KEY_CSD_1, withStartCode(PPS));
+    return format;
+  }
+
+  private static MediaFormat audioFormat() {
+    MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, 1);
+    format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0x14, 0x08 })); // aac lc, 16 khz, mono
+    return format;
+  }
+
+  private static ByteBuffer withStartCode(byte[] nal) {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + nal.length);
+    buffer.putInt(1).put(nal).flip();
+    return buffer;
+  }
+
+  private static Mp4Options options(int layout) {
+    Mp4Options options = new Mp4Options();
+    options.layout = layout;
+    return options;
+  }
+}
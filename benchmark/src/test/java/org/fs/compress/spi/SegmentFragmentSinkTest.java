@@ -0,0 +1,190 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.fs.compress.data.StreamingOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes avc and aac samples as streaming output and reads segments, playlist and manifest back from directory.
+ *
+ *   ./gradlew :benchmark:test --tests '*SegmentFragmentSinkTest'
+ */
+public class SegmentFragmentSinkTest {
+
+  private static final long FRAME_US = 40000; // 25 fps
+  private static final int SAMPLE_RATE = 16000;
+  private static final long AUDIO_FRAME_US = 64000; // 1024 samples at 16 khz
+  private static final int KEY_FRAME_INTERVAL = 10;
+  private static final long KEY_FRAME_INTERVAL_US = KEY_FRAME_INTERVAL * FRAME_US;
+  private static final long TARGET_US = 1000000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test public void segmentsArePublishedNextToPlaylistAndManifest() throws IOException {
+    File directory = folder.newFolder();
+    write(directory, 100, 0);
+
+    List<String> names = Arrays.asList(directory.list());
+    assertEquals(7, names.size());
+    assertTrue(names.containsAll(Arrays.asList("init.mp4", "segment_1.m4s", "segment_2.m4s", "segment_3.m4s",
+        "segment_4.m4s", "index.m3u8", "manifest.mpd")));
+    assertEquals(Arrays.asList("ftyp", "moov"), Mp4Box.types(Mp4Box.parse(read(directory, "init.mp4"))));
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(Arrays.asList("moof", "mdat"), Mp4Box.types(Mp4Box.parse(read(directory, "segment_" + i + ".m4s"))));
+    }
+  }
+
+  @Test public void segmentsAreRoundedUpToKeyFrameInterval() throws IOException {
+    File directory = folder.newFolder();
+    write(directory, 100, 0);
+
+    // target of a second rounds up to three key frames of 400 ms
+    assertEquals("#EXTM3U\n"
+        + "#EXT-X-VERSION:7\n"
+        + "#EXT-X-TARGETDURATION:2\n"
+        + "#EXT-X-PLAYLIST-TYPE:VOD\n"
+        + "#EXT-X-INDEPENDENT-SEGMENTS\n"
+        + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+        + "#EXTINF:1.200000,\nsegment_1.m4s\n"
+        + "#EXTINF:1.200000,\nsegment_2.m4s\n"
+        + "#EXTINF:1.200000,\nsegment_3.m4s\n"
+        + "#EXTINF:0.400000,\nsegment_4.m4s\n"
+        + "#EXT-X-ENDLIST\n", text(directory, "index.m3u8"));
+  }
+
+  @Test public void playlistFollowsSegmentsAsTheyArePublished() throws IOException {
+    File directory = folder.newFolder();
+    ContainerWriter writer = writer(directory);
+    int video = writer.addTrack(videoFormat());
+    writer.start();
+    for (int i = 0; i <= 30; i++) {
+      writeVideo(writer, video, i);
+    }
+    String playlist = text(directory, "index.m3u8");
+
+    assertTrue(playlist.contains("#EXT-X-PLAYLIST-TYPE:EVENT\n"));
+    assertTrue(playlist.endsWith("segment_1.m4s\n"));
+    assertTrue(new File(directory, "segment_1.m4s").exists());
+    assertFalse(new File(directory, "manifest.mpd").exists());
+    writer.stop();
+  }
+
+  @Test public void manifestHasTimelineAndCodecsOfTracks() throws IOException {
+    File directory = folder.newFolder();
+    write(directory, 100, 60);
+    String manifest = text(directory, "manifest.mpd");
+
+    assertTrue(manifest.contains("type=\"static\" mediaPresentationDuration=\"PT4.000S\""));
+    assertTrue(manifest.contains("mimeType=\"video/mp4\" codecs=\"avc1.42c01e,mp4a.40.2\""));
+    assertTrue(manifest.contains("initialization=\"init.mp4\" media=\"segment_$Number$.m4s\" startNumber=\"1\""));
+    assertTrue(manifest.contains("<S t=\"0\" d=\"1200\" r=\"2\"/>\n            <S t=\"3600\" d=\"400\"/>\n"));
+  }
+
+  @Test public void failedJobLeavesPublishedSegmentsOnly() throws IOException {
+    File directory = folder.newFolder();
+    ContainerWriter writer = writer(directory);
+    int video = writer.addTrack(videoFormat());
+    writer.start();
+    for (int i = 0; i < 50; i++) {
+      writeVideo(writer, video, i);
+    }
+    writer.release();
+
+    List<String> names = Arrays.asList(directory.list());
+    assertEquals(3, names.size());
+    assertTrue(names.containsAll(Arrays.asList("init.mp4", "segment_1.m4s", "index.m3u8")));
+  }
+
+  private static void write(File directory, int videoFrames, int audioFrames) throws IOException {
+    ContainerWriter writer = writer(directory);
+    int video = writer.addTrack(videoFormat());
+    int audio = audioFrames > 0 ? writer.addTrack(audioFormat()) : -1;
+    writer.start();
+    int v = 0;
+    int a = 0;
+    while (v < videoFrames || a < audioFrames) {
+      if (a >= audioFrames || (v < videoFrames && v * FRAME_US <= a * AUDIO_FRAME_US)) {
+        writeVideo(writer, video, v++);
+      } else {
+        writeAudio(writer, audio, a++);
+      }
+    }
+    writer.stop();
+  }
+
+  private static ContainerWriter writer(File directory) throws IOException {
+    StreamingOptions options = new StreamingOptions();
+    options.targetDurationUs = TARGET_US;
+    return ContainerWriter.newStreamingInstance(directory, options, KEY_FRAME_INTERVAL_US);
+  }
+
+  private static void writeVideo(ContainerWriter writer, int track, int index) {
+    byte type = index % KEY_FRAME_INTERVAL == 0 ? (byte) 0x65 : (byte) 0x41;
+    ByteBuffer sample = ByteBuffer.allocate(24);
+    sample.putInt(1).put(type);
+    sample.clear();
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(0, sample.remaining(), index * FRAME_US, type == 0x65 ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+    writer.writeSampleData(track, sample, bufferInfo);
+  }
+
+  private static void writeAudio(ContainerWriter writer, int track, int index) {
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(0, 100, index * AUDIO_FRAME_US, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+    writer.writeSampleData(track, ByteBuffer.allocate(100), bufferInfo);
+  }
+
+  private static byte[] read(File directory, String name) throws IOException {
+    return Files.readAllBytes(new File(directory, name).toPath());
+  }
+
+  private static String text(File directory, String name) throws IOException {
+    return new String(read(directory, name), StandardCharsets.UTF_8);
+  }
+
+  private static MediaFormat videoFormat() {
+    MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE_VIDEO_AVC, 320, 240);
+    format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x67, 0x42, (byte) 0xc0, 0x1e }));
+    format.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80 }));
+    return format;
+  }
+
+  private static MediaFormat audioFormat() {
+    MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE_AUDIO_AAC, SAMPLE_RATE, 1);
+    format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(new byte[] { 0x14, 0x08 })); // aac lc, 16 khz, mono
+    return format;
+  }
+}
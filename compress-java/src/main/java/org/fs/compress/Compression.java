@@ -16,8 +16,10 @@
 package org.fs.compress;
 
 import java.io.File;
-import java.util.concurrent.Future;
+import java.util.List;
+import org.fs.compress.data.EngineOptions;
 import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.metrics.PipelineMetricsListener;
 
 public interface Compression {
 
@@ -25,6 +27,20 @@ public interface Compression {
     return new CompressionImp();
   }
 
-  Future<?> execute(File input, File output, MediaFormatStrategy formatStrategy, CompressionCallback callback);
+  CompressionFuture execute(File input, File output, MediaFormatStrategy formatStrategy, CompressionCallback callback);
+
+  CompressionFuture execute(File input, File output, MediaFormatStrategy formatStrategy, EngineOptions options, CompressionCallback callback);
+
+  /**
+   * Decodes input once and encodes it in to every output with matching strategy, audio is encoded once and shared.
+   */
+  CompressionFuture execute(File input, List<File> outputs, List<MediaFormatStrategy> formatStrategies, CompressionCallback callback);
+
+  CompressionFuture execute(File input, List<File> outputs, List<MediaFormatStrategy> formatStrategies, EngineOptions options, CompressionCallback callback);
+
+  /**
+   * Jobs started after this call time their pipeline stages and report them to listener, null stops timing.
+   */
+  void metricsListener(PipelineMetricsListener listener);
 
 }
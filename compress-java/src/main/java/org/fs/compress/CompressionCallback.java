@@ -15,12 +15,21 @@
  */
 package org.fs.compress;
 
+import org.fs.compress.data.CompressionReport;
+
 public interface CompressionCallback {
 
   void percentage(double percent);
 
   void completed();
 
+  /**
+   * Told on completion with what job went through, falls back to {@link #completed()} unless overridden.
+   */
+  default void completed(CompressionReport report) {
+    completed();
+  }
+
   void canceled();
 
   void error(Exception throwable);
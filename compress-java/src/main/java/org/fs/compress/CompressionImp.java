@@ -19,30 +19,69 @@ import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
 import org.fs.compress.engine.CoderEngine;
+import org.fs.compress.engine.CoderEngineGate;
+import org.fs.compress.engine.RenditionEngine;
 import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.job.JobScheduler;
+import org.fs.compress.leak.LeakTracker;
+import org.fs.compress.metrics.PipelineMetrics;
+import org.fs.compress.metrics.PipelineMetricsListener;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.trace.TraceRecorder;
+
+import static org.fs.compress.util.Constants.PRIORITY_NORMAL;
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
 
 final class CompressionImp implements Compression {
 
-  private final ExecutorService executorService;
+  private final JobScheduler scheduler;
   private final ThreadFactory factory;
+  private final AtomicLong jobIds = new AtomicLong();
+
+  private volatile PipelineMetricsListener metricsListener;
 
   CompressionImp() {
     factory = r -> new Thread(r, "Compression");
-    executorService = new ThreadPoolExecutor(3, 3,
-        60, TimeUnit.SECONDS,
-        new LinkedBlockingQueue<>(), factory);
+    scheduler = JobScheduler.newInstance(factory);
   }
 
 
-  @Override public Future<?> execute(File input, File output, MediaFormatStrategy formatStrategy, CompressionCallback callback) {
+  @Override public CompressionFuture execute(File input, File output, MediaFormatStrategy formatStrategy, CompressionCallback callback) {
+    return execute(input, output, formatStrategy, new EngineOptions(), callback);
+  }
+
+  @Override public CompressionFuture execute(File input, File output, MediaFormatStrategy formatStrategy, EngineOptions options, CompressionCallback callback) {
+    return execute(input, callback, (source, sourceCallback) -> execute(source, output, formatStrategy, options, sourceCallback));
+  }
+
+  @Override public CompressionFuture execute(File input, List<File> outputs, List<MediaFormatStrategy> formatStrategies, CompressionCallback callback) {
+    return execute(input, outputs, formatStrategies, new EngineOptions(), callback);
+  }
+
+  @Override public CompressionFuture execute(File input, List<File> outputs, List<MediaFormatStrategy> formatStrategies, EngineOptions options, CompressionCallback callback) {
+    final int priority = options != null ? options.priority : PRIORITY_NORMAL;
+    return execute(input, callback, (source, sourceCallback) -> scheduler.submit(priority, metered(options, (gate, probe) -> {
+      RenditionEngine engine = RenditionEngine.newInstance(formatStrategies, source);
+      engine.callback(sourceCallback::percentage);
+      engine.options(options);
+      engine.gate(gate);
+      engine.probe(probe);
+      engine.start(outputs);
+      return engine.report();
+    }), sourceCallback));
+  }
+
+  @Override public void metricsListener(PipelineMetricsListener listener) {
+    this.metricsListener = listener;
+  }
+
+  private CompressionFuture execute(File input, CompressionCallback callback, Source job) {
     FileInputStream stream = null;
     FileDescriptor source;
     try {
@@ -60,7 +99,8 @@ final class CompressionImp implements Compression {
     }
 
     final FileInputStream sourceRef = stream;
-    return execute(source, output, formatStrategy, new CompressionCallback() {
+    final LeakTracker.Resource resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, stream);
+    return job.execute(source, new CompressionCallback() {
 
       @Override public void percentage(double percent) {
         callback.percentage(percent);
@@ -71,6 +111,11 @@ final class CompressionImp implements Compression {
         callback.completed();
       }
 
+      @Override public void completed(CompressionReport report) {
+        closeQuietly();
+        callback.completed(report);
+      }
+
       @Override public void canceled() {
         closeQuietly();
         callback.canceled();
@@ -81,46 +126,57 @@ final class CompressionImp implements Compression {
         callback.error(throwable);
       }
 
+      // callback is told about job whatever happens to descriptor
       private void closeQuietly() {
         try {
-            sourceRef.close();
-        } catch (IOException error) {
-          throw new IllegalArgumentException(error);
+          sourceRef.close();
+        } catch (IOException ignored) {
+          /*no opt*/
         }
+        resource.release();
       }
     });
   }
 
-  Future<?> execute(FileDescriptor source, File output, MediaFormatStrategy formatStrategy, CompressionCallback callback) {
-    final AtomicReference<Future<?>> futureRef = new AtomicReference<>();
+  CompressionFuture execute(FileDescriptor source, File output, MediaFormatStrategy formatStrategy, EngineOptions options, CompressionCallback callback) {
+    final int priority = options != null ? options.priority : PRIORITY_NORMAL;
+    return scheduler.submit(priority, metered(options, (gate, probe) -> {
+      CoderEngine engine = CoderEngine.newInstance(formatStrategy, source, options);
+      engine.callback(callback::percentage);
+      engine.options(options);
+      engine.gate(gate);
+      engine.probe(probe);
+      engine.start(output);
+      return engine.report();
+    }), callback);
+  }
 
-    final Future<?> future = executorService.submit(() -> {
-      Exception error = null;
+  // probe is null while no listener nor recorder is set, so coders skip timing altogether
+  private JobScheduler.Job metered(EngineOptions options, MeteredJob job) {
+    final TraceRecorder recorder = options != null ? options.traceRecorder : null;
+    return gate -> {
+      final PipelineMetricsListener listener = metricsListener;
+      if (listener == null) {
+        return job.run(gate, recorder);
+      }
+      PipelineMetrics metrics = PipelineMetrics.newInstance(jobIds.incrementAndGet());
+      listener.started(metrics);
       try {
-        CoderEngine engine = CoderEngine.newInstance(formatStrategy, source);
-        engine.callback(callback::percentage);
-        engine.start(output);
-      } catch (IOException e) {
-        error = e;
-      } catch (InterruptedException e) {
-        error = e;
-      } catch (IllegalArgumentException e) {
-        error = e;
+        return job.run(gate, PipelineProbe.newGroupInstance(metrics, recorder));
+      } finally {
+        metrics.complete();
+        listener.completed(metrics);
       }
+    };
+  }
 
-      if (error == null) {
-        callback.completed();
-      } else {
-        Future<?> ref = futureRef.get();
-        if (ref != null && ref.isCancelled()) {
-          callback.canceled();
-        } else {
-          callback.error(error);
-        }
-      }
+  private interface MeteredJob {
 
-    });
-    futureRef.set(future);
-    return future;
+    CompressionReport run(CoderEngineGate gate, PipelineProbe probe) throws IOException, InterruptedException;
+  }
+
+  private interface Source {
+
+    CompressionFuture execute(FileDescriptor source, CompressionCallback callback);
   }
 }
@@ -15,14 +15,14 @@
  */
 package org.fs.compress.audio;
 
-import android.media.MediaCodec;
 import android.media.MediaFormat;
 import java.nio.ShortBuffer;
 import org.fs.compress.data.AudioBuffer;
+import org.fs.compress.spi.Codec;
 
 public interface AudioChannel {
 
-  static AudioChannel newInstance(MediaCodec decoder, MediaCodec encoder, MediaFormat encodeFormat) {
+  static AudioChannel newInstance(Codec decoder, Codec encoder, MediaFormat encodeFormat) {
     return new AudioChannelImp(decoder, encoder, encodeFormat);
   }
 
@@ -32,6 +32,9 @@ public interface AudioChannel {
 
   boolean encode(long timeout);
 
+  // returns overflow buffer to pool, channel is not used after
+  void release();
+
   long countToDurationUs(int sc, int sr, int cc);
 
   long overflow(ShortBuffer out);
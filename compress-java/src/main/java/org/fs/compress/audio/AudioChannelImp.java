@@ -22,9 +22,10 @@ import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
-import org.fs.compress.buffer.MediaCodecBuffer;
+import org.fs.compress.buffer.DirectBufferPool;
 import org.fs.compress.data.AudioBuffer;
 import org.fs.compress.remix.AudioRemix;
+import org.fs.compress.spi.Codec;
 
 final class AudioChannelImp implements AudioChannel {
 
@@ -36,8 +37,8 @@ final class AudioChannelImp implements AudioChannel {
   private final Queue<AudioBuffer> emptyBuffers = new ArrayDeque<>();
   private final Queue<AudioBuffer> buffers = new ArrayDeque<>();
 
-  private final MediaCodec decoder;
-  private final MediaCodec encoder;
+  private final Codec decoder;
+  private final Codec encoder;
   private final MediaFormat encodeFormat;
 
   private int inputSampleRate;
@@ -46,20 +47,16 @@ final class AudioChannelImp implements AudioChannel {
 
   private AudioRemix remix;
 
-  private final MediaCodecBuffer decoderBuffers;
-  private final MediaCodecBuffer encoderBuffers;
-
   private final AudioBuffer overflowBuffer = new AudioBuffer();
+  // leased buffer behind short view of overflow, returned to pool on release
+  private ByteBuffer overflowData;
 
   private MediaFormat actualDecodeFormat;
 
-  AudioChannelImp(MediaCodec decoder, MediaCodec encoder, MediaFormat encodeFormat) {
+  AudioChannelImp(Codec decoder, Codec encoder, MediaFormat encodeFormat) {
     this.encoder = encoder;
     this.decoder = decoder;
     this.encodeFormat = encodeFormat;
-
-    this.decoderBuffers = MediaCodecBuffer.newInstance(decoder);
-    this.encoderBuffers = MediaCodecBuffer.newInstance(encoder);
   }
 
   @Override public void actualDecoderFormat(MediaFormat decoderFormat) {
@@ -93,7 +90,7 @@ final class AudioChannelImp implements AudioChannel {
 
     final ByteBuffer data =
         bufferIndex == BUFFER_INDEX_END_OF_STREAM ?
-            null : decoderBuffers.getOutputBuffer(bufferIndex);
+            null : decoder.getOutputBuffer(bufferIndex);
 
     AudioBuffer buffer = emptyBuffers.poll();
     if (buffer == null) {
@@ -106,7 +103,9 @@ final class AudioChannelImp implements AudioChannel {
 
     if (overflowBuffer.data == null && data != null) {
 
-      overflowBuffer.data = ByteBuffer.allocateDirect(data.capacity())
+      overflowData = DirectBufferPool.shared().lease(data.capacity());
+      // view is as big as leased size, not whole size class of buffer
+      overflowBuffer.data = overflowData
           .order(ByteOrder.nativeOrder())
           .asShortBuffer();
 
@@ -127,7 +126,7 @@ final class AudioChannelImp implements AudioChannel {
 
 
     // Drain overflow first
-    final ShortBuffer out = encoderBuffers.getInputBuffer(encoderInBuffIndex).asShortBuffer();
+    final ShortBuffer out = encoder.getInputBuffer(encoderInBuffIndex).asShortBuffer();
     if (hasOverflow) {
       final long presentationTimeUs = overflow(out);
       encoder.queueInputBuffer(encoderInBuffIndex, 0, out.position() * BYTES_PER_SHORT, presentationTimeUs, 0);
@@ -151,6 +150,14 @@ final class AudioChannelImp implements AudioChannel {
     return true;
   }
 
+  @Override public void release() {
+    if (overflowData != null) {
+      DirectBufferPool.shared().release(overflowData);
+      overflowData = null;
+      overflowBuffer.data = null;
+    }
+  }
+
   @Override public long countToDurationUs(int sc, int sr, int cc) {
     return (sc / (sr * MICROSECS_PER_SEC)) / cc;
   }
@@ -201,6 +208,8 @@ final class AudioChannelImp implements AudioChannel {
       // Remix the rest onto overflowBuffer
       // NOTE: We should only reach this point when overflow buffer is empty
       final long consumedDurationUs = countToDurationUs(input.position(), inputSampleRate, inputChannelCount);
+      // drained overflow is left with zero limit, open it up to capacity before filling
+      overflowBuff.clear();
       remix.remix(input, overflowBuff);
 
       // Seal off overflowBuff & mark limit
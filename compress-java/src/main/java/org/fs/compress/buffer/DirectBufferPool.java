@@ -0,0 +1,53 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import java.nio.ByteBuffer;
+import org.fs.compress.data.BufferPoolStats;
+
+/**
+ * Process wide pool of direct buffers in power of two size classes, jobs run back to back reuse native memory of ones
+ * before instead of leaving it to garbage collector. Buffers above largest class are allocated for lease alone and
+ * dropped once released.
+ */
+public interface DirectBufferPool {
+
+  static DirectBufferPool shared() {
+    return DirectBufferPoolImp.SHARED;
+  }
+
+  /**
+   * Buffer of at least {@code size} bytes, position at zero, limit at {@code size} and big endian order. It must not be
+   * used once released, nor released twice.
+   */
+  ByteBuffer lease(int size);
+
+  /**
+   * Throws {@link IllegalStateException} for a buffer released twice while it is still idle in pool, or released more
+   * often than buffers were leased. Leases are tracked one by one while {@link org.fs.compress.leak.LeakTracker} is
+   * enabled, any release of a buffer that is not out is caught then, and buffers never released are reported as leaks.
+   */
+  void release(ByteBuffer buffer);
+
+  /**
+   * Most bytes idle buffers may hold, released buffers past it are dropped and idle ones are trimmed down to it. It
+   * caps idle bytes only, leased buffers are never refused so outstanding bytes may go above it, see
+   * {@link BufferPoolStats#outstandingBytes} for those.
+   */
+  void maxPooledBytes(long maxPooledBytes);
+
+  BufferPoolStats stats();
+}
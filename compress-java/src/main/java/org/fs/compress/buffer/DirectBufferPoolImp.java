@@ -0,0 +1,148 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.fs.compress.data.BufferPoolStats;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_BUFFER;
+
+final class DirectBufferPoolImp implements DirectBufferPool {
+
+  static final DirectBufferPoolImp SHARED = new DirectBufferPoolImp();
+
+  private static final int MIN_CLASS_SHIFT = 10; // 1 kb
+  private static final int MAX_CLASS_SHIFT = 24; // 16 mb
+
+  private static final long DEFAULT_MAX_POOLED_BYTES = 32L * 1024 * 1024; // 32 mb
+
+  // idle buffers of each size class, smallest class first
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final ArrayDeque<ByteBuffer>[] classes = new ArrayDeque[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+  // same buffers by identity, equals of buffers compares their content
+  private final Set<ByteBuffer> idle = Collections.newSetFromMap(new IdentityHashMap<>());
+  // buffers out while leak tracker is enabled, rest are only counted so a leaked one is still left to collector
+  private final Map<ByteBuffer, LeakTracker.Resource> leased = new IdentityHashMap<>();
+  private long untrackedLeases;
+
+  private long maxPooledBytes = DEFAULT_MAX_POOLED_BYTES;
+
+  private long leases;
+  private long hits;
+  private long drops;
+  private long outstandingBytes;
+  private long pooledBytes;
+
+  DirectBufferPoolImp() {
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new ArrayDeque<>();
+    }
+  }
+
+  @Override public synchronized ByteBuffer lease(int size) {
+    if (size < 0) throw new IllegalArgumentException("size can not be negative " + size);
+    leases++;
+    final int shift = shiftOf(size);
+    ByteBuffer buffer;
+    if (shift > MAX_CLASS_SHIFT) {
+      buffer = ByteBuffer.allocateDirect(size);
+    } else {
+      buffer = classes[shift - MIN_CLASS_SHIFT].poll();
+      if (buffer != null) {
+        idle.remove(buffer);
+        hits++;
+        pooledBytes -= buffer.capacity();
+      } else {
+        buffer = ByteBuffer.allocateDirect(1 << shift);
+      }
+    }
+    final LeakTracker tracker = LeakTracker.shared();
+    if (tracker.enabled()) {
+      leased.put(buffer, tracker.track(RESOURCE_BUFFER, buffer));
+    } else {
+      untrackedLeases++;
+    }
+    outstandingBytes += buffer.capacity();
+    buffer.clear();
+    buffer.limit(size);
+    return buffer.order(ByteOrder.BIG_ENDIAN);
+  }
+
+  @Override public synchronized void release(ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    if (!buffer.isDirect()) throw new IllegalArgumentException("buffer was not leased from pool, it is not direct");
+    if (capacity <= 1 << MAX_CLASS_SHIFT && (capacity < 1 << MIN_CLASS_SHIFT || Integer.bitCount(capacity) != 1)) {
+      throw new IllegalArgumentException("buffer was not leased from pool, capacity " + capacity + " is not a size class");
+    }
+    if (idle.contains(buffer)) throw new IllegalStateException("buffer is released twice, it is idle in pool");
+    final LeakTracker.Resource resource = leased.remove(buffer);
+    if (resource != null) {
+      resource.release();
+    } else if (untrackedLeases > 0 && outstandingBytes >= capacity) {
+      // leased while tracker was off, only count of those is known
+      untrackedLeases--;
+    } else {
+      throw new IllegalStateException("buffer is released twice, or was never leased from pool");
+    }
+    outstandingBytes -= capacity;
+    if (capacity > 1 << MAX_CLASS_SHIFT || pooledBytes + capacity > maxPooledBytes) {
+      drops++;
+      return;
+    }
+    classes[shiftOf(capacity) - MIN_CLASS_SHIFT].offer(buffer);
+    idle.add(buffer);
+    pooledBytes += capacity;
+  }
+
+  @Override public synchronized void maxPooledBytes(long maxPooledBytes) {
+    if (maxPooledBytes < 0) throw new IllegalArgumentException("maxPooledBytes can not be negative " + maxPooledBytes);
+    this.maxPooledBytes = maxPooledBytes;
+    // largest idle buffers go first
+    for (int i = classes.length - 1; i >= 0 && pooledBytes > maxPooledBytes; i--) {
+      ByteBuffer buffer;
+      while (pooledBytes > maxPooledBytes && (buffer = classes[i].poll()) != null) {
+        idle.remove(buffer);
+        pooledBytes -= 1L << (i + MIN_CLASS_SHIFT);
+        drops++;
+      }
+    }
+  }
+
+  @Override public synchronized BufferPoolStats stats() {
+    BufferPoolStats stats = new BufferPoolStats();
+    stats.leases = leases;
+    stats.hits = hits;
+    stats.hitRate = leases == 0 ? 0 : (float) hits / leases;
+    stats.drops = drops;
+    stats.outstandingBytes = outstandingBytes;
+    stats.pooledBytes = pooledBytes;
+    stats.maxPooledBytes = maxPooledBytes;
+    return stats;
+  }
+
+  // smallest class that holds size, above max class for sizes pool does not keep
+  private static int shiftOf(int size) {
+    if (size <= 1 << MIN_CLASS_SHIFT) return MIN_CLASS_SHIFT;
+    return 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+}
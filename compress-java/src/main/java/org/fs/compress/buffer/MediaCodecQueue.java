@@ -0,0 +1,40 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import android.media.MediaCodec;
+import android.os.Build;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.util.BuildOsVersionUtil;
+
+public interface MediaCodecQueue {
+
+  /**
+   * Must be created before {@link MediaCodec#configure}, asynchronous mode registers its callback on the codec and
+   * signals {@code eventLoop} whenever a buffer or format event arrives. Without an event loop, or below Marshmallow,
+   * codec is polled with its synchronous dequeue methods, older callbacks can not take a handler and land on main looper.
+   */
+  static MediaCodecQueue newInstance(MediaCodec codec, EventLoop eventLoop) {
+    if (eventLoop != null && BuildOsVersionUtil.isOsAvailable(Build.VERSION_CODES.M)) {
+      return new MediaCodecQueueV23Imp(codec, eventLoop);
+    }
+    return new MediaCodecQueueImp(codec);
+  }
+
+  int dequeueInputBuffer(long timeout);
+
+  int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeout);
+}
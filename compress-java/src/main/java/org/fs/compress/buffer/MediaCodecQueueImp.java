@@ -0,0 +1,35 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import android.media.MediaCodec;
+
+final class MediaCodecQueueImp implements MediaCodecQueue {
+
+  private final MediaCodec codec;
+
+  MediaCodecQueueImp(MediaCodec codec) {
+    this.codec = codec;
+  }
+
+  @Override public int dequeueInputBuffer(long timeout) {
+    return codec.dequeueInputBuffer(timeout);
+  }
+
+  @Override public int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeout) {
+    return codec.dequeueOutputBuffer(bufferInfo, timeout);
+  }
+}
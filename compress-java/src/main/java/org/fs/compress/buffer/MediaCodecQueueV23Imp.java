@@ -0,0 +1,168 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.buffer;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+import org.fs.compress.event.EventLoop;
+
+@TargetApi(Build.VERSION_CODES.M)
+final class MediaCodecQueueV23Imp extends MediaCodec.Callback implements MediaCodecQueue {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final EventLoop eventLoop;
+
+  private final Object queueSyncObject = new Object();
+
+  // available input buffer indices, ring of ints
+  private int[] inputs = new int[INITIAL_CAPACITY];
+  private int inputHead;
+  private int inputSize;
+
+  // available output buffers, ring of parallel columns to keep callbacks allocation free
+  private int[] outputs = new int[INITIAL_CAPACITY];
+  private int[] offsets = new int[INITIAL_CAPACITY];
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  private int[] flags = new int[INITIAL_CAPACITY];
+  private long[] presentationTimesUs = new long[INITIAL_CAPACITY];
+  private int outputHead;
+  private int outputSize;
+
+  private MediaCodec.CodecException error;
+
+  MediaCodecQueueV23Imp(MediaCodec codec, EventLoop eventLoop) {
+    this.eventLoop = eventLoop;
+    codec.setCallback(this, eventLoop.handler());
+  }
+
+  @Override public int dequeueInputBuffer(long timeout) {
+    synchronized (queueSyncObject) {
+      awaitOrThrow(timeout, true);
+      if (inputSize == 0) return MediaCodec.INFO_TRY_AGAIN_LATER;
+
+      int index = inputs[inputHead];
+      inputHead = (inputHead + 1) % inputs.length;
+      inputSize--;
+      return index;
+    }
+  }
+
+  @Override public int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeout) {
+    synchronized (queueSyncObject) {
+      awaitOrThrow(timeout, false);
+      if (outputSize == 0) return MediaCodec.INFO_TRY_AGAIN_LATER;
+
+      int head = outputHead;
+      outputHead = (outputHead + 1) % outputs.length;
+      outputSize--;
+
+      int index = outputs[head];
+      if (index >= 0) {
+        bufferInfo.set(offsets[head], sizes[head], presentationTimesUs[head], flags[head]);
+      }
+      return index;
+    }
+  }
+
+  @Override public void onInputBufferAvailable(MediaCodec codec, int index) {
+    synchronized (queueSyncObject) {
+      if (inputSize == inputs.length) {
+        inputs = grow(inputs, inputHead, inputSize);
+        inputHead = 0;
+      }
+      inputs[(inputHead + inputSize) % inputs.length] = index;
+      inputSize++;
+      queueSyncObject.notifyAll();
+    }
+    eventLoop.signal();
+  }
+
+  @Override public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
+    queueOutput(index, info.offset, info.size, info.presentationTimeUs, info.flags);
+  }
+
+  @Override public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+    // coders read actual format from codec itself as they do in synchronous mode
+    queueOutput(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED, 0, 0, 0, 0);
+  }
+
+  @Override public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+    synchronized (queueSyncObject) {
+      error = e;
+      queueSyncObject.notifyAll();
+    }
+    eventLoop.signal();
+  }
+
+  private void queueOutput(int index, int offset, int size, long presentationTimeUs, int flag) {
+    synchronized (queueSyncObject) {
+      if (outputSize == outputs.length) {
+        outputs = grow(outputs, outputHead, outputSize);
+        offsets = grow(offsets, outputHead, outputSize);
+        sizes = grow(sizes, outputHead, outputSize);
+        flags = grow(flags, outputHead, outputSize);
+        presentationTimesUs = grow(presentationTimesUs, outputHead, outputSize);
+        outputHead = 0;
+      }
+      int tail = (outputHead + outputSize) % outputs.length;
+      outputs[tail] = index;
+      offsets[tail] = offset;
+      sizes[tail] = size;
+      presentationTimesUs[tail] = presentationTimeUs;
+      flags[tail] = flag;
+      outputSize++;
+      queueSyncObject.notifyAll();
+    }
+    eventLoop.signal();
+  }
+
+  private void awaitOrThrow(long timeout, boolean input) {
+    if (timeout != 0 && (input ? inputSize : outputSize) == 0 && error == null) {
+      try {
+        if (timeout < 0) {
+          while ((input ? inputSize : outputSize) == 0 && error == null) queueSyncObject.wait();
+        } else {
+          // timeout is in microseconds as it is in MediaCodec
+          queueSyncObject.wait(Math.max(1, timeout / 1000));
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+    if (error != null) {
+      throw new IllegalArgumentException(error);
+    }
+  }
+
+  private static int[] grow(int[] ring, int head, int size) {
+    int[] array = new int[ring.length * 2];
+    for (int i = 0; i < size; i++) {
+      array[i] = ring[(head + i) % ring.length];
+    }
+    return array;
+  }
+
+  private static long[] grow(long[] ring, int head, int size) {
+    long[] array = new long[ring.length * 2];
+    for (int i = 0; i < size; i++) {
+      array[i] = ring[(head + i) % ring.length];
+    }
+    return array;
+  }
+}
@@ -19,14 +19,22 @@ import android.media.MediaCodec;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.text.TextUtils;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import org.fs.compress.audio.AudioChannel;
-import org.fs.compress.buffer.MediaCodecBuffer;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Codec;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.Extractor;
 
 import static org.fs.compress.util.Constants.CONFIGURE_FLAG_DECODE;
 import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.STAGE_AUDIO_ENCODE;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_DECODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_ENCODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_EXTRACTOR;
 
 final class AudioCoder implements Coder {
 
@@ -34,23 +42,24 @@ final class AudioCoder implements Coder {
   private static final int STATE_END_OF_STREAM = 0x01;
   private static final int STATE_PROGRESS = 0x02;
 
-  private final MediaExtractor extractor;
+  private final CodecProvider provider;
+  private final Extractor extractor;
   private final int trackIndex;
   private final Muxer muxer;
   private final MediaFormat inputFormat;
   private final MediaFormat outputFormat;
+  private final EventLoop eventLoop;
 
   private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
 
-  private MediaCodec decoder;
-  private MediaCodec encoder;
+  private Codec decoder;
+  private Codec encoder;
   private MediaFormat actualOutputFormat;
 
-  private MediaCodecBuffer decodeBuffers;
-  private MediaCodecBuffer encodeBuffers;
-
   private AudioChannel channel;
 
+  private PipelineProbe probe;
+
   private int stateDrainExtractor = STATE_IDLE;
   private int stateDrainEncoder  = STATE_IDLE;
   private int stateDrainDecoder = STATE_IDLE;
@@ -58,13 +67,26 @@ final class AudioCoder implements Coder {
   private int stateEncoder = STATE_IDLE;
   private int stateDecoder = STATE_IDLE;
 
+  // set while codecs end their stream for a preempted job, samples of other tracks no longer hold it back
+  private boolean suspending;
+
   private long presentationTimeUs;
+  private long frames;
+  private long sampleBytes;
 
-  AudioCoder(MediaExtractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer) {
+  private String decoderName;
+  private String encoderName;
+  private long samples;
+  private long decodedFrames;
+  private int peakDecodeQueueSize;
+
+  AudioCoder(CodecProvider provider, Extractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer, EventLoop eventLoop) {
+    this.provider = provider;
     this.extractor = extractor;
     this.trackIndex = trackIndex;
     this.outputFormat = outputFormat;
     this.muxer = muxer;
+    this.eventLoop = eventLoop;
 
     inputFormat = extractor.getTrackFormat(trackIndex);
   }
@@ -75,36 +97,30 @@ final class AudioCoder implements Coder {
     if (TextUtils.isEmpty(mime)) {
       throw new IllegalArgumentException("contains no mime on output");
     }
-    try {
-      encoder = MediaCodec.createEncoderByType(mime);
-    } catch (IOException e) {
-      throw new IllegalArgumentException(e);
-    }
+    encoder = provider.newEncoder(mime, eventLoop);
+    encoderName = encoder.name();
     // configure
-    encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    encoder.configure(outputFormat, MediaCodec.CONFIGURE_FLAG_ENCODE);
     encoder.start();
     stateEncoder = STATE_PROGRESS;
 
-    encodeBuffers = MediaCodecBuffer.newInstance(encoder);
-
     mime = inputFormat.getString(MediaFormat.KEY_MIME);
     if (TextUtils.isEmpty(mime)) {
       throw new IllegalArgumentException("contains no mime on input");
     }
-    try {
-      decoder = MediaCodec.createDecoderByType(mime);
-    } catch (IOException e) {
-      throw new IllegalArgumentException(e);
-    }
-    decoder.configure(inputFormat, null,  null, CONFIGURE_FLAG_DECODE);
+    decoder = provider.newDecoder(mime, null, eventLoop);
+    decoderName = decoder.name();
+    decoder.configure(inputFormat, CONFIGURE_FLAG_DECODE);
     decoder.start();
     stateDecoder = STATE_PROGRESS;
 
-    decodeBuffers = MediaCodecBuffer.newInstance(decoder);
-
     channel = AudioChannel.newInstance(decoder, encoder, outputFormat);
   }
 
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
   @Override public MediaFormat determinedFormat() {
     return inputFormat;
   }
@@ -120,12 +136,24 @@ final class AudioCoder implements Coder {
       // NOTE: not repeating to keep from deadlock when encoder is full.
     } while (status == DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY);
 
-    while (channel.encode(0)) busy = true;
+    while (encode()) busy = true;
     while (drainExtractor(0) != DRAIN_STATE_NONE) busy = true;
 
     return busy;
   }
 
+  private boolean encode() {
+    // suspended coder let go of its channel with codecs
+    if (channel == null) return false;
+    final PipelineProbe probe = this.probe;
+    if (probe == null) return channel.encode(0);
+
+    final long startNs = System.nanoTime();
+    boolean encoded = channel.encode(0);
+    if (encoded) probe.record(STAGE_AUDIO_ENCODE, SAMPLE_AUDIO, startNs, System.nanoTime());
+    return encoded;
+  }
+
   @Override public long presentationTimeUs() {
     return presentationTimeUs;
   }
@@ -133,32 +161,40 @@ final class AudioCoder implements Coder {
   @Override public int drainExtractor(long timeout) {
     if (stateDrainExtractor == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
     int trackIndex = extractor.getSampleTrackIndex();
-    if (trackIndex >= 0 && trackIndex != this.trackIndex) return DRAIN_STATE_NONE;
+    if (!suspending && trackIndex >= 0 && trackIndex != this.trackIndex) return DRAIN_STATE_NONE;
 
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
     int result = decoder.dequeueInputBuffer(timeout);
     if (result < 0) return DRAIN_STATE_NONE;
 
-    if (trackIndex < 0) {
+    if (suspending || trackIndex < 0) {
       stateDrainExtractor = STATE_END_OF_STREAM;
       decoder.queueInputBuffer(result, 0, 0,0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
       return DRAIN_STATE_NONE;
     }
 
-    ByteBuffer byteBuffer = decodeBuffers.getInputBuffer(result);
+    ByteBuffer byteBuffer = decoder.getInputBuffer(result);
     int sampleSize = extractor.readSampleData(byteBuffer, 0);
+    sampleBytes += sampleSize;
 
     boolean isKeyFrame = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
 
     decoder.queueInputBuffer(result, 0, sampleSize, extractor.getSampleTime(), isKeyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+    samples++;
+    peakDecodeQueueSize = Math.max(peakDecodeQueueSize, (int) (samples - decodedFrames));
 
     extractor.advance();
 
+    if (probe != null) probe.record(STAGE_DRAIN_EXTRACTOR, SAMPLE_AUDIO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
   @Override public int drainDecoder(long timeout) {
     if (stateDrainDecoder == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
 
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
     int result = decoder.dequeueOutputBuffer(bufferInfo, timeout);
     switch (result) {
       case MediaCodec.INFO_TRY_AGAIN_LATER: return DRAIN_STATE_NONE;
@@ -174,24 +210,30 @@ final class AudioCoder implements Coder {
       channel.drainDecoderFormatAndQueueu(-1, 0);
     } else if (bufferInfo.size > 0) {
       channel.drainDecoderFormatAndQueueu(result, bufferInfo.presentationTimeUs);
+      decodedFrames++;
     }
 
+    if (probe != null) probe.record(STAGE_DRAIN_DECODER, SAMPLE_AUDIO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
   @Override public int drainEncoder(long timeout) {
     if (stateDrainEncoder == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
 
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
     int result = encoder.dequeueOutputBuffer(bufferInfo, timeout);
     switch (result) {
       case MediaCodec.INFO_TRY_AGAIN_LATER:
         return DRAIN_STATE_NONE;
       case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
-        actualOutputFormat = encoder.getOutputFormat();
-        muxer.outputFormat(SAMPLE_AUDIO, actualOutputFormat);
+        // encoder of a resumed coder tells format again, track keeps first one
+        if (actualOutputFormat == null) {
+          actualOutputFormat = encoder.getOutputFormat();
+          muxer.outputFormat(SAMPLE_AUDIO, actualOutputFormat);
+        }
         return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
       case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED:
-        encodeBuffers.clear();
         return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
     }
 
@@ -201,6 +243,12 @@ final class AudioCoder implements Coder {
 
     if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
       stateDrainEncoder = STATE_END_OF_STREAM;
+      if (suspending) {
+        // track goes on once job is resumed, so its end is not written
+        encoder.releaseOutputBuffer(result, false);
+        releaseCodecs();
+        return DRAIN_STATE_NONE;
+      }
       bufferInfo.set(0, 0, 0, bufferInfo.flags);
     }
 
@@ -210,24 +258,73 @@ final class AudioCoder implements Coder {
       return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
     }
 
-    ByteBuffer byteBuffer = encodeBuffers.getOutputBuffer(result);
+    ByteBuffer byteBuffer = encoder.getOutputBuffer(result);
 
     muxer.writeSample(SAMPLE_AUDIO, byteBuffer, bufferInfo);
 
     presentationTimeUs = bufferInfo.presentationTimeUs;
+    if (bufferInfo.size > 0) frames++;
 
     encoder.releaseOutputBuffer(result, false);
+    if (probe != null) probe.record(STAGE_DRAIN_ENCODER, SAMPLE_AUDIO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
+  @Override public long frames() {
+    return frames;
+  }
+
+  @Override public long sampleBytes() {
+    return sampleBytes;
+  }
+
+  // pcm is remixed in to encoder buffers of its own size, so nothing is rendered and encode queue is not counted
+  @Override public void report(TrackReport report) {
+    report.sampleType = SAMPLE_AUDIO;
+    report.transcoded = true;
+    report.decoderName = decoderName;
+    report.encoderName = encoderName;
+    report.framesDecoded = decodedFrames;
+    report.framesEncoded = frames;
+    report.peakDecodeQueueSize = peakDecodeQueueSize;
+  }
+
   @Override public boolean finished() {
     return stateDrainEncoder == STATE_END_OF_STREAM;
   }
 
+  @Override public boolean suspend() {
+    if (finished()) {
+      // track already ended, codecs only wait for release
+      releaseCodecs();
+    } else {
+      suspending = true;
+    }
+    return true;
+  }
+
+  @Override public boolean suspended() {
+    return stateDrainEncoder == STATE_END_OF_STREAM;
+  }
+
+  @Override public void resume() {
+    if (!suspending) return;
+    suspending = false;
+    stateDrainExtractor = STATE_IDLE;
+    stateDrainDecoder = STATE_IDLE;
+    stateDrainEncoder = STATE_IDLE;
+    setup();
+  }
+
   @Override public void release() {
+    releaseCodecs();
+  }
+
+  private void releaseCodecs() {
     if (decoder != null) {
       if (stateDecoder == STATE_PROGRESS) {
         decoder.stop();
+        stateDecoder = STATE_IDLE;
       }
       decoder.release();
       decoder = null;
@@ -236,9 +333,15 @@ final class AudioCoder implements Coder {
     if (encoder != null) {
       if (stateEncoder == STATE_PROGRESS) {
         encoder.stop();
+        stateEncoder = STATE_IDLE;
       }
       encoder.release();
       encoder = null;
     }
+
+    if (channel != null) {
+      channel.release();
+      channel = null;
+    }
   }
 }
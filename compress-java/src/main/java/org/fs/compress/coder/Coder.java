@@ -17,8 +17,15 @@ package org.fs.compress.coder;
 
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
+import java.util.List;
 import org.fs.compress.data.Track;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.muxer.Muxer;
+import org.fs.compress.replay.SampleRecording;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.Extractor;
 import org.fs.compress.util.SampleType;
 
 import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
@@ -26,38 +33,103 @@ import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
 public interface Coder {
 
   static Coder newInstance(Track track, MediaFormat outputFormat, MediaExtractor extractor, Muxer muxer, @SampleType int sampleType) {
+    return newInstance(track, outputFormat, extractor, muxer, sampleType, null);
+  }
+
+  static Coder newInstance(Track track, MediaFormat outputFormat, MediaExtractor extractor, Muxer muxer, @SampleType int sampleType, EventLoop eventLoop) {
+    return newInstance(CodecProvider.platform(), track, outputFormat, Extractor.newInstance(extractor), muxer, sampleType, eventLoop);
+  }
+
+  /**
+   * Codecs and surfaces of coder come from {@code provider}, extractor is expected to be one of it too.
+   */
+  static Coder newInstance(CodecProvider provider, Track track, MediaFormat outputFormat, Extractor extractor, Muxer muxer, @SampleType int sampleType, EventLoop eventLoop) {
     if (sampleType == SAMPLE_VIDEO) {
       if (outputFormat != null) {
-        return new VideoCoder(extractor, track.videoTrackIndex, outputFormat, muxer);
+        return new VideoCoder(provider, extractor, track.videoTrackIndex, outputFormat, muxer, eventLoop);
       } else {
         return new PassThroughCoder(extractor, track.videoTrackIndex, muxer, sampleType);
       }
     } else {
       if (outputFormat != null) {
-        return new AudioCoder(extractor, track.audioTrackIndex, outputFormat, muxer);
+        return new AudioCoder(provider, extractor, track.audioTrackIndex, outputFormat, muxer, eventLoop);
       } else {
         return new PassThroughCoder(extractor, track.audioTrackIndex, muxer, sampleType);
       }
     }
   }
 
+  static Coder newStagedInstance(CodecProvider provider, Track track, MediaFormat outputFormat, Extractor extractor, Muxer muxer, int capacity, EventLoop eventLoop) {
+    return new StagedVideoCoder(provider, extractor, track.videoTrackIndex, outputFormat, muxer, capacity, eventLoop);
+  }
+
+  /**
+   * Video coder that ends its stream at {@code endTimeUs}, extractor is expected to be seeked to start of segment.
+   */
+  static Coder newSegmentInstance(Track track, MediaFormat outputFormat, MediaExtractor extractor, Muxer muxer, long endTimeUs) {
+    return newSegmentInstance(CodecProvider.platform(), track, outputFormat, Extractor.newInstance(extractor), muxer, endTimeUs, null);
+  }
+
+  static Coder newSegmentInstance(CodecProvider provider, Track track, MediaFormat outputFormat, Extractor extractor, Muxer muxer, long endTimeUs, EventLoop eventLoop) {
+    return new VideoCoder(provider, extractor, track.videoTrackIndex, outputFormat, muxer, eventLoop, endTimeUs);
+  }
+
+  static RenditionCoder newRenditionInstance(CodecProvider provider, Track track, List<MediaFormat> outputFormats, Extractor extractor, List<Muxer> muxers, EventLoop eventLoop) {
+    return new RenditionVideoCoder(provider, extractor, track.videoTrackIndex, outputFormats, muxers, eventLoop);
+  }
+
+  /**
+   * Plays recorded track of {@code sampleType} in to muxer without codecs, paced by recorded timing if asked.
+   */
+  static Coder newReplayInstance(SampleRecording recording, @SampleType int sampleType, Muxer muxer, boolean paced) {
+    return new ReplayCoder(recording, sampleType, muxer, paced);
+  }
+
   static final int DRAIN_STATE_NONE = 0x00;
   static final int DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY = 0x01;
   static final int DRAIN_STATE_CONSUMED = 0x02;
 
   void setup();
 
+  // times drains when set, null turns timing off
+  void probe(PipelineProbe probe);
+
   MediaFormat determinedFormat();
 
   boolean stepPipeline();
 
   long presentationTimeUs();
 
+  // samples written to muxer and bytes read from extractor, progress reports throughput with them
+  long frames();
+  long sampleBytes();
+
   int drainExtractor(long timeout);
   int drainDecoder(long timeout);
   int drainEncoder(long timeout);
 
   boolean finished();
 
+  // fills what track went through, called once it is finished and before release
+  void report(TrackReport report);
+
+  /**
+   * Ends stream of codecs at current sample of extractor without ending track in muxer, coder is stepped until
+   * {@link #suspended()} and lets go of its codecs then. Counts, format and muxer are kept, {@link #resume()} sets up
+   * new codecs that go on from same sample, so extractor is expected to be at a sync sample of video.
+   *
+   * @return false when coder holds no codecs, there is nothing to let go.
+   */
+  default boolean suspend() {
+    return false;
+  }
+
+  default boolean suspended() {
+    return true;
+  }
+
+  default void resume() {
+  }
+
   void release();
 }
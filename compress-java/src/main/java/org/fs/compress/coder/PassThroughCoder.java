@@ -20,9 +20,15 @@ import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import org.fs.compress.buffer.DirectBufferPool;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Extractor;
 import org.fs.compress.util.SampleType;
 
+import static org.fs.compress.util.Constants.STAGE_DRAIN_EXTRACTOR;
+
 final class PassThroughCoder implements Coder {
 
   private final static int STATE_IDLE = 0x01;
@@ -30,7 +36,7 @@ final class PassThroughCoder implements Coder {
 
   private final static int FALLBACK_BUFFER_SIZE = 2 * 1024;
 
-  private final MediaExtractor extractor;
+  private final Extractor extractor;
   private final int trackIndex;
   @SampleType private final int sampleType;
   private final Muxer muxer;
@@ -39,14 +45,18 @@ final class PassThroughCoder implements Coder {
 
   private final MediaFormat actualOutputFormat;
   private final int bufferSize;
-  private final ByteBuffer byteBuffer;
+  private ByteBuffer byteBuffer;
+
+  private PipelineProbe probe;
 
   private long presentationTimeUs;
+  private long frames;
+  private long sampleBytes;
 
 
   private int extractorDrainState = STATE_IDLE;
 
-  PassThroughCoder(MediaExtractor extractor, int trackIndex, Muxer muxer, int sampleType) {
+  PassThroughCoder(Extractor extractor, int trackIndex, Muxer muxer, int sampleType) {
     this.extractor = extractor;
     this.trackIndex = trackIndex;
     this.muxer = muxer;
@@ -61,7 +71,7 @@ final class PassThroughCoder implements Coder {
       bufferSize = FALLBACK_BUFFER_SIZE;
     }
 
-    byteBuffer = ByteBuffer.allocateDirect(bufferSize)
+    byteBuffer = DirectBufferPool.shared().lease(bufferSize)
         .order(ByteOrder.nativeOrder());
   }
 
@@ -69,6 +79,10 @@ final class PassThroughCoder implements Coder {
     /* no opt */
   }
 
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
   @Override public MediaFormat determinedFormat() {
     return actualOutputFormat;
   }
@@ -87,6 +101,9 @@ final class PassThroughCoder implements Coder {
 
     if (trackIndex != this.trackIndex) return false;
 
+    // copy from extractor to muxer is all this coder drains
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
     byteBuffer.clear();
 
     int sampleSize = extractor.readSampleData(byteBuffer, 0);
@@ -99,9 +116,12 @@ final class PassThroughCoder implements Coder {
     muxer.writeSample(sampleType, byteBuffer, bufferInfo);
 
     presentationTimeUs = bufferInfo.presentationTimeUs;
+    frames++;
+    sampleBytes += sampleSize;
 
     extractor.advance();
 
+    if (probe != null) probe.record(STAGE_DRAIN_EXTRACTOR, sampleType, startNs, System.nanoTime());
     return true;
   }
 
@@ -109,6 +129,14 @@ final class PassThroughCoder implements Coder {
     return presentationTimeUs;
   }
 
+  @Override public long frames() {
+    return frames;
+  }
+
+  @Override public long sampleBytes() {
+    return sampleBytes;
+  }
+
   @Override public int drainExtractor(long timeout) {
     /* no opt */
     return 0;
@@ -124,11 +152,20 @@ final class PassThroughCoder implements Coder {
     return 0;
   }
 
+  @Override public void report(TrackReport report) {
+    report.sampleType = sampleType;
+    report.transcoded = false;
+    report.framesEncoded = frames;
+  }
+
   @Override public boolean finished() {
     return extractorDrainState == STATE_END_OF_STREAM;
   }
 
   @Override public void release() {
-    /* no opt */
+    if (byteBuffer != null) {
+      DirectBufferPool.shared().release(byteBuffer);
+      byteBuffer = null;
+    }
   }
 }
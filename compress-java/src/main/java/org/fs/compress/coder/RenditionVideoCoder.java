@@ -0,0 +1,431 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.coder;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.text.TextUtils;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Codec;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.Extractor;
+
+import static org.fs.compress.util.Constants.CONFIGURE_FLAG_DECODE;
+import static org.fs.compress.util.Constants.KEY_ROTATION_DEGREES;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_DECODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_ENCODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_EXTRACTOR;
+import static org.fs.compress.util.Constants.STAGE_FRAME_DRAW;
+import static org.fs.compress.util.Constants.STAGE_FRAME_WAIT;
+
+/**
+ * Decodes video track once and draws every frame in to encoder of each rendition, encoder contexts share the first
+ * one so texture of decoder is visible to all of them.
+ */
+final class RenditionVideoCoder implements RenditionCoder {
+
+  private static final int STATE_IDLE = 0x00;
+  private static final int STATE_END_OF_STREAM = 0x01;
+  private static final int STATE_PROGRESS = 0x02;
+
+  private final CodecProvider provider;
+  private final Extractor extractor;
+  private final int trackIndex;
+  private final List<MediaFormat> outputFormats;
+  private final List<Muxer> muxers;
+  private final EventLoop eventLoop;
+  private final int size;
+
+  private final MediaCodec.BufferInfo decoderBufferInfo = new MediaCodec.BufferInfo();
+  private final MediaCodec.BufferInfo encoderBufferInfo = new MediaCodec.BufferInfo();
+
+  private Codec decoder;
+  private OutputSurface outputSurface;
+
+  private final Codec[] encoders;
+  private final InputSurface[] inputSurfaces;
+  private final MediaFormat[] actualOutputFormats;
+  private final int[] stateDrainEncoders;
+  private final int[] stateEncoders;
+  private final long[] presentationTimesUs;
+  private final long[] frames;
+  private long sampleBytes;
+
+  private String decoderName;
+  private String encoderNames;
+  private long samples;
+  private long decodedFrames;
+  private long renderedFrames;
+  private int peakDecodeQueueSize;
+  private int peakEncodeQueueSize;
+
+  private PipelineProbe probe;
+
+  // set while codecs end their stream for a preempted job, samples of other tracks no longer hold it back
+  private boolean suspending;
+
+  private int stateDrainExtractor = STATE_IDLE;
+  private int stateDrainDecoder = STATE_IDLE;
+  private int stateDecoder = STATE_IDLE;
+
+  RenditionVideoCoder(CodecProvider provider, Extractor extractor, int trackIndex, List<MediaFormat> outputFormats, List<Muxer> muxers, EventLoop eventLoop) {
+    if (outputFormats.isEmpty() || outputFormats.size() != muxers.size()) {
+      throw new IllegalArgumentException("every rendition needs an output format and a muxer.");
+    }
+    this.provider = provider;
+    this.extractor = extractor;
+    this.trackIndex = trackIndex;
+    this.outputFormats = outputFormats;
+    this.muxers = muxers;
+    this.eventLoop = eventLoop;
+    size = outputFormats.size();
+    encoders = new Codec[size];
+    inputSurfaces = new InputSurface[size];
+    actualOutputFormats = new MediaFormat[size];
+    stateDrainEncoders = new int[size];
+    stateEncoders = new int[size];
+    presentationTimesUs = new long[size];
+    frames = new long[size];
+  }
+
+  @Override public void setup() {
+    extractor.selectTrack(trackIndex);
+    StringBuilder names = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      MediaFormat outputFormat = outputFormats.get(i);
+      String mime = outputFormat.getString(MediaFormat.KEY_MIME);
+      if (TextUtils.isEmpty(mime)) {
+        throw new IllegalArgumentException("mimeType is null");
+      }
+      Codec encoder = provider.newEncoder(mime, eventLoop);
+      encoders[i] = encoder;
+      names.append(i == 0 ? "" : ",").append(encoder.name());
+      encoder.configure(outputFormat, MediaCodec.CONFIGURE_FLAG_ENCODE);
+      // first surface owns the context, rest share its objects
+      inputSurfaces[i] = provider.newInputSurface(encoder, i == 0 ? null : inputSurfaces[0]);
+      encoder.start();
+      stateEncoders[i] = STATE_PROGRESS;
+    }
+
+    MediaFormat inputFormat = extractor.getTrackFormat(trackIndex);
+    if (inputFormat.containsKey(KEY_ROTATION_DEGREES)) {
+      inputFormat.setInteger(KEY_ROTATION_DEGREES, 0);
+    }
+    // texture of decoder is created on first context
+    inputSurfaces[0].makeCurrent();
+    outputSurface = provider.newOutputSurface();
+    String mime = inputFormat.getString(MediaFormat.KEY_MIME);
+    if (TextUtils.isEmpty(mime)) {
+      throw new IllegalArgumentException("mimeType is null");
+    }
+    decoder = provider.newDecoder(mime, outputSurface, eventLoop);
+    decoderName = decoder.name();
+    encoderNames = names.toString();
+    decoder.configure(inputFormat, CONFIGURE_FLAG_DECODE);
+    decoder.start();
+    stateDecoder = STATE_PROGRESS;
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public int renditions() {
+    return size;
+  }
+
+  @Override public MediaFormat determinedFormat() {
+    return actualOutputFormats[0];
+  }
+
+  @Override public MediaFormat determinedFormat(int rendition) {
+    return actualOutputFormats[rendition];
+  }
+
+  @Override public boolean stepPipeline() {
+    boolean busy = false;
+
+    int status;
+    while (drainEncoder(0) != DRAIN_STATE_NONE) busy = true;
+    do {
+      status = drainDecoder(0);
+      if (status != DRAIN_STATE_NONE) busy = true;
+      // NOTE: not repeating to keep from deadlock when any encoder is full.
+    } while (status == DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY);
+    while (drainExtractor(0) != DRAIN_STATE_NONE) busy = true;
+
+    return busy;
+  }
+
+  @Override public int drainDecoder(long timeout) {
+    if (stateDrainDecoder == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
+
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+    int result = decoder.dequeueOutputBuffer(decoderBufferInfo, timeout);
+    switch (result) {
+      case MediaCodec.INFO_TRY_AGAIN_LATER: return DRAIN_STATE_NONE;
+      case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
+      case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED: return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
+    }
+
+    if ((decoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+      for (int i = 0; i < size; i++) {
+        encoders[i].signalEndOfInputStream();
+      }
+      stateDrainDecoder = STATE_END_OF_STREAM;
+      decoderBufferInfo.size = 0;
+    }
+
+    boolean shouldRender = decoderBufferInfo.size > 0;
+    decoder.releaseOutputBuffer(result, shouldRender);
+    if (stateDrainDecoder != STATE_END_OF_STREAM) decodedFrames++;
+    if (shouldRender) {
+      renderedFrames++;
+      // slowest rendition holds most frames
+      peakEncodeQueueSize = Math.max(peakEncodeQueueSize, (int) (renderedFrames - frames()));
+    }
+    if (shouldRender) {
+      // frame is latched on owner context, then drawn once per rendition
+      inputSurfaces[0].makeCurrent();
+      final long waitNs = probe != null ? System.nanoTime() : 0L;
+      outputSurface.awaitNextFrame(10000);
+      final long drawNs = probe != null ? System.nanoTime() : 0L;
+      for (int i = 0; i < size; i++) {
+        InputSurface inputSurface = inputSurfaces[i];
+        inputSurface.makeCurrent();
+        outputSurface.drawNextFrame();
+        inputSurface.presentationTimeUs(decoderBufferInfo.presentationTimeUs * 1000);
+        inputSurface.swapBuffers();
+      }
+      if (probe != null) {
+        probe.record(STAGE_FRAME_WAIT, SAMPLE_VIDEO, waitNs, drawNs);
+        probe.record(STAGE_FRAME_DRAW, SAMPLE_VIDEO, drawNs, System.nanoTime());
+      }
+    }
+
+    if (probe != null) probe.record(STAGE_DRAIN_DECODER, SAMPLE_VIDEO, startNs, System.nanoTime());
+    return DRAIN_STATE_CONSUMED;
+  }
+
+  @Override public int drainEncoder(long timeout) {
+    int status = DRAIN_STATE_NONE;
+    for (int i = 0; i < size; i++) {
+      status = Math.max(status, drainEncoder(i, timeout));
+    }
+    // codecs are let go once every rendition ended its stream
+    if (suspending && decoder != null && finished()) releaseCodecs();
+    return status;
+  }
+
+  private int drainEncoder(int rendition, long timeout) {
+    if (stateDrainEncoders[rendition] == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
+
+    Codec encoder = encoders[rendition];
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+    int result = encoder.dequeueOutputBuffer(encoderBufferInfo, timeout);
+    switch (result) {
+      case MediaCodec.INFO_TRY_AGAIN_LATER: return DRAIN_STATE_NONE;
+      case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
+        // encoders of a resumed coder tell formats again, tracks keep first ones
+        if (actualOutputFormats[rendition] == null) {
+          actualOutputFormats[rendition] = encoder.getOutputFormat();
+          muxers.get(rendition).outputFormat(SAMPLE_VIDEO, actualOutputFormats[rendition]);
+        }
+        return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
+      case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED:
+        return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
+    }
+
+    if (actualOutputFormats[rendition] == null) {
+      throw new IllegalArgumentException("can not find outputFormat");
+    }
+
+    if ((encoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+      stateDrainEncoders[rendition] = STATE_END_OF_STREAM;
+      if (suspending) {
+        // track goes on once job is resumed, so its end is not written
+        encoder.releaseOutputBuffer(result, false);
+        return DRAIN_STATE_NONE;
+      }
+      encoderBufferInfo.set(0, 0, 0, encoderBufferInfo.flags);
+    }
+
+    if ((encoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+      encoder.releaseOutputBuffer(result, false);
+      return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
+    }
+
+    ByteBuffer byteBuffer = encoder.getOutputBuffer(result);
+
+    muxers.get(rendition).writeSample(SAMPLE_VIDEO, byteBuffer, encoderBufferInfo);
+    presentationTimesUs[rendition] = encoderBufferInfo.presentationTimeUs;
+    if (encoderBufferInfo.size > 0) frames[rendition]++;
+
+    encoder.releaseOutputBuffer(result, false);
+    if (probe != null) probe.record(STAGE_DRAIN_ENCODER, SAMPLE_VIDEO, startNs, System.nanoTime());
+    return DRAIN_STATE_CONSUMED;
+  }
+
+  @Override public int drainExtractor(long timeout) {
+    if (stateDrainExtractor == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
+
+    int trackIndex = extractor.getSampleTrackIndex();
+    if (!suspending && trackIndex >= 0 && trackIndex != this.trackIndex) return DRAIN_STATE_NONE;
+
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+    int result = decoder.dequeueInputBuffer(timeout);
+    if (result < 0) return DRAIN_STATE_NONE;
+
+    if (suspending || trackIndex < 0) {
+      stateDrainExtractor = STATE_END_OF_STREAM;
+      decoder.queueInputBuffer(result, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+      return DRAIN_STATE_NONE;
+    }
+
+    ByteBuffer byteBuffer = decoder.getInputBuffer(result);
+
+    int sampleSize = extractor.readSampleData(byteBuffer, 0);
+    sampleBytes += sampleSize;
+
+    boolean isKeyFrame = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+    decoder.queueInputBuffer(result, 0, sampleSize, extractor.getSampleTime(), isKeyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+    samples++;
+    peakDecodeQueueSize = Math.max(peakDecodeQueueSize, (int) (samples - decodedFrames));
+
+    extractor.advance();
+
+    if (probe != null) probe.record(STAGE_DRAIN_EXTRACTOR, SAMPLE_VIDEO, startNs, System.nanoTime());
+    return DRAIN_STATE_CONSUMED;
+  }
+
+  // slowest rendition decides how far this track is
+  @Override public long presentationTimeUs() {
+    long presentationTimeUs = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      presentationTimeUs = Math.min(presentationTimeUs, presentationTimesUs[i]);
+    }
+    return presentationTimeUs;
+  }
+
+  @Override public long frames() {
+    long count = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      count = Math.min(count, frames[i]);
+    }
+    return count;
+  }
+
+  @Override public long sampleBytes() {
+    return sampleBytes;
+  }
+
+  @Override public boolean finished() {
+    for (int i = 0; i < size; i++) {
+      if (stateDrainEncoders[i] != STATE_END_OF_STREAM) return false;
+    }
+    return true;
+  }
+
+  // frames are counted for slowest rendition
+  @Override public void report(TrackReport report) {
+    report.sampleType = SAMPLE_VIDEO;
+    report.transcoded = true;
+    report.decoderName = decoderName;
+    report.encoderName = encoderNames;
+    report.framesDecoded = decodedFrames;
+    report.framesRendered = renderedFrames;
+    report.framesEncoded = frames();
+    report.peakDecodeQueueSize = peakDecodeQueueSize;
+    report.peakEncodeQueueSize = peakEncodeQueueSize;
+  }
+
+  @Override public boolean suspend() {
+    if (finished()) {
+      // track already ended, codecs only wait for release
+      releaseCodecs();
+    } else {
+      suspending = true;
+    }
+    return true;
+  }
+
+  @Override public boolean suspended() {
+    return finished();
+  }
+
+  @Override public void resume() {
+    if (!suspending) return;
+    suspending = false;
+    stateDrainExtractor = STATE_IDLE;
+    stateDrainDecoder = STATE_IDLE;
+    for (int i = 0; i < size; i++) {
+      stateDrainEncoders[i] = STATE_IDLE;
+    }
+    setup();
+  }
+
+  @Override public void release() {
+    releaseCodecs();
+  }
+
+  private void releaseCodecs() {
+    if (outputSurface != null) {
+      outputSurface.release();
+      outputSurface = null;
+    }
+
+    // shared contexts go first, owner context is released last
+    for (int i = size - 1; i >= 0; i--) {
+      if (inputSurfaces[i] != null) {
+        inputSurfaces[i].release();
+        inputSurfaces[i] = null;
+      }
+    }
+
+    if (decoder != null) {
+      if (stateDecoder == STATE_PROGRESS) {
+        decoder.stop();
+        stateDecoder = STATE_IDLE;
+      }
+      decoder.release();
+      decoder = null;
+    }
+
+    for (int i = 0; i < size; i++) {
+      Codec encoder = encoders[i];
+      if (encoder != null) {
+        if (stateEncoders[i] == STATE_PROGRESS) {
+          encoder.stop();
+          stateEncoders[i] = STATE_IDLE;
+        }
+        encoder.release();
+        encoders[i] = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.coder;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.replay.SampleRecording;
+import org.fs.compress.util.SampleType;
+
+import static org.fs.compress.util.Constants.RECORD_ENCODED;
+import static org.fs.compress.util.Constants.RECORD_EXTRACTED;
+import static org.fs.compress.util.Constants.RECORD_FORMAT;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_ENCODER;
+
+/**
+ * Plays records of one track back in to muxer, no codec or extractor is involved. Encoded samples are written with
+ * recorded size, flags and presentation time over a zeroed payload; paced replay holds every record until as much time
+ * as recorded has passed.
+ */
+final class ReplayCoder implements Coder {
+
+  private final SampleRecording recording;
+  @SampleType private final int sampleType;
+  private final Muxer muxer;
+  private final boolean paced;
+
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+  private final ByteBuffer byteBuffer;
+
+  private PipelineProbe probe;
+  private MediaFormat determinedFormat;
+
+  private int cursor;
+  private long startNs;
+
+  private long presentationTimeUs;
+  private long frames;
+  private long sampleBytes;
+
+  ReplayCoder(SampleRecording recording, int sampleType, Muxer muxer, boolean paced) {
+    this.recording = recording;
+    this.sampleType = sampleType;
+    this.muxer = muxer;
+    this.paced = paced;
+    byteBuffer = ByteBuffer.allocateDirect(Math.max(1, recording.maxSampleSize()))
+        .order(ByteOrder.nativeOrder());
+    cursor = next(0);
+  }
+
+  @Override public void setup() {
+    startNs = System.nanoTime();
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public MediaFormat determinedFormat() {
+    return determinedFormat;
+  }
+
+  @Override public boolean stepPipeline() {
+    final int size = recording.size();
+    // extracted records only count towards bytes read, one encoded sample is written per step
+    boolean stepped = false;
+    while (cursor < size && !stepped) {
+      final int index = cursor;
+      if (paced && System.nanoTime() - startNs < recording.timeNs(index)) break;
+      cursor = next(index + 1);
+
+      final int kind = recording.kind(index);
+      if (kind == RECORD_FORMAT) {
+        determinedFormat = recording.format(index);
+        muxer.outputFormat(sampleType, determinedFormat);
+        stepped = true;
+      } else if (kind == RECORD_EXTRACTED) {
+        sampleBytes += recording.sampleSize(index);
+      } else if (kind == RECORD_ENCODED) {
+        write(index);
+        stepped = true;
+      }
+    }
+    return stepped;
+  }
+
+  private void write(int index) {
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+
+    final int sampleSize = recording.sampleSize(index);
+    byteBuffer.clear();
+    bufferInfo.set(0, sampleSize, recording.presentationTimeUs(index), recording.flags(index));
+    muxer.writeSample(sampleType, byteBuffer, bufferInfo);
+
+    if (sampleSize > 0) {
+      presentationTimeUs = bufferInfo.presentationTimeUs;
+      frames++;
+    }
+
+    if (probe != null) probe.record(STAGE_DRAIN_ENCODER, sampleType, startNs, System.nanoTime());
+  }
+
+  // index of first record of this track at or after index
+  private int next(int index) {
+    final int size = recording.size();
+    while (index < size && recording.sampleType(index) != sampleType) {
+      index++;
+    }
+    return index;
+  }
+
+  @Override public long presentationTimeUs() {
+    return presentationTimeUs;
+  }
+
+  @Override public long frames() {
+    return frames;
+  }
+
+  @Override public long sampleBytes() {
+    return sampleBytes;
+  }
+
+  @Override public int drainExtractor(long timeout) {
+    /* no opt */
+    return DRAIN_STATE_NONE;
+  }
+
+  @Override public int drainDecoder(long timeout) {
+    /* no opt */
+    return DRAIN_STATE_NONE;
+  }
+
+  @Override public int drainEncoder(long timeout) {
+    /* no opt */
+    return DRAIN_STATE_NONE;
+  }
+
+  // recorded samples are written as they are, no codec is involved
+  @Override public void report(TrackReport report) {
+    report.sampleType = sampleType;
+    report.transcoded = false;
+    report.framesEncoded = frames;
+  }
+
+  @Override public boolean finished() {
+    return cursor >= recording.size();
+  }
+
+  @Override public void release() {
+    /* no opt */
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.coder;
+
+import android.media.MediaFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.data.StageOccupancy;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.queue.LongQueue;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.Extractor;
+
+/**
+ * Runs {@link VideoCoder} as three stages, each on its own thread; extractor feed in to decoder, decoder drain and GL
+ * render in to encoder, encoder drain in to muxer. Stages hand presentation times of in flight frames over bounded
+ * single producer single consumer queues, a full queue holds the upstream stage back until downstream catches up.
+ * Extractor must not be shared with other coders.
+ */
+final class StagedVideoCoder implements StagedCoder {
+
+  // codec waits block in codec itself, no polling
+  private static final long WAIT_CODER_US = 10000;
+  private static final long WAIT_STAGE_NANOS = 1000000;
+
+  private final VideoCoder coder;
+  private final EventLoop eventLoop;
+
+  // samples queued in to decoder, not rendered yet
+  private final LongQueue decodeQueue;
+  // frames rendered in to encoder, not muxed yet
+  private final LongQueue encodeQueue;
+
+  private Thread feedThread;
+  private Thread renderThread;
+  private Thread encodeThread;
+
+  private volatile boolean stopped;
+  private volatile Throwable error;
+
+  private volatile long muxedFrames;
+  private long steppedFrames;
+
+  private volatile int peakDecodeQueueSize;
+  private volatile int peakEncodeQueueSize;
+  private volatile long feedStalls;
+  private volatile long renderStalls;
+
+  StagedVideoCoder(CodecProvider provider, Extractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer, int capacity, EventLoop eventLoop) {
+    // decoder keeps reordered frames before its first output, feed would wait on it forever with a shorter queue
+    if (capacity < EngineOptions.MIN_STAGE_QUEUE_CAPACITY) {
+      throw new IllegalArgumentException("stage queue capacity " + capacity + " is below " + EngineOptions.MIN_STAGE_QUEUE_CAPACITY);
+    }
+    // stages block on codecs with timeouts, so coder itself stays synchronous
+    this.coder = new VideoCoder(provider, extractor, trackIndex, outputFormat, muxer, null);
+    this.eventLoop = eventLoop;
+    decodeQueue = LongQueue.newSpscInstance(capacity);
+    encodeQueue = LongQueue.newSpscInstance(capacity);
+  }
+
+  @Override public void setup() {
+    final CountDownLatch latch = new CountDownLatch(1);
+    // EGL context and surface texture are bound to render thread, so coder is set up there
+    renderThread = new Thread(() -> {
+      try {
+        coder.setup();
+      } catch (Throwable e) {
+        error = e;
+      } finally {
+        latch.countDown();
+      }
+      if (error == null) {
+        render();
+      } else {
+        coder.releaseSurfaces();
+      }
+    }, "CompressionRender");
+    renderThread.start();
+
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalArgumentException(e);
+    }
+    throwIfError();
+
+    feedThread = new Thread(this::feed, "CompressionFeed");
+    feedThread.start();
+    encodeThread = new Thread(this::encode, "CompressionEncode");
+    encodeThread.start();
+  }
+
+  // stages drive coder's own drains, so they are timed there
+  @Override public void probe(PipelineProbe probe) {
+    coder.probe(probe);
+  }
+
+  @Override public MediaFormat determinedFormat() {
+    return coder.determinedFormat();
+  }
+
+  @Override public boolean stepPipeline() {
+    throwIfError();
+    long frames = muxedFrames;
+    boolean stepped = frames != steppedFrames;
+    steppedFrames = frames;
+    return stepped;
+  }
+
+  @Override public long presentationTimeUs() {
+    return coder.presentationTimeUs();
+  }
+
+  @Override public long frames() {
+    return coder.frames();
+  }
+
+  @Override public long sampleBytes() {
+    return coder.sampleBytes();
+  }
+
+  @Override public int drainExtractor(long timeout) {
+    /* driven by feed stage */
+    return DRAIN_STATE_NONE;
+  }
+
+  @Override public int drainDecoder(long timeout) {
+    /* driven by render stage */
+    return DRAIN_STATE_NONE;
+  }
+
+  @Override public int drainEncoder(long timeout) {
+    /* driven by encode stage */
+    return DRAIN_STATE_NONE;
+  }
+
+  @Override public boolean finished() {
+    return coder.finished();
+  }
+
+  @Override public void occupancy(StageOccupancy occupancy) {
+    occupancy.capacity = decodeQueue.capacity();
+    occupancy.decodeQueueSize = decodeQueue.size();
+    occupancy.peakDecodeQueueSize = peakDecodeQueueSize;
+    occupancy.encodeQueueSize = encodeQueue.size();
+    occupancy.peakEncodeQueueSize = peakEncodeQueueSize;
+    occupancy.feedStalls = feedStalls;
+    occupancy.renderStalls = renderStalls;
+  }
+
+  // queues between stages are what is in flight here, not counts of coder itself
+  @Override public void report(TrackReport report) {
+    coder.report(report);
+    report.peakDecodeQueueSize = peakDecodeQueueSize;
+    report.peakEncodeQueueSize = peakEncodeQueueSize;
+  }
+
+  @Override public void release() {
+    stopped = true;
+    // render thread releases EGL surfaces it owns before it exits
+    join(feedThread);
+    join(encodeThread);
+    join(renderThread);
+    feedThread = null;
+    encodeThread = null;
+    renderThread = null;
+
+    coder.release();
+  }
+
+  private void feed() {
+    try {
+      while (!stopped && !coder.extractorFinished()) {
+        if (decodeQueue.size() >= decodeQueue.capacity()) {
+          feedStalls++;
+          LockSupport.parkNanos(WAIT_STAGE_NANOS);
+          continue;
+        }
+        if (coder.drainExtractor(WAIT_CODER_US) == DRAIN_STATE_CONSUMED) {
+          decodeQueue.offer(coder.sampleTimeUs());
+          peakDecodeQueueSize = Math.max(peakDecodeQueueSize, decodeQueue.size());
+        }
+      }
+    } catch (Throwable e) {
+      fail(e);
+    }
+  }
+
+  private void render() {
+    try {
+      while (!stopped && !coder.decoderFinished()) {
+        if (encodeQueue.size() >= encodeQueue.capacity()) {
+          renderStalls++;
+          LockSupport.parkNanos(WAIT_STAGE_NANOS);
+          continue;
+        }
+        if (coder.drainDecoder(WAIT_CODER_US) != DRAIN_STATE_CONSUMED) continue;
+
+        if (coder.decoderFinished()) {
+          decodeQueue.clear();
+        } else {
+          // decoder outputs in presentation order, anything queued before this frame is done or dropped
+          pollThrough(decodeQueue, coder.decodedTimeUs());
+        }
+        LockSupport.unpark(feedThread);
+
+        if (coder.rendered()) {
+          encodeQueue.offer(coder.decodedTimeUs());
+          peakEncodeQueueSize = Math.max(peakEncodeQueueSize, encodeQueue.size());
+        }
+      }
+      // keep input surface until encoder drained every frame rendered in to it
+      while (!stopped && !coder.finished()) {
+        LockSupport.parkNanos(WAIT_STAGE_NANOS);
+      }
+    } catch (Throwable e) {
+      fail(e);
+    } finally {
+      // surfaces can only be released from the thread holding their EGL context
+      coder.releaseSurfaces();
+    }
+  }
+
+  private void encode() {
+    try {
+      while (!stopped && !coder.finished()) {
+        if (coder.drainEncoder(WAIT_CODER_US) != DRAIN_STATE_CONSUMED) continue;
+
+        if (coder.finished()) {
+          encodeQueue.clear();
+        } else {
+          pollThrough(encodeQueue, coder.presentationTimeUs());
+          muxedFrames++;
+        }
+        LockSupport.unpark(renderThread);
+        if (eventLoop != null) {
+          eventLoop.signal();
+        }
+      }
+    } catch (Throwable e) {
+      fail(e);
+    }
+    LockSupport.unpark(renderThread);
+    if (eventLoop != null) {
+      eventLoop.signal();
+    }
+  }
+
+  private static void pollThrough(LongQueue queue, long presentationTimeUs) {
+    while (!queue.isEmpty() && queue.peek() <= presentationTimeUs) {
+      queue.poll();
+    }
+  }
+
+  private void fail(Throwable e) {
+    if (error == null) {
+      error = e;
+    }
+    stopped = true;
+    if (eventLoop != null) {
+      eventLoop.signal();
+    }
+  }
+
+  private void throwIfError() {
+    final Throwable e = error;
+    if (e != null) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static void join(Thread thread) {
+    if (thread == null) return;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
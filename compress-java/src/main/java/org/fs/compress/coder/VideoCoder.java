@@ -19,16 +19,25 @@ import android.media.MediaCodec;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.text.TextUtils;
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import org.fs.compress.buffer.MediaCodecBuffer;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
 import org.fs.compress.io.InputSurface;
 import org.fs.compress.io.OutputSurface;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Codec;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.Extractor;
 
 import static org.fs.compress.util.Constants.CONFIGURE_FLAG_DECODE;
 import static org.fs.compress.util.Constants.KEY_ROTATION_DEGREES;
 import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_DECODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_ENCODER;
+import static org.fs.compress.util.Constants.STAGE_DRAIN_EXTRACTOR;
+import static org.fs.compress.util.Constants.STAGE_FRAME_DRAW;
+import static org.fs.compress.util.Constants.STAGE_FRAME_WAIT;
 
 final class VideoCoder implements Coder {
 
@@ -36,38 +45,69 @@ final class VideoCoder implements Coder {
   private static final int STATE_END_OF_STREAM = 0x01;
   private static final int STATE_PROGRESS = 0x02;
 
-  private final MediaExtractor extractor;
+  private final CodecProvider provider;
+  private final Extractor extractor;
   private final int trackIndex;
   private final MediaFormat outputFormat;
   private final Muxer muxer;
+  private final EventLoop eventLoop;
+  // segmented mode stops feeding at next segment's sync sample
+  private final long endTimeUs;
 
-  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+  // decoder and encoder are drained from different threads in staged mode
+  private final MediaCodec.BufferInfo decoderBufferInfo = new MediaCodec.BufferInfo();
+  private final MediaCodec.BufferInfo encoderBufferInfo = new MediaCodec.BufferInfo();
 
-  private MediaCodec encoder;
-  private MediaCodec decoder;
+  private Codec encoder;
+  private Codec decoder;
 
-  private MediaCodecBuffer decoderInputBuffers;
-  private MediaCodecBuffer encoderOutputBuffers;
-
-  private MediaFormat actualOutputFormat;
+  private volatile MediaFormat actualOutputFormat;
 
   private OutputSurface outputSurface;
   private InputSurface inputSurface;
 
-  private int stateDrainExtractor = STATE_IDLE;
-  private int stateDrainEncoder  = STATE_IDLE;
-  private int stateDrainDecoder = STATE_IDLE;
+  private volatile PipelineProbe probe;
+
+  private volatile int stateDrainExtractor = STATE_IDLE;
+  private volatile int stateDrainEncoder  = STATE_IDLE;
+  private volatile int stateDrainDecoder = STATE_IDLE;
 
   private int stateEncoder = STATE_IDLE;
   private int stateDecoder = STATE_IDLE;
 
-  private long presentationTimeUs;
+  // set while codecs end their stream for a preempted job, samples of other tracks no longer hold it back
+  private volatile boolean suspending;
+
+  private volatile long presentationTimeUs;
+  private volatile long frames;
+  private volatile long sampleBytes;
+
+  // stages of staged mode count on their own threads, each counter has a single writer
+  private String decoderName;
+  private String encoderName;
+  private volatile long samples;
+  private volatile long decodedFrames;
+  private volatile long renderedFrames;
+  private int peakDecodeQueueSize;
+  private int peakEncodeQueueSize;
+
+  // last sample queued in to decoder and last frame drained from it, staged mode tracks its queues with them
+  private long sampleTimeUs;
+  private long decodedTimeUs;
+  private boolean rendered;
+
+  VideoCoder(CodecProvider provider, Extractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer, EventLoop eventLoop) {
+    this(provider, extractor, trackIndex, outputFormat, muxer, eventLoop, Long.MAX_VALUE);
+  }
 
-  VideoCoder(MediaExtractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer) {
+  VideoCoder(CodecProvider provider, Extractor extractor, int trackIndex, MediaFormat outputFormat, Muxer muxer, EventLoop eventLoop, long endTimeUs) {
+    this.provider = provider;
     this.extractor = extractor;
     this.trackIndex = trackIndex;
     this.outputFormat = outputFormat;
     this.muxer = muxer;
+    this.eventLoop = eventLoop;
+    this.endTimeUs = endTimeUs;
   }
 
   @Override public void setup() {
@@ -76,21 +116,16 @@ final class VideoCoder implements Coder {
     if (TextUtils.isEmpty(mime)) {
       throw new IllegalArgumentException("mimeType is null");
     }
-    try {
-      encoder = MediaCodec.createEncoderByType(mime);
-    } catch (IOException e) {
-      throw new IllegalArgumentException(e);
-    }
+    encoder = provider.newEncoder(mime, eventLoop);
+    encoderName = encoder.name();
     // configure encoder
-    encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    encoder.configure(outputFormat, MediaCodec.CONFIGURE_FLAG_ENCODE);
     // setup surface
-    inputSurface = InputSurface.newInstance(encoder.createInputSurface());
+    inputSurface = provider.newInputSurface(encoder);
     inputSurface.makeCurrent();
     // start encoder
     encoder.start();
     stateEncoder = STATE_PROGRESS;
-    // create buffers from encoder
-    encoderOutputBuffers = MediaCodecBuffer.newInstance(encoder);
 
     MediaFormat inputFormat = extractor.getTrackFormat(trackIndex);
     if (inputFormat.containsKey(KEY_ROTATION_DEGREES)) {
@@ -98,23 +133,22 @@ final class VideoCoder implements Coder {
       inputFormat.setInteger(KEY_ROTATION_DEGREES, 0);
     }
     // create output surface
-    outputSurface = OutputSurface.newInstance();
+    outputSurface = provider.newOutputSurface();
     mime = inputFormat.getString(MediaFormat.KEY_MIME);
     if (TextUtils.isEmpty(mime)) {
       throw new IllegalArgumentException("mimeType is null");
     }
-    try {
-      decoder = MediaCodec.createDecoderByType(mime);
-    } catch (IOException e) {
-      throw new IllegalArgumentException(e);
-    }
+    decoder = provider.newDecoder(mime, outputSurface, eventLoop);
+    decoderName = decoder.name();
     // configure this
-    decoder.configure(inputFormat, outputSurface.surface(), null, CONFIGURE_FLAG_DECODE);
+    decoder.configure(inputFormat, CONFIGURE_FLAG_DECODE);
     // start decoder
     decoder.start();
     stateDecoder = STATE_PROGRESS;
-    // create buffers from decoder
-    decoderInputBuffers = MediaCodecBuffer.newInstance(decoder);
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
   }
 
   @Override public MediaFormat determinedFormat() {
@@ -139,44 +173,64 @@ final class VideoCoder implements Coder {
   @Override public int drainDecoder(long timeout) {
     if (stateDrainDecoder == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
 
-    int result = decoder.dequeueOutputBuffer(bufferInfo, timeout);
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+    int result = decoder.dequeueOutputBuffer(decoderBufferInfo, timeout);
     switch (result) {
       case MediaCodec.INFO_TRY_AGAIN_LATER: return DRAIN_STATE_NONE;
       case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
       case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED: return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
     }
 
-    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+    if ((decoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
       encoder.signalEndOfInputStream();
       stateDrainDecoder = STATE_END_OF_STREAM;
-      bufferInfo.size = 0;
+      decoderBufferInfo.size = 0;
     }
 
-    boolean shouldRender = bufferInfo.size > 0;
+    boolean shouldRender = decoderBufferInfo.size > 0;
+    decodedTimeUs = decoderBufferInfo.presentationTimeUs;
+    rendered = shouldRender;
+    if (stateDrainDecoder != STATE_END_OF_STREAM) decodedFrames++;
+    if (shouldRender) {
+      renderedFrames++;
+      peakEncodeQueueSize = Math.max(peakEncodeQueueSize, (int) (renderedFrames - frames));
+    }
 
     decoder.releaseOutputBuffer(result, shouldRender);
     if (shouldRender) {
+      final long waitNs = probe != null ? System.nanoTime() : 0L;
       outputSurface.awaitNextFrame(10000);
+      final long drawNs = probe != null ? System.nanoTime() : 0L;
       outputSurface.drawNextFrame();
-      inputSurface.presentationTimeUs(bufferInfo.presentationTimeUs * 1000);
+      inputSurface.presentationTimeUs(decoderBufferInfo.presentationTimeUs * 1000);
       inputSurface.swapBuffers();
+      if (probe != null) {
+        probe.record(STAGE_FRAME_WAIT, SAMPLE_VIDEO, waitNs, drawNs);
+        probe.record(STAGE_FRAME_DRAW, SAMPLE_VIDEO, drawNs, System.nanoTime());
+      }
     }
 
+    if (probe != null) probe.record(STAGE_DRAIN_DECODER, SAMPLE_VIDEO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
   @Override public int drainEncoder(long timeout) {
     if (stateDrainEncoder == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
 
-    int result = encoder.dequeueOutputBuffer(bufferInfo, timeout);
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
+    int result = encoder.dequeueOutputBuffer(encoderBufferInfo, timeout);
     switch (result) {
       case MediaCodec.INFO_TRY_AGAIN_LATER: return DRAIN_STATE_NONE;
       case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
-        actualOutputFormat = encoder.getOutputFormat();
-        muxer.outputFormat(SAMPLE_VIDEO, actualOutputFormat);
+        // encoder of a resumed coder tells format again, track keeps first one
+        if (actualOutputFormat == null) {
+          actualOutputFormat = encoder.getOutputFormat();
+          muxer.outputFormat(SAMPLE_VIDEO, actualOutputFormat);
+        }
         return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
       case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED:
-        encoderOutputBuffers.clear();
         return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
     }
 
@@ -184,22 +238,30 @@ final class VideoCoder implements Coder {
       throw new IllegalArgumentException("can not find outputFormat");
     }
 
-    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+    if ((encoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
       stateDrainEncoder = STATE_END_OF_STREAM;
-      bufferInfo.set(0, 0, 0, bufferInfo.flags);
+      if (suspending) {
+        // track goes on once job is resumed, so its end is not written
+        encoder.releaseOutputBuffer(result, false);
+        releaseCodecs();
+        return DRAIN_STATE_NONE;
+      }
+      encoderBufferInfo.set(0, 0, 0, encoderBufferInfo.flags);
     }
 
-    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+    if ((encoderBufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
       encoder.releaseOutputBuffer(result, false);
       return DRAIN_STATE_SHOULD_RETRY_IMMEDIATELY;
     }
 
-    ByteBuffer byteBuffer = encoderOutputBuffers.getOutputBuffer(result);
+    ByteBuffer byteBuffer = encoder.getOutputBuffer(result);
 
-    muxer.writeSample(SAMPLE_VIDEO, byteBuffer, bufferInfo);
-    presentationTimeUs = bufferInfo.presentationTimeUs;
+    muxer.writeSample(SAMPLE_VIDEO, byteBuffer, encoderBufferInfo);
+    presentationTimeUs = encoderBufferInfo.presentationTimeUs;
+    if (encoderBufferInfo.size > 0) frames++;
 
     encoder.releaseOutputBuffer(result, false);
+    if (probe != null) probe.record(STAGE_DRAIN_ENCODER, SAMPLE_VIDEO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
@@ -207,26 +269,33 @@ final class VideoCoder implements Coder {
     if (stateDrainExtractor == STATE_END_OF_STREAM) return DRAIN_STATE_NONE;
 
     int trackIndex = extractor.getSampleTrackIndex();
-    if (trackIndex >= 0 && trackIndex != this.trackIndex) return DRAIN_STATE_NONE;
+    if (!suspending && trackIndex >= 0 && trackIndex != this.trackIndex) return DRAIN_STATE_NONE;
 
+    final PipelineProbe probe = this.probe;
+    final long startNs = probe != null ? System.nanoTime() : 0L;
     int result = decoder.dequeueInputBuffer(timeout);
     if (result < 0) return DRAIN_STATE_NONE;
 
-    if (trackIndex < 0) {
+    if (suspending || trackIndex < 0 || extractor.getSampleTime() >= endTimeUs) {
       stateDrainExtractor = STATE_END_OF_STREAM;
       decoder.queueInputBuffer(result, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
       return DRAIN_STATE_NONE;
     }
 
-    ByteBuffer byteBuffer = decoderInputBuffers.getInputBuffer(result);
+    ByteBuffer byteBuffer = decoder.getInputBuffer(result);
 
     int sampleSize = extractor.readSampleData(byteBuffer, 0);
+    sampleBytes += sampleSize;
 
     boolean isKeyFrame = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
-    decoder.queueInputBuffer(result, 0, sampleSize, extractor.getSampleTime(), isKeyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+    sampleTimeUs = extractor.getSampleTime();
+    decoder.queueInputBuffer(result, 0, sampleSize, sampleTimeUs, isKeyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+    samples++;
+    peakDecodeQueueSize = Math.max(peakDecodeQueueSize, (int) (samples - decodedFrames));
 
     extractor.advance();
 
+    if (probe != null) probe.record(STAGE_DRAIN_EXTRACTOR, SAMPLE_VIDEO, startNs, System.nanoTime());
     return DRAIN_STATE_CONSUMED;
   }
 
@@ -234,24 +303,84 @@ final class VideoCoder implements Coder {
     return presentationTimeUs;
   }
 
+  @Override public long frames() {
+    return frames;
+  }
+
+  @Override public long sampleBytes() {
+    return sampleBytes;
+  }
+
   @Override public boolean finished() {
     return stateDrainEncoder == STATE_END_OF_STREAM;
   }
 
-  @Override public void release() {
-    if (outputSurface != null) {
-      outputSurface.release();
-      outputSurface = null;
-    }
+  @Override public void report(TrackReport report) {
+    report.sampleType = SAMPLE_VIDEO;
+    report.transcoded = true;
+    report.decoderName = decoderName;
+    report.encoderName = encoderName;
+    report.framesDecoded = decodedFrames;
+    report.framesRendered = renderedFrames;
+    report.framesEncoded = frames;
+    report.peakDecodeQueueSize = peakDecodeQueueSize;
+    report.peakEncodeQueueSize = peakEncodeQueueSize;
+  }
 
-    if (inputSurface != null) {
-      inputSurface.release();
-      inputSurface = null;
+  @Override public boolean suspend() {
+    if (finished()) {
+      // track already ended, codecs only wait for release
+      releaseCodecs();
+    } else {
+      suspending = true;
     }
+    return true;
+  }
+
+  @Override public boolean suspended() {
+    return stateDrainEncoder == STATE_END_OF_STREAM;
+  }
+
+  @Override public void resume() {
+    if (!suspending) return;
+    suspending = false;
+    stateDrainExtractor = STATE_IDLE;
+    stateDrainDecoder = STATE_IDLE;
+    stateDrainEncoder = STATE_IDLE;
+    setup();
+  }
+
+  boolean extractorFinished() {
+    return stateDrainExtractor == STATE_END_OF_STREAM;
+  }
+
+  boolean decoderFinished() {
+    return stateDrainDecoder == STATE_END_OF_STREAM;
+  }
+
+  long sampleTimeUs() {
+    return sampleTimeUs;
+  }
+
+  long decodedTimeUs() {
+    return decodedTimeUs;
+  }
+
+  boolean rendered() {
+    return rendered;
+  }
+
+  @Override public void release() {
+    releaseCodecs();
+  }
+
+  private void releaseCodecs() {
+    releaseSurfaces();
 
     if (decoder != null) {
       if (stateDecoder == STATE_PROGRESS) {
         decoder.stop();
+        stateDecoder = STATE_IDLE;
       }
       decoder.release();
       decoder = null;
@@ -260,9 +389,22 @@ final class VideoCoder implements Coder {
     if (encoder != null) {
       if (stateEncoder == STATE_PROGRESS) {
         encoder.stop();
+        stateEncoder = STATE_IDLE;
       }
       encoder.release();
       encoder = null;
     }
   }
+
+  void releaseSurfaces() {
+    if (outputSurface != null) {
+      outputSurface.release();
+      outputSurface = null;
+    }
+
+    if (inputSurface != null) {
+      inputSurface.release();
+      inputSurface = null;
+    }
+  }
 }
@@ -0,0 +1,37 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+public final class BufferPoolStats {
+
+  public long leases;
+  // leases served by an idle buffer instead of a new allocation
+  public long hits;
+  public float hitRate;
+  // released buffers let go to garbage collector, either above largest class or past max pooled bytes
+  public long drops;
+
+  // bytes of buffers leased and not released yet
+  public long outstandingBytes;
+  // bytes of idle buffers waiting for a lease
+  public long pooledBytes;
+  public long maxPooledBytes;
+
+  @Override public String toString() {
+    return "leases " + leases + ", hit rate " + hitRate + ", outstanding " + outstandingBytes + " bytes, pooled "
+        + pooledBytes + "/" + maxPooledBytes + " bytes";
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+/**
+ * Outcome of a completed job, told once to {@link org.fs.compress.CompressionCallback#completed(CompressionReport)}.
+ * Renditions report their outputs summed.
+ */
+public final class CompressionReport {
+
+  // -1 when size of input can not be read
+  public long inputBytes;
+  public long outputBytes;
+  // input over output bytes, -1 when either is unknown
+  public double compressionRatio;
+
+  public long elapsedMs;
+  public long mediaTimeUs;
+  // media time encoded per wall time, above 1 is faster than playback
+  public double realtimeFactor;
+
+  // null when input has no such track
+  public TrackReport video;
+  public TrackReport audio;
+
+  // samples muxer held before it could start, largest of all outputs
+  public int peakMuxerQueueSize;
+}
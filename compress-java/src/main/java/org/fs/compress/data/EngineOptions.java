@@ -0,0 +1,90 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+import java.io.File;
+import java.nio.channels.WritableByteChannel;
+import org.fs.compress.engine.CoderEngineProgressCallback;
+import org.fs.compress.engine.CoderEngineStageCallback;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.trace.TraceRecorder;
+import org.fs.compress.util.JobPriority;
+
+import static org.fs.compress.util.Constants.DEFAULT_MUXER_QUEUE_BYTES;
+import static org.fs.compress.util.Constants.PRIORITY_NORMAL;
+
+public final class EngineOptions {
+
+  public static final int DEFAULT_STAGE_QUEUE_CAPACITY = 32;
+  // decoder may hold up to a full avc picture buffer before its first output, feed stage must be able to queue that many
+  public static final int MIN_STAGE_QUEUE_CAPACITY = 16;
+  public static final long DEFAULT_INTERLEAVE_WINDOW_US = 500000;
+  public static final int DEFAULT_SEGMENTS = 1;
+  public static final long DEFAULT_PROGRESS_INTERVAL_MS = 250;
+
+  // runs extractor feed, render and encoder drain of video on their own threads
+  public boolean stagedVideo;
+  // at least MIN_STAGE_QUEUE_CAPACITY, smaller queues would stall feed before decoder gives its first frame
+  public int stageQueueCapacity;
+  public CoderEngineStageCallback stageCallback;
+
+  // how far one track may run ahead of the slowest one before it has to wait
+  public long interleaveWindowUs;
+
+  // samples muxer queues in memory until every track has its format, rest spill to a file next to output
+  public long muxerQueueBytes;
+
+  // splits video at sync samples and transcodes this many ranges concurrently, keep it under codec instance limit
+  public int segments;
+
+  // progress is reported at most once in this interval, with throughput and eta to callback
+  public long progressIntervalMs;
+  public CoderEngineProgressCallback progressCallback;
+
+  // records spans of this job while enabled, can be switched on and off while job runs
+  public TraceRecorder traceRecorder;
+
+  // codecs, extractor, writer and surfaces of job; jvm provider runs whole pipeline off device
+  public CodecProvider codecProvider;
+
+  // mp4 outputs are written by pure java writer with these options, null leaves them to writer of codec provider
+  public Mp4Options mp4Writer;
+  // fragmented mp4 goes to this channel instead of output file as fragments complete, mp4 writer options must have a
+  // fragment duration; channel is left open
+  public WritableByteChannel outputChannel;
+  // mpeg 4 output is written as hls and dash segments in to output, which is taken as a directory; other writer
+  // options are ignored then
+  public StreamingOptions streaming;
+  // finished mp4 file is rewritten with moov ahead of mdat, whichever writer made it; files already that way are left
+  public boolean faststart;
+
+  // sample sizes, times and formats of job are recorded in to this file, replay engine plays it back without codecs
+  public File sampleRecording;
+
+  // order among queued jobs, higher priority may preempt lower ones at gop boundaries
+  @JobPriority public int priority;
+
+  public EngineOptions() {
+    stagedVideo = false;
+    stageQueueCapacity = DEFAULT_STAGE_QUEUE_CAPACITY;
+    interleaveWindowUs = DEFAULT_INTERLEAVE_WINDOW_US;
+    muxerQueueBytes = DEFAULT_MUXER_QUEUE_BYTES;
+    segments = DEFAULT_SEGMENTS;
+    priority = PRIORITY_NORMAL;
+    progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+    codecProvider = CodecProvider.platform();
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+import org.fs.compress.util.ResourceKind;
+
+public final class Leak {
+
+  @ResourceKind public int kind;
+  // class and identity of owner, owner itself is not kept
+  public String resource;
+  // scope resource was tracked in, null if none was open on its thread
+  public String scope;
+  // stack trace of where resource was created
+  public Throwable allocationSite;
+  // true if found by garbage collector, false if still open when its scope closed
+  public boolean collected;
+
+  @Override public String toString() {
+    return resource + (collected ? " collected without release" : " still open at end of " + scope);
+  }
+}
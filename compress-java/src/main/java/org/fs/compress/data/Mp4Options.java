@@ -0,0 +1,52 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+import org.fs.compress.util.Mp4Layout;
+
+import static org.fs.compress.util.Constants.MP4_LAYOUT_MOOV_LAST;
+
+public final class Mp4Options {
+
+  public static final long DEFAULT_CHUNK_DURATION_US = 1000000;
+  public static final int DEFAULT_RESERVED_MOOV_BYTES = 512 * 1024; // 512 kb
+  public static final int DEFAULT_CHUNK_BUFFER_SIZE = 256 * 1024; // 256 kb
+
+  // samples of a track are gathered in to a chunk this long before it is written, shorter interleaves tracks finer
+  public long chunkDurationUs;
+
+  // where moov goes, before mdat is faststart
+  @Mp4Layout public int layout;
+
+  // room left for moov between ftyp and mdat by reserved layout, a moov that does not fit moves mdat like two pass
+  public int reservedMoovBytes;
+
+  // initial size of buffer a chunk of each track is gathered in, it grows when a chunk does not fit
+  public int chunkBufferSize;
+
+  /**
+   * Writes fragmented mp4 when positive, each fragment at least this long and cut at a video sync sample. Moov comes
+   * first without samples, so layout and chunk duration do not apply.
+   */
+  public long fragmentDurationUs;
+
+  public Mp4Options() {
+    chunkDurationUs = DEFAULT_CHUNK_DURATION_US;
+    layout = MP4_LAYOUT_MOOV_LAST;
+    reservedMoovBytes = DEFAULT_RESERVED_MOOV_BYTES;
+    chunkBufferSize = DEFAULT_CHUNK_BUFFER_SIZE;
+  }
+}
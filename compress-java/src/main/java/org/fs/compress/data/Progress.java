@@ -0,0 +1,39 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+/**
+ * Snapshot of a running job, same instance is refilled on every report so copy what is kept past the callback.
+ */
+public final class Progress {
+
+  // 0 to 1, or -1 when neither duration nor size of input is known
+  public double percentage;
+  // percentage comes from bytes read over input size, duration was unknown
+  public boolean byteBased;
+
+  public long elapsedMs;
+  public long mediaTimeUs;
+  public long frames;
+  public long bytes;
+
+  public double framesPerSecond;
+  public double bytesPerSecond;
+  // media time encoded per wall time, above 1 is faster than playback
+  public double realtimeFactor;
+  // smoothed, -1 until rate is known
+  public long etaMs;
+}
@@ -0,0 +1,35 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+import android.media.MediaFormat;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Self contained unit of a split job, a worker needs nothing else to encode it. Video units cover a range of sync
+ * samples, audio unit covers whole track. Null format means samples are copied as they are.
+ */
+public final class SegmentWork {
+
+  public String jobId;
+  public int index;
+  @SampleType public int sampleType;
+  public long startTimeUs;
+  public long endTimeUs;
+  public String input;
+  public String output;
+  public MediaFormat format;
+}
@@ -0,0 +1,50 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+/**
+ * Output of job as a directory of fragmented mp4 segments with a hls playlist, a dash manifest or both. Segments are
+ * cut at video sync samples, so how close they come to target duration depends on key frame interval of video format.
+ */
+public final class StreamingOptions {
+
+  public static final long DEFAULT_TARGET_DURATION_US = 6000000;
+  public static final String DEFAULT_PLAYLIST_NAME = "index.m3u8";
+  public static final String DEFAULT_MANIFEST_NAME = "manifest.mpd";
+
+  // writes hls media playlist, rewritten after every segment so players can follow job as it goes
+  public boolean hls;
+  // writes static dash manifest once last segment is written
+  public boolean dash;
+
+  // segments are at least this long, rounded up to a multiple of key frame interval when video format has one
+  public long targetDurationUs;
+
+  // initial size of buffer samples of each track are gathered in, it grows when a segment does not fit
+  public int chunkBufferSize;
+
+  public String playlistName;
+  public String manifestName;
+
+  public StreamingOptions() {
+    hls = true;
+    dash = true;
+    targetDurationUs = DEFAULT_TARGET_DURATION_US;
+    chunkBufferSize = Mp4Options.DEFAULT_CHUNK_BUFFER_SIZE;
+    playlistName = DEFAULT_PLAYLIST_NAME;
+    manifestName = DEFAULT_MANIFEST_NAME;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.data;
+
+import org.fs.compress.util.SampleType;
+
+/**
+ * What one track of a job went through, filled by its coder once track is drained.
+ */
+public final class TrackReport {
+
+  @SampleType public int sampleType;
+  // false when samples were copied in to output as they are
+  public boolean transcoded;
+
+  // null when track was not transcoded, renditions list their encoders separated by comma
+  public String decoderName;
+  public String encoderName;
+
+  // pass-through decodes nothing, samples it copies count as encoded
+  public long framesDecoded;
+  public long framesRendered;
+  public long framesEncoded;
+
+  // samples queued in to decoder not decoded yet, frames rendered in to encoder not muxed yet
+  public int peakDecodeQueueSize;
+  public int peakEncodeQueueSize;
+}
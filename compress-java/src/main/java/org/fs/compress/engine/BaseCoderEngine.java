@@ -18,21 +18,39 @@ package org.fs.compress.engine;
 
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
-import android.media.MediaMetadataRetriever;
 import android.media.MediaMuxer;
+import android.os.Build;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.fs.compress.coder.Coder;
+import org.fs.compress.coder.StagedCoder;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.data.Progress;
+import org.fs.compress.data.StageOccupancy;
 import org.fs.compress.data.Track;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
 import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.leak.LeakTracker;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.muxer.Muxer;
 import org.fs.compress.muxer.MuxerCallback;
+import org.fs.compress.replay.SampleRecorder;
+import org.fs.compress.slot.CodecSlotManager;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.fs.compress.util.BuildOsVersionUtil;
 import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.Mp4FaststartUtil;
+import org.fs.compress.util.ReportUtil;
 import org.fs.compress.util.Utils;
 
-import static android.media.MediaMetadataRetriever.METADATA_KEY_DURATION;
-import static android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION;
 import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
 import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
 
@@ -41,19 +59,42 @@ abstract class BaseCoderEngine implements CoderEngine {
   Coder videoCoder;
   Coder audioCoder;
 
-  private MediaExtractor extractor;
-  private MediaMuxer muxer;
+  Extractor extractor;
+  private Extractor videoExtractor;
+  // a writer per output and queue in front of it, both in order of outputs
+  private final List<ContainerWriter> muxers = new ArrayList<>();
+  private final List<Muxer> qmuxers = new ArrayList<>();
+  // samples muxers can not hold in memory before start spill next to outputs
+  private File spillDirectory;
+  EventLoop eventLoop;
+  private CodecSlotManager.Lease lease;
+  // slots are taken again with same codecs when a preempted job resumes
+  private List<String> decoderMimes = Collections.emptyList();
+  private List<String> encoderMimes = Collections.emptyList();
+  private SampleRecorder recorder;
 
   private volatile double percentage;
 
   private CoderEngineCallback callback;
+  private CoderEngineGate gate;
+  PipelineProbe probe;
+  private int videoTrackIndex = -1;
+  EngineOptions options = new EngineOptions();
+  private final StageOccupancy occupancy = new StageOccupancy();
   private long durationTimeUs;
+  private long mediaTimeUs;
+  private CompressionReport report;
 
-  private final MediaFormatStrategy formatStrategy;
+  // one strategy per output
+  final List<MediaFormatStrategy> formatStrategies;
   private final FileDescriptor input;
 
   BaseCoderEngine(MediaFormatStrategy formatStrategy, FileDescriptor input) {
-    this.formatStrategy = formatStrategy;
+    this(Collections.singletonList(formatStrategy), input);
+  }
+
+  BaseCoderEngine(List<MediaFormatStrategy> formatStrategies, FileDescriptor input) {
+    this.formatStrategies = formatStrategies;
     this.input = input;
   }
 
@@ -65,131 +106,404 @@ abstract class BaseCoderEngine implements CoderEngine {
     this.callback = callback;
   }
 
-  @Override public void setupMetadata() throws IOException {
-    MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-    retriever.setDataSource(input);
+  @Override public void options(EngineOptions options) {
+    this.options = options != null ? options : new EngineOptions();
+  }
 
-    String rotation = retriever.extractMetadata(METADATA_KEY_VIDEO_ROTATION);
-    try {
-      muxer.setOrientationHint(Integer.parseInt(rotation));
-    } catch (NumberFormatException ignored) {
-      /*no opt*/
-    }
-    String duration = retriever.extractMetadata(METADATA_KEY_DURATION);
-    try {
-      durationTimeUs = Long.parseLong(duration);
-    } catch (NumberFormatException ignored) {
-      /*no opt*/
-      durationTimeUs = -1;
+  @Override public void gate(CoderEngineGate gate) {
+    this.gate = gate;
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public void setupMetadata() throws IOException {
+    for (ContainerWriter muxer : muxers) {
+      muxer.setOrientationHint(extractor.orientation());
     }
-    retriever.release();
+    durationTimeUs = extractor.durationTimeUs();
   }
 
-  @Override public void setupMediaCoders() {
+  @Override public void setupMediaCoders() throws InterruptedException {
     Track track = ExtractorUtil.videoAndAudioTrack(extractor);
+    MediaFormatStrategy formatStrategy = formatStrategies.get(0);
     MediaFormat videoFormat = formatStrategy.videoOutputFormat(track.videoFormat);
     MediaFormat audioFormat = formatStrategy.audioOutputFormat(track.audioFormat);
     if (videoFormat == null && audioFormat == null) {
       throw new IllegalArgumentException("video and audio formats are null");
     }
+    // codecs are taken before any of them is created, pass-through needs none
+    List<String> decoderMimes = new ArrayList<>(2);
+    List<String> encoderMimes = new ArrayList<>(2);
+    if (track.videoTrackIndex != -1 && videoFormat != null) {
+      decoderMimes.add(track.videoMime);
+      encoderMimes.add(videoFormat.getString(MediaFormat.KEY_MIME));
+    }
+    if (track.audioTrackIndex != -1 && audioFormat != null) {
+      decoderMimes.add(track.audioMime);
+      encoderMimes.add(audioFormat.getString(MediaFormat.KEY_MIME));
+    }
+    CodecProvider provider = options.codecProvider;
+    acquire(decoderMimes, encoderMimes);
     // this will make MediaMuxer#start() call
-    Muxer qmuxer = Muxer.newInstance(muxer, newMuxerCallback());
+    Muxer qmuxer = newMuxer(0, trackMask(track));
+    // coders read through recorder, engine keeps plain extractor for track selection and sync checks
+    Extractor source = extractor;
+    if (recorder != null) {
+      qmuxer = recorder.record(qmuxer);
+      source = recorder.record(extractor, track);
+    }
 
     if (track.videoTrackIndex != -1) {
-      videoCoder = Coder.newInstance(track, videoFormat, extractor, qmuxer, SAMPLE_VIDEO);
+      if (options.stagedVideo && videoFormat != null) {
+        // staged video reads on its own thread, so it gets an extractor of its own
+        try {
+          videoExtractor = provider.newExtractor(input);
+        } catch (IOException e) {
+          throw new IllegalArgumentException(e);
+        }
+        Extractor videoSource = recorder != null ? recorder.record(videoExtractor, track) : videoExtractor;
+        videoCoder = Coder.newStagedInstance(provider, track, videoFormat, videoSource, qmuxer, options.stageQueueCapacity, eventLoop);
+      } else {
+        videoCoder = Coder.newInstance(provider, track, videoFormat, source, qmuxer, SAMPLE_VIDEO, eventLoop);
+      }
+      videoCoder.probe(probe);
       videoCoder.setup();
     }
     if (track.audioTrackIndex != -1) {
-      audioCoder = Coder.newInstance(track, audioFormat, extractor, qmuxer, SAMPLE_AUDIO);
+      audioCoder = Coder.newInstance(provider, track, audioFormat, source, qmuxer, SAMPLE_AUDIO, eventLoop);
+      audioCoder.probe(probe);
       audioCoder.setup();
     }
-    if (track.videoTrackIndex != -1) {
-      extractor.selectTrack(track.videoTrackIndex);
-    }
-    if (track.audioTrackIndex != -1) {
-      extractor.selectTrack(track.audioTrackIndex);
-    }
+    selectTracks(track);
   }
 
   @Override public void start(File output) throws IOException, InterruptedException {
+    run(Collections.singletonList(output));
+  }
+
+  // writes output of each strategy in to file at same index, coders are set up by subclass
+  void run(List<File> outputs) throws IOException, InterruptedException {
+    LeakTracker.Scope scope = LeakTracker.shared().openScope("job " + outputs.get(0).getName());
+    final long startNs = System.nanoTime();
+    Exception failure = null;
     try {
-      muxer = newMediaMuxer(output);
+      extractor = options.codecProvider.newExtractor(input);
+      for (int i = 0, size = outputs.size(); i < size; i++) {
+        muxers.add(newWriter(outputs.get(i), i));
+      }
+      spillDirectory = outputs.get(0).getAbsoluteFile().getParentFile();
+      if (options.sampleRecording != null) {
+        recorder = SampleRecorder.newInstance(options.sampleRecording);
+      }
       setupMetadata();
-      extractor = new MediaExtractor();
-      extractor.setDataSource(input);
+      // codecs report their buffers through callbacks on Marshmallow and above, polling stays as fallback
+      if (BuildOsVersionUtil.isOsAvailable(Build.VERSION_CODES.M)) {
+        eventLoop = EventLoop.newInstance();
+      }
       setupMediaCoders();
       stepPipelines();
-      muxer.stop();
-    } finally {
-      // close video coder
-      Utils.closeQuietly(() -> {
-        if (videoCoder != null) {
-          videoCoder.release();
-          videoCoder = null;
+      // a track that ended without a format leaves writers to tracks that have one
+      for (Muxer qmuxer : qmuxers) {
+        qmuxer.dispatchOutputFormatSet();
+      }
+      for (ContainerWriter muxer : muxers) {
+        muxer.stop();
+      }
+      if (faststart()) {
+        // writers let go of files before they are rewritten
+        releaseWriters();
+        for (File output : outputs) {
+          Mp4FaststartUtil.faststart(output);
         }
-      });
+      }
+      // coders still hold their counts until released below
+      report = newReport(outputs, System.nanoTime() - startNs);
+    } catch (Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      // every release runs even if one before it fails
+      Utils.closeAll(failure,
+          // close video coder, in renditions it holds every encoder
+          () -> {
+            if (videoCoder != null) {
+              videoCoder.release();
+              videoCoder = null;
+            }
+          },
+          // close audio coder
+          () -> {
+            if (audioCoder != null) {
+              audioCoder.release();
+              audioCoder = null;
+            }
+          },
+          // give codec slots back once coders are gone
+          () -> {
+            if (lease != null) {
+              lease.release();
+              lease = null;
+            }
+          },
+          // close extractor
+          () -> {
+            if (extractor != null) {
+              extractor.release();
+              extractor = null;
+            }
+          },
+          // close video extractor of staged coder
+          () -> {
+            if (videoExtractor != null) {
+              videoExtractor.release();
+              videoExtractor = null;
+            }
+          },
+          // close recorder, coders are gone so nothing records any more
+          () -> {
+            if (recorder != null) {
+              recorder.close();
+              recorder = null;
+            }
+          },
+          // drop samples queued before a start that never came
+          () -> {
+            for (Muxer qmuxer : qmuxers) {
+              qmuxer.release();
+            }
+            qmuxers.clear();
+          },
+          // close writers, each of them even if one fails
+          this::releaseWriters,
+          // close event loop, after coders so no callback is left behind
+          () -> {
+            if (eventLoop != null) {
+              eventLoop.release();
+              eventLoop = null;
+            }
+          },
+          // anything of this job still open is reported in debug mode
+          scope::close);
+    }
+  }
+
+  @Override public void stepPipelines() throws InterruptedException {
+    // unknown duration falls back to bytes read over size of input
+    ProgressTracker tracker = ProgressTracker.newInstance(options.progressIntervalMs, durationTimeUs, Utils.sizeOf(input));
+    if (tracker.progress().percentage == PROGRESS_UNKNOWN) {
+      report(tracker.progress()); // unknown
+    }
+
+    CoderScheduler scheduler = CoderScheduler.newInstance(options.interleaveWindowUs);
+    scheduler.register(videoCoder);
+    scheduler.register(audioCoder);
 
-      // close audio coder
-      Utils.closeQuietly(() -> {
-        if (audioCoder != null) {
-          audioCoder.release();
-          audioCoder = null;
+    // job is done only when every track is drained, not the first one
+    while (!scheduler.finished()) {
+      if (gate != null && atSyncSample()) {
+        if (gate.preempted()) {
+          suspend();
+          gate.checkpoint();
+          resume();
+        } else {
+          gate.checkpoint();
         }
-      });
+      }
+
+      boolean stepped = scheduler.step();
+
+      // paced by wall time, not by loop count
+      if (tracker.update(scheduler.mediaTimeUs(), videoFrames(), scheduler.sampleBytes())) {
+        report(tracker.progress());
 
-      // close extractor
-      Utils.closeQuietly(() -> {
-        if (extractor != null) {
-          extractor.release();
-          extractor = null;
+        if (options.stageCallback != null && videoCoder instanceof StagedCoder) {
+          ((StagedCoder) videoCoder).occupancy(occupancy);
+          options.stageCallback.occupancy(occupancy);
         }
-      });
+      }
 
-      // close muxer
-      Utils.closeQuietly(() -> {
-        if (muxer != null) {
-          muxer.release();
-          muxer = null;
+      if (!stepped) {
+        if (eventLoop != null) {
+          eventLoop.await(WAIT_EVENTS);
+        } else {
+          Thread.sleep(WAIT_CODERS);
         }
-      });
+      }
     }
+    mediaTimeUs = scheduler.mediaTimeUs();
+    tracker.complete(mediaTimeUs, videoFrames(), scheduler.sampleBytes());
+    report(tracker.progress());
   }
 
-  @Override public void stepPipelines() throws InterruptedException {
-    long loopCount = 0;
+  @Override public CompressionReport report() {
+    return report;
+  }
 
-    if (durationTimeUs <= 0) {
-      double progress = PROGRESS_UNKNOWN;
-      percentage = progress;
-      if (callback != null) callback.percentage(progress); // unknown
+  private CompressionReport newReport(List<File> outputs, long elapsedNs) {
+    long outputBytes = 0;
+    for (File output : outputs) {
+      outputBytes += Utils.sizeOf(output);
+    }
+    CompressionReport report = new CompressionReport();
+    ReportUtil.complete(report, Utils.sizeOf(input), outputBytes, elapsedNs, mediaTimeUs);
+    if (videoCoder != null) {
+      report.video = new TrackReport();
+      videoCoder.report(report.video);
     }
+    if (audioCoder != null) {
+      report.audio = new TrackReport();
+      audioCoder.report(report.audio);
+    }
+    for (Muxer qmuxer : qmuxers) {
+      report.peakMuxerQueueSize = Math.max(report.peakMuxerQueueSize, qmuxer.peakQueueSize());
+    }
+    return report;
+  }
 
-    while (!((videoCoder != null && videoCoder.finished()) || (audioCoder != null && audioCoder.finished()))) {
-      boolean stepped = (videoCoder != null && videoCoder.stepPipeline()) || (audioCoder != null && audioCoder.stepPipeline());
-      loopCount++;
+  private long videoFrames() {
+    return videoCoder != null ? videoCoder.frames() : 0;
+  }
 
-      if (durationTimeUs > 0 && loopCount % PROGRESS_INTERVAL_STEPS == 0) {
-        double videoProgress = 1.0;
-        if (videoCoder != null) {
-          videoProgress = videoCoder.finished() ? 1.0 : Math.min(1.0, (double) videoCoder.presentationTimeUs() / durationTimeUs);
-        }
+  private void report(Progress progress) {
+    // unknown percentage is told once, throughput still goes on
+    boolean repeated = progress.percentage == PROGRESS_UNKNOWN && percentage == PROGRESS_UNKNOWN;
+    percentage = progress.percentage;
+    if (callback != null && !repeated) callback.percentage(progress.percentage);
+    if (options.progressCallback != null) options.progressCallback.progress(progress);
+  }
 
-        double audioProgress = 1.0;
-        if (audioCoder != null) {
-          audioProgress = audioCoder.finished() ? 1.0 : Math.min(1.0, (double) audioCoder.presentationTimeUs() / durationTimeUs);
-        }
+  // staged video reads on its own thread, so it has no boundary here and is never preempted
+  private boolean atSyncSample() {
+    return videoTrackIndex != -1
+        && extractor.getSampleTrackIndex() == videoTrackIndex
+        && (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+  }
 
-        double progress = (videoProgress + audioProgress) / 2.0;
-        percentage = progress;
-        if (callback != null) callback.percentage(progress);
+  // a preempted job gives its codecs and slots back before it parks, so a job above it can take them
+  private void suspend() throws InterruptedException {
+    List<Coder> coders = new ArrayList<>(2);
+    if (videoCoder != null && videoCoder.suspend()) coders.add(videoCoder);
+    if (audioCoder != null && audioCoder.suspend()) coders.add(audioCoder);
+    // streams end at this sync sample, nothing is read from extractor until coders resume
+    while (!suspended(coders)) {
+      boolean stepped = false;
+      for (Coder coder : coders) {
+        if (!coder.suspended()) stepped |= coder.stepPipeline();
       }
-
       if (!stepped) {
-        Thread.sleep(WAIT_CODERS);
+        if (eventLoop != null) {
+          eventLoop.await(WAIT_EVENTS);
+        } else {
+          Thread.sleep(WAIT_CODERS);
+        }
+      }
+    }
+    if (lease != null) {
+      lease.release();
+      lease = null;
+    }
+  }
+
+  // coders set up new codecs once slots are taken again, and go on from sample they ended at
+  private void resume() throws InterruptedException {
+    acquire(decoderMimes, encoderMimes);
+    if (videoCoder != null) videoCoder.resume();
+    if (audioCoder != null) audioCoder.resume();
+  }
+
+  private static boolean suspended(List<Coder> coders) {
+    for (int i = 0, size = coders.size(); i < size; i++) {
+      if (!coders.get(i).suspended()) return false;
+    }
+    return true;
+  }
+
+  // codecs are taken before any of them is created, providers that are not limited need no slots
+  void acquire(List<String> decoderMimes, List<String> encoderMimes) throws InterruptedException {
+    this.decoderMimes = decoderMimes;
+    this.encoderMimes = encoderMimes;
+    if (options.codecProvider.limited()) {
+      lease = CodecSlotManager.shared().acquire(decoderMimes, encoderMimes, gate);
+    }
+  }
+
+  // writer of output starts once every track of mask has its format
+  Muxer newMuxer(int output, int trackMask) {
+    Muxer qmuxer = Muxer.newInstance(muxers.get(output), newMuxerCallback(output), trackMask, options.muxerQueueBytes,
+        spillDirectory);
+    qmuxer.probe(probe);
+    qmuxers.add(qmuxer);
+    return qmuxer;
+  }
+
+  void selectTracks(Track track) {
+    if (track.videoTrackIndex != -1 && videoExtractor == null) {
+      extractor.selectTrack(track.videoTrackIndex);
+      videoTrackIndex = track.videoTrackIndex;
+    }
+    if (track.audioTrackIndex != -1) {
+      extractor.selectTrack(track.audioTrackIndex);
+    }
+  }
+
+  static int trackMask(Track track) {
+    return (track.videoTrackIndex != -1 ? SAMPLE_VIDEO : 0) | (track.audioTrackIndex != -1 ? SAMPLE_AUDIO : 0);
+  }
+
+  abstract MuxerCallback newMuxerCallback(int output);
+  // one of MediaMuxer.OutputFormat, writer of codec provider is created with it
+  abstract int outputFormat();
+
+  private void releaseWriters() {
+    Utils.Callback[] releases = new Utils.Callback[muxers.size()];
+    for (int i = 0; i < releases.length; i++) {
+      releases[i] = muxers.get(i)::release;
+    }
+    muxers.clear();
+    Utils.closeAll(null, releases);
+  }
+
+  // key frames only matter to streaming segments
+  private ContainerWriter newWriter(File output, int index) throws IOException {
+    return newWriter(options, output, outputFormat(), options.streaming != null ? keyFrameIntervalUs(index) : 0);
+  }
+
+  // mp4 outputs go through pure java writer when options ask for it, to output channel if there is one
+  static ContainerWriter newWriter(EngineOptions options, File output, int outputFormat, long keyFrameIntervalUs) throws IOException {
+    if (options.streaming != null) {
+      if (outputFormat != MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+        throw new IllegalArgumentException("streaming output needs mpeg 4 format " + outputFormat);
       }
+      return ContainerWriter.newStreamingInstance(output, options.streaming, keyFrameIntervalUs);
+    }
+    if (options.mp4Writer == null || outputFormat != MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+      return options.codecProvider.newWriter(output, outputFormat);
+    }
+    if (options.outputChannel != null) {
+      return ContainerWriter.newFragmentedMp4Instance(options.outputChannel, options.mp4Writer);
     }
+    return ContainerWriter.newMp4Instance(output, options.mp4Writer);
   }
 
-  abstract MuxerCallback newMuxerCallback();
-  abstract MediaMuxer newMediaMuxer(File output) throws IOException;
-}
\ No newline at end of file
+  private boolean faststart() {
+    return faststart(options, outputFormat());
+  }
+
+  // faststart applies to a single mp4 file only, not to segments or a channel
+  static boolean faststart(EngineOptions options, int outputFormat) {
+    if (!options.faststart || options.streaming != null) return false;
+    if (options.mp4Writer != null && options.outputChannel != null) return false;
+    return outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+  }
+
+  // key frame interval strategy of output asks encoder for, zero when video is passed through or interval is not set
+  private long keyFrameIntervalUs(int output) {
+    Track track = ExtractorUtil.videoAndAudioTrack(extractor);
+    if (track.videoTrackIndex == -1) return 0;
+    MediaFormat format = formatStrategies.get(output).videoOutputFormat(track.videoFormat);
+    if (format == null || !format.containsKey(MediaFormat.KEY_I_FRAME_INTERVAL)) return 0;
+    return format.getInteger(MediaFormat.KEY_I_FRAME_INTERVAL) * 1000000L;
+  }
+}
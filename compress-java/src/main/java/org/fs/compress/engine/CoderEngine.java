@@ -19,7 +19,10 @@ import android.os.Build;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.IOException;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
 import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.metrics.PipelineProbe;
 import org.fs.compress.util.BuildOsVersionUtil;
 
 import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
@@ -32,7 +35,26 @@ public interface CoderEngine {
 
   static final double PROGRESS_UNKNOWN = -1.0;
   static final long WAIT_CODERS = 10;
-  static final long PROGRESS_INTERVAL_STEPS = 10;
+  static final long WAIT_EVENTS = 100;
+
+  static CoderEngine newInstance(MediaFormatStrategy formatStrategy, FileDescriptor input, EngineOptions options) {
+    if (options != null && options.segments > 1) {
+      if (formatStrategy.isStrategySupported(MIME_TYPE_VIDEO_AVC)) {
+        return new SegmentedCoderEngine(formatStrategy, input);
+      } else {
+        throw new IllegalArgumentException("segmented engine supports avc strategies only");
+      }
+    }
+    return newInstance(formatStrategy, input);
+  }
+
+  /**
+   * Engine that plays a recording of {@link org.fs.compress.replay.SampleRecorder} in to output, no codec is used.
+   * Paced replay keeps recorded timing, otherwise samples are written as fast as muxer takes them.
+   */
+  static CoderEngine newReplayInstance(File recording, boolean paced) {
+    return new ReplayCoderEngine(recording, paced);
+  }
 
   static CoderEngine newInstance(MediaFormatStrategy formatStrategy, FileDescriptor input) {
     if (formatStrategy.isStrategySupported(MIME_TYPE_VIDEO_AVC)) {
@@ -67,13 +89,23 @@ public interface CoderEngine {
 
   void callback(CoderEngineCallback callback);
 
+  void options(EngineOptions options);
+
+  void gate(CoderEngineGate gate);
+
+  // set before start, stages are not timed without it
+  void probe(PipelineProbe probe);
+
   void setupMetadata() throws IOException;
 
-  void setupMediaCoders();
+  void setupMediaCoders() throws InterruptedException;
 
   double percentage();
 
   void start(File output) throws IOException, InterruptedException;
 
+  // null until start returned without error
+  CompressionReport report();
+
   void stepPipelines() throws InterruptedException;
 }
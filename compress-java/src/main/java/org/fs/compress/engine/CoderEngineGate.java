@@ -0,0 +1,33 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+/**
+ * Engines pass through gate when next video sample starts a gop, a preempted job gives its codecs back and is parked
+ * here until it gets its slot back.
+ */
+public interface CoderEngineGate {
+
+  void checkpoint() throws InterruptedException;
+
+  // true once job is asked to step aside, job lets go of its codecs before it parks in checkpoint
+  boolean preempted();
+
+  /**
+   * Job gives its slot away while it waits on something outside of scheduler, and waits for a slot once it is done.
+   */
+  void waiting(boolean waiting) throws InterruptedException;
+}
@@ -0,0 +1,38 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import org.fs.compress.coder.Coder;
+
+interface CoderScheduler {
+
+  static CoderScheduler newInstance(long windowUs) {
+    return new CoderSchedulerImp(windowUs);
+  }
+
+  void register(Coder coder);
+
+  boolean step();
+
+  boolean finished();
+
+  /**
+   * Time every track has reached, slowest unfinished one decides it.
+   */
+  long mediaTimeUs();
+
+  long sampleBytes();
+}
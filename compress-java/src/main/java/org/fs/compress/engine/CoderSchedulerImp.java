@@ -0,0 +1,119 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.coder.Coder;
+
+/**
+ * Steps every coder on each round, in rotating order so no coder is always first. Coders running further ahead than
+ * {@code windowUs} of the slowest one sit the round out, which keeps tracks interleaved for the muxer. They are only
+ * stepped when nothing in the window could move, since a shared extractor might be holding the slow one back.
+ */
+final class CoderSchedulerImp implements CoderScheduler {
+
+  private final long windowUs;
+  private final List<Coder> coders = new ArrayList<>();
+
+  private boolean[] skipped = new boolean[0];
+  private int cursor;
+
+  CoderSchedulerImp(long windowUs) {
+    if (windowUs < 0) {
+      throw new IllegalArgumentException("window can not be negative " + windowUs);
+    }
+    this.windowUs = windowUs;
+  }
+
+  @Override public void register(Coder coder) {
+    if (coder == null) return;
+    coders.add(coder);
+    skipped = new boolean[coders.size()];
+  }
+
+  @Override public boolean step() {
+    final int size = coders.size();
+    if (size == 0) return false;
+
+    long minPresentationTimeUs = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      Coder coder = coders.get(i);
+      if (!coder.finished()) {
+        minPresentationTimeUs = Math.min(minPresentationTimeUs, coder.presentationTimeUs());
+      }
+    }
+    if (minPresentationTimeUs == Long.MAX_VALUE) return false;
+
+    final long limitUs = minPresentationTimeUs + windowUs;
+
+    boolean stepped = false;
+    boolean anySkipped = false;
+    for (int i = 0; i < size; i++) {
+      final int index = (cursor + i) % size;
+      final Coder coder = coders.get(index);
+      skipped[index] = false;
+      if (coder.finished()) continue;
+
+      if (coder.presentationTimeUs() > limitUs) {
+        skipped[index] = true;
+        anySkipped = true;
+        continue;
+      }
+      // no short circuit, every coder in window gets its turn
+      stepped |= coder.stepPipeline();
+    }
+
+    if (!stepped && anySkipped) {
+      for (int i = 0; i < size; i++) {
+        final int index = (cursor + i) % size;
+        if (skipped[index]) {
+          stepped |= coders.get(index).stepPipeline();
+        }
+      }
+    }
+
+    cursor = (cursor + 1) % size;
+    return stepped;
+  }
+
+  @Override public boolean finished() {
+    for (int i = 0, size = coders.size(); i < size; i++) {
+      if (!coders.get(i).finished()) return false;
+    }
+    return true;
+  }
+
+  @Override public long mediaTimeUs() {
+    long min = Long.MAX_VALUE;
+    long max = 0;
+    for (int i = 0, size = coders.size(); i < size; i++) {
+      final Coder coder = coders.get(i);
+      final long presentationTimeUs = coder.presentationTimeUs();
+      max = Math.max(max, presentationTimeUs);
+      if (!coder.finished()) min = Math.min(min, presentationTimeUs);
+    }
+    return min != Long.MAX_VALUE ? min : max;
+  }
+
+  @Override public long sampleBytes() {
+    long bytes = 0;
+    for (int i = 0, size = coders.size(); i < size; i++) {
+      bytes += coders.get(i).sampleBytes();
+    }
+    return bytes;
+  }
+}
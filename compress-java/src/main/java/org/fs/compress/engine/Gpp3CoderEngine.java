@@ -21,9 +21,7 @@ import android.media.MediaFormat;
 import android.media.MediaMetadataRetriever;
 import android.media.MediaMuxer;
 import android.os.Build;
-import java.io.File;
 import java.io.FileDescriptor;
-import java.io.IOException;
 import org.fs.compress.coder.Coder;
 import org.fs.compress.data.Track;
 import org.fs.compress.format.MediaFormatStrategy;
@@ -44,11 +42,11 @@ final class Gpp3CoderEngine extends BaseCoderEngine {
     super(formatStrategy, input);
   }
 
-  @Override MediaMuxer newMediaMuxer(File output) throws IOException {
-    return new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP);
+  @Override int outputFormat() {
+    return MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP;
   }
 
-  @Override MuxerCallback newMuxerCallback() {
+  @Override MuxerCallback newMuxerCallback(int output) {
     return () -> {
       // TODO implement output validations
     };
@@ -16,9 +16,7 @@
 package org.fs.compress.engine;
 
 import android.media.MediaMuxer;
-import java.io.File;
 import java.io.FileDescriptor;
-import java.io.IOException;
 import org.fs.compress.format.MediaFormatStrategy;
 import org.fs.compress.muxer.MuxerCallback;
 import org.fs.compress.util.MpegFormatValidator;
@@ -29,11 +27,11 @@ final class MpegCoderEngine extends BaseCoderEngine {
     super(formatStrategy, input);
   }
 
-  @Override MediaMuxer newMediaMuxer(File output) throws IOException {
-    return new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+  @Override int outputFormat() {
+    return MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
   }
 
-  @Override MuxerCallback newMuxerCallback() {
+  @Override MuxerCallback newMuxerCallback(int output) {
     return () -> {
       if (videoCoder != null) {
         MpegFormatValidator.validateVideoOuputFormatOrThrow(videoCoder.determinedFormat());
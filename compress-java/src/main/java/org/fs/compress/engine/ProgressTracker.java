@@ -0,0 +1,40 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import org.fs.compress.data.Progress;
+
+/**
+ * Turns counters of a job in to progress at most once every interval, whatever pace loop of engine has.
+ */
+interface ProgressTracker {
+
+  static ProgressTracker newInstance(long intervalMs, long durationTimeUs, long inputSize) {
+    return new ProgressTrackerImp(intervalMs, durationTimeUs, inputSize);
+  }
+
+  /**
+   * @return true if a report is due, {@link #progress()} is filled then.
+   */
+  boolean update(long mediaTimeUs, long frames, long bytes);
+
+  /**
+   * Fills final report regardless of interval.
+   */
+  void complete(long mediaTimeUs, long frames, long bytes);
+
+  Progress progress();
+}
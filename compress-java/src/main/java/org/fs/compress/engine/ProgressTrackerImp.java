@@ -0,0 +1,99 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.data.Progress;
+
+import static org.fs.compress.engine.CoderEngine.PROGRESS_UNKNOWN;
+
+final class ProgressTrackerImp implements ProgressTracker {
+
+  // weight of latest rate in smoothed one
+  private static final double SMOOTHING = 0.2;
+
+  private final long intervalNs;
+  private final long durationTimeUs;
+  private final long inputSize;
+  private final long startNs;
+
+  private final Progress progress = new Progress();
+
+  private long lastNs;
+  private double lastPercentage;
+  private double smoothedRate = -1; // percentage per ms
+
+  ProgressTrackerImp(long intervalMs, long durationTimeUs, long inputSize) {
+    this.intervalNs = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    this.durationTimeUs = durationTimeUs;
+    this.inputSize = inputSize;
+    startNs = System.nanoTime();
+    lastNs = startNs;
+    progress.byteBased = durationTimeUs <= 0 && inputSize > 0;
+    progress.percentage = durationTimeUs > 0 || inputSize > 0 ? 0 : PROGRESS_UNKNOWN;
+    progress.etaMs = -1;
+  }
+
+  @Override public boolean update(long mediaTimeUs, long frames, long bytes) {
+    long nowNs = System.nanoTime();
+    if (nowNs - lastNs < intervalNs) return false;
+    fill(nowNs, mediaTimeUs, frames, bytes);
+    return true;
+  }
+
+  @Override public void complete(long mediaTimeUs, long frames, long bytes) {
+    fill(System.nanoTime(), mediaTimeUs, frames, bytes);
+    progress.percentage = 1.0;
+    progress.etaMs = 0;
+  }
+
+  @Override public Progress progress() {
+    return progress;
+  }
+
+  private void fill(long nowNs, long mediaTimeUs, long frames, long bytes) {
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(nowNs - startNs);
+    long intervalMs = TimeUnit.NANOSECONDS.toMillis(nowNs - lastNs);
+    lastNs = nowNs;
+
+    double percentage;
+    if (durationTimeUs > 0) {
+      percentage = Math.min(1.0, Math.max(0, mediaTimeUs) / (double) durationTimeUs);
+    } else if (inputSize > 0) {
+      percentage = Math.min(1.0, bytes / (double) inputSize);
+    } else {
+      percentage = PROGRESS_UNKNOWN;
+    }
+
+    progress.percentage = percentage;
+    progress.elapsedMs = elapsedMs;
+    progress.mediaTimeUs = mediaTimeUs;
+    progress.frames = frames;
+    progress.bytes = bytes;
+    if (elapsedMs > 0) {
+      progress.framesPerSecond = frames * 1000.0 / elapsedMs;
+      progress.bytesPerSecond = bytes * 1000.0 / elapsedMs;
+      progress.realtimeFactor = Math.max(0, mediaTimeUs) / (elapsedMs * 1000.0);
+    }
+
+    if (percentage >= 0 && intervalMs > 0) {
+      double rate = (percentage - lastPercentage) / intervalMs;
+      smoothedRate = smoothedRate < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * smoothedRate;
+      lastPercentage = percentage;
+      progress.etaMs = smoothedRate > 0 ? (long) ((1.0 - percentage) / smoothedRate) : -1;
+    }
+  }
+}
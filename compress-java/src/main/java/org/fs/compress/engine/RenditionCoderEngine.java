@@ -0,0 +1,135 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.fs.compress.coder.Coder;
+import org.fs.compress.coder.RenditionCoder;
+import org.fs.compress.data.Track;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.muxer.MuxerCallback;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.MpegFormatValidator;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+
+/**
+ * Runs pipeline of {@link BaseCoderEngine} with a writer per rendition, writer options apply to each output on its own.
+ * Output channel, sample recording and staged video take a single output, so they are refused.
+ */
+final class RenditionCoderEngine extends BaseCoderEngine implements RenditionEngine {
+
+  private RenditionCoder renditionCoder;
+
+  RenditionCoderEngine(List<MediaFormatStrategy> formatStrategies, FileDescriptor input) {
+    super(formatStrategies, input);
+  }
+
+  @Override public void start(File output) throws IOException, InterruptedException {
+    start(Collections.singletonList(output));
+  }
+
+  @Override public void start(List<File> outputs) throws IOException, InterruptedException {
+    if (outputs == null || outputs.size() != formatStrategies.size()) {
+      throw new IllegalArgumentException("every strategy needs an output.");
+    }
+    if (options.outputChannel != null) {
+      throw new IllegalArgumentException("renditions can not share an output channel, each needs a file.");
+    }
+    if (options.sampleRecording != null) {
+      throw new IllegalArgumentException("renditions can not be recorded, replay plays a single output.");
+    }
+    if (options.stagedVideo) {
+      throw new IllegalArgumentException("renditions share one decode, staged video is not supported.");
+    }
+    try {
+      run(outputs);
+    } finally {
+      renditionCoder = null;
+    }
+  }
+
+  @Override public void setupMediaCoders() throws InterruptedException {
+    Track track = ExtractorUtil.videoAndAudioTrack(extractor);
+    // audio is encoded once for all renditions, so first strategy decides its format
+    MediaFormat audioFormat = formatStrategies.get(0).audioOutputFormat(track.audioFormat);
+
+    List<MediaFormat> videoFormats = new ArrayList<>(formatStrategies.size());
+    List<String> decoderMimes = new ArrayList<>(2);
+    List<String> encoderMimes = new ArrayList<>(formatStrategies.size() + 1);
+    if (track.videoTrackIndex != -1) {
+      for (MediaFormatStrategy formatStrategy : formatStrategies) {
+        MediaFormat videoFormat = formatStrategy.videoOutputFormat(track.videoFormat);
+        if (videoFormat == null) {
+          throw new IllegalArgumentException("every rendition needs a video format, pass-through can not share a decode.");
+        }
+        videoFormats.add(videoFormat);
+        encoderMimes.add(videoFormat.getString(MediaFormat.KEY_MIME));
+      }
+      decoderMimes.add(track.videoMime);
+    }
+    if (track.audioTrackIndex != -1 && audioFormat != null) {
+      decoderMimes.add(track.audioMime);
+      encoderMimes.add(audioFormat.getString(MediaFormat.KEY_MIME));
+    }
+    // one decoder and an encoder per rendition are taken at once
+    acquire(decoderMimes, encoderMimes);
+
+    // every rendition waits for all tracks of input before its writer starts
+    List<Muxer> qmuxers = new ArrayList<>(formatStrategies.size());
+    for (int i = 0, size = formatStrategies.size(); i < size; i++) {
+      qmuxers.add(newMuxer(i, trackMask(track)));
+    }
+
+    CodecProvider provider = options.codecProvider;
+    if (track.videoTrackIndex != -1) {
+      renditionCoder = Coder.newRenditionInstance(provider, track, videoFormats, extractor, qmuxers, eventLoop);
+      videoCoder = renditionCoder;
+      videoCoder.probe(probe);
+      videoCoder.setup();
+    }
+    if (track.audioTrackIndex != -1) {
+      audioCoder = Coder.newInstance(provider, track, audioFormat, extractor, Muxer.newGroupInstance(qmuxers), SAMPLE_AUDIO, eventLoop);
+      audioCoder.probe(probe);
+      audioCoder.setup();
+    }
+    selectTracks(track);
+  }
+
+  @Override int outputFormat() {
+    return MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+  }
+
+  @Override MuxerCallback newMuxerCallback(int output) {
+    return () -> {
+      if (renditionCoder != null) {
+        MpegFormatValidator.validateVideoOuputFormatOrThrow(renditionCoder.determinedFormat(output));
+      }
+      if (audioCoder != null) {
+        MpegFormatValidator.validateAudioOuputFormatOrThrow(audioCoder.determinedFormat());
+      }
+    };
+  }
+}
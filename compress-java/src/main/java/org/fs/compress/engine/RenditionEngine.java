@@ -0,0 +1,62 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.List;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.metrics.PipelineProbe;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * Encodes one input in to several outputs with a single decode, each output has its own strategy.
+ */
+public interface RenditionEngine {
+
+  static RenditionEngine newInstance(List<MediaFormatStrategy> formatStrategies, FileDescriptor input) {
+    if (formatStrategies == null || formatStrategies.isEmpty()) {
+      throw new IllegalArgumentException("formatStrategies can not be null or empty.");
+    }
+    // audio is shared between outputs, so all of them must agree on container
+    for (MediaFormatStrategy formatStrategy : formatStrategies) {
+      if (!formatStrategy.isStrategySupported(MIME_TYPE_VIDEO_AVC)) {
+        throw new IllegalArgumentException("currently renditions support avc strategies only.");
+      }
+    }
+    return new RenditionCoderEngine(formatStrategies, input);
+  }
+
+  void callback(CoderEngineCallback callback);
+
+  void options(EngineOptions options);
+
+  void gate(CoderEngineGate gate);
+
+  // set before start, stages are not timed without it
+  void probe(PipelineProbe probe);
+
+  double percentage();
+
+  void start(List<File> outputs) throws IOException, InterruptedException;
+
+  // null until start returned without error, outputs are summed
+  CompressionReport report();
+}
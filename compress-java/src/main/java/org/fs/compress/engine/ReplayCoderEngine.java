@@ -0,0 +1,213 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.IOException;
+import org.fs.compress.coder.Coder;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.data.Progress;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.replay.SampleRecording;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.util.ReportUtil;
+import org.fs.compress.util.Utils;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+// plays a recording through muxer and scheduler of engine, codecs are left out of the job entirely
+final class ReplayCoderEngine implements CoderEngine {
+
+  private final File recordingFile;
+  private final boolean paced;
+
+  private SampleRecording recording;
+  private ContainerWriter writer;
+  private Coder videoCoder;
+  private Coder audioCoder;
+  private Muxer muxer;
+  // samples muxer can not hold in memory before start spill next to output
+  private File spillDirectory;
+
+  private CoderEngineCallback callback;
+  private PipelineProbe probe;
+  private EngineOptions options = new EngineOptions();
+
+  private volatile double percentage;
+  private long mediaTimeUs;
+  private CompressionReport report;
+
+  ReplayCoderEngine(File recordingFile, boolean paced) {
+    this.recordingFile = recordingFile;
+    this.paced = paced;
+  }
+
+  @Override public void callback(CoderEngineCallback callback) {
+    this.callback = callback;
+  }
+
+  @Override public void options(EngineOptions options) {
+    this.options = options != null ? options : new EngineOptions();
+  }
+
+  // replay holds no codecs, there is nothing to give back to other jobs
+  @Override public void gate(CoderEngineGate gate) {
+    /*no opt*/
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public double percentage() {
+    return percentage;
+  }
+
+  @Override public void setupMetadata() throws IOException {
+    recording = SampleRecording.newInstance(recordingFile);
+  }
+
+  @Override public void setupMediaCoders() {
+    boolean video = false;
+    boolean audio = false;
+    for (int i = 0, size = recording.size(); i < size; i++) {
+      video |= recording.sampleType(i) == SAMPLE_VIDEO;
+      audio |= recording.sampleType(i) == SAMPLE_AUDIO;
+    }
+    if (!video && !audio) {
+      throw new IllegalArgumentException("recording has no samples " + recordingFile);
+    }
+    int trackMask = (video ? SAMPLE_VIDEO : 0) | (audio ? SAMPLE_AUDIO : 0);
+    muxer = Muxer.newInstance(writer, null, trackMask, options.muxerQueueBytes, spillDirectory);
+    muxer.probe(probe);
+    if (video) {
+      videoCoder = Coder.newReplayInstance(recording, SAMPLE_VIDEO, muxer, paced);
+      videoCoder.probe(probe);
+      videoCoder.setup();
+    }
+    if (audio) {
+      audioCoder = Coder.newReplayInstance(recording, SAMPLE_AUDIO, muxer, paced);
+      audioCoder.probe(probe);
+      audioCoder.setup();
+    }
+  }
+
+  @Override public void start(File output) throws IOException, InterruptedException {
+    final long startNs = System.nanoTime();
+    Exception failure = null;
+    try {
+      setupMetadata();
+      writer = newWriter(output);
+      spillDirectory = output.getAbsoluteFile().getParentFile();
+      setupMediaCoders();
+      stepPipelines();
+      // a track that ended without a format leaves writer to tracks that have one
+      muxer.dispatchOutputFormatSet();
+      writer.stop();
+      report = newReport(output, System.nanoTime() - startNs);
+    } catch (Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      Utils.closeAll(failure,
+          // drop samples queued before a start that never came
+          () -> {
+            if (muxer != null) {
+              muxer.release();
+            }
+          },
+          // close muxer
+          () -> {
+            if (writer != null) {
+              writer.release();
+              writer = null;
+            }
+          });
+    }
+  }
+
+  @Override public void stepPipelines() throws InterruptedException {
+    ProgressTracker tracker = ProgressTracker.newInstance(options.progressIntervalMs, recording.durationTimeUs(), -1);
+    CoderScheduler scheduler = CoderScheduler.newInstance(options.interleaveWindowUs);
+    scheduler.register(videoCoder);
+    scheduler.register(audioCoder);
+
+    while (!scheduler.finished()) {
+      boolean stepped = scheduler.step();
+
+      if (tracker.update(scheduler.mediaTimeUs(), videoFrames(), scheduler.sampleBytes())) {
+        report(tracker.progress());
+      }
+      // only paced replay waits, for recorded time to come
+      if (!stepped) {
+        Thread.sleep(1);
+      }
+    }
+    mediaTimeUs = scheduler.mediaTimeUs();
+    tracker.complete(mediaTimeUs, videoFrames(), scheduler.sampleBytes());
+    report(tracker.progress());
+  }
+
+  @Override public CompressionReport report() {
+    return report;
+  }
+
+  // input of replay is the recording itself
+  private CompressionReport newReport(File output, long elapsedNs) {
+    CompressionReport report = new CompressionReport();
+    ReportUtil.complete(report, recordingFile.length(), Utils.sizeOf(output), elapsedNs, mediaTimeUs);
+    if (videoCoder != null) {
+      report.video = new TrackReport();
+      videoCoder.report(report.video);
+    }
+    if (audioCoder != null) {
+      report.audio = new TrackReport();
+      audioCoder.report(report.audio);
+    }
+    report.peakMuxerQueueSize = muxer.peakQueueSize();
+    return report;
+  }
+
+  private long videoFrames() {
+    return videoCoder != null ? videoCoder.frames() : 0;
+  }
+
+  private void report(Progress progress) {
+    percentage = progress.percentage;
+    if (callback != null) callback.percentage(progress.percentage);
+    if (options.progressCallback != null) options.progressCallback.progress(progress);
+  }
+
+  // mp4 outputs go through pure java writer when options ask for it, to output channel if there is one
+  private ContainerWriter newWriter(File output) throws IOException {
+    if (options.streaming != null) {
+      // recording keeps sync flags of samples but not interval encoder was asked for
+      return ContainerWriter.newStreamingInstance(output, options.streaming, 0);
+    }
+    if (options.mp4Writer == null) {
+      return options.codecProvider.newWriter(output, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+    if (options.outputChannel != null) {
+      return ContainerWriter.newFragmentedMp4Instance(options.outputChannel, options.mp4Writer);
+    }
+    return ContainerWriter.newMp4Instance(output, options.mp4Writer);
+  }
+}
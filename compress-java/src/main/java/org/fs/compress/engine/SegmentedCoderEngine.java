@@ -0,0 +1,508 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.engine;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.fs.compress.coder.Coder;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.EngineOptions;
+import org.fs.compress.data.Progress;
+import org.fs.compress.data.Track;
+import org.fs.compress.data.TrackReport;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.leak.LeakTracker;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.muxer.SegmentStitcher;
+import org.fs.compress.slot.CodecSlotManager;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.fs.compress.util.BuildOsVersionUtil;
+import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.Mp4FaststartUtil;
+import org.fs.compress.util.MpegFormatValidator;
+import org.fs.compress.util.ReportUtil;
+import org.fs.compress.util.Utils;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+/**
+ * Splits video track at sync samples and transcodes every range on its own thread with its own extractor and coder
+ * pair, audio is transcoded next to them in one piece. Job thread starts ranges in order as codec slots allow and
+ * parks between them when it is preempted, once none of its codecs is left. Segment files start near zero whatever
+ * writer made them, stitcher puts each of them back at start of its range. Ranges start on sync samples, so inputs
+ * with closed gops are expected.
+ */
+final class SegmentedCoderEngine implements CoderEngine {
+
+  private static final int OUTPUT_FORMAT = MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+
+  private final MediaFormatStrategy formatStrategy;
+  private final FileDescriptor input;
+
+  private CoderEngineCallback callback;
+  private CoderEngineGate gate;
+  private EngineOptions options = new EngineOptions();
+
+  private volatile double percentage;
+
+  private Extractor extractor;
+  private int orientationHint;
+  private long durationTimeUs;
+  private Track track;
+  private MediaFormat videoFormat;
+  private CompressionReport report;
+
+  private final List<Segment> segments = new ArrayList<>();
+  private Segment audioSegment;
+  // samples segment muxers can not hold in memory before start spill next to output
+  private File spillDirectory;
+  // shared by every segment, so each stage collects timings of all threads
+  private PipelineProbe probe;
+
+  // segments wake job thread up once they end, so it starts next ones without polling
+  private final Object lock = new Object();
+  private boolean changed;
+
+  SegmentedCoderEngine(MediaFormatStrategy formatStrategy, FileDescriptor input) {
+    this.formatStrategy = formatStrategy;
+    this.input = input;
+  }
+
+  @Override public void callback(CoderEngineCallback callback) {
+    this.callback = callback;
+  }
+
+  @Override public void options(EngineOptions options) {
+    this.options = options != null ? options : new EngineOptions();
+  }
+
+  @Override public void gate(CoderEngineGate gate) {
+    this.gate = gate;
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public double percentage() {
+    return percentage;
+  }
+
+  @Override public void setupMetadata() throws IOException {
+    orientationHint = extractor.orientation();
+    track = ExtractorUtil.videoAndAudioTrack(extractor);
+    if (track.videoTrackIndex < 0) {
+      throw new IllegalArgumentException("segmented mode needs a video track.");
+    }
+    // track duration is in microseconds already
+    durationTimeUs = ExtractorUtil.durationTimeUs(track.videoFormat);
+    if (durationTimeUs <= 0) {
+      throw new IllegalArgumentException("segmented mode needs duration of video track.");
+    }
+  }
+
+  // coders are created by segments on their own threads, here ranges are only planned
+  @Override public void setupMediaCoders() {
+    videoFormat = formatStrategy.videoOutputFormat(track.videoFormat);
+    if (videoFormat == null) {
+      throw new IllegalArgumentException("segmented mode needs a video format, pass-through has nothing to split.");
+    }
+    long[] boundaries = ExtractorUtil.syncBoundaries(extractor, track, durationTimeUs, options.segments);
+    for (int i = 0; i < boundaries.length; i++) {
+      Segment segment = new Segment(boundaries[i], i + 1 < boundaries.length ? boundaries[i + 1] : Long.MAX_VALUE);
+      segment.format = videoFormat;
+      segment.sampleType = SAMPLE_VIDEO;
+      segments.add(segment);
+    }
+    if (track.audioTrackIndex >= 0) {
+      audioSegment = new Segment(0, Long.MAX_VALUE);
+      audioSegment.format = formatStrategy.audioOutputFormat(track.audioFormat);
+      audioSegment.sampleType = SAMPLE_AUDIO;
+    }
+  }
+
+  @Override public void start(File output) throws IOException, InterruptedException {
+    if (options.sampleRecording != null) {
+      throw new IllegalArgumentException("segmented jobs can not be recorded, replay plays a single encode.");
+    }
+    LeakTracker.Scope scope = LeakTracker.shared().openScope("job " + output.getName());
+    final long startNs = System.nanoTime();
+    final List<File> files = new ArrayList<>();
+    ContainerWriter writer = null;
+    Exception failure = null;
+    try {
+      extractor = options.codecProvider.newExtractor(input);
+      spillDirectory = output.getAbsoluteFile().getParentFile();
+      setupMetadata();
+      setupMediaCoders();
+
+      List<File> videoSegments = new ArrayList<>(segments.size());
+      long[] startTimesUs = new long[segments.size()];
+      for (int i = 0, size = segments.size(); i < size; i++) {
+        Segment segment = segments.get(i);
+        segment.file = new File(spillDirectory, output.getName() + ".segment" + i);
+        files.add(segment.file);
+        videoSegments.add(segment.file);
+        startTimesUs[i] = segment.startTimeUs;
+      }
+      if (audioSegment != null) {
+        audioSegment.file = new File(spillDirectory, output.getName() + ".audio");
+        files.add(audioSegment.file);
+      }
+
+      stepPipelines();
+
+      // segments are written by provider, output by whichever writer options ask for
+      writer = BaseCoderEngine.newWriter(options, output, OUTPUT_FORMAT, keyFrameIntervalUs());
+      SegmentStitcher.newInstance(options.codecProvider)
+          .stitch(videoSegments, startTimesUs, audioSegment != null ? audioSegment.file : null, writer, orientationHint);
+      if (BaseCoderEngine.faststart(options, OUTPUT_FORMAT)) {
+        // writer lets go of file before it is rewritten
+        writer.release();
+        writer = null;
+        Mp4FaststartUtil.faststart(output);
+      }
+      report = newReport(output, System.nanoTime() - startNs);
+    } catch (Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      final ContainerWriter writerRef = writer;
+      Utils.closeAll(failure,
+          // close writer of output
+          () -> {
+            if (writerRef != null) writerRef.release();
+          },
+          // close extractor
+          () -> {
+            if (extractor != null) {
+              extractor.release();
+              extractor = null;
+            }
+          },
+          // temporary files are gone whatever happened, every segment thread is joined by now
+          () -> {
+            for (File file : files) {
+              if (file.exists() && !file.delete()) {
+                throw new IllegalArgumentException("can not delete " + file);
+              }
+            }
+          },
+          // anything of this job still open is reported in debug mode
+          scope::close);
+    }
+  }
+
+  @Override public void stepPipelines() throws InterruptedException {
+    ProgressTracker tracker = ProgressTracker.newInstance(options.progressIntervalMs, durationTimeUs, -1);
+    // audio goes first, it is one piece and would otherwise wait for every range
+    List<Segment> pending = new ArrayList<>(segments);
+    if (audioSegment != null) {
+      pending.add(0, audioSegment);
+    }
+    List<Segment> started = new ArrayList<>(pending.size());
+    try {
+      while (true) {
+        int running = 0;
+        for (Segment segment : started) {
+          segment.throwIfFailed();
+          if (!segment.finished()) running++;
+        }
+        // media time covered by all segments together
+        long doneUs = 0;
+        long frames = 0;
+        long bytes = audioSegment != null ? audioSegment.sampleBytes() : 0;
+        for (Segment segment : segments) {
+          doneUs += segment.doneUs();
+          frames += segment.frames();
+          bytes += segment.sampleBytes();
+        }
+
+        if (pending.isEmpty() && running == 0) {
+          tracker.complete(doneUs, frames, bytes);
+          report(tracker.progress());
+          break;
+        }
+        if (tracker.update(doneUs, frames, bytes)) {
+          report(tracker.progress());
+        }
+
+        if (!pending.isEmpty()) {
+          if (gate != null && gate.preempted()) {
+            // ranges left wait until job gets its slot back, running ones finish first so no codec is held parked
+            if (running == 0) {
+              gate.checkpoint();
+              continue;
+            }
+          } else {
+            Segment next = pending.get(0);
+            if (next.format == null || !options.codecProvider.limited()) {
+              pending.remove(0);
+              started.add(next);
+              next.start(null);
+              continue;
+            }
+            // with nothing of its own running job steps aside while it waits, otherwise it waits for its segments
+            List<String> decoderMimes = Collections.singletonList(next.sampleType == SAMPLE_AUDIO ? track.audioMime : track.videoMime);
+            List<String> encoderMimes = Collections.singletonList(next.format.getString(MediaFormat.KEY_MIME));
+            CodecSlotManager.Lease lease = running == 0
+                ? CodecSlotManager.shared().acquire(decoderMimes, encoderMimes, gate)
+                : CodecSlotManager.shared().tryAcquire(decoderMimes, encoderMimes);
+            if (lease != null) {
+              pending.remove(0);
+              started.add(next);
+              next.start(lease);
+              continue;
+            }
+          }
+        }
+        synchronized (lock) {
+          if (!changed) lock.wait(WAIT_EVENTS);
+          changed = false;
+        }
+      }
+    } finally {
+      // on failure or cancel rest of segments are stopped, files are deleted only after every thread is gone
+      for (Segment segment : started) {
+        segment.interrupt();
+      }
+      for (Segment segment : started) {
+        segment.join();
+      }
+    }
+  }
+
+  @Override public CompressionReport report() {
+    return report;
+  }
+
+  // segments are parts of one video track, every thread is joined by now
+  private CompressionReport newReport(File output, long elapsedNs) {
+    CompressionReport report = new CompressionReport();
+    ReportUtil.complete(report, Utils.sizeOf(input), Utils.sizeOf(output), elapsedNs, durationTimeUs);
+    report.video = new TrackReport();
+    for (Segment segment : segments) {
+      ReportUtil.merge(report.video, segment.report);
+      report.peakMuxerQueueSize = Math.max(report.peakMuxerQueueSize, segment.peakMuxerQueueSize);
+    }
+    if (audioSegment != null) {
+      report.audio = audioSegment.report;
+      report.peakMuxerQueueSize = Math.max(report.peakMuxerQueueSize, audioSegment.peakMuxerQueueSize);
+    }
+    return report;
+  }
+
+  private void report(Progress progress) {
+    percentage = progress.percentage;
+    if (callback != null) callback.percentage(progress.percentage);
+    if (options.progressCallback != null) options.progressCallback.progress(progress);
+  }
+
+  // streaming output cuts its segments on key frames encoder is asked for
+  private long keyFrameIntervalUs() {
+    if (!videoFormat.containsKey(MediaFormat.KEY_I_FRAME_INTERVAL)) return 0;
+    return videoFormat.getInteger(MediaFormat.KEY_I_FRAME_INTERVAL) * 1000000L;
+  }
+
+  private void changed() {
+    synchronized (lock) {
+      changed = true;
+      lock.notifyAll();
+    }
+  }
+
+  private final class Segment implements Runnable {
+
+    private final long startTimeUs;
+    private final long endTimeUs;
+
+    private File file;
+    private MediaFormat format;
+    private int sampleType;
+
+    private Thread thread;
+    // taken by job thread, given back by this one once its codecs are released
+    private CodecSlotManager.Lease lease;
+    private volatile Coder coder;
+    private volatile boolean finished;
+    private volatile Exception error;
+
+    // filled before finished is set
+    private final TrackReport report = new TrackReport();
+    private int peakMuxerQueueSize;
+
+    Segment(long startTimeUs, long endTimeUs) {
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+    }
+
+    void start(CodecSlotManager.Lease lease) {
+      this.lease = lease;
+      thread = new Thread(this, "CompressionSegment");
+      thread.start();
+    }
+
+    @Override public void run() {
+      LeakTracker.Scope scope = LeakTracker.shared().openScope("segment " + file.getName());
+      EventLoop eventLoop = null;
+      Extractor extractor = null;
+      ContainerWriter writer = null;
+      // local, so a coder whose setup fails is released too; field is only set once it runs
+      Coder coder = null;
+      Muxer muxer = null;
+      try {
+        // codecs report their buffers through callbacks on Marshmallow and above, polling stays as fallback
+        if (BuildOsVersionUtil.isOsAvailable(Build.VERSION_CODES.M)) {
+          eventLoop = EventLoop.newInstance();
+        }
+        extractor = options.codecProvider.newExtractor(input);
+        writer = options.codecProvider.newWriter(file, OUTPUT_FORMAT);
+        if (sampleType == SAMPLE_AUDIO) {
+          muxer = Muxer.newInstance(writer, null, SAMPLE_AUDIO, options.muxerQueueBytes, spillDirectory);
+          coder = Coder.newInstance(options.codecProvider, track, format, extractor, muxer, SAMPLE_AUDIO, eventLoop);
+          muxer.probe(probe);
+          coder.probe(probe);
+          coder.setup();
+          extractor.selectTrack(track.audioTrackIndex);
+        } else {
+          muxer = Muxer.newInstance(writer, () -> MpegFormatValidator.validateVideoOuputFormatOrThrow(this.coder.determinedFormat()),
+              SAMPLE_VIDEO, options.muxerQueueBytes, spillDirectory);
+          coder = Coder.newSegmentInstance(options.codecProvider, track, format, extractor, muxer, endTimeUs, eventLoop);
+          muxer.probe(probe);
+          coder.probe(probe);
+          coder.setup();
+          extractor.seekTo(startTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        }
+        this.coder = coder;
+        while (!coder.finished()) {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+          }
+          if (!coder.stepPipeline()) {
+            if (eventLoop != null) {
+              eventLoop.await(WAIT_EVENTS);
+            } else {
+              Thread.sleep(WAIT_CODERS);
+            }
+          }
+        }
+        // a segment that ended without a format leaves writer with nothing to start
+        muxer.dispatchOutputFormatSet();
+        writer.stop();
+        coder.report(report);
+        peakMuxerQueueSize = muxer.peakQueueSize();
+        finished = true;
+      } catch (Exception e) {
+        error = e;
+      } finally {
+        final Coder coderRef = coder;
+        final Muxer qmuxerRef = muxer;
+        final Extractor extractorRef = extractor;
+        final ContainerWriter writerRef = writer;
+        final EventLoop eventLoopRef = eventLoop;
+        release(() -> {
+          if (coderRef != null) coderRef.release();
+        });
+        release(() -> {
+          if (qmuxerRef != null) qmuxerRef.release();
+        });
+        // give codec slots back once coder is gone
+        release(() -> {
+          if (lease != null) {
+            lease.release();
+            lease = null;
+          }
+        });
+        release(() -> {
+          if (extractorRef != null) extractorRef.release();
+        });
+        release(() -> {
+          if (writerRef != null) writerRef.release();
+        });
+        // after coder so no callback is left behind
+        release(() -> {
+          if (eventLoopRef != null) eventLoopRef.release();
+        });
+        release(scope::close);
+        changed();
+      }
+    }
+
+    // errors of this thread are reported by job thread, so release does not throw here
+    private void release(Utils.Callback callback) {
+      Exception e = Utils.closeQuietly(callback);
+      if (e != null && error == null) error = e;
+    }
+
+    boolean finished() {
+      return finished;
+    }
+
+    long doneUs() {
+      if (finished) return Math.min(endTimeUs, durationTimeUs) - startTimeUs;
+      Coder coder = this.coder;
+      return coder != null ? Math.max(0, coder.presentationTimeUs() - startTimeUs) : 0;
+    }
+
+    long frames() {
+      Coder coder = this.coder;
+      return coder != null ? coder.frames() : 0;
+    }
+
+    long sampleBytes() {
+      Coder coder = this.coder;
+      return coder != null ? coder.sampleBytes() : 0;
+    }
+
+    void throwIfFailed() {
+      Exception error = this.error;
+      if (error != null) {
+        throw new IllegalArgumentException(error);
+      }
+    }
+
+    void interrupt() {
+      if (thread != null && !finished) thread.interrupt();
+    }
+
+    void join() {
+      if (thread == null) return;
+      boolean interrupted = false;
+      while (thread.isAlive()) {
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
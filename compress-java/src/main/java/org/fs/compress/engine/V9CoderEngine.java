@@ -18,9 +18,7 @@ package org.fs.compress.engine;
 import android.annotation.TargetApi;
 import android.media.MediaMuxer;
 import android.os.Build;
-import java.io.File;
 import java.io.FileDescriptor;
-import java.io.IOException;
 import org.fs.compress.format.MediaFormatStrategy;
 import org.fs.compress.muxer.MuxerCallback;
 
@@ -31,11 +29,11 @@ final class V9CoderEngine extends BaseCoderEngine {
     super(formatStrategy, input);
   }
 
-  @Override MediaMuxer newMediaMuxer(File output) throws IOException {
-    return new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM);
+  @Override int outputFormat() {
+    return MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM;
   }
 
-  @Override MuxerCallback newMuxerCallback() {
+  @Override MuxerCallback newMuxerCallback(int output) {
     return () -> {
       // TODO implement output validations
     };
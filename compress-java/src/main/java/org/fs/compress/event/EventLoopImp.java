@@ -0,0 +1,66 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.event;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+final class EventLoopImp implements EventLoop {
+
+  private final Object eventSyncObject = new Object();
+
+  private HandlerThread thread;
+  private Handler handler;
+
+  private boolean pending;
+
+  EventLoopImp() {
+    thread = new HandlerThread("CompressionEvents");
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  @Override public Handler handler() {
+    return handler;
+  }
+
+  @Override public void signal() {
+    synchronized (eventSyncObject) {
+      pending = true;
+      eventSyncObject.notifyAll();
+    }
+  }
+
+  @Override public boolean await(long timeout) throws InterruptedException {
+    synchronized (eventSyncObject) {
+      // events posted while coders were stepping must not be lost
+      if (!pending) {
+        eventSyncObject.wait(timeout);
+      }
+      boolean signaled = pending;
+      pending = false;
+      return signaled;
+    }
+  }
+
+  @Override public void release() {
+    if (thread != null) {
+      thread.quitSafely();
+    }
+    thread = null;
+    handler = null;
+  }
+}
@@ -15,12 +15,21 @@
  */
 package org.fs.compress.io;
 
+import android.opengl.EGLContext;
 import android.view.Surface;
 
 public interface InputSurface {
 
   static InputSurface newInstance(Surface surface) {
-    return new InputSurfaceImp(surface);
+    return new InputSurfaceImp(surface, null);
+  }
+
+  /**
+   * Context of new surface shares textures and programs with {@code shared}, so one decoded frame can be drawn in to
+   * several encoders.
+   */
+  static InputSurface newInstance(Surface surface, InputSurface shared) {
+    return new InputSurfaceImp(surface, shared);
   }
 
   void eglSetup();
@@ -35,6 +44,8 @@ public interface InputSurface {
 
   Surface surface();
 
+  EGLContext eglContext();
+
   int getWidth();
 
   int getHeight();
@@ -23,6 +23,9 @@ import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
 import android.view.Surface;
 import java.util.Locale;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_EGL_CONTEXT;
 
 final class InputSurfaceImp implements InputSurface {
 
@@ -34,12 +37,17 @@ final class InputSurfaceImp implements InputSurface {
 
   private Surface surface;
 
-  InputSurfaceImp(Surface surface) {
+  private final EGLContext sharedContext;
+  private final LeakTracker.Resource resource;
+
+  InputSurfaceImp(Surface surface, InputSurface shared) {
     if (surface == null) {
       throw new IllegalArgumentException("surface can not be null.");
     }
     this.surface = surface;
+    this.sharedContext = shared != null ? shared.eglContext() : EGL14.EGL_NO_CONTEXT;
     eglSetup();
+    resource = LeakTracker.shared().track(RESOURCE_EGL_CONTEXT, this);
   }
 
   @Override public void eglSetup() {
@@ -76,7 +84,7 @@ final class InputSurfaceImp implements InputSurface {
       EGL14.EGL_NONE
     };
 
-    eglContext = EGL14.eglCreateContext(eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttrs, 0);
+    eglContext = EGL14.eglCreateContext(eglDisplay, configs[0], sharedContext, contextAttrs, 0);
     checkEglError("eglCreateContext");
 
     if (eglContext == null) {
@@ -109,6 +117,7 @@ final class InputSurfaceImp implements InputSurface {
     eglContext = EGL14.EGL_NO_CONTEXT;
     eglSurface = EGL14.EGL_NO_SURFACE;
     surface = null;
+    resource.release();
   }
 
   @Override public void makeCurrent() {
@@ -133,6 +142,10 @@ final class InputSurfaceImp implements InputSurface {
     return surface;
   }
 
+  @Override public EGLContext eglContext() {
+    return eglContext;
+  }
+
   @Override public int getWidth() {
     int[] v = new int[1];
     EGL14.eglQuerySurface(eglDisplay, eglSurface, EGL14.EGL_WIDTH, v, 0);
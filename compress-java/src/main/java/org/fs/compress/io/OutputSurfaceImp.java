@@ -17,8 +17,11 @@ package org.fs.compress.io;
 
 import android.graphics.SurfaceTexture;
 import android.view.Surface;
+import org.fs.compress.leak.LeakTracker;
 import org.fs.compress.texture.TextureRenderer;
 
+import static org.fs.compress.util.Constants.RESOURCE_SURFACE;
+
 final class OutputSurfaceImp implements OutputSurface {
 
   private static final int STATE_IDLE = 0x01;
@@ -31,6 +34,7 @@ final class OutputSurfaceImp implements OutputSurface {
   private int state = STATE_IDLE;
 
   private TextureRenderer textureRenderer;
+  private final LeakTracker.Resource resource;
 
   OutputSurfaceImp() {
     // create texture renderer
@@ -41,6 +45,7 @@ final class OutputSurfaceImp implements OutputSurface {
     surfaceTexture.setOnFrameAvailableListener(this);
     // create surface
     surface = new Surface(surfaceTexture);
+    resource = LeakTracker.shared().track(RESOURCE_SURFACE, this);
   }
 
   @Override public void awaitNextFrame(long timeout) {
@@ -70,6 +75,15 @@ final class OutputSurfaceImp implements OutputSurface {
     if (surface != null) {
       surface.release();
     }
+    // surface texture holds its own buffer queue, releasing surface alone leaves it to finalizer
+    if (surfaceTexture != null) {
+      surfaceTexture.setOnFrameAvailableListener(null);
+      surfaceTexture.release();
+    }
+    if (textureRenderer != null) {
+      textureRenderer.release();
+    }
+    resource.release();
     textureRenderer = null;
     surface = null;
     surfaceTexture = null;
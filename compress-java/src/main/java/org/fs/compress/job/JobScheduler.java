@@ -0,0 +1,60 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.job;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+import org.fs.compress.CompressionCallback;
+import org.fs.compress.CompressionFuture;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.engine.CoderEngineGate;
+import org.fs.compress.util.JobPriority;
+
+import static org.fs.compress.util.Constants.PRIORITY_BACKGROUND;
+import static org.fs.compress.util.Constants.PRIORITY_IMMEDIATE;
+import static org.fs.compress.util.Constants.PRIORITY_NORMAL;
+
+/**
+ * Runs jobs by priority, each priority has its own cap on running jobs and waiting jobs gain a priority every aging
+ * interval so none starves. A job that can not get a slot asks a lower priority one to step aside at its next gop, so
+ * does a job waiting for codec slots, and jobs below it are not started until it has them.
+ */
+public interface JobScheduler {
+
+  static final int DEFAULT_CONCURRENCY = 3;
+  static final long DEFAULT_AGING_MS = 30000;
+
+  static JobScheduler newInstance(ThreadFactory factory) {
+    int[] priorityCaps = new int[PRIORITY_IMMEDIATE + 1];
+    // one slot is always left for work above background
+    priorityCaps[PRIORITY_BACKGROUND] = DEFAULT_CONCURRENCY - 1;
+    priorityCaps[PRIORITY_NORMAL] = DEFAULT_CONCURRENCY;
+    priorityCaps[PRIORITY_IMMEDIATE] = DEFAULT_CONCURRENCY;
+    return newInstance(DEFAULT_CONCURRENCY, priorityCaps, DEFAULT_AGING_MS, factory);
+  }
+
+  static JobScheduler newInstance(int concurrency, int[] priorityCaps, long agingMs, ThreadFactory factory) {
+    return new JobSchedulerImp(concurrency, priorityCaps, agingMs, factory);
+  }
+
+  CompressionFuture submit(@JobPriority int priority, Job job, CompressionCallback callback);
+
+  interface Job {
+
+    // report is handed to callback once job completed
+    CompressionReport run(CoderEngineGate gate) throws IOException, InterruptedException;
+  }
+}
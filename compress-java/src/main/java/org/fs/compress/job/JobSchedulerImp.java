@@ -0,0 +1,349 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.fs.compress.CompressionCallback;
+import org.fs.compress.CompressionFuture;
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.engine.CoderEngineGate;
+
+import static org.fs.compress.util.Constants.JOB_STATE_CANCELED;
+import static org.fs.compress.util.Constants.JOB_STATE_COMPLETED;
+import static org.fs.compress.util.Constants.JOB_STATE_FAILED;
+import static org.fs.compress.util.Constants.JOB_STATE_PREEMPTED;
+import static org.fs.compress.util.Constants.JOB_STATE_QUEUED;
+import static org.fs.compress.util.Constants.JOB_STATE_RUNNING;
+import static org.fs.compress.util.Constants.PRIORITY_BACKGROUND;
+import static org.fs.compress.util.Constants.PRIORITY_IMMEDIATE;
+
+// every state change happens under lock of scheduler, waiting futures and parked jobs wait on it too
+final class JobSchedulerImp implements JobScheduler {
+
+  private final int concurrency;
+  private final int[] priorityCaps;
+  private final long agingMs;
+  private final ThreadFactory factory;
+
+  private final List<Task> queued = new ArrayList<>();
+  private final List<Task> running = new ArrayList<>();
+  private final int[] runningCounts = new int[PRIORITY_IMMEDIATE + 1];
+  // jobs stepped aside while they wait for codec slots
+  private final int[] blockedCounts = new int[PRIORITY_IMMEDIATE + 1];
+
+  private long sequence;
+
+  JobSchedulerImp(int concurrency, int[] priorityCaps, long agingMs, ThreadFactory factory) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive.");
+    }
+    if (priorityCaps == null || priorityCaps.length != runningCounts.length) {
+      throw new IllegalArgumentException("priorityCaps must have a cap for every priority.");
+    }
+    if (agingMs <= 0) {
+      throw new IllegalArgumentException("agingMs must be positive.");
+    }
+    this.concurrency = concurrency;
+    this.priorityCaps = priorityCaps.clone();
+    this.agingMs = agingMs;
+    this.factory = factory;
+  }
+
+  @Override public CompressionFuture submit(int priority, Job job, CompressionCallback callback) {
+    if (priority < PRIORITY_BACKGROUND || priority > PRIORITY_IMMEDIATE) {
+      throw new IllegalArgumentException("can not determine priority " + priority);
+    }
+    synchronized (this) {
+      Task task = new Task(priority, job, callback, sequence++);
+      task.queuedAtMs = nowMs();
+      queued.add(task);
+      dispatch();
+      return task;
+    }
+  }
+
+  private void dispatch() {
+    final long nowMs = nowMs();
+    final int blockedPriority = blockedPriority();
+    while (!queued.isEmpty()) {
+      Task next = null;
+      for (int i = 0, size = queued.size(); i < size; i++) {
+        Task task = queued.get(i);
+        if (runningCounts[task.priority] >= priorityCaps[task.priority]) continue;
+        // slots a job above is waiting for are not taken by a job below it
+        if (task.priority < blockedPriority) continue;
+        if (next == null || compare(task, next, nowMs) < 0) next = task;
+      }
+      if (next == null) return;
+
+      if (running.size() < concurrency) {
+        queued.remove(next);
+        start(next);
+        continue;
+      }
+
+      // no free slot
+      preempt(next.priority);
+      return;
+    }
+  }
+
+  // lowest running job below priority steps aside at its next gop, one at a time
+  private void preempt(int priority) {
+    Task victim = null;
+    for (int i = 0, size = running.size(); i < size; i++) {
+      Task task = running.get(i);
+      if (task.preempt) return;
+      if (task.priority < priority && (victim == null || task.priority < victim.priority)) victim = task;
+    }
+    if (victim != null) victim.preempt = true;
+  }
+
+  private int blockedPriority() {
+    for (int priority = PRIORITY_IMMEDIATE; priority >= PRIORITY_BACKGROUND; priority--) {
+      if (blockedCounts[priority] > 0) return priority;
+    }
+    return PRIORITY_BACKGROUND;
+  }
+
+  private void start(Task task) {
+    running.add(task);
+    runningCounts[task.priority]++;
+    task.state = JOB_STATE_RUNNING;
+    if (task.thread == null) {
+      task.thread = factory.newThread(task);
+      task.thread.start();
+    } else {
+      // parked in checkpoint
+      notifyAll();
+    }
+  }
+
+  // aging only orders the queue, preemption looks at priority job was submitted with
+  private int effectivePriority(Task task, long nowMs) {
+    long aged = task.priority + (nowMs - task.queuedAtMs) / agingMs;
+    return (int) Math.min(PRIORITY_IMMEDIATE, aged);
+  }
+
+  private int compare(Task a, Task b, long nowMs) {
+    int priority = Integer.compare(effectivePriority(b, nowMs), effectivePriority(a, nowMs));
+    return priority != 0 ? priority : Long.compare(a.sequence, b.sequence);
+  }
+
+  private static long nowMs() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  private final class Task implements CompressionFuture, CoderEngineGate, Runnable {
+
+    private final int priority;
+    private final Job job;
+    private final CompressionCallback callback;
+    private final long sequence;
+
+    private long queuedAtMs;
+    private Thread thread;
+    private int state = JOB_STATE_QUEUED;
+    private boolean preempt;
+    private boolean blocked;
+    private boolean canceled;
+    private Exception error;
+
+    Task(int priority, Job job, CompressionCallback callback, long sequence) {
+      this.priority = priority;
+      this.job = job;
+      this.callback = callback;
+      this.sequence = sequence;
+    }
+
+    @Override public void run() {
+      CompressionReport report = null;
+      try {
+        report = job.run(this);
+      } catch (Exception e) {
+        // codec failures come as runtime exceptions too, each one must give slot back
+        finish(null, e);
+        return;
+      } catch (Error e) {
+        finish(null, new IllegalStateException(e));
+        throw e;
+      }
+      finish(report, null);
+    }
+
+    // a job canceled while running ends canceled, even if engine got to its end
+    private void finish(CompressionReport report, Exception error) {
+      final boolean canceled;
+      synchronized (JobSchedulerImp.this) {
+        if (running.remove(this)) {
+          runningCounts[priority]--;
+        } else {
+          queued.remove(this);
+        }
+        // a job that failed while waiting for slots holds back no one any more
+        if (blocked) {
+          blocked = false;
+          blockedCounts[priority]--;
+        }
+        canceled = this.canceled;
+        this.error = error;
+        state = canceled ? JOB_STATE_CANCELED : error == null ? JOB_STATE_COMPLETED : JOB_STATE_FAILED;
+        JobSchedulerImp.this.notifyAll();
+        dispatch();
+      }
+
+      if (canceled) {
+        callback.canceled();
+      } else if (error == null) {
+        callback.completed(report);
+      } else {
+        callback.error(error);
+      }
+    }
+
+    @Override public void checkpoint() throws InterruptedException {
+      synchronized (JobSchedulerImp.this) {
+        if (!preempt) return;
+        preempt = false;
+        running.remove(this);
+        runningCounts[priority]--;
+        state = JOB_STATE_PREEMPTED;
+        queuedAtMs = nowMs();
+        queued.add(this);
+        dispatch();
+        while (state == JOB_STATE_PREEMPTED) {
+          JobSchedulerImp.this.wait();
+        }
+      }
+    }
+
+    @Override public boolean preempted() {
+      synchronized (JobSchedulerImp.this) {
+        return preempt;
+      }
+    }
+
+    @Override public void waiting(boolean waiting) throws InterruptedException {
+      synchronized (JobSchedulerImp.this) {
+        if (waiting) {
+          if (running.remove(this)) {
+            runningCounts[priority]--;
+            preempt = false;
+            blocked = true;
+            blockedCounts[priority]++;
+            // slots, not running jobs, hold it back, so a job below it lets go of its codecs
+            preempt(priority);
+            dispatch();
+          }
+        } else {
+          if (blocked) {
+            blocked = false;
+            blockedCounts[priority]--;
+          }
+          state = JOB_STATE_QUEUED;
+          queuedAtMs = nowMs();
+          queued.add(this);
+          dispatch();
+          while (state == JOB_STATE_QUEUED) {
+            JobSchedulerImp.this.wait();
+          }
+        }
+      }
+    }
+
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (JobSchedulerImp.this) {
+        if (isDone() || canceled) return false;
+        canceled = true;
+        if (thread != null) {
+          // running or parked, engine unwinds and run reports it
+          if (mayInterruptIfRunning || state != JOB_STATE_RUNNING) thread.interrupt();
+          return true;
+        }
+        queued.remove(this);
+        state = JOB_STATE_CANCELED;
+        JobSchedulerImp.this.notifyAll();
+        dispatch();
+      }
+      callback.canceled();
+      return true;
+    }
+
+    @Override public boolean isCancelled() {
+      synchronized (JobSchedulerImp.this) {
+        return canceled;
+      }
+    }
+
+    @Override public boolean isDone() {
+      synchronized (JobSchedulerImp.this) {
+        return state == JOB_STATE_COMPLETED || state == JOB_STATE_FAILED || state == JOB_STATE_CANCELED;
+      }
+    }
+
+    @Override public Void get() throws InterruptedException, ExecutionException {
+      synchronized (JobSchedulerImp.this) {
+        while (!isDone()) {
+          JobSchedulerImp.this.wait();
+        }
+        return result();
+      }
+    }
+
+    @Override public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (JobSchedulerImp.this) {
+        while (!isDone()) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) throw new TimeoutException();
+          TimeUnit.NANOSECONDS.timedWait(JobSchedulerImp.this, remaining);
+        }
+        return result();
+      }
+    }
+
+    private Void result() throws ExecutionException {
+      if (state == JOB_STATE_CANCELED) throw new CancellationException();
+      if (state == JOB_STATE_FAILED) throw new ExecutionException(error);
+      return null;
+    }
+
+    @Override public int queuePosition() {
+      synchronized (JobSchedulerImp.this) {
+        if (state != JOB_STATE_QUEUED && state != JOB_STATE_PREEMPTED) return -1;
+        final long nowMs = nowMs();
+        int position = 0;
+        for (int i = 0, size = queued.size(); i < size; i++) {
+          Task task = queued.get(i);
+          if (task != this && compare(task, this, nowMs) < 0) position++;
+        }
+        return position;
+      }
+    }
+
+    @Override public int state() {
+      synchronized (JobSchedulerImp.this) {
+        return state;
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.leak;
+
+import org.fs.compress.util.ResourceKind;
+
+/**
+ * Debug mode tracker of codecs, surfaces, EGL contexts, file handles and pooled buffers. Every resource is registered with stack trace
+ * of where it was created and reported if it is still open when its scope closes, or once it is garbage collected
+ * without release. Tracking is off until a callback is set, resources register nothing then.
+ */
+public interface LeakTracker {
+
+  static LeakTracker shared() {
+    return LeakTrackerImp.SHARED;
+  }
+
+  // null turns tracking off, resources tracked before are still followed to their release
+  void callback(LeakCallback callback);
+
+  boolean enabled();
+
+  /**
+   * Tracks {@code owner} until returned resource is released, owner is only referenced weakly.
+   */
+  Resource track(@ResourceKind int kind, Object owner);
+
+  /**
+   * Resources tracked on this thread belong to returned scope until it is closed, scopes nest.
+   */
+  Scope openScope(String name);
+
+  interface Resource {
+
+    // safe to call more than once
+    void release();
+  }
+
+  interface Scope {
+
+    // reports resources of scope still open, then restores scope that was open before it
+    void close();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.leak;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.fs.compress.data.Leak;
+
+final class LeakTrackerImp implements LeakTracker {
+
+  static final LeakTrackerImp SHARED = new LeakTrackerImp();
+
+  private static final Resource NONE = () -> { /* no opt */ };
+
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+  private final Map<Entry, Boolean> open = new ConcurrentHashMap<>();
+  private final ThreadLocal<ScopeImp> current = new ThreadLocal<>();
+
+  private volatile LeakCallback callback;
+
+  @Override public void callback(LeakCallback callback) {
+    this.callback = callback;
+  }
+
+  @Override public boolean enabled() {
+    return callback != null;
+  }
+
+  @Override public Resource track(int kind, Object owner) {
+    if (callback == null) return NONE;
+    poll();
+    Entry entry = new Entry(kind, owner, queue, current.get());
+    open.put(entry, Boolean.TRUE);
+    if (entry.scope != null) entry.scope.entries.put(entry, Boolean.TRUE);
+    return entry;
+  }
+
+  @Override public Scope openScope(String name) {
+    ScopeImp scope = new ScopeImp(name, current.get());
+    current.set(scope);
+    return scope;
+  }
+
+  // entries of owners collected while still open
+  private void poll() {
+    Object reference;
+    while ((reference = queue.poll()) != null) {
+      Entry entry = (Entry) reference;
+      if (entry.remove()) report(entry, true);
+    }
+  }
+
+  private void report(Entry entry, boolean collected) {
+    final LeakCallback callback = this.callback;
+    if (callback == null) return;
+    Leak leak = new Leak();
+    leak.kind = entry.kind;
+    leak.resource = entry.resource;
+    leak.scope = entry.scope != null ? entry.scope.name : null;
+    leak.allocationSite = entry.allocationSite;
+    leak.collected = collected;
+    callback.leaked(leak);
+  }
+
+  private final class Entry extends WeakReference<Object> implements Resource {
+
+    final int kind;
+    final String resource;
+    final ScopeImp scope;
+    final Throwable allocationSite;
+
+    Entry(int kind, Object owner, ReferenceQueue<Object> queue, ScopeImp scope) {
+      super(owner, queue);
+      this.kind = kind;
+      this.resource = owner.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(owner));
+      this.scope = scope;
+      this.allocationSite = new Throwable("created here");
+    }
+
+    @Override public void release() {
+      remove();
+    }
+
+    // true for the one that takes it out, released entries are never reported
+    boolean remove() {
+      if (scope != null) scope.entries.remove(this);
+      return open.remove(this) != null;
+    }
+  }
+
+  private final class ScopeImp implements Scope {
+
+    final String name;
+    final ScopeImp previous;
+    final Map<Entry, Boolean> entries = new ConcurrentHashMap<>();
+
+    private boolean closed;
+
+    ScopeImp(String name, ScopeImp previous) {
+      this.name = name;
+      this.previous = previous;
+    }
+
+    @Override public void close() {
+      if (closed) return;
+      closed = true;
+      if (current.get() == this) {
+        if (previous != null) {
+          current.set(previous);
+        } else {
+          current.remove();
+        }
+      }
+      poll();
+      for (Entry entry : new ArrayList<>(entries.keySet())) {
+        if (entry.remove()) report(entry, false);
+      }
+    }
+  }
+}
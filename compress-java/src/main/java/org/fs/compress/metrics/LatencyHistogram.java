@@ -0,0 +1,46 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.metrics;
+
+/**
+ * Latency histogram with fixed power of two buckets in microseconds, bucket {@code i} holds latencies below
+ * {@code 2^i} us and above the previous one. Recording never allocates and is safe from several threads.
+ */
+public interface LatencyHistogram {
+
+  static final int BUCKETS = 32;
+
+  static LatencyHistogram newInstance() {
+    return new LatencyHistogramImp();
+  }
+
+  void record(long latencyNs);
+
+  long count();
+
+  long totalNs();
+
+  long maxNs();
+
+  long bucket(int index);
+
+  long bucketUpperBoundNs(int index);
+
+  /**
+   * Upper bound of bucket that holds given percentile, capped with max, as in {@code percentileNs(0.99)}.
+   */
+  long percentileNs(double percentile);
+}
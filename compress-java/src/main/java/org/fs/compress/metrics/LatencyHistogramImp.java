@@ -0,0 +1,83 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class LatencyHistogramImp implements LatencyHistogram {
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNs = new AtomicLong();
+  private final AtomicLong maxNs = new AtomicLong();
+
+  @Override public void record(long latencyNs) {
+    if (latencyNs < 0) latencyNs = 0;
+    buckets.incrementAndGet(indexOf(latencyNs));
+    count.incrementAndGet();
+    totalNs.addAndGet(latencyNs);
+
+    long max = maxNs.get();
+    while (latencyNs > max && !maxNs.compareAndSet(max, latencyNs)) {
+      max = maxNs.get();
+    }
+  }
+
+  @Override public long count() {
+    return count.get();
+  }
+
+  @Override public long totalNs() {
+    return totalNs.get();
+  }
+
+  @Override public long maxNs() {
+    return maxNs.get();
+  }
+
+  @Override public long bucket(int index) {
+    return buckets.get(index);
+  }
+
+  @Override public long bucketUpperBoundNs(int index) {
+    return (1L << index) * 1000L;
+  }
+
+  @Override public long percentileNs(double percentile) {
+    if (percentile < 0 || percentile > 1) {
+      throw new IllegalArgumentException("percentile must be in [0, 1] but was " + percentile);
+    }
+    long count = count();
+    if (count == 0) return 0;
+
+    long rank = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(bucketUpperBoundNs(i), maxNs());
+      }
+    }
+    return maxNs();
+  }
+
+  private static int indexOf(long latencyNs) {
+    long latencyUs = latencyNs / 1000L;
+    if (latencyUs == 0) return 0;
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyUs));
+  }
+}
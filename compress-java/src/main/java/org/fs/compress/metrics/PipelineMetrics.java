@@ -0,0 +1,41 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.metrics;
+
+import org.fs.compress.util.PipelineStage;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Per job latency histogram of every pipeline stage and how many times each track went through it. Values are live
+ * while job runs, and can be read from any thread.
+ */
+public interface PipelineMetrics extends PipelineProbe {
+
+  static PipelineMetrics newInstance(long jobId) {
+    return new PipelineMetricsImp(jobId);
+  }
+
+  long jobId();
+
+  LatencyHistogram histogram(@PipelineStage int stage);
+
+  long count(@PipelineStage int stage, @SampleType int sampleType);
+
+  // wall time from creation until job completed, or until now while it runs
+  long elapsedNs();
+
+  void complete();
+}
@@ -0,0 +1,74 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.STAGE_COUNT;
+
+final class PipelineMetricsImp implements PipelineMetrics {
+
+  private final long jobId;
+  private final long startNs;
+  private final LatencyHistogram[] histograms;
+  // counts of video then audio for each stage
+  private final AtomicLongArray counts;
+
+  private volatile long endNs;
+
+  PipelineMetricsImp(long jobId) {
+    this.jobId = jobId;
+    startNs = System.nanoTime();
+    histograms = new LatencyHistogram[STAGE_COUNT];
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      histograms[i] = LatencyHistogram.newInstance();
+    }
+    counts = new AtomicLongArray(STAGE_COUNT * 2);
+  }
+
+  @Override public void record(int stage, int sampleType, long startNs, long endNs) {
+    histograms[stage].record(endNs - startNs);
+    counts.incrementAndGet(indexOf(stage, sampleType));
+  }
+
+  @Override public long jobId() {
+    return jobId;
+  }
+
+  @Override public LatencyHistogram histogram(int stage) {
+    return histograms[stage];
+  }
+
+  @Override public long count(int stage, int sampleType) {
+    return counts.get(indexOf(stage, sampleType));
+  }
+
+  @Override public long elapsedNs() {
+    long endNs = this.endNs;
+    return (endNs != 0 ? endNs : System.nanoTime()) - startNs;
+  }
+
+  @Override public void complete() {
+    if (endNs == 0) {
+      endNs = System.nanoTime();
+    }
+  }
+
+  private static int indexOf(int stage, int sampleType) {
+    return stage * 2 + (sampleType == SAMPLE_AUDIO ? 1 : 0);
+  }
+}
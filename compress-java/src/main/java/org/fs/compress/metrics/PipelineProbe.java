@@ -0,0 +1,37 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.metrics;
+
+import org.fs.compress.util.PipelineStage;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Receives timings of pipeline stages from coders and muxers. Called on hot path of coder threads, implementations must
+ * not block nor allocate. Coders keep a null probe when nothing listens, so timing costs a single null check then.
+ */
+public interface PipelineProbe {
+
+  /**
+   * Hands every timing to both probes, either of them can be null.
+   */
+  static PipelineProbe newGroupInstance(PipelineProbe first, PipelineProbe second) {
+    if (first == null) return second;
+    if (second == null) return first;
+    return new PipelineProbeGroup(first, second);
+  }
+
+  void record(@PipelineStage int stage, @SampleType int sampleType, long startNs, long endNs);
+}
@@ -18,20 +18,58 @@ package org.fs.compress.muxer;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
 import android.media.MediaMuxer;
+import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.List;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.spi.ContainerWriter;
 import org.fs.compress.util.SampleType;
 
+import static org.fs.compress.util.Constants.DEFAULT_MUXER_QUEUE_BYTES;
+
 public interface Muxer {
 
   static Muxer newInstance(MediaMuxer muxer, MuxerCallback callback) {
-    return new MuxerImp(muxer, callback);
+    return newInstance(ContainerWriter.newInstance(muxer), callback);
+  }
+
+  // starts writer with first format that arrives, for outputs of a single track
+  static Muxer newInstance(ContainerWriter writer, MuxerCallback callback) {
+    return new MuxerImp(writer, callback, 0, DEFAULT_MUXER_QUEUE_BYTES, null);
+  }
+
+  /**
+   * Starts writer once every sample type of {@code trackMask} has its format. Samples that come before are kept in up
+   * to {@code maxQueuedBytes} of memory, rest of them in a temporary file of {@code spillDirectory}, system temporary
+   * directory when null.
+   */
+  static Muxer newInstance(ContainerWriter writer, MuxerCallback callback, int trackMask, long maxQueuedBytes,
+      File spillDirectory) {
+    return new MuxerImp(writer, callback, trackMask, maxQueuedBytes, spillDirectory);
+  }
+
+  /**
+   * Writes every sample in to all of muxers, a track encoded once is shared by several outputs this way.
+   */
+  static Muxer newGroupInstance(List<Muxer> muxers) {
+    return new MuxerGroup(muxers);
   }
 
   void outputFormat(@SampleType int sampleType, MediaFormat format);
 
+  // starts writer with formats known so far, once a track ends without a format it must not hold back others
   void dispatchOutputFormatSet();
 
   void writeSample(@SampleType int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo);
 
   int trackIndexForSampleType(@SampleType int sampleType);
+
+  // most samples held at once before tracks were known and writer could start
+  int peakQueueSize();
+
+  // times every sample written in to container writer, null turns timing off
+  void probe(PipelineProbe probe);
+
+  // drops samples still queued, writer is released by its owner
+  void release();
 }
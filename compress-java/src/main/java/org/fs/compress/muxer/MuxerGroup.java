@@ -0,0 +1,77 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.fs.compress.metrics.PipelineProbe;
+
+// fans one track out to every rendition, buffer is re-windowed by each muxer from bufferInfo
+final class MuxerGroup implements Muxer {
+
+  private final List<Muxer> muxers;
+
+  MuxerGroup(List<Muxer> muxers) {
+    if (muxers == null || muxers.isEmpty()) {
+      throw new IllegalArgumentException("muxers can not be null or empty.");
+    }
+    this.muxers = muxers;
+  }
+
+  @Override public void outputFormat(int sampleType, MediaFormat format) {
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      muxers.get(i).outputFormat(sampleType, format);
+    }
+  }
+
+  @Override public void dispatchOutputFormatSet() {
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      muxers.get(i).dispatchOutputFormatSet();
+    }
+  }
+
+  @Override public void writeSample(int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      muxers.get(i).writeSample(sampleType, byteBuffer, bufferInfo);
+    }
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      muxers.get(i).probe(probe);
+    }
+  }
+
+  @Override public int peakQueueSize() {
+    int peak = 0;
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      peak = Math.max(peak, muxers.get(i).peakQueueSize());
+    }
+    return peak;
+  }
+
+  @Override public void release() {
+    for (int i = 0, size = muxers.size(); i < size; i++) {
+      muxers.get(i).release();
+    }
+  }
+
+  @Override public int trackIndexForSampleType(int sampleType) {
+    throw new IllegalArgumentException("group has a track index per muxer, ask the muxer itself.");
+  }
+}
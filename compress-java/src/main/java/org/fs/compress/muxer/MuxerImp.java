@@ -17,28 +17,26 @@ package org.fs.compress.muxer;
 
 import android.media.MediaCodec;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
+import java.io.File;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
-import org.fs.compress.data.Sample;
-import org.fs.compress.util.Constants;
-import org.fs.compress.util.SampleUtil;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.queue.PayloadQueue;
+import org.fs.compress.queue.SampleQueue;
+import org.fs.compress.spi.ContainerWriter;
 
 import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
 import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+import static org.fs.compress.util.Constants.STAGE_MUXER_WRITE;
 
+// synchronized since staged video writes from its own encode thread
 final class MuxerImp implements Muxer {
 
   private static final int STATE_IDLE = 0x01;
   private static final int STATE_PROGRESS = 0x02;
 
-  private static final int BUFFER_SIZE = 64 * 1024; // 64 kb
+  private static final int QUEUE_CAPACITY = 64;
 
-  private MediaMuxer muxer;
-
-  private ByteBuffer byteBuffer;
+  private ContainerWriter muxer;
 
   private MuxerCallback callback;
 
@@ -48,17 +46,33 @@ final class MuxerImp implements Muxer {
   private int videoTrackIndex;
   private int audioTrackIndex;
 
+  // sample types writer waits formats of before it starts, zero starts it with first format
+  private final int trackMask;
+
   private int state = STATE_IDLE;
 
-  private final List<Sample> samples;
+  private PipelineProbe probe;
+  private int peakQueueSize;
 
-  MuxerImp(MediaMuxer muxer, MuxerCallback callback) {
+  // samples written before start, payloads of them in same order in payloads
+  private final SampleQueue samples = SampleQueue.newInstance(QUEUE_CAPACITY);
+  private final PayloadQueue payloads;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+  MuxerImp(ContainerWriter muxer, MuxerCallback callback, int trackMask, long maxQueuedBytes, File spillDirectory) {
+    if ((trackMask & ~(SAMPLE_VIDEO | SAMPLE_AUDIO)) != 0) {
+      throw new IllegalArgumentException("can not determine tracks " + trackMask);
+    }
     this.muxer = muxer;
     this.callback = callback;
-    samples = new ArrayList<>();
+    this.trackMask = trackMask;
+    this.payloads = PayloadQueue.newInstance(maxQueuedBytes, spillDirectory);
   }
 
-  @Override public void outputFormat(int sampleType, MediaFormat format) {
+  @Override public synchronized void outputFormat(int sampleType, MediaFormat format) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("format of sample type " + sampleType + " arrived after writer started");
+    }
     if (sampleType == SAMPLE_VIDEO) {
       videoFormat = format;
     } else if (sampleType == SAMPLE_AUDIO) {
@@ -66,60 +80,79 @@ final class MuxerImp implements Muxer {
     } else {
       throw new IllegalArgumentException("can not determine sample type " + sampleType);
     }
-    dispatchOutputFormatSet();
+    // every expected track must be added before start, writer takes no track after it
+    if ((formatMask() & trackMask) == trackMask) {
+      dispatchOutputFormatSet();
+    }
   }
 
-  @Override public void dispatchOutputFormatSet() {
-    if (videoFormat != null || audioFormat != null) {
-
-      if (callback != null) {
-        callback.determineOutputFormat();
-      }
-
-      if (videoFormat != null) {
-        videoTrackIndex = muxer.addTrack(videoFormat);
-      }
-
-      if (audioFormat != null) {
-        audioTrackIndex = muxer.addTrack(audioFormat);
-      }
-
-      muxer.start();
-      state = STATE_PROGRESS;
-
-      if (byteBuffer == null) {
-        byteBuffer = ByteBuffer.allocate(0);
-      }
-      byteBuffer.flip();
-
-      MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
-      int offset = 0;
-      for (Sample sample: samples) {
-        SampleUtil.writeToBufferInfo(sample, bufferInfo, offset);
-        int trackIndex = trackIndexForSampleType(sample.type);
-        muxer.writeSampleData(trackIndex, byteBuffer, bufferInfo);
-        offset += sample.size;
-      }
-      samples.clear();
-      byteBuffer = null;
+  @Override public synchronized void dispatchOutputFormatSet() {
+    if (state != STATE_IDLE || formatMask() == 0) return;
+
+    if (callback != null) {
+      callback.determineOutputFormat();
+    }
+
+    if (videoFormat != null) {
+      videoTrackIndex = muxer.addTrack(videoFormat);
+    }
+
+    if (audioFormat != null) {
+      audioTrackIndex = muxer.addTrack(audioFormat);
+    }
+
+    muxer.start();
+    state = STATE_PROGRESS;
+
+    // payloads come back one at a time, spilled ones through a single buffer
+    for (int i = 0, size = samples.size(); i < size; i++) {
+      samples.read(i, bufferInfo, 0);
+      ByteBuffer payload = payloads.poll(bufferInfo.size);
+      bufferInfo.offset = payload.position();
+      writeSampleData(samples.sampleType(i), payload, bufferInfo);
     }
+    samples.clear();
+    payloads.clear();
   }
 
-  @Override public void writeSample(int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+  @Override public synchronized void writeSample(int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
     if (state == STATE_IDLE) {
       byteBuffer.limit(bufferInfo.offset + bufferInfo.size);
       byteBuffer.position(bufferInfo.offset);
+      payloads.offer(byteBuffer);
+      samples.offer(sampleType, bufferInfo);
+      peakQueueSize = Math.max(peakQueueSize, samples.size());
+    } else {
+      writeSampleData(sampleType, byteBuffer, bufferInfo);
+    }
+  }
 
-      if (this.byteBuffer == null) {
-        this.byteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
-            .order(ByteOrder.nativeOrder());
-      }
-      this.byteBuffer.put(byteBuffer);
-      Sample sample = SampleUtil.newSample(sampleType, bufferInfo);
-      samples.add(sample);
+  @Override public synchronized int peakQueueSize() {
+    return peakQueueSize;
+  }
+
+  @Override public synchronized void probe(PipelineProbe probe) {
+    this.probe = probe;
+  }
+
+  @Override public synchronized void release() {
+    samples.clear();
+    payloads.clear();
+  }
+
+  private int formatMask() {
+    return (videoFormat != null ? SAMPLE_VIDEO : 0) | (audioFormat != null ? SAMPLE_AUDIO : 0);
+  }
+
+  private void writeSampleData(int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    int trackIndex = trackIndexForSampleType(sampleType);
+    final PipelineProbe probe = this.probe;
+    if (probe == null) {
+      muxer.writeSampleData(trackIndex, byteBuffer, bufferInfo);
     } else {
-      int trackIndex = trackIndexForSampleType(sampleType);
+      final long startNs = System.nanoTime();
       muxer.writeSampleData(trackIndex, byteBuffer, bufferInfo);
+      probe.record(STAGE_MUXER_WRITE, sampleType, startNs, System.nanoTime());
     }
   }
 
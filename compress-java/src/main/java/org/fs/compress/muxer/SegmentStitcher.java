@@ -0,0 +1,45 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.muxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+
+/**
+ * Joins encoded video segments, in order, with one audio file in to a single writer. A segment file does not keep
+ * presentation times of source, platform writer moves its first sample to zero, so every segment is put back at start
+ * time of its range before it is interleaved with audio by time. Audio is transcoded in one piece and copied as it is.
+ */
+public interface SegmentStitcher {
+
+  static SegmentStitcher newInstance() {
+    return newInstance(CodecProvider.platform());
+  }
+
+  // segments and audio are read with extractors of provider, they are expected to be written by its writer
+  static SegmentStitcher newInstance(CodecProvider provider) {
+    return new SegmentStitcherImp(provider);
+  }
+
+  /**
+   * @param startTimesUs start time of range of each segment in source, first sample of segment is written at it.
+   * @param output       writer is started and stopped here, caller releases it.
+   */
+  void stitch(List<File> videoSegments, long[] startTimesUs, File audio, ContainerWriter output, int orientationHint) throws IOException;
+}
@@ -0,0 +1,185 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.fs.compress.data.Track;
+import org.fs.compress.spi.CodecProvider;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.spi.Extractor;
+import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.Utils;
+
+final class SegmentStitcherImp implements SegmentStitcher {
+
+  private static final int FALLBACK_BUFFER_SIZE = 1024 * 1024; // 1 mb
+
+  private final CodecProvider provider;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+  private ByteBuffer byteBuffer;
+
+  SegmentStitcherImp(CodecProvider provider) {
+    this.provider = provider;
+  }
+
+  @Override public void stitch(List<File> videoSegments, long[] startTimesUs, File audio, ContainerWriter output, int orientationHint) throws IOException {
+    if (videoSegments == null || videoSegments.isEmpty()) {
+      throw new IllegalArgumentException("videoSegments can not be null or empty.");
+    }
+    if (startTimesUs == null || startTimesUs.length != videoSegments.size()) {
+      throw new IllegalArgumentException("startTimesUs must have a start time for every segment.");
+    }
+    Source video = null;
+    Source sound = null;
+    Exception failure = null;
+    try {
+      output.setOrientationHint(orientationHint);
+
+      int segment = 0;
+      video = new Source(videoSegments.get(segment));
+      Track videoTrack = ExtractorUtil.videoAndAudioTrack(video.extractor);
+      if (videoTrack.videoTrackIndex < 0) {
+        throw new IllegalArgumentException("segment has no video track " + videoSegments.get(segment));
+      }
+      video.select(videoTrack.videoTrackIndex, startTimesUs[segment]);
+      // encoders of segments are configured alike, so parameter sets of first one describe all
+      int videoTrackIndex = output.addTrack(videoTrack.videoFormat);
+      int bufferSize = maxInputSize(videoTrack.videoFormat);
+
+      int audioTrackIndex = -1;
+      if (audio != null) {
+        sound = new Source(audio);
+        Track audioTrack = ExtractorUtil.videoAndAudioTrack(sound.extractor);
+        if (audioTrack.audioTrackIndex >= 0) {
+          sound.select(audioTrack.audioTrackIndex, -1);
+          audioTrackIndex = output.addTrack(audioTrack.audioFormat);
+          bufferSize = Math.max(bufferSize, maxInputSize(audioTrack.audioFormat));
+        }
+      }
+      byteBuffer = ByteBuffer.allocateDirect(bufferSize)
+          .order(ByteOrder.nativeOrder());
+
+      output.start();
+
+      while (true) {
+        // move on to next segment once this one is drained
+        while (video != null && video.extractor.getSampleTime() < 0) {
+          video.release();
+          video = null;
+          segment++;
+          if (segment < videoSegments.size()) {
+            video = new Source(videoSegments.get(segment));
+            video.select(ExtractorUtil.videoAndAudioTrack(video.extractor).videoTrackIndex, startTimesUs[segment]);
+          }
+        }
+        long videoTimeUs = video != null ? video.timeUs() : -1;
+        long audioTimeUs = audioTrackIndex >= 0 ? sound.timeUs() : -1;
+        if (videoTimeUs < 0 && audioTimeUs < 0) break;
+
+        if (videoTimeUs >= 0 && (audioTimeUs < 0 || videoTimeUs <= audioTimeUs)) {
+          copySample(video, output, videoTrackIndex);
+        } else {
+          copySample(sound, output, audioTrackIndex);
+        }
+      }
+      output.stop();
+    } catch (Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      final Source videoRef = video;
+      final Source soundRef = sound;
+      byteBuffer = null;
+      Utils.closeAll(failure,
+          () -> {
+            if (videoRef != null) videoRef.release();
+          },
+          () -> {
+            if (soundRef != null) soundRef.release();
+          });
+    }
+  }
+
+  private void copySample(Source source, ContainerWriter output, int trackIndex) {
+    byteBuffer.clear();
+    int sampleSize = source.extractor.readSampleData(byteBuffer, 0);
+    if (sampleSize < 0) {
+      throw new IllegalArgumentException("bufferSize can not hold all of sample data");
+    }
+    boolean isKeyFrame = (source.extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+    bufferInfo.set(0, sampleSize, source.timeUs(), isKeyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+    output.writeSampleData(trackIndex, byteBuffer, bufferInfo);
+    source.extractor.advance();
+  }
+
+  private static int maxInputSize(MediaFormat format) {
+    if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+      return Math.max(format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE), FALLBACK_BUFFER_SIZE);
+    }
+    return FALLBACK_BUFFER_SIZE;
+  }
+
+  // extractor of provider over a file this stitcher opened, times are moved by offset of file
+  private final class Source {
+
+    private final FileInputStream stream;
+    private final Extractor extractor;
+    private long offsetUs;
+
+    Source(File file) throws IOException {
+      stream = new FileInputStream(file);
+      try {
+        extractor = provider.newExtractor(stream.getFD());
+      } catch (IOException e) {
+        Utils.closeQuietly(this::close);
+        throw e;
+      }
+    }
+
+    // first sample of track lands on start time, whatever time writer of segment gave it; negative start keeps times
+    void select(int trackIndex, long startTimeUs) {
+      extractor.selectTrack(trackIndex);
+      long firstTimeUs = extractor.getSampleTime();
+      offsetUs = startTimeUs >= 0 && firstTimeUs >= 0 ? startTimeUs - firstTimeUs : 0;
+    }
+
+    long timeUs() {
+      long timeUs = extractor.getSampleTime();
+      return timeUs >= 0 ? timeUs + offsetUs : -1;
+    }
+
+    void release() {
+      Utils.closeAll(null, extractor::release, this::close);
+    }
+
+    private void close() {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+  }
+}
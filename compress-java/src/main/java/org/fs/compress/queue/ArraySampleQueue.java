@@ -0,0 +1,82 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+import android.media.MediaCodec;
+import java.util.Arrays;
+
+final class ArraySampleQueue implements SampleQueue {
+
+  private int size;
+  private int[] sampleTypes;
+  private int[] sizes;
+  private int[] flags;
+  private long[] timesUs;
+
+  ArraySampleQueue(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive " + capacity);
+    }
+    sampleTypes = new int[capacity];
+    sizes = new int[capacity];
+    flags = new int[capacity];
+    timesUs = new long[capacity];
+  }
+
+  @Override public void offer(int sampleType, MediaCodec.BufferInfo bufferInfo) {
+    if (size == sizes.length) {
+      // columns double, so growth is amortized over samples it makes room for
+      int capacity = size * 2;
+      sampleTypes = Arrays.copyOf(sampleTypes, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+      timesUs = Arrays.copyOf(timesUs, capacity);
+    }
+    sampleTypes[size] = sampleType;
+    sizes[size] = bufferInfo.size;
+    flags[size] = bufferInfo.flags;
+    timesUs[size] = bufferInfo.presentationTimeUs;
+    size++;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override public int sampleType(int index) {
+    checkIndex(index);
+    return sampleTypes[index];
+  }
+
+  @Override public void read(int index, MediaCodec.BufferInfo bufferInfo, int offset) {
+    checkIndex(index);
+    bufferInfo.set(offset, sizes[index], timesUs[index], flags[index]);
+  }
+
+  @Override public void clear() {
+    size = 0;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IllegalArgumentException("index out of queue " + index + ", size " + size);
+    }
+  }
+}
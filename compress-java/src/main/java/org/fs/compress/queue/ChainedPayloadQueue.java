@@ -0,0 +1,192 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.fs.compress.buffer.DirectBufferPool;
+
+// chain of pooled chunks, a payload never spans two of them; once a new chunk would pass cap the rest goes to file
+final class ChainedPayloadQueue implements PayloadQueue {
+
+  private static final int CHUNK_SIZE = 64 * 1024; // 64 kb
+  private static final int INITIAL_CHUNKS = 8;
+
+  private final long maxMemoryBytes;
+  private final File spillDirectory;
+  private final DirectBufferPool pool = DirectBufferPool.shared();
+
+  private ByteBuffer[] chunks = new ByteBuffer[INITIAL_CHUNKS];
+  private int chunkCount;
+  private long memoryBytes;
+  // payloads in chunks, those offered after them are in spill file
+  private int memoryPayloads;
+
+  private File spillFile;
+  private RandomAccessFile spill;
+  private long spillWritePosition;
+  private long spillReadPosition;
+
+  // chunk being polled, where its data ends and where next payload in it starts
+  private int readChunk = -1;
+  private int readEnd;
+  private int readOffset;
+  private int polled;
+  // payloads read back from spill file go through this one
+  private ByteBuffer replay;
+
+  ChainedPayloadQueue(long maxMemoryBytes, File spillDirectory) {
+    if (maxMemoryBytes < 0) {
+      throw new IllegalArgumentException("max memory bytes can not be negative " + maxMemoryBytes);
+    }
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.spillDirectory = spillDirectory;
+  }
+
+  @Override public void offer(ByteBuffer payload) {
+    final int size = payload.remaining();
+    if (spill == null) {
+      final ByteBuffer last = chunkCount == 0 ? null : chunks[chunkCount - 1];
+      if (last != null && last.remaining() >= size) {
+        last.put(payload);
+        memoryPayloads++;
+        return;
+      }
+      final int capacity = Math.max(CHUNK_SIZE, size);
+      if (memoryBytes + capacity <= maxMemoryBytes) {
+        addChunk(capacity).put(payload);
+        memoryPayloads++;
+        return;
+      }
+      openSpill();
+    }
+    try {
+      final FileChannel channel = spill.getChannel();
+      while (payload.hasRemaining()) {
+        spillWritePosition += channel.write(payload, spillWritePosition);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  @Override public ByteBuffer poll(int size) {
+    if (polled < memoryPayloads) {
+      if (readChunk < 0 || readOffset + size > readEnd) {
+        // payload that did not fit in rest of a chunk started next one
+        if (readChunk >= 0) releaseChunk(readChunk);
+        readChunk++;
+        readEnd = chunks[readChunk].position();
+        readOffset = 0;
+      }
+      final ByteBuffer chunk = chunks[readChunk];
+      chunk.limit(chunk.capacity());
+      chunk.position(readOffset);
+      chunk.limit(readOffset + size);
+      readOffset += size;
+      polled++;
+      return chunk;
+    }
+    if (readChunk >= 0) {
+      releaseChunk(readChunk);
+      readChunk = -1;
+    }
+    if (replay == null || replay.capacity() < size) {
+      if (replay != null) pool.release(replay);
+      replay = pool.lease(Math.max(CHUNK_SIZE, size));
+    }
+    replay.clear();
+    replay.limit(size);
+    try {
+      final FileChannel channel = spill.getChannel();
+      while (replay.hasRemaining()) {
+        final int read = channel.read(replay, spillReadPosition);
+        if (read < 0) throw new IllegalArgumentException("spill file ended before payload " + polled);
+        spillReadPosition += read;
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    replay.flip();
+    polled++;
+    return replay;
+  }
+
+  @Override public long spilledBytes() {
+    return spillWritePosition;
+  }
+
+  @Override public void clear() {
+    for (int i = 0; i < chunkCount; i++) {
+      releaseChunk(i);
+    }
+    chunkCount = 0;
+    memoryBytes = 0;
+    memoryPayloads = 0;
+    readChunk = -1;
+    polled = 0;
+    if (replay != null) {
+      pool.release(replay);
+      replay = null;
+    }
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      } finally {
+        spill = null;
+        spillFile.delete();
+        spillFile = null;
+        spillWritePosition = 0;
+        spillReadPosition = 0;
+      }
+    }
+  }
+
+  // whole size class is usable, not just size asked for
+  private ByteBuffer addChunk(int capacity) {
+    if (chunkCount == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunkCount * 2);
+    }
+    final ByteBuffer chunk = pool.lease(capacity);
+    chunk.clear();
+    chunks[chunkCount++] = chunk;
+    memoryBytes += chunk.capacity();
+    return chunk;
+  }
+
+  private void releaseChunk(int index) {
+    if (chunks[index] == null) return;
+    pool.release(chunks[index]);
+    chunks[index] = null;
+  }
+
+  private void openSpill() {
+    try {
+      spillFile = File.createTempFile("samples", ".spill", spillDirectory);
+      spill = new RandomAccessFile(spillFile, "rw");
+    } catch (IOException e) {
+      if (spillFile != null) spillFile.delete();
+      spillFile = null;
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+public interface LongQueue {
+
+  /**
+   * Bounded lock-free queue for exactly one producer thread and one consumer thread, capacity is rounded up to the
+   * next power of two.
+   */
+  static LongQueue newSpscInstance(int capacity) {
+    return new SpscLongQueue(capacity);
+  }
+
+  // producer side
+  boolean offer(long value);
+
+  // consumer side
+  boolean isEmpty();
+
+  long peek();
+
+  long poll();
+
+  void clear();
+
+  // any thread
+  int size();
+
+  int capacity();
+}
@@ -0,0 +1,43 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * Payloads of samples held back until muxer starts, in pooled buffers up to {@code maxMemoryBytes} and in a temporary
+ * file of {@code spillDirectory} beyond that. Payloads are polled back in order they were offered, each one valid
+ * until next poll, so replaying holds a buffer or two at a time however much was queued. Not thread safe.
+ */
+public interface PayloadQueue {
+
+  static PayloadQueue newInstance(long maxMemoryBytes, File spillDirectory) {
+    return new ChainedPayloadQueue(maxMemoryBytes, spillDirectory);
+  }
+
+  // copies remaining bytes of payload, its position is left at its limit
+  void offer(ByteBuffer payload);
+
+  // next payload of {@code size} bytes, between position and limit of buffer returned
+  ByteBuffer poll(int size);
+
+  // bytes gone to spill file since last clear
+  long spilledBytes();
+
+  // gives buffers back to pool and deletes spill file, queue can be used again after
+  void clear();
+}
@@ -0,0 +1,45 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+import android.media.MediaCodec;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Metadata of samples held back until muxer starts, kept in primitive columns so queueing a sample allocates nothing
+ * once columns are grown. Payloads are expected back to back in a buffer of their own, in order they were offered.
+ * Not thread safe.
+ */
+public interface SampleQueue {
+
+  static SampleQueue newInstance(int capacity) {
+    return new ArraySampleQueue(capacity);
+  }
+
+  void offer(@SampleType int sampleType, MediaCodec.BufferInfo bufferInfo);
+
+  int size();
+
+  boolean isEmpty();
+
+  @SampleType int sampleType(int index);
+
+  // fills bufferInfo of sample at index, offset is where its payload starts
+  void read(int index, MediaCodec.BufferInfo bufferInfo, int offset);
+
+  // keeps grown columns for reuse
+  void clear();
+}
@@ -0,0 +1,96 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+final class SpscLongQueue implements LongQueue {
+
+  private final long[] buffer;
+  private final int mask;
+
+  // consumer index, written by consumer only
+  private final AtomicLong head = new AtomicLong();
+  // producer index, written by producer only
+  private final AtomicLong tail = new AtomicLong();
+
+  // producer's last seen head and consumer's last seen tail, saves reading the other side's counter each call
+  private long headCache;
+  private long tailCache;
+
+  SpscLongQueue(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    buffer = new long[size];
+    mask = size - 1;
+  }
+
+  @Override public boolean offer(long value) {
+    final long t = tail.get();
+    if (t - headCache >= buffer.length) {
+      headCache = head.get();
+      if (t - headCache >= buffer.length) return false;
+    }
+    buffer[(int) t & mask] = value;
+    // publish value before index
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  @Override public boolean isEmpty() {
+    final long h = head.get();
+    if (h < tailCache) return false;
+    tailCache = tail.get();
+    return h >= tailCache;
+  }
+
+  @Override public long peek() {
+    if (isEmpty()) {
+      throw new IllegalArgumentException("queue is empty");
+    }
+    return buffer[(int) head.get() & mask];
+  }
+
+  @Override public long poll() {
+    if (isEmpty()) {
+      throw new IllegalArgumentException("queue is empty");
+    }
+    final long h = head.get();
+    final long value = buffer[(int) h & mask];
+    head.lazySet(h + 1);
+    return value;
+  }
+
+  @Override public void clear() {
+    while (!isEmpty()) {
+      poll();
+    }
+  }
+
+  @Override public int size() {
+    final long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, buffer.length));
+  }
+
+  @Override public int capacity() {
+    return buffer.length;
+  }
+}
@@ -45,7 +45,7 @@ public interface AudioRemix {
       for (int i = 0; i < size; ++i) {
         // Convert to unsigned
         final int a = in.get() + SIGNED_SHORT_LIMIT;
-        final int b = out.get() + SIGNED_SHORT_LIMIT;
+        final int b = in.get() + SIGNED_SHORT_LIMIT;
         int m;
         // Pick the equation
         if ((a < SIGNED_SHORT_LIMIT) || (b < SIGNED_SHORT_LIMIT)) {
@@ -0,0 +1,94 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import org.fs.compress.data.Track;
+import org.fs.compress.spi.Extractor;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+final class RecordingExtractor implements Extractor {
+
+  private final Extractor extractor;
+  private final Track track;
+  private final SampleRecorder recorder;
+
+  RecordingExtractor(Extractor extractor, Track track, SampleRecorder recorder) {
+    this.extractor = extractor;
+    this.track = track;
+    this.recorder = recorder;
+  }
+
+  @Override public int getTrackCount() {
+    return extractor.getTrackCount();
+  }
+
+  @Override public MediaFormat getTrackFormat(int index) {
+    return extractor.getTrackFormat(index);
+  }
+
+  @Override public void selectTrack(int index) {
+    extractor.selectTrack(index);
+  }
+
+  @Override public int getSampleTrackIndex() {
+    return extractor.getSampleTrackIndex();
+  }
+
+  @Override public long getSampleTime() {
+    return extractor.getSampleTime();
+  }
+
+  @Override public int getSampleFlags() {
+    return extractor.getSampleFlags();
+  }
+
+  @Override public int readSampleData(ByteBuffer byteBuffer, int offset) {
+    int size = extractor.readSampleData(byteBuffer, offset);
+    if (size >= 0) {
+      int trackIndex = extractor.getSampleTrackIndex();
+      if (trackIndex == track.videoTrackIndex) {
+        recorder.extracted(SAMPLE_VIDEO, size, extractor.getSampleTime(), extractor.getSampleFlags());
+      } else if (trackIndex == track.audioTrackIndex) {
+        recorder.extracted(SAMPLE_AUDIO, size, extractor.getSampleTime(), extractor.getSampleFlags());
+      }
+    }
+    return size;
+  }
+
+  @Override public boolean advance() {
+    return extractor.advance();
+  }
+
+  @Override public void seekTo(long timeUs, int mode) {
+    extractor.seekTo(timeUs, mode);
+  }
+
+  @Override public int orientation() {
+    return extractor.orientation();
+  }
+
+  @Override public long durationTimeUs() {
+    return extractor.durationTimeUs();
+  }
+
+  @Override public void release() {
+    extractor.release();
+  }
+}
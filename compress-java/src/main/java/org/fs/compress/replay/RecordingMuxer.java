@@ -0,0 +1,63 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import org.fs.compress.metrics.PipelineProbe;
+import org.fs.compress.muxer.Muxer;
+
+final class RecordingMuxer implements Muxer {
+
+  private final Muxer muxer;
+  private final SampleRecorder recorder;
+
+  RecordingMuxer(Muxer muxer, SampleRecorder recorder) {
+    this.muxer = muxer;
+    this.recorder = recorder;
+  }
+
+  @Override public void outputFormat(int sampleType, MediaFormat format) {
+    recorder.format(sampleType, format);
+    muxer.outputFormat(sampleType, format);
+  }
+
+  @Override public void dispatchOutputFormatSet() {
+    muxer.dispatchOutputFormatSet();
+  }
+
+  @Override public void writeSample(int sampleType, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    recorder.encoded(sampleType, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+    muxer.writeSample(sampleType, byteBuffer, bufferInfo);
+  }
+
+  @Override public int trackIndexForSampleType(int sampleType) {
+    return muxer.trackIndexForSampleType(sampleType);
+  }
+
+  @Override public int peakQueueSize() {
+    return muxer.peakQueueSize();
+  }
+
+  @Override public void probe(PipelineProbe probe) {
+    muxer.probe(probe);
+  }
+
+  @Override public void release() {
+    muxer.release();
+  }
+}
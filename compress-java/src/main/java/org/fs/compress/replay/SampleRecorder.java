@@ -0,0 +1,60 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import org.fs.compress.data.Track;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.spi.Extractor;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Captures sample stream of a job with its timing, no sample data is kept. Samples read from extractor and the ones
+ * encoders hand to muxer are recorded with size, presentation time, flags and time since recording started; output
+ * formats are recorded where muxer is told them. {@link SampleRecording} reads it back.
+ *
+ * <p>File starts with magic and version, then each record is kind and sample type as bytes and time in nanos; a format
+ * record follows with the format, a sample record with size, flags and presentation time.
+ */
+public interface SampleRecorder {
+
+  int MAGIC = 0x434d5052; // CMPR
+  int VERSION = 1;
+
+  static SampleRecorder newInstance(File output) throws IOException {
+    return new SampleRecorderImp(output);
+  }
+
+  void format(@SampleType int sampleType, MediaFormat format);
+
+  void extracted(@SampleType int sampleType, int size, long presentationTimeUs, int flags);
+
+  void encoded(@SampleType int sampleType, int size, long presentationTimeUs, int flags);
+
+  // flushes what is left, recorder takes no more records after it
+  void close();
+
+  // samples read from returned extractor are recorded for sample type of their track in {@code track}
+  default Extractor record(Extractor extractor, Track track) {
+    return new RecordingExtractor(extractor, track, this);
+  }
+
+  default Muxer record(Muxer muxer) {
+    return new RecordingMuxer(muxer, this);
+  }
+}
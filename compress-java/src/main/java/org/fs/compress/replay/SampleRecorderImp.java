@@ -0,0 +1,92 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaFormat;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.util.Constants.RECORD_ENCODED;
+import static org.fs.compress.util.Constants.RECORD_EXTRACTED;
+import static org.fs.compress.util.Constants.RECORD_FORMAT;
+
+// synchronized since staged video records from its own threads
+final class SampleRecorderImp implements SampleRecorder {
+
+  private static final int BUFFER_SIZE = 64 * 1024; // 64 kb
+
+  private final DataOutputStream out;
+  private final long startNs;
+
+  private boolean closed;
+
+  SampleRecorderImp(File output) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    startNs = System.nanoTime();
+  }
+
+  @Override public synchronized void format(int sampleType, MediaFormat format) {
+    if (closed) return;
+    try {
+      header(RECORD_FORMAT, sampleType);
+      MediaFormatUtil.write(out, format);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  @Override public synchronized void extracted(int sampleType, int size, long presentationTimeUs, int flags) {
+    sample(RECORD_EXTRACTED, sampleType, size, presentationTimeUs, flags);
+  }
+
+  @Override public synchronized void encoded(int sampleType, int size, long presentationTimeUs, int flags) {
+    sample(RECORD_ENCODED, sampleType, size, presentationTimeUs, flags);
+  }
+
+  @Override public synchronized void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private void sample(int kind, int sampleType, int size, long presentationTimeUs, int flags) {
+    if (closed) return;
+    try {
+      header(kind, sampleType);
+      out.writeInt(size);
+      out.writeInt(flags);
+      out.writeLong(presentationTimeUs);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private void header(int kind, int sampleType) throws IOException {
+    out.writeByte(kind);
+    out.writeByte(sampleType);
+    out.writeLong(System.nanoTime() - startNs);
+  }
+}
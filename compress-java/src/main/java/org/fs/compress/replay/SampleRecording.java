@@ -0,0 +1,52 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import org.fs.compress.util.RecordKind;
+import org.fs.compress.util.SampleType;
+
+/**
+ * Records of a file written by {@link SampleRecorder}, in order they were recorded. Format is set for format records
+ * only, sample size, flags and presentation time for sample records only.
+ */
+public interface SampleRecording {
+
+  static SampleRecording newInstance(File input) throws IOException {
+    return new SampleRecordingImp(input);
+  }
+
+  int size();
+
+  @RecordKind int kind(int index);
+  @SampleType int sampleType(int index);
+  // nanos since recording started
+  long timeNs(int index);
+
+  MediaFormat format(int index);
+
+  int sampleSize(int index);
+  int flags(int index);
+  long presentationTimeUs(int index);
+
+  // largest sample recorded, replay sizes its payload with it
+  int maxSampleSize();
+
+  // latest presentation time recorded
+  long durationTimeUs();
+}
@@ -0,0 +1,139 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.replay;
+
+import android.media.MediaFormat;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.util.Constants.RECORD_ENCODED;
+import static org.fs.compress.util.Constants.RECORD_EXTRACTED;
+import static org.fs.compress.util.Constants.RECORD_FORMAT;
+
+// records are kept in primitive arrays, a recording of a long job is millions of them
+final class SampleRecordingImp implements SampleRecording {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private byte[] kinds = new byte[INITIAL_CAPACITY];
+  private byte[] sampleTypes = new byte[INITIAL_CAPACITY];
+  private long[] timesNs = new long[INITIAL_CAPACITY];
+  private int[] sampleSizes = new int[INITIAL_CAPACITY];
+  private int[] flags = new int[INITIAL_CAPACITY];
+  private long[] presentationTimesUs = new long[INITIAL_CAPACITY];
+  private MediaFormat[] formats = new MediaFormat[INITIAL_CAPACITY];
+
+  private int size;
+  private int maxSampleSize;
+  private long durationTimeUs;
+
+  SampleRecordingImp(File input) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+      if (in.readInt() != SampleRecorder.MAGIC) {
+        throw new IllegalArgumentException("not a sample recording " + input);
+      }
+      int version = in.readInt();
+      if (version != SampleRecorder.VERSION) {
+        throw new IllegalArgumentException("unsupported recording version " + version);
+      }
+      while (true) {
+        int kind = in.read();
+        if (kind < 0) break;
+        grow();
+        kinds[size] = (byte) kind;
+        sampleTypes[size] = in.readByte();
+        timesNs[size] = in.readLong();
+        if (kind == RECORD_FORMAT) {
+          formats[size] = MediaFormatUtil.read(in);
+        } else if (kind == RECORD_EXTRACTED || kind == RECORD_ENCODED) {
+          sampleSizes[size] = in.readInt();
+          flags[size] = in.readInt();
+          presentationTimesUs[size] = in.readLong();
+          maxSampleSize = Math.max(maxSampleSize, sampleSizes[size]);
+          durationTimeUs = Math.max(durationTimeUs, presentationTimesUs[size]);
+        } else {
+          throw new IllegalArgumentException("unknown record kind " + kind);
+        }
+        size++;
+      }
+    } catch (EOFException e) {
+      // recorder did not get closed, records up to last whole one are kept
+    }
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public int kind(int index) {
+    return kinds[checkIndex(index)];
+  }
+
+  @Override public int sampleType(int index) {
+    return sampleTypes[checkIndex(index)];
+  }
+
+  @Override public long timeNs(int index) {
+    return timesNs[checkIndex(index)];
+  }
+
+  @Override public MediaFormat format(int index) {
+    return formats[checkIndex(index)];
+  }
+
+  @Override public int sampleSize(int index) {
+    return sampleSizes[checkIndex(index)];
+  }
+
+  @Override public int flags(int index) {
+    return flags[checkIndex(index)];
+  }
+
+  @Override public long presentationTimeUs(int index) {
+    return presentationTimesUs[checkIndex(index)];
+  }
+
+  @Override public int maxSampleSize() {
+    return maxSampleSize;
+  }
+
+  @Override public long durationTimeUs() {
+    return durationTimeUs;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) throw new IllegalArgumentException("index " + index + " out of " + size);
+    return index;
+  }
+
+  private void grow() {
+    if (size < kinds.length) return;
+    int capacity = kinds.length * 2;
+    kinds = Arrays.copyOf(kinds, capacity);
+    sampleTypes = Arrays.copyOf(sampleTypes, capacity);
+    timesNs = Arrays.copyOf(timesNs, capacity);
+    sampleSizes = Arrays.copyOf(sampleSizes, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+    presentationTimesUs = Arrays.copyOf(presentationTimesUs, capacity);
+    formats = Arrays.copyOf(formats, capacity);
+  }
+}
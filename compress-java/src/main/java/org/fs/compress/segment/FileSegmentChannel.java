@@ -0,0 +1,90 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+import static org.fs.compress.segment.FileSegmentTransport.CLAIMED_SUFFIX;
+import static org.fs.compress.segment.FileSegmentTransport.RESULT_DIRECTORY;
+import static org.fs.compress.segment.FileSegmentTransport.RESULT_SUFFIX;
+import static org.fs.compress.segment.FileSegmentTransport.WAIT_POLL;
+import static org.fs.compress.segment.FileSegmentTransport.WORK_DIRECTORY;
+import static org.fs.compress.segment.FileSegmentTransport.WORK_SUFFIX;
+
+final class FileSegmentChannel implements SegmentChannel {
+
+  private final File works;
+  private final File results;
+
+  FileSegmentChannel(File directory) {
+    works = new File(directory, WORK_DIRECTORY);
+    results = new File(directory, RESULT_DIRECTORY);
+    FileSegmentTransport.mkdirs(works);
+    FileSegmentTransport.mkdirs(results);
+  }
+
+  @Override public SegmentWork receive(long timeout) throws IOException, InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    do {
+      File[] files = works.listFiles((dir, name) -> name.endsWith(WORK_SUFFIX));
+      if (files != null) {
+        for (File file : files) {
+          File claimed = new File(file.getPath() + CLAIMED_SUFFIX);
+          // another worker took it first
+          if (!file.renameTo(claimed)) continue;
+
+          SegmentWork work;
+          try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(claimed)));
+            try {
+              work = SegmentProtocol.readWork(in);
+            } finally {
+              in.close();
+            }
+          } catch (IOException e) {
+            // claimed work can not be taken by anyone else, unreadable one is dropped from spool
+            claimed.delete();
+            throw e;
+          }
+          if (!claimed.delete()) {
+            throw new IOException("can not delete " + claimed);
+          }
+          return work;
+        }
+      }
+      Thread.sleep(WAIT_POLL);
+    } while (System.currentTimeMillis() < deadline);
+    return null;
+  }
+
+  @Override public void reply(SegmentResult result) throws IOException {
+    File file = new File(results, result.jobId + "-" + result.index + RESULT_SUFFIX);
+    DataOutputStream out = FileSegmentTransport.open(file);
+    try {
+      SegmentProtocol.writeResult(out, result);
+    } finally {
+      out.close();
+    }
+    FileSegmentTransport.publish(file);
+  }
+}
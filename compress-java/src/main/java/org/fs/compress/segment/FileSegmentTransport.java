@@ -0,0 +1,109 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+/**
+ * Spool directory protocol, every message is one file written aside and renamed in to place so readers never see it
+ * half written. Workers claim a work by renaming it, rename is atomic so a work goes to one worker only.
+ */
+final class FileSegmentTransport implements SegmentTransport {
+
+  static final String WORK_DIRECTORY = "work";
+  static final String RESULT_DIRECTORY = "result";
+
+  static final String WORK_SUFFIX = ".work";
+  static final String RESULT_SUFFIX = ".result";
+  static final String CLAIMED_SUFFIX = ".claimed";
+  private static final String PARTIAL_SUFFIX = ".partial";
+
+  static final long WAIT_POLL = 50;
+
+  private final File directory;
+
+  FileSegmentTransport(File directory) {
+    this.directory = directory;
+    mkdirs(new File(directory, WORK_DIRECTORY));
+    mkdirs(new File(directory, RESULT_DIRECTORY));
+  }
+
+  @Override public void dispatch(SegmentWork work) throws IOException {
+    File file = new File(new File(directory, WORK_DIRECTORY), work.jobId + "-" + work.index + WORK_SUFFIX);
+    DataOutputStream out = open(file);
+    try {
+      SegmentProtocol.writeWork(out, work);
+    } finally {
+      out.close();
+    }
+    publish(file);
+  }
+
+  // results are named after job and unit, so a job only reads its own
+  @Override public SegmentResult await(String jobId, long timeout) throws IOException, InterruptedException {
+    File results = new File(directory, RESULT_DIRECTORY);
+    String prefix = jobId + "-";
+    long deadline = System.currentTimeMillis() + timeout;
+    do {
+      File[] files = results.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(RESULT_SUFFIX));
+      if (files != null && files.length > 0) {
+        File file = files[0];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        SegmentResult result;
+        try {
+          result = SegmentProtocol.readResult(in);
+        } finally {
+          in.close();
+        }
+        if (!file.delete()) {
+          throw new IOException("can not delete " + file);
+        }
+        return result;
+      }
+      Thread.sleep(WAIT_POLL);
+    } while (System.currentTimeMillis() < deadline);
+    return null;
+  }
+
+  @Override public SegmentChannel channel() {
+    return new FileSegmentChannel(directory);
+  }
+
+  static DataOutputStream open(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(file.getPath() + PARTIAL_SUFFIX))));
+  }
+
+  static void publish(File file) throws IOException {
+    if (!new File(file.getPath() + PARTIAL_SUFFIX).renameTo(file)) {
+      throw new IOException("can not publish " + file);
+    }
+  }
+
+  static void mkdirs(File directory) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("can not create " + directory);
+    }
+  }
+}
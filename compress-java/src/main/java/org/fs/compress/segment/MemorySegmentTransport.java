@@ -0,0 +1,65 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+final class MemorySegmentTransport implements SegmentTransport, SegmentChannel {
+
+  private final BlockingQueue<SegmentWork> works = new LinkedBlockingQueue<>();
+  // results wait here until job they belong to asks for them
+  private final List<SegmentResult> results = new ArrayList<>();
+
+  @Override public void dispatch(SegmentWork work) {
+    works.add(work);
+  }
+
+  @Override public synchronized SegmentResult await(String jobId, long timeout) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    while (true) {
+      for (Iterator<SegmentResult> iterator = results.iterator(); iterator.hasNext(); ) {
+        SegmentResult result = iterator.next();
+        if (jobId.equals(result.jobId)) {
+          iterator.remove();
+          return result;
+        }
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) return null;
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+  }
+
+  @Override public SegmentChannel channel() {
+    return this;
+  }
+
+  @Override public SegmentWork receive(long timeout) throws InterruptedException {
+    return works.poll(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  @Override public synchronized void reply(SegmentResult result) {
+    results.add(result);
+    notifyAll();
+  }
+}
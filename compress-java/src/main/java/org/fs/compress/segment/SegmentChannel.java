@@ -0,0 +1,38 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.File;
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+/**
+ * Worker end of a link to coordinator.
+ */
+public interface SegmentChannel {
+
+  static SegmentChannel newFileInstance(File directory) {
+    return new FileSegmentChannel(directory);
+  }
+
+  /**
+   * @return next unclaimed work or null if none arrived in timeout milliseconds.
+   */
+  SegmentWork receive(long timeout) throws IOException, InterruptedException;
+
+  void reply(SegmentResult result) throws IOException;
+}
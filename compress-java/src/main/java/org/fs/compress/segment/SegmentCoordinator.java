@@ -0,0 +1,55 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.fs.compress.data.SegmentWork;
+import org.fs.compress.engine.CoderEngineCallback;
+import org.fs.compress.format.MediaFormatStrategy;
+
+/**
+ * Splits one job in to work units for workers of other processes, collects their results and assembles output. Jobs
+ * may share a transport, each one only reads results of its own units.
+ */
+public interface SegmentCoordinator {
+
+  static final long DEFAULT_UNIT_TIMEOUT_MS = 10 * 60 * 1000;
+  static final int DEFAULT_UNIT_ATTEMPTS = 2;
+
+  static SegmentCoordinator newInstance(MediaFormatStrategy formatStrategy, SegmentTransport transport) {
+    return newInstance(formatStrategy, transport, DEFAULT_UNIT_TIMEOUT_MS, DEFAULT_UNIT_ATTEMPTS);
+  }
+
+  /**
+   * A unit without result in {@code unitTimeoutMs} of its dispatch is given to another worker, until it is dispatched
+   * {@code unitAttempts} times; job fails then. Timeout covers wait for a free worker as well as encode.
+   */
+  static SegmentCoordinator newInstance(MediaFormatStrategy formatStrategy, SegmentTransport transport, long unitTimeoutMs,
+      int unitAttempts) {
+    return new SegmentCoordinatorImp(formatStrategy, transport, unitTimeoutMs, unitAttempts);
+  }
+
+  /**
+   * Video is split at sync samples in to at most {@code segments} units, audio is one more unit.
+   */
+  List<SegmentWork> split(File input, File output, int segments) throws IOException;
+
+  void assemble(File input, List<SegmentWork> works, File output) throws IOException;
+
+  void execute(File input, File output, int segments, CoderEngineCallback callback) throws IOException, InterruptedException;
+}
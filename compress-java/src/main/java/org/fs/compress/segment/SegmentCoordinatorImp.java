@@ -0,0 +1,203 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+import org.fs.compress.data.Track;
+import org.fs.compress.engine.CoderEngineCallback;
+import org.fs.compress.format.MediaFormatStrategy;
+import org.fs.compress.muxer.SegmentStitcher;
+import org.fs.compress.spi.ContainerWriter;
+import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.Utils;
+
+import static android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION;
+import static org.fs.compress.engine.CoderEngine.WAIT_EVENTS;
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+import static org.fs.compress.util.Constants.SAMPLE_VIDEO;
+
+final class SegmentCoordinatorImp implements SegmentCoordinator {
+
+  private final MediaFormatStrategy formatStrategy;
+  private final SegmentTransport transport;
+  private final long unitTimeoutMs;
+  private final int unitAttempts;
+
+  SegmentCoordinatorImp(MediaFormatStrategy formatStrategy, SegmentTransport transport, long unitTimeoutMs, int unitAttempts) {
+    if (unitTimeoutMs <= 0) {
+      throw new IllegalArgumentException("unitTimeoutMs must be positive.");
+    }
+    if (unitAttempts <= 0) {
+      throw new IllegalArgumentException("unitAttempts must be positive.");
+    }
+    this.formatStrategy = formatStrategy;
+    this.transport = transport;
+    this.unitTimeoutMs = unitTimeoutMs;
+    this.unitAttempts = unitAttempts;
+  }
+
+  @Override public List<SegmentWork> split(File input, File output, int segments) throws IOException {
+    MediaExtractor extractor = new MediaExtractor();
+    try {
+      extractor.setDataSource(input.getAbsolutePath());
+      Track track = ExtractorUtil.videoAndAudioTrack(extractor);
+      if (track.videoTrackIndex < 0) {
+        throw new IllegalArgumentException("split needs a video track.");
+      }
+      long durationTimeUs = ExtractorUtil.durationTimeUs(track.videoFormat);
+      if (durationTimeUs <= 0) {
+        throw new IllegalArgumentException("split needs duration of video track.");
+      }
+      MediaFormat videoFormat = formatStrategy.videoOutputFormat(track.videoFormat);
+      if (videoFormat == null) {
+        throw new IllegalArgumentException("split needs a video format, pass-through has nothing to split.");
+      }
+
+      String jobId = UUID.randomUUID().toString();
+      long[] boundaries = ExtractorUtil.syncBoundaries(extractor, track, durationTimeUs, segments);
+      List<SegmentWork> works = new ArrayList<>(boundaries.length + 1);
+      for (int i = 0; i < boundaries.length; i++) {
+        SegmentWork work = newWork(jobId, i, SAMPLE_VIDEO, input, output.getPath() + ".segment" + i);
+        work.startTimeUs = boundaries[i];
+        work.endTimeUs = i + 1 < boundaries.length ? boundaries[i + 1] : Long.MAX_VALUE;
+        work.format = videoFormat;
+        works.add(work);
+      }
+      if (track.audioTrackIndex >= 0) {
+        SegmentWork work = newWork(jobId, boundaries.length, SAMPLE_AUDIO, input, output.getPath() + ".audio");
+        work.endTimeUs = Long.MAX_VALUE;
+        work.format = formatStrategy.audioOutputFormat(track.audioFormat);
+        works.add(work);
+      }
+      return works;
+    } finally {
+      extractor.release();
+    }
+  }
+
+  // writer of every unit moves its first sample to zero, stitcher puts it back at start of unit
+  @Override public void assemble(File input, List<SegmentWork> works, File output) throws IOException {
+    List<File> videoSegments = new ArrayList<>(works.size());
+    long[] startTimesUs = new long[works.size()];
+    File audio = null;
+    for (SegmentWork work : works) {
+      if (work.sampleType == SAMPLE_AUDIO) {
+        audio = new File(work.output);
+      } else {
+        startTimesUs[videoSegments.size()] = work.startTimeUs;
+        videoSegments.add(new File(work.output));
+      }
+    }
+    ContainerWriter writer = ContainerWriter.newInstance(new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4));
+    try {
+      SegmentStitcher.newInstance().stitch(videoSegments, Arrays.copyOf(startTimesUs, videoSegments.size()), audio, writer,
+          orientationHint(input));
+    } finally {
+      writer.release();
+    }
+  }
+
+  @Override public void execute(File input, File output, int segments, CoderEngineCallback callback) throws IOException, InterruptedException {
+    List<SegmentWork> works = split(input, output, segments);
+    final String jobId = works.get(0).jobId;
+    // every output a unit was given, a worker taken for dead may still write one of them
+    List<String> outputs = new ArrayList<>(works.size());
+    try {
+      long[] deadlinesMs = new long[works.size()];
+      int[] attempts = new int[works.size()];
+      for (int i = 0, size = works.size(); i < size; i++) {
+        SegmentWork work = works.get(i);
+        outputs.add(work.output);
+        transport.dispatch(work);
+        attempts[i] = 1;
+        deadlinesMs[i] = System.currentTimeMillis() + unitTimeoutMs;
+      }
+      boolean[] done = new boolean[works.size()];
+      int received = 0;
+      while (received < works.size()) {
+        SegmentResult result = transport.await(jobId, WAIT_EVENTS);
+        // a unit given to another worker may be replied twice, first reply wins
+        if (result != null && result.index >= 0 && result.index < done.length && !done[result.index]) {
+          if (result.error != null) {
+            throw new IllegalArgumentException("segment " + result.index + " failed: " + result.error);
+          }
+          done[result.index] = true;
+          works.get(result.index).output = result.output;
+          received++;
+          if (callback != null) callback.percentage(received / (double) works.size());
+        }
+
+        // units of a worker that died or hangs go to another worker, each attempt writes an output of its own
+        final long nowMs = System.currentTimeMillis();
+        for (int i = 0, size = works.size(); i < size; i++) {
+          if (done[i] || nowMs < deadlinesMs[i]) continue;
+          if (attempts[i] >= unitAttempts) {
+            throw new IllegalArgumentException("segment " + i + " has no result after " + attempts[i] + " attempts of " + unitTimeoutMs + " ms");
+          }
+          SegmentWork work = works.get(i);
+          work.output = outputs.get(i) + "." + attempts[i];
+          outputs.add(work.output);
+          transport.dispatch(work);
+          attempts[i]++;
+          deadlinesMs[i] = nowMs + unitTimeoutMs;
+        }
+      }
+      assemble(input, works, output);
+    } finally {
+      for (String path : outputs) {
+        File file = new File(path);
+        Utils.closeQuietly(() -> {
+          if (file.exists() && !file.delete()) {
+            throw new IllegalArgumentException("can not delete " + file);
+          }
+        });
+      }
+    }
+  }
+
+  private static SegmentWork newWork(String jobId, int index, int sampleType, File input, String output) {
+    SegmentWork work = new SegmentWork();
+    work.jobId = jobId;
+    work.index = index;
+    work.sampleType = sampleType;
+    work.input = input.getAbsolutePath();
+    work.output = output;
+    return work;
+  }
+
+  private static int orientationHint(File input) {
+    MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+    try {
+      retriever.setDataSource(input.getAbsolutePath());
+      return Integer.parseInt(retriever.extractMetadata(METADATA_KEY_VIDEO_ROTATION));
+    } catch (NumberFormatException ignored) {
+      return 0;
+    } finally {
+      retriever.release();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+import org.fs.compress.util.MediaFormatUtil;
+
+/**
+ * Binary form of work units and results, same bytes go through files or sockets. Formats are carried with their value
+ * types, codec specific data included, as {@link MediaFormatUtil} writes them.
+ */
+final class SegmentProtocol {
+
+  private static final int MAGIC_WORK = 0x53574b32; // SWK2
+  private static final int MAGIC_RESULT = 0x53525331; // SRS1
+
+  static void writeWork(DataOutput out, SegmentWork work) throws IOException {
+    out.writeInt(MAGIC_WORK);
+    out.writeUTF(work.jobId);
+    out.writeInt(work.index);
+    out.writeInt(work.sampleType);
+    out.writeLong(work.startTimeUs);
+    out.writeLong(work.endTimeUs);
+    out.writeUTF(work.input);
+    out.writeUTF(work.output);
+    out.writeBoolean(work.format != null);
+    if (work.format != null) {
+      MediaFormatUtil.write(out, work.format);
+    }
+  }
+
+  static SegmentWork readWork(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC_WORK) {
+      throw new IOException("not a segment work");
+    }
+    SegmentWork work = new SegmentWork();
+    work.jobId = in.readUTF();
+    work.index = in.readInt();
+    work.sampleType = in.readInt();
+    work.startTimeUs = in.readLong();
+    work.endTimeUs = in.readLong();
+    work.input = in.readUTF();
+    work.output = in.readUTF();
+    if (in.readBoolean()) {
+      work.format = MediaFormatUtil.read(in);
+    }
+    return work;
+  }
+
+  static void writeResult(DataOutput out, SegmentResult result) throws IOException {
+    out.writeInt(MAGIC_RESULT);
+    out.writeUTF(result.jobId);
+    out.writeInt(result.index);
+    out.writeUTF(result.output);
+    out.writeBoolean(result.error != null);
+    if (result.error != null) {
+      out.writeUTF(result.error);
+    }
+  }
+
+  static SegmentResult readResult(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC_RESULT) {
+      throw new IOException("not a segment result");
+    }
+    SegmentResult result = new SegmentResult();
+    result.jobId = in.readUTF();
+    result.index = in.readInt();
+    result.output = in.readUTF();
+    if (in.readBoolean()) {
+      result.error = in.readUTF();
+    }
+    return result;
+  }
+
+  private SegmentProtocol() {
+    throw new IllegalArgumentException("creating new instance of this object is forbidden.");
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.File;
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+/**
+ * Coordinator end of a link to workers, works are handed out and results are collected back in any order.
+ */
+public interface SegmentTransport {
+
+  /**
+   * Spool directory shared with workers, they open the other end with {@link SegmentChannel#newFileInstance(File)}.
+   */
+  static SegmentTransport newFileInstance(File directory) {
+    return new FileSegmentTransport(directory);
+  }
+
+  /**
+   * In process link, stands in for workers of other processes in tests or runs workers on threads.
+   */
+  static SegmentTransport newMemoryInstance() {
+    return new MemorySegmentTransport();
+  }
+
+  void dispatch(SegmentWork work) throws IOException;
+
+  /**
+   * Results of other jobs sharing transport are left for them.
+   *
+   * @return next result of job or null if none arrived in timeout milliseconds.
+   */
+  SegmentResult await(String jobId, long timeout) throws IOException, InterruptedException;
+
+  SegmentChannel channel();
+}
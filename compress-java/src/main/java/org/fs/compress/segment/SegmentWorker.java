@@ -0,0 +1,40 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import java.io.IOException;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+
+/**
+ * Encodes work units it receives, runs in any process that can read input and write output paths of a unit.
+ */
+public interface SegmentWorker {
+
+  static SegmentWorker newInstance(SegmentChannel channel) {
+    return new SegmentWorkerImp(channel);
+  }
+
+  /**
+   * Encodes one unit, failures are reported in result rather than thrown.
+   */
+  SegmentResult execute(SegmentWork work);
+
+  /**
+   * Serves channel until the thread is interrupted.
+   */
+  void run() throws IOException, InterruptedException;
+}
@@ -0,0 +1,132 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.segment;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import org.fs.compress.coder.Coder;
+import org.fs.compress.data.SegmentResult;
+import org.fs.compress.data.SegmentWork;
+import org.fs.compress.data.Track;
+import org.fs.compress.muxer.Muxer;
+import org.fs.compress.slot.CodecSlotManager;
+import org.fs.compress.util.ExtractorUtil;
+import org.fs.compress.util.Utils;
+
+import static org.fs.compress.engine.CoderEngine.WAIT_CODERS;
+import static org.fs.compress.engine.CoderEngine.WAIT_EVENTS;
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+
+final class SegmentWorkerImp implements SegmentWorker {
+
+  private final SegmentChannel channel;
+
+  SegmentWorkerImp(SegmentChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override public void run() throws IOException, InterruptedException {
+    while (!Thread.currentThread().isInterrupted()) {
+      SegmentWork work = channel.receive(WAIT_EVENTS);
+      if (work != null) {
+        channel.reply(execute(work));
+      }
+    }
+    throw new InterruptedException();
+  }
+
+  @Override public SegmentResult execute(SegmentWork work) {
+    SegmentResult result = new SegmentResult();
+    result.jobId = work.jobId;
+    result.index = work.index;
+    result.output = work.output;
+
+    MediaExtractor extractor = null;
+    MediaMuxer mediaMuxer = null;
+    Coder coder = null;
+    CodecSlotManager.Lease lease = null;
+    try {
+      extractor = new MediaExtractor();
+      extractor.setDataSource(work.input);
+      Track track = ExtractorUtil.videoAndAudioTrack(extractor);
+      if (work.format != null) {
+        String decoderMime = work.sampleType == SAMPLE_AUDIO ? track.audioMime : track.videoMime;
+        lease = CodecSlotManager.shared().acquire(Collections.singletonList(decoderMime),
+            Collections.singletonList(work.format.getString(MediaFormat.KEY_MIME)));
+      }
+      mediaMuxer = new MediaMuxer(work.output, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+      Muxer muxer = Muxer.newInstance(mediaMuxer, null);
+      if (work.sampleType == SAMPLE_AUDIO) {
+        coder = Coder.newInstance(track, work.format, extractor, muxer, SAMPLE_AUDIO);
+        coder.setup();
+        extractor.selectTrack(track.audioTrackIndex);
+      } else {
+        if (work.format == null) {
+          throw new IllegalArgumentException("video unit needs a format.");
+        }
+        coder = Coder.newSegmentInstance(track, work.format, extractor, muxer, work.endTimeUs);
+        coder.setup();
+        extractor.seekTo(work.startTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+      }
+      while (!coder.finished()) {
+        if (!coder.stepPipeline()) {
+          Thread.sleep(WAIT_CODERS);
+        }
+      }
+      mediaMuxer.stop();
+    } catch (InterruptedException e) {
+      // worker is being stopped, run loop sees the flag once this result is replied
+      Thread.currentThread().interrupt();
+      result.error = String.valueOf(e);
+    } catch (Exception e) {
+      result.error = String.valueOf(e);
+    } finally {
+      final Coder coderRef = coder;
+      final MediaExtractor extractorRef = extractor;
+      final MediaMuxer muxerRef = mediaMuxer;
+      final CodecSlotManager.Lease leaseRef = lease;
+      try {
+        Utils.closeAll(null,
+            () -> {
+              if (coderRef != null) coderRef.release();
+            },
+            () -> {
+              if (leaseRef != null) leaseRef.release();
+            },
+            () -> {
+              if (extractorRef != null) extractorRef.release();
+            },
+            () -> {
+              if (muxerRef != null) muxerRef.release();
+            });
+      } catch (IllegalArgumentException e) {
+        if (result.error == null) result.error = String.valueOf(e);
+      }
+      // partial output of a failed unit is never concatenated, coordinator only reads its error
+      if (result.error != null) {
+        File output = new File(work.output);
+        if (output.exists() && !output.delete()) {
+          result.error += ", can not delete " + output;
+        }
+      }
+    }
+    return result;
+  }
+}
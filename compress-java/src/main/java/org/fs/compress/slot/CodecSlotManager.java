@@ -0,0 +1,75 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.slot;
+
+import java.util.List;
+import org.fs.compress.data.CodecSlotUsage;
+import org.fs.compress.engine.CoderEngineGate;
+
+/**
+ * Hardware codecs have a limit of instances per codec name, jobs take slots for every codec they create before setup
+ * and wait for them instead of failing at allocation. Limits are device wide, so is the shared instance.
+ */
+public interface CodecSlotManager {
+
+  // limit is not reported before Marshmallow
+  static final int FALLBACK_MAX_INSTANCES = 2;
+
+  static CodecSlotManager shared() {
+    return CodecSlotManagerImp.SHARED;
+  }
+
+  /**
+   * Slots of a job are taken all at once so two jobs never hold half of what each other needs.
+   */
+  Lease acquire(List<String> decoderMimes, List<String> encoderMimes) throws InterruptedException;
+
+  /**
+   * @return lease or null if slots are not free right now.
+   */
+  Lease tryAcquire(List<String> decoderMimes, List<String> encoderMimes);
+
+  /**
+   * Waits for slots with job stepped aside, so a preempted job holding them can run in the meantime.
+   */
+  default Lease acquire(List<String> decoderMimes, List<String> encoderMimes, CoderEngineGate gate) throws InterruptedException {
+    Lease lease = tryAcquire(decoderMimes, encoderMimes);
+    if (lease != null || gate == null) {
+      return lease != null ? lease : acquire(decoderMimes, encoderMimes);
+    }
+    gate.waiting(true);
+    // when this throws job is not holding a slot of scheduler, run of job cleans up rest
+    lease = acquire(decoderMimes, encoderMimes);
+    try {
+      gate.waiting(false);
+    } catch (InterruptedException e) {
+      lease.release();
+      throw e;
+    }
+    return lease;
+  }
+
+  int maxInstances(String codecName);
+
+  List<CodecSlotUsage> usage();
+
+  int waiting();
+
+  interface Lease {
+
+    void release();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.slot;
+
+import android.media.MediaCodecInfo;
+import android.os.Build;
+import android.text.TextUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.fs.compress.data.CodecSlotUsage;
+import org.fs.compress.util.BuildOsVersionUtil;
+import org.fs.compress.util.MediaCodecListCompat;
+
+final class CodecSlotManagerImp implements CodecSlotManager {
+
+  static final CodecSlotManager SHARED = new CodecSlotManagerImp();
+
+  private MediaCodecInfo[] codecs;
+
+  private final Map<String, Integer> capacities = new HashMap<>();
+  private final Map<String, Integer> inUse = new HashMap<>();
+  private int waiting;
+
+  @Override public Lease acquire(List<String> decoderMimes, List<String> encoderMimes) throws InterruptedException {
+    synchronized (this) {
+      final String[] names = resolve(decoderMimes, encoderMimes);
+      waiting++;
+      try {
+        while (!available(names)) {
+          wait();
+        }
+      } finally {
+        waiting--;
+      }
+      return take(names);
+    }
+  }
+
+  @Override public synchronized Lease tryAcquire(List<String> decoderMimes, List<String> encoderMimes) {
+    final String[] names = resolve(decoderMimes, encoderMimes);
+    return available(names) ? take(names) : null;
+  }
+
+  @Override public synchronized int maxInstances(String codecName) {
+    Integer capacity = capacities.get(codecName);
+    return capacity != null ? capacity : FALLBACK_MAX_INSTANCES;
+  }
+
+  @Override public synchronized List<CodecSlotUsage> usage() {
+    List<CodecSlotUsage> usage = new ArrayList<>(capacities.size());
+    for (Map.Entry<String, Integer> entry : capacities.entrySet()) {
+      CodecSlotUsage item = new CodecSlotUsage();
+      item.name = entry.getKey();
+      item.capacity = entry.getValue();
+      Integer count = inUse.get(item.name);
+      item.inUse = count != null ? count : 0;
+      usage.add(item);
+    }
+    return usage;
+  }
+
+  @Override public synchronized int waiting() {
+    return waiting;
+  }
+
+  private String[] resolve(List<String> decoderMimes, List<String> encoderMimes) {
+    List<String> names = new ArrayList<>();
+    resolve(decoderMimes, false, names);
+    resolve(encoderMimes, true, names);
+    // a job that needs more than device has would wait forever
+    for (String name : names) {
+      int count = 0;
+      for (String other : names) {
+        if (TextUtils.equals(name, other)) count++;
+      }
+      if (count > capacities.get(name)) {
+        throw new IllegalArgumentException("job needs " + count + " instances of " + name + " but device has " + capacities.get(name));
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+
+  // picks first codec of list for mime, as MediaCodec#createByType does
+  private void resolve(List<String> mimes, boolean encoder, List<String> names) {
+    if (mimes == null) return;
+    if (codecs == null) {
+      codecs = MediaCodecListCompat.newInstance().codecs();
+    }
+    for (String mime : mimes) {
+      if (TextUtils.isEmpty(mime)) continue;
+      for (MediaCodecInfo info : codecs) {
+        if (info == null || info.isEncoder() != encoder || !supports(info, mime)) continue;
+        String name = info.getName();
+        if (!capacities.containsKey(name)) {
+          capacities.put(name, maxInstances(info, mime));
+        }
+        names.add(name);
+        break;
+      }
+    }
+  }
+
+  private boolean available(String[] names) {
+    Map<String, Integer> demand = new HashMap<>();
+    for (String name : names) {
+      Integer count = demand.get(name);
+      demand.put(name, count != null ? count + 1 : 1);
+    }
+    for (Map.Entry<String, Integer> entry : demand.entrySet()) {
+      Integer used = inUse.get(entry.getKey());
+      if ((used != null ? used : 0) + entry.getValue() > capacities.get(entry.getKey())) return false;
+    }
+    return true;
+  }
+
+  private Lease take(String[] names) {
+    for (String name : names) {
+      Integer used = inUse.get(name);
+      inUse.put(name, used != null ? used + 1 : 1);
+    }
+    return new Lease() {
+
+      private boolean released;
+
+      @Override public void release() {
+        synchronized (CodecSlotManagerImp.this) {
+          if (released) return;
+          released = true;
+          for (String name : names) {
+            inUse.put(name, inUse.get(name) - 1);
+          }
+          CodecSlotManagerImp.this.notifyAll();
+        }
+      }
+    };
+  }
+
+  private static boolean supports(MediaCodecInfo info, String mime) {
+    for (String type : info.getSupportedTypes()) {
+      if (type.equalsIgnoreCase(mime)) return true;
+    }
+    return false;
+  }
+
+  private static int maxInstances(MediaCodecInfo info, String mime) {
+    if (BuildOsVersionUtil.isOsAvailable(Build.VERSION_CODES.M)) {
+      try {
+        return info.getCapabilitiesForType(mime).getMaxSupportedInstances();
+      } catch (IllegalArgumentException ignored) {
+        /*no opt*/
+      }
+    }
+    return FALLBACK_MAX_INSTANCES;
+  }
+}
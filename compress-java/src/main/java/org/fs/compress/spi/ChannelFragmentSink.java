@@ -0,0 +1,66 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+/**
+ * Init segment and every fragment one after another in a single channel, a plain fragmented mp4 stream.
+ */
+final class ChannelFragmentSink implements FragmentSink {
+
+  private final WritableByteChannel channel;
+  // closed with sink when it owns channel, null when channel belongs to caller
+  private final Closeable owned;
+  private final LeakTracker.Resource resource;
+
+  private boolean released;
+
+  ChannelFragmentSink(WritableByteChannel channel, Closeable owned) {
+    this.channel = channel;
+    this.owned = owned;
+    resource = owned != null ? LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this) : null;
+  }
+
+  @Override public WritableByteChannel open(int sequenceNumber) {
+    return channel;
+  }
+
+  @Override public void close(int sequenceNumber, long startUs, long durationUs) {
+    // next fragment follows in same channel
+  }
+
+  @Override public void finish(String codecs) {
+    // nothing but fragments to write
+  }
+
+  @Override public void release() {
+    if (released) return;
+    released = true;
+    if (owned == null) return;
+    resource.release();
+    try {
+      owned.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
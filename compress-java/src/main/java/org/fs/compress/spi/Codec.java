@@ -0,0 +1,65 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Subset of {@link MediaCodec} coders talk to, so codecs can come from a {@link CodecProvider} other than the platform.
+ * Dequeue results and buffer flags are the ones of {@link MediaCodec}. Surfaces are bound by provider that created the
+ * codec, buffers are only reachable through their index.
+ */
+public interface Codec {
+
+  /**
+   * Codec copying input buffers to output as they are, after {@code latencyUs} and with {@code queueDepth} buffers on
+   * each side. Raw pcm or yuv in, same out.
+   */
+  static Codec newJvmInstance(boolean encoder, int queueDepth, long latencyUs) {
+    return new JvmCodec(encoder, queueDepth, latencyUs, null, null);
+  }
+
+  // name of codec as platform lists it, reported with jobs
+  String name();
+
+  void configure(MediaFormat format, int flags);
+
+  void start();
+
+  // blocks while timeout, negative timeout waits until there is one, MediaCodec#INFO_TRY_AGAIN_LATER otherwise
+  int dequeueInputBuffer(long timeoutUs);
+
+  ByteBuffer getInputBuffer(int index);
+
+  void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags);
+
+  int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeoutUs);
+
+  ByteBuffer getOutputBuffer(int index);
+
+  // render draws buffer on surface codec is configured with, if any
+  void releaseOutputBuffer(int index, boolean render);
+
+  void signalEndOfInputStream();
+
+  MediaFormat getOutputFormat();
+
+  void stop();
+
+  void release();
+}
@@ -0,0 +1,69 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+
+/**
+ * Where engines get their codecs, extractors, writers and surfaces from. Platform one is backed by MediaCodec, EGL and
+ * friends; jvm one needs none of them, so whole pipeline can run on a build host.
+ */
+public interface CodecProvider {
+
+  static CodecProvider platform() {
+    return PlatformCodecProvider.INSTANCE;
+  }
+
+  /**
+   * Codecs copy raw pcm or yuv samples through, each holding {@code queueDepth} buffers and delaying them by
+   * {@code latencyUs}. Writer and extractor share a plain sample file format, so outputs can be read back.
+   */
+  static CodecProvider newJvmInstance(int queueDepth, long latencyUs) {
+    return new JvmCodecProvider(queueDepth, latencyUs);
+  }
+
+  // codec instances come from a limited pool of hardware, engines take slots for them before they are created
+  boolean limited();
+
+  /**
+   * Decoder renders its output on {@code surface} when it is not null, surface must be one of this provider.
+   * {@code eventLoop} is signalled whenever codec has a buffer to dequeue, it might be null.
+   */
+  Codec newDecoder(String mime, OutputSurface surface, EventLoop eventLoop);
+
+  Codec newEncoder(String mime, EventLoop eventLoop);
+
+  // encoder must be configured and not started yet, frames swapped on surface are queued in to it
+  default InputSurface newInputSurface(Codec encoder) {
+    return newInputSurface(encoder, null);
+  }
+
+  // surface shares what is drawn with shared one when it is not null, so one decoded frame reaches every encoder
+  InputSurface newInputSurface(Codec encoder, InputSurface shared);
+
+  // must be created on thread input surface is current on
+  OutputSurface newOutputSurface();
+
+  Extractor newExtractor(FileDescriptor input) throws IOException;
+
+  // format is one of MediaMuxer.OutputFormat
+  ContainerWriter newWriter(File output, int format) throws IOException;
+}
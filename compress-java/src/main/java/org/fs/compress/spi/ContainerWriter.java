@@ -0,0 +1,90 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import org.fs.compress.data.Mp4Options;
+import org.fs.compress.data.StreamingOptions;
+
+/**
+ * Subset of {@link MediaMuxer} a {@link org.fs.compress.muxer.Muxer} writes through, tracks are added before start
+ * and samples are written after it.
+ */
+public interface ContainerWriter {
+
+  static ContainerWriter newInstance(MediaMuxer muxer) {
+    return new PlatformContainerWriter(muxer);
+  }
+
+  /**
+   * Pure java mp4 writer, chunks and layout of file are set by {@code options}. Supports avc video and aac audio.
+   * Output is fragmented mp4 when options have a fragment duration.
+   */
+  static ContainerWriter newMp4Instance(File output, Mp4Options options) throws IOException {
+    if (options.fragmentDurationUs > 0) {
+      FileOutputStream out = new FileOutputStream(output);
+      return new FragmentedMp4ContainerWriter(new ChannelFragmentSink(out.getChannel(), out), options);
+    }
+    return new Mp4ContainerWriter(output, options);
+  }
+
+  /**
+   * Fragmented mp4 writer streaming in to {@code channel} as fragments complete, channel is left open for caller.
+   */
+  static ContainerWriter newFragmentedMp4Instance(WritableByteChannel channel, Mp4Options options) {
+    return new FragmentedMp4ContainerWriter(new ChannelFragmentSink(channel, null), options);
+  }
+
+  /**
+   * Fragmented mp4 segments published in to {@code directory} with playlists {@code options} ask for. Target duration
+   * of segments is rounded up to a multiple of {@code keyFrameIntervalUs}, zero when interval is not known.
+   */
+  static ContainerWriter newStreamingInstance(File directory, StreamingOptions options, long keyFrameIntervalUs)
+      throws IOException {
+    if (options.targetDurationUs <= 0) {
+      throw new IllegalArgumentException("target duration must be positive " + options.targetDurationUs);
+    }
+    long targetDurationUs = options.targetDurationUs;
+    Mp4Options mp4 = new Mp4Options();
+    mp4.chunkBufferSize = options.chunkBufferSize;
+    mp4.fragmentDurationUs = targetDurationUs;
+    if (keyFrameIntervalUs > 0) {
+      targetDurationUs = (targetDurationUs + keyFrameIntervalUs - 1) / keyFrameIntervalUs * keyFrameIntervalUs;
+      // key frame closest to target cuts, even if its time is off by a little
+      mp4.fragmentDurationUs = targetDurationUs - keyFrameIntervalUs / 2;
+    }
+    return new FragmentedMp4ContainerWriter(new SegmentFragmentSink(directory, options, targetDurationUs), mp4);
+  }
+
+  int addTrack(MediaFormat format);
+
+  void setOrientationHint(int degrees);
+
+  void start();
+
+  void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo);
+
+  void stop();
+
+  void release();
+}
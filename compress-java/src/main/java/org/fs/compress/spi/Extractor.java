@@ -0,0 +1,56 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Subset of {@link MediaExtractor} coders read samples with, sample flags and seek modes are the ones of
+ * {@link MediaExtractor}. Also tells metadata engines need before coders are set up.
+ */
+public interface Extractor {
+
+  // metadata is read from track formats, there is no source to retrieve it from
+  static Extractor newInstance(MediaExtractor extractor) {
+    return new PlatformExtractor(extractor, null);
+  }
+
+  int getTrackCount();
+
+  MediaFormat getTrackFormat(int index);
+
+  void selectTrack(int index);
+
+  int getSampleTrackIndex();
+
+  long getSampleTime();
+
+  int getSampleFlags();
+
+  int readSampleData(ByteBuffer byteBuffer, int offset);
+
+  boolean advance();
+
+  void seekTo(long timeUs, int mode);
+
+  // rotation in degrees and duration of source, -1 when duration is not known
+  int orientation();
+  long durationTimeUs();
+
+  void release();
+}
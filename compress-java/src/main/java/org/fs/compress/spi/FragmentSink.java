@@ -0,0 +1,37 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Where {@link FragmentedMp4ContainerWriter} puts init segment and fragments, one channel for all or one file each.
+ */
+interface FragmentSink {
+
+  // channel init segment, sequence number zero, or a fragment is written in to
+  WritableByteChannel open(int sequenceNumber) throws IOException;
+
+  // what was opened for sequence number is complete, a fragment spans duration from start on timeline of output
+  void close(int sequenceNumber, long startUs, long durationUs) throws IOException;
+
+  // last fragment is closed, codecs are rfc 6381 names of tracks joined by commas
+  void finish(String codecs) throws IOException;
+
+  // safe to call more than once, after finish or instead of it
+  void release();
+}
@@ -0,0 +1,259 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.data.Mp4Options;
+
+/**
+ * Writes fragmented mp4 as it goes: ftyp and moov without samples at start, then a moof and mdat pair whenever a
+ * fragment is long enough. With a video track fragments are cut at its sync samples only, so each one starts
+ * decodable. Nothing is ever read back or rewritten, so any channel will do and at most one fragment is held. Sink
+ * decides whether fragments follow each other in one channel or go to files of their own.
+ */
+final class FragmentedMp4ContainerWriter implements ContainerWriter {
+
+  private static final int STATE_IDLE = 0x00;
+  private static final int STATE_PROGRESS = 0x01;
+  private static final int STATE_STOPPED = 0x02;
+
+  private static final int MOVIE_TIMESCALE = 1000;
+  private static final int MDAT = 0x6d646174; // mdat
+
+  private final List<Mp4Track> tracks = new ArrayList<>(2);
+  private final Mp4BoxWriter box = new Mp4BoxWriter(4096);
+  private final ByteBuffer mdatHeader = ByteBuffer.allocate(16);
+
+  private final Mp4Options options;
+  private final FragmentSink sink;
+
+  private int orientation;
+  private int state = STATE_IDLE;
+  private boolean hasVideo;
+
+  private int sequenceNumber;
+  private boolean fragmentStarted;
+  private long fragmentStartUs;
+  // first sample written, decode times of every track count from it
+  private long originUs = Long.MIN_VALUE;
+
+  FragmentedMp4ContainerWriter(FragmentSink sink, Mp4Options options) {
+    if (options.fragmentDurationUs <= 0) {
+      throw new IllegalArgumentException("fragment duration must be positive " + options.fragmentDurationUs);
+    }
+    this.sink = sink;
+    this.options = options;
+  }
+
+  @Override public int addTrack(MediaFormat format) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("tracks can not be added after start");
+    }
+    Mp4Track track = new Mp4Track(tracks.size() + 1, format, options.chunkBufferSize);
+    hasVideo |= track.video;
+    tracks.add(track);
+    return tracks.size() - 1;
+  }
+
+  @Override public void setOrientationHint(int degrees) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("orientation can not be set after start");
+    }
+    if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+      throw new IllegalArgumentException("orientation must be a multiple of 90 degrees " + degrees);
+    }
+    orientation = degrees;
+  }
+
+  @Override public void start() {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("writer is already started");
+    }
+    if (tracks.isEmpty()) {
+      throw new IllegalStateException("writer has no tracks");
+    }
+    box.reset();
+    box.begin("ftyp")
+        .fourcc("iso6")
+        .u32(0)
+        .fourcc("iso6")
+        .fourcc("isom")
+        .fourcc("avc1")
+        .fourcc("mp41")
+        .end();
+    box.begin("moov");
+    box.beginFull("mvhd", 0, 0)
+        .u32(0) // creation time
+        .u32(0) // modification time
+        .u32(MOVIE_TIMESCALE)
+        .u32(0) // duration is unknown, fragments carry it
+        .u32(0x00010000) // rate
+        .u16(0x0100) // volume
+        .zeros(10)
+        .u32(0x00010000).u32(0).u32(0)
+        .u32(0).u32(0x00010000).u32(0)
+        .u32(0).u32(0).u32(0x40000000)
+        .zeros(24)
+        .u32(tracks.size() + 1) // next track id
+        .end();
+    // tracks have no samples yet, so their sample tables are empty
+    for (Mp4Track track : tracks) {
+      track.writeTrak(box, MOVIE_TIMESCALE, 0, 0, orientation);
+    }
+    box.begin("mvex");
+    for (Mp4Track track : tracks) {
+      box.beginFull("trex", 0, 0)
+          .u32(track.id)
+          .u32(1) // sample description index
+          .u32(0) // duration, size and flags are in every trun
+          .u32(0)
+          .u32(0)
+          .end();
+    }
+    box.end();
+    box.end();
+    try {
+      write(sink.open(0), box.buffer());
+      sink.close(0, 0, 0);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    state = STATE_PROGRESS;
+  }
+
+  @Override public void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    if (trackIndex < 0 || trackIndex >= tracks.size()) {
+      throw new IllegalArgumentException("can not determine track " + trackIndex);
+    }
+    if (bufferInfo.size <= 0 || (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) return;
+
+    final Mp4Track track = tracks.get(trackIndex);
+    final long timeUs = bufferInfo.presentationTimeUs;
+    // with video only its sync samples may start a fragment, audio alone may cut anywhere
+    final boolean canCut = !hasVideo || (track.video && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
+    if (fragmentStarted && canCut && timeUs - fragmentStartUs >= options.fragmentDurationUs) {
+      try {
+        writeFragment(timeUs);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+    if (originUs == Long.MIN_VALUE) {
+      originUs = timeUs;
+    }
+    if (!fragmentStarted) {
+      fragmentStarted = true;
+      fragmentStartUs = timeUs;
+    }
+    track.append(byteBuffer, bufferInfo);
+  }
+
+  @Override public void stop() {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    state = STATE_STOPPED;
+    try {
+      if (fragmentStarted) {
+        long endUs = Long.MIN_VALUE;
+        for (Mp4Track track : tracks) {
+          if (track.sampleCount() > 0) endUs = Math.max(endUs, track.pendingEndUs());
+        }
+        writeFragment(endUs);
+      }
+      StringBuilder codecs = new StringBuilder();
+      for (Mp4Track track : tracks) {
+        if (codecs.length() > 0) codecs.append(',');
+        codecs.append(track.codec());
+      }
+      sink.finish(codecs.toString());
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    } finally {
+      release();
+    }
+  }
+
+  @Override public void release() {
+    for (Mp4Track track : tracks) {
+      track.release();
+    }
+    sink.release();
+  }
+
+  /**
+   * Moof with a traf for each track that has samples, then mdat with samples of those tracks in same order. Moof is
+   * built twice, first time only to learn its size, since data offsets of runs count from its start. Fragment ends
+   * where next one starts, or with its last sample.
+   */
+  private void writeFragment(long endUs) throws IOException {
+    long dataSize = 0;
+    for (Mp4Track track : tracks) {
+      dataSize += track.pendingSize();
+    }
+    final boolean largeMdat = dataSize + 8 > 0xffffffffL;
+    final int mdatHeaderSize = largeMdat ? 16 : 8;
+
+    sequenceNumber++;
+    final WritableByteChannel channel = sink.open(sequenceNumber);
+    writeMoof(0);
+    writeMoof(box.size() + mdatHeaderSize);
+    write(channel, box.buffer());
+
+    mdatHeader.clear();
+    if (largeMdat) {
+      mdatHeader.putInt(1).putInt(MDAT).putLong(dataSize + 16);
+    } else {
+      mdatHeader.putInt((int) (dataSize + 8)).putInt(MDAT);
+    }
+    mdatHeader.flip();
+    write(channel, mdatHeader);
+    for (Mp4Track track : tracks) {
+      if (track.sampleCount() == 0) continue;
+      write(channel, track.pending());
+      track.fragmentWritten();
+    }
+    sink.close(sequenceNumber, Math.max(0, fragmentStartUs - originUs), endUs - fragmentStartUs);
+    fragmentStarted = false;
+  }
+
+  private void writeMoof(int dataOffset) {
+    box.reset();
+    box.begin("moof");
+    box.beginFull("mfhd", 0, 0).u32(sequenceNumber).end();
+    for (Mp4Track track : tracks) {
+      if (track.sampleCount() == 0) continue;
+      track.writeTraf(box, originUs, dataOffset);
+      dataOffset += track.pendingSize();
+    }
+    box.end();
+  }
+
+  private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.leak.LeakTracker;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+import static org.fs.compress.util.Constants.RESOURCE_CODEC;
+
+/**
+ * Copies every input buffer to an output buffer once {@code latencyUs} passed since it was queued. Buffers move from
+ * input to output lazily, on any call, so a blocking dequeue makes progress without another thread.
+ */
+final class JvmCodec implements Codec {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // 64 kb
+
+  private static final String KEY_CSD_0 = "csd-0";
+  private static final String KEY_CSD_1 = "csd-1";
+  // baseline profile, level 3.0; what an avc encoder would report, so mpeg validation holds
+  private static final byte[] AVC_SPS = {0x00, 0x00, 0x00, 0x01, 0x67, 0x42, 0x00, 0x1e, (byte) 0xab, 0x40, (byte) 0xb0, 0x4b, 0x20};
+  private static final byte[] AVC_PPS = {0x00, 0x00, 0x00, 0x01, 0x68, (byte) 0xce, 0x3c, (byte) 0x80};
+
+  private static final int STATE_IDLE = 0x00;
+  private static final int STATE_CONFIGURED = 0x01;
+  private static final int STATE_STARTED = 0x02;
+
+  private final boolean encoder;
+  private final int queueDepth;
+  private final long latencyNs;
+  private final EventLoop eventLoop;
+  private final JvmFrameSink sink;
+  private final LeakTracker.Resource resource;
+
+  private MediaFormat format;
+  private MediaFormat outputFormat;
+  private int state = STATE_IDLE;
+  private boolean formatReported;
+
+  private ByteBuffer[] inputBuffers;
+  private ByteBuffer[] outputBuffers;
+
+  // rings of buffer indexes; free inputs, queued inputs, free outputs, outputs ready to dequeue
+  private IntRing freeInputs;
+  private IntRing queuedInputs;
+  private IntRing freeOutputs;
+  private IntRing readyOutputs;
+
+  private int[] inputSizes;
+  private int[] inputFlags;
+  private long[] inputTimesUs;
+  private long[] inputReadyNs;
+
+  private int[] outputSizes;
+  private int[] outputFlags;
+  private long[] outputTimesUs;
+
+  JvmCodec(boolean encoder, int queueDepth, long latencyUs, EventLoop eventLoop, JvmFrameSink sink) {
+    if (queueDepth < 1) {
+      throw new IllegalArgumentException("queueDepth can not be less than 1, " + queueDepth);
+    }
+    this.encoder = encoder;
+    this.queueDepth = queueDepth;
+    this.latencyNs = Math.max(0, latencyUs) * 1000;
+    this.eventLoop = eventLoop;
+    this.sink = sink;
+    this.resource = LeakTracker.shared().track(RESOURCE_CODEC, this);
+  }
+
+  @Override public String name() {
+    return encoder ? "jvm.copy.encoder" : "jvm.copy.decoder";
+  }
+
+  @Override public synchronized void configure(MediaFormat format, int flags) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("codec is already configured");
+    }
+    this.format = format;
+
+    int bufferSize = bufferSize(format);
+    inputBuffers = newBuffers(queueDepth, bufferSize);
+    outputBuffers = newBuffers(queueDepth, bufferSize);
+
+    freeInputs = new IntRing(queueDepth);
+    queuedInputs = new IntRing(queueDepth);
+    freeOutputs = new IntRing(queueDepth);
+    readyOutputs = new IntRing(queueDepth);
+
+    inputSizes = new int[queueDepth];
+    inputFlags = new int[queueDepth];
+    inputTimesUs = new long[queueDepth];
+    inputReadyNs = new long[queueDepth];
+    outputSizes = new int[queueDepth];
+    outputFlags = new int[queueDepth];
+    outputTimesUs = new long[queueDepth];
+
+    state = STATE_CONFIGURED;
+  }
+
+  @Override public synchronized void start() {
+    if (state != STATE_CONFIGURED) {
+      throw new IllegalStateException("codec is not configured");
+    }
+    reset();
+    state = STATE_STARTED;
+  }
+
+  @Override public synchronized int dequeueInputBuffer(long timeoutUs) {
+    checkStarted();
+    final long deadlineNs = deadlineNs(timeoutUs);
+    while (true) {
+      long waitNs = pump();
+      if (!freeInputs.isEmpty()) return freeInputs.poll();
+      if (!await(deadlineNs, waitNs)) return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+  }
+
+  @Override public synchronized ByteBuffer getInputBuffer(int index) {
+    checkStarted();
+    ByteBuffer buffer = inputBuffers[index];
+    buffer.clear();
+    return buffer;
+  }
+
+  @Override public synchronized void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+    checkStarted();
+    ByteBuffer buffer = inputBuffers[index];
+    // output always starts at zero, so sample is moved to start of buffer now
+    if (offset != 0 && size > 0) {
+      buffer.limit(offset + size).position(offset);
+      buffer.compact();
+    }
+    inputSizes[index] = size;
+    inputFlags[index] = flags;
+    inputTimesUs[index] = presentationTimeUs;
+    inputReadyNs[index] = System.nanoTime() + latencyNs;
+    queuedInputs.offer(index);
+    changed();
+  }
+
+  @Override public synchronized int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeoutUs) {
+    checkStarted();
+    if (!formatReported) {
+      formatReported = true;
+      return MediaCodec.INFO_OUTPUT_FORMAT_CHANGED;
+    }
+    final long deadlineNs = deadlineNs(timeoutUs);
+    while (true) {
+      long waitNs = pump();
+      if (!readyOutputs.isEmpty()) {
+        int index = readyOutputs.poll();
+        bufferInfo.set(0, outputSizes[index], outputTimesUs[index], outputFlags[index]);
+        return index;
+      }
+      if (!await(deadlineNs, waitNs)) return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+  }
+
+  @Override public synchronized ByteBuffer getOutputBuffer(int index) {
+    checkStarted();
+    ByteBuffer buffer = outputBuffers[index];
+    buffer.limit(outputSizes[index]).position(0);
+    return buffer;
+  }
+
+  @Override public void releaseOutputBuffer(int index, boolean render) {
+    final ByteBuffer buffer;
+    final long presentationTimeUs;
+    synchronized (this) {
+      checkStarted();
+      buffer = outputBuffers[index];
+      buffer.limit(outputSizes[index]).position(0);
+      presentationTimeUs = outputTimesUs[index];
+    }
+    // sink copies the frame before buffer is given back
+    if (render && sink != null) {
+      sink.frame(buffer, presentationTimeUs);
+    }
+    synchronized (this) {
+      freeOutputs.offer(index);
+      changed();
+    }
+  }
+
+  @Override public void signalEndOfInputStream() {
+    if (!encoder) {
+      throw new IllegalStateException("only encoders take end of stream from surface");
+    }
+    int index = dequeueInputBuffer(-1);
+    queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+  }
+
+  // what surface swaps in to encoder, frames are not scaled so larger ones are cut to frame size of encoder
+  void queueFrame(ByteBuffer frame, long presentationTimeUs) {
+    int index = dequeueInputBuffer(-1);
+    ByteBuffer buffer = getInputBuffer(index);
+    int size = Math.min(frame.remaining(), buffer.capacity());
+    int limit = frame.limit();
+    frame.limit(frame.position() + size);
+    buffer.put(frame);
+    frame.limit(limit);
+    queueInputBuffer(index, 0, size, presentationTimeUs, 0);
+  }
+
+  synchronized MediaFormat inputFormat() {
+    return format;
+  }
+
+  @Override public synchronized MediaFormat getOutputFormat() {
+    if (format == null) {
+      throw new IllegalStateException("codec is not configured");
+    }
+    if (outputFormat == null) {
+      outputFormat = MediaFormatUtil.copy(format);
+      String mime = format.getString(MediaFormat.KEY_MIME);
+      if (encoder && MIME_TYPE_VIDEO_AVC.equals(mime) && !format.containsKey(KEY_CSD_0)) {
+        outputFormat.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(AVC_SPS));
+        outputFormat.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(AVC_PPS));
+      }
+    }
+    return outputFormat;
+  }
+
+  @Override public synchronized void stop() {
+    if (state == STATE_STARTED) {
+      state = STATE_CONFIGURED;
+      reset();
+      changed();
+    }
+  }
+
+  @Override public synchronized void release() {
+    state = STATE_IDLE;
+    inputBuffers = null;
+    outputBuffers = null;
+    changed();
+    resource.release();
+  }
+
+  // moves inputs which are due in to free outputs, tells how long until next one is due or -1 if none is waiting
+  private long pump() {
+    while (!queuedInputs.isEmpty()) {
+      int input = queuedInputs.peek();
+      long remainingNs = inputReadyNs[input] - System.nanoTime();
+      if (remainingNs > 0) return remainingNs;
+      if (freeOutputs.isEmpty()) return -1;
+
+      int output = freeOutputs.poll();
+      int size = inputSizes[input];
+      ByteBuffer src = inputBuffers[input];
+      ByteBuffer dst = outputBuffers[output];
+      src.limit(size).position(0);
+      dst.clear();
+      dst.put(src);
+
+      outputSizes[output] = size;
+      // raw samples stand on their own, every one an encoder puts out is a key frame
+      outputFlags[output] = encoder && size > 0 ? inputFlags[input] | MediaCodec.BUFFER_FLAG_KEY_FRAME : inputFlags[input];
+      outputTimesUs[output] = inputTimesUs[input];
+
+      queuedInputs.poll();
+      freeInputs.offer(input);
+      readyOutputs.offer(output);
+    }
+    return -1;
+  }
+
+  private boolean await(long deadlineNs, long waitNs) {
+    long remainingNs = deadlineNs == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineNs - System.nanoTime();
+    if (remainingNs <= 0) return false;
+    if (waitNs > 0) remainingNs = Math.min(remainingNs, waitNs);
+    try {
+      if (remainingNs == Long.MAX_VALUE) {
+        wait();
+      } else {
+        wait(remainingNs / 1000000, (int) (remainingNs % 1000000));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    checkStarted();
+    return true;
+  }
+
+  private void changed() {
+    notifyAll();
+    if (eventLoop != null) {
+      eventLoop.signal();
+    }
+  }
+
+  private void reset() {
+    freeInputs.clear();
+    queuedInputs.clear();
+    freeOutputs.clear();
+    readyOutputs.clear();
+    for (int i = 0; i < queueDepth; i++) {
+      freeInputs.offer(i);
+      freeOutputs.offer(i);
+    }
+    formatReported = false;
+  }
+
+  private void checkStarted() {
+    if (state != STATE_STARTED) {
+      throw new IllegalStateException("codec is not started");
+    }
+  }
+
+  private static long deadlineNs(long timeoutUs) {
+    if (timeoutUs < 0) return Long.MAX_VALUE;
+    return System.nanoTime() + timeoutUs * 1000;
+  }
+
+  // large enough for a sample of track or a raw yuv 420 frame, whichever is bigger
+  private static int bufferSize(MediaFormat format) {
+    int size = DEFAULT_BUFFER_SIZE;
+    if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+      size = Math.max(size, format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+    }
+    if (format.containsKey(MediaFormat.KEY_WIDTH) && format.containsKey(MediaFormat.KEY_HEIGHT)) {
+      size = Math.max(size, format.getInteger(MediaFormat.KEY_WIDTH) * format.getInteger(MediaFormat.KEY_HEIGHT) * 3 / 2);
+    }
+    return size;
+  }
+
+  private static ByteBuffer[] newBuffers(int count, int size) {
+    ByteBuffer[] buffers = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      buffers[i] = ByteBuffer.allocateDirect(size)
+          .order(ByteOrder.nativeOrder());
+    }
+    return buffers;
+  }
+
+  private static final class IntRing {
+
+    private final int[] values;
+    private int head;
+    private int size;
+
+    IntRing(int capacity) {
+      values = new int[capacity];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void offer(int value) {
+      if (size == values.length) {
+        throw new IllegalStateException("ring is full");
+      }
+      values[(head + size++) % values.length] = value;
+    }
+
+    int peek() {
+      return values[head];
+    }
+
+    int poll() {
+      int value = values[head];
+      head = (head + 1) % values.length;
+      size--;
+      return value;
+    }
+
+    void clear() {
+      head = 0;
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+
+final class JvmCodecProvider implements CodecProvider {
+
+  private final int queueDepth;
+  private final long latencyUs;
+
+  JvmCodecProvider(int queueDepth, long latencyUs) {
+    if (queueDepth < 1) {
+      throw new IllegalArgumentException("queueDepth can not be less than 1, " + queueDepth);
+    }
+    this.queueDepth = queueDepth;
+    this.latencyUs = latencyUs;
+  }
+
+  @Override public boolean limited() {
+    return false;
+  }
+
+  @Override public Codec newDecoder(String mime, OutputSurface surface, EventLoop eventLoop) {
+    if (surface != null && !(surface instanceof JvmOutputSurface)) {
+      throw new IllegalArgumentException("surface is not created by jvm provider " + surface);
+    }
+    return new JvmCodec(false, queueDepth, latencyUs, eventLoop, (JvmOutputSurface) surface);
+  }
+
+  @Override public Codec newEncoder(String mime, EventLoop eventLoop) {
+    return new JvmCodec(true, queueDepth, latencyUs, eventLoop, null);
+  }
+
+  // output surface draws in to whichever surface is current, there is no context to share
+  @Override public InputSurface newInputSurface(Codec encoder, InputSurface shared) {
+    if (!(encoder instanceof JvmCodec)) {
+      throw new IllegalArgumentException("encoder is not created by jvm provider " + encoder);
+    }
+    return new JvmInputSurface((JvmCodec) encoder);
+  }
+
+  @Override public OutputSurface newOutputSurface() {
+    return new JvmOutputSurface();
+  }
+
+  @Override public Extractor newExtractor(FileDescriptor input) throws IOException {
+    return new JvmExtractor(input);
+  }
+
+  // there is one layout, format of container is not told apart
+  @Override public ContainerWriter newWriter(File output, int format) throws IOException {
+    return new JvmContainerWriter(output);
+  }
+}
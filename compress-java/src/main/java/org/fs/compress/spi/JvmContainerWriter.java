@@ -0,0 +1,168 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.leak.LeakTracker;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+/**
+ * Writes samples as they come, in a plain layout {@link JvmExtractor} reads back. Header has orientation and formats
+ * of tracks, each sample follows it with its track, flags, time and size. Empty samples are not written.
+ */
+final class JvmContainerWriter implements ContainerWriter {
+
+  static final int MAGIC = 0x434d5053; // CMPS
+  static final int VERSION = 1;
+  static final int SAMPLE_HEADER_SIZE = 4 + 4 + 8 + 4;
+
+  private static final int STATE_IDLE = 0x00;
+  private static final int STATE_PROGRESS = 0x01;
+  private static final int STATE_STOPPED = 0x02;
+
+  private final List<MediaFormat> formats = new ArrayList<>(2);
+  // header and data of a sample leave in one gathering write
+  private final ByteBuffer header = ByteBuffer.allocate(SAMPLE_HEADER_SIZE);
+  private final ByteBuffer[] sample = new ByteBuffer[2];
+
+  private final FileOutputStream out;
+  private final FileChannel channel;
+  private final LeakTracker.Resource resource;
+
+  private int orientation;
+  private int state = STATE_IDLE;
+
+  JvmContainerWriter(File output) throws IOException {
+    out = new FileOutputStream(output);
+    channel = out.getChannel();
+    resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this);
+  }
+
+  @Override public int addTrack(MediaFormat format) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("tracks can not be added after start");
+    }
+    formats.add(format);
+    return formats.size() - 1;
+  }
+
+  @Override public void setOrientationHint(int degrees) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("orientation can not be set after start");
+    }
+    orientation = degrees;
+  }
+
+  @Override public void start() {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("writer is already started");
+    }
+    if (formats.isEmpty()) {
+      throw new IllegalStateException("writer has no tracks");
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream data = new DataOutputStream(bytes);
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(orientation);
+      data.writeInt(formats.size());
+      for (MediaFormat format : formats) {
+        MediaFormatUtil.write(data, format);
+      }
+      data.flush();
+      writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    state = STATE_PROGRESS;
+  }
+
+  @Override public void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    if (trackIndex < 0 || trackIndex >= formats.size()) {
+      throw new IllegalArgumentException("can not determine track " + trackIndex);
+    }
+    if (bufferInfo.size <= 0) return;
+
+    final int position = byteBuffer.position();
+    final int limit = byteBuffer.limit();
+    byteBuffer.limit(bufferInfo.offset + bufferInfo.size);
+    byteBuffer.position(bufferInfo.offset);
+
+    header.clear();
+    header.putInt(trackIndex);
+    header.putInt(bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME);
+    header.putLong(bufferInfo.presentationTimeUs);
+    header.putInt(bufferInfo.size);
+    header.flip();
+
+    sample[0] = header;
+    sample[1] = byteBuffer;
+    try {
+      while (byteBuffer.hasRemaining()) {
+        channel.write(sample);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    } finally {
+      sample[1] = null;
+      byteBuffer.limit(limit);
+      byteBuffer.position(position);
+    }
+  }
+
+  @Override public void stop() {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    state = STATE_STOPPED;
+    close();
+  }
+
+  @Override public void release() {
+    close();
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void close() {
+    resource.release();
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
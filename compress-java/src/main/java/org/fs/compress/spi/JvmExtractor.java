@@ -0,0 +1,235 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import java.io.DataInputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.fs.compress.util.MediaFormatUtil;
+
+import static org.fs.compress.spi.JvmContainerWriter.MAGIC;
+import static org.fs.compress.spi.JvmContainerWriter.SAMPLE_HEADER_SIZE;
+import static org.fs.compress.spi.JvmContainerWriter.VERSION;
+
+/**
+ * Reads what {@link JvmContainerWriter} writes. File is mapped and indexed once, samples of selected tracks are then
+ * read in order they were written.
+ */
+final class JvmExtractor implements Extractor {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // input belongs to caller, stream is only kept reachable so it does not close input when collected
+  private final FileInputStream in;
+  private final MappedByteBuffer mapped;
+  private final MediaFormat[] formats;
+  private final boolean[] selected;
+  private final int orientation;
+  private long durationTimeUs = -1;
+
+  // index of samples, in file order
+  private int count;
+  private int[] tracks = new int[INITIAL_CAPACITY];
+  private int[] flags = new int[INITIAL_CAPACITY];
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  private int[] offsets = new int[INITIAL_CAPACITY];
+  private long[] timesUs = new long[INITIAL_CAPACITY];
+
+  private int cursor = -1;
+  // cursor moved by advance or seek, tracks selected after it do not rewind it
+  private boolean reading;
+
+  JvmExtractor(FileDescriptor input) throws IOException {
+    in = new FileInputStream(input);
+    FileChannel channel = in.getChannel();
+    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+    DataInputStream data = new DataInputStream(new ByteBufferInputStream(mapped));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("input is not a sample file");
+    }
+    int version = data.readInt();
+    if (version != VERSION) {
+      throw new IOException("can not read version " + version + " of sample file");
+    }
+    orientation = data.readInt();
+    formats = new MediaFormat[data.readInt()];
+    selected = new boolean[formats.length];
+    for (int i = 0; i < formats.length; i++) {
+      formats[i] = MediaFormatUtil.read(data);
+    }
+
+    long[] trackDurationsUs = new long[formats.length];
+    while (mapped.remaining() >= SAMPLE_HEADER_SIZE) {
+      int track = mapped.getInt();
+      int flag = mapped.getInt();
+      long timeUs = mapped.getLong();
+      int size = mapped.getInt();
+      if (track < 0 || track >= formats.length || size < 0 || size > mapped.remaining()) {
+        throw new IOException("sample file is corrupt at " + (mapped.position() - SAMPLE_HEADER_SIZE));
+      }
+      add(track, flag, timeUs, size, mapped.position());
+      mapped.position(mapped.position() + size);
+      trackDurationsUs[track] = Math.max(trackDurationsUs[track], timeUs);
+    }
+    mapped.clear();
+
+    for (int i = 0; i < formats.length; i++) {
+      if (!formats[i].containsKey(MediaFormat.KEY_DURATION)) {
+        formats[i].setLong(MediaFormat.KEY_DURATION, trackDurationsUs[i]);
+      }
+      durationTimeUs = Math.max(durationTimeUs, formats[i].getLong(MediaFormat.KEY_DURATION));
+    }
+  }
+
+  @Override public int getTrackCount() {
+    return formats.length;
+  }
+
+  @Override public MediaFormat getTrackFormat(int index) {
+    return MediaFormatUtil.copy(formats[index]);
+  }
+
+  @Override public void selectTrack(int index) {
+    selected[index] = true;
+    // until reading starts cursor goes back to first selected sample, one of this track may come before it
+    if (!reading || cursor < 0 || cursor >= count) {
+      cursor = next(0);
+    }
+  }
+
+  @Override public int getSampleTrackIndex() {
+    return cursor >= 0 && cursor < count ? tracks[cursor] : -1;
+  }
+
+  @Override public long getSampleTime() {
+    return cursor >= 0 && cursor < count ? timesUs[cursor] : -1;
+  }
+
+  @Override public int getSampleFlags() {
+    return cursor >= 0 && cursor < count ? flags[cursor] : -1;
+  }
+
+  @Override public int readSampleData(ByteBuffer byteBuffer, int offset) {
+    if (cursor < 0 || cursor >= count) return -1;
+    int size = sizes[cursor];
+    if (size > byteBuffer.capacity() - offset) {
+      throw new IllegalArgumentException("buffer can not hold sample of size " + size);
+    }
+    mapped.limit(offsets[cursor] + size).position(offsets[cursor]);
+    byteBuffer.clear();
+    byteBuffer.position(offset);
+    byteBuffer.put(mapped);
+    byteBuffer.limit(offset + size).position(offset);
+    mapped.clear();
+    return size;
+  }
+
+  @Override public boolean advance() {
+    if (cursor < 0 || cursor >= count) return false;
+    reading = true;
+    cursor = next(cursor + 1);
+    return cursor < count;
+  }
+
+  @Override public void seekTo(long timeUs, int mode) {
+    reading = true;
+    int previous = -1;
+    int following = -1;
+    for (int i = 0; i < count; i++) {
+      if (!selected[tracks[i]] || (flags[i] & MediaExtractor.SAMPLE_FLAG_SYNC) == 0) continue;
+      if (timesUs[i] <= timeUs) {
+        previous = i;
+      } else {
+        following = i;
+        break;
+      }
+    }
+    int index;
+    if (mode == MediaExtractor.SEEK_TO_NEXT_SYNC) {
+      index = following >= 0 ? following : previous;
+    } else if (mode == MediaExtractor.SEEK_TO_CLOSEST_SYNC && previous >= 0 && following >= 0) {
+      index = timeUs - timesUs[previous] <= timesUs[following] - timeUs ? previous : following;
+    } else {
+      index = previous >= 0 ? previous : following;
+    }
+    cursor = index >= 0 ? index : next(0);
+  }
+
+  @Override public int orientation() {
+    return orientation;
+  }
+
+  @Override public long durationTimeUs() {
+    return durationTimeUs;
+  }
+
+  @Override public void release() {
+    cursor = count;
+  }
+
+  private int next(int from) {
+    int index = from;
+    while (index < count && !selected[tracks[index]]) index++;
+    return index;
+  }
+
+  private void add(int track, int flag, long timeUs, int size, int offset) {
+    if (count == tracks.length) {
+      int capacity = count * 2;
+      tracks = Arrays.copyOf(tracks, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+      timesUs = Arrays.copyOf(timesUs, capacity);
+    }
+    tracks[count] = track;
+    flags[count] = flag;
+    sizes[count] = size;
+    offsets[count] = offset;
+    timesUs[count] = timeUs;
+    count++;
+  }
+
+  // header is parsed straight off the mapping, position of mapping follows what is read
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) return -1;
+      int size = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, size);
+      return size;
+    }
+  }
+}
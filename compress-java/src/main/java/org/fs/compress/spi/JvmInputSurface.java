@@ -0,0 +1,104 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaFormat;
+import android.opengl.EGLContext;
+import android.view.Surface;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.fs.compress.io.InputSurface;
+
+// holds frame drawn on it until swap queues it in to its encoder, current surface is tracked per thread like egl does
+final class JvmInputSurface implements InputSurface {
+
+  private static final ThreadLocal<JvmInputSurface> CURRENT = new ThreadLocal<>();
+
+  private final JvmCodec encoder;
+
+  private ByteBuffer frame;
+  private long presentationTimeUs;
+
+  JvmInputSurface(JvmCodec encoder) {
+    this.encoder = encoder;
+  }
+
+  static JvmInputSurface current() {
+    return CURRENT.get();
+  }
+
+  void draw(ByteBuffer data, long presentationTimeUs) {
+    if (frame == null || frame.capacity() < data.remaining()) {
+      frame = ByteBuffer.allocateDirect(data.remaining())
+          .order(ByteOrder.nativeOrder());
+    }
+    frame.clear();
+    frame.put(data);
+    frame.flip();
+    this.presentationTimeUs = presentationTimeUs;
+  }
+
+  @Override public void eglSetup() {
+    /* no opt */
+  }
+
+  @Override public void release() {
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+    frame = null;
+  }
+
+  @Override public void makeCurrent() {
+    CURRENT.set(this);
+  }
+
+  @Override public void releaseMakeCurrent() {
+    CURRENT.remove();
+  }
+
+  @Override public boolean swapBuffers() {
+    if (frame == null) return false;
+    encoder.queueFrame(frame, presentationTimeUs);
+    frame.rewind();
+    return true;
+  }
+
+  @Override public Surface surface() {
+    return null;
+  }
+
+  @Override public EGLContext eglContext() {
+    return null;
+  }
+
+  @Override public int getWidth() {
+    return encoder.inputFormat().getInteger(MediaFormat.KEY_WIDTH);
+  }
+
+  @Override public int getHeight() {
+    return encoder.inputFormat().getInteger(MediaFormat.KEY_HEIGHT);
+  }
+
+  // presentation time set on surface wins over the one of drawn frame, as it does on egl
+  @Override public void presentationTimeUs(long nanoSecs) {
+    presentationTimeUs = nanoSecs / 1000;
+  }
+
+  @Override public void checkEglError(String msg) {
+    /* no opt */
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.graphics.SurfaceTexture;
+import android.view.Surface;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.fs.compress.io.OutputSurface;
+
+// latest frame rendered by decoder, drawn in to whichever jvm input surface is current on the drawing thread
+final class JvmOutputSurface implements OutputSurface, JvmFrameSink {
+
+  private ByteBuffer frame;
+  private long presentationTimeUs;
+  private boolean available;
+
+  @Override public synchronized void frame(ByteBuffer data, long presentationTimeUs) {
+    if (frame == null || frame.capacity() < data.remaining()) {
+      frame = ByteBuffer.allocateDirect(data.remaining())
+          .order(ByteOrder.nativeOrder());
+    }
+    frame.clear();
+    frame.put(data);
+    frame.flip();
+    this.presentationTimeUs = presentationTimeUs;
+    available = true;
+    notifyAll();
+  }
+
+  @Override public synchronized void awaitNextFrame(long timeout) {
+    while (!available) {
+      try {
+        wait(timeout);
+      } catch (InterruptedException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+    available = false;
+  }
+
+  @Override public synchronized void drawNextFrame() {
+    JvmInputSurface surface = JvmInputSurface.current();
+    if (surface == null) {
+      throw new IllegalArgumentException("there is no input surface current on " + Thread.currentThread().getName());
+    }
+    if (frame != null) {
+      surface.draw(frame, presentationTimeUs);
+      frame.rewind();
+    }
+  }
+
+  @Override public Surface surface() {
+    return null;
+  }
+
+  @Override public synchronized void release() {
+    frame = null;
+  }
+
+  @Override public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+    /* no opt */
+  }
+}
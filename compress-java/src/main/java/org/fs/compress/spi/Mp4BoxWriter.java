@@ -0,0 +1,141 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Builds iso base media boxes in to a growing array. Size of a box is filled in when it ends, so boxes nest without
+ * knowing their size up front.
+ */
+final class Mp4BoxWriter {
+
+  static final int HEADER_SIZE = 8;
+
+  private byte[] bytes;
+  private int position;
+
+  // start of each box still open, innermost last
+  private int[] starts = new int[16];
+  private int depth;
+
+  Mp4BoxWriter(int capacity) {
+    bytes = new byte[capacity];
+  }
+
+  Mp4BoxWriter begin(String type) {
+    if (depth == starts.length) {
+      starts = Arrays.copyOf(starts, depth * 2);
+    }
+    starts[depth++] = position;
+    return u32(0).fourcc(type);
+  }
+
+  Mp4BoxWriter beginFull(String type, int version, int flags) {
+    return begin(type).u8(version).u24(flags);
+  }
+
+  Mp4BoxWriter end() {
+    if (depth == 0) throw new IllegalArgumentException("no box to end");
+    final int start = starts[--depth];
+    putInt(start, position - start);
+    return this;
+  }
+
+  Mp4BoxWriter u8(int value) {
+    ensure(1);
+    bytes[position++] = (byte) value;
+    return this;
+  }
+
+  Mp4BoxWriter u16(int value) {
+    ensure(2);
+    bytes[position++] = (byte) (value >>> 8);
+    bytes[position++] = (byte) value;
+    return this;
+  }
+
+  Mp4BoxWriter u24(int value) {
+    ensure(3);
+    bytes[position++] = (byte) (value >>> 16);
+    bytes[position++] = (byte) (value >>> 8);
+    bytes[position++] = (byte) value;
+    return this;
+  }
+
+  Mp4BoxWriter u32(long value) {
+    ensure(4);
+    putInt(position, (int) value);
+    position += 4;
+    return this;
+  }
+
+  Mp4BoxWriter u64(long value) {
+    return u32(value >>> 32).u32(value);
+  }
+
+  Mp4BoxWriter fourcc(String type) {
+    if (type.length() != 4) throw new IllegalArgumentException("box type must be four characters " + type);
+    ensure(4);
+    for (int i = 0; i < 4; i++) {
+      bytes[position++] = (byte) type.charAt(i);
+    }
+    return this;
+  }
+
+  Mp4BoxWriter zeros(int count) {
+    ensure(count);
+    Arrays.fill(bytes, position, position + count, (byte) 0);
+    position += count;
+    return this;
+  }
+
+  Mp4BoxWriter bytes(byte[] value) {
+    ensure(value.length);
+    System.arraycopy(value, 0, bytes, position, value.length);
+    position += value.length;
+    return this;
+  }
+
+  int size() {
+    return position;
+  }
+
+  // boxes written so far, array is shared until writer is reset
+  ByteBuffer buffer() {
+    if (depth != 0) throw new IllegalArgumentException(depth + " boxes are still open");
+    return ByteBuffer.wrap(bytes, 0, position);
+  }
+
+  void reset() {
+    position = 0;
+    depth = 0;
+  }
+
+  private void putInt(int index, int value) {
+    bytes[index] = (byte) (value >>> 24);
+    bytes[index + 1] = (byte) (value >>> 16);
+    bytes[index + 2] = (byte) (value >>> 8);
+    bytes[index + 3] = (byte) value;
+  }
+
+  private void ensure(int count) {
+    if (position + count > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + count));
+    }
+  }
+}
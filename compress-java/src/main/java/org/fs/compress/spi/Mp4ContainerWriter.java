@@ -0,0 +1,306 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.fs.compress.buffer.DirectBufferPool;
+import org.fs.compress.data.Mp4Options;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.MP4_LAYOUT_MOOV_LAST;
+import static org.fs.compress.util.Constants.MP4_LAYOUT_RESERVED;
+import static org.fs.compress.util.Constants.MP4_LAYOUT_TWO_PASS;
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+/**
+ * Writes iso base media (mp4) files without MediaMuxer. Samples of each track are gathered in to chunks and every
+ * chunk leaves in one write through a {@link FileChannel}; sample tables stay in memory until stop writes moov.
+ * Faststart layouts put moov before mdat, either in space reserved for it at start or by moving mdat once it is done.
+ */
+final class Mp4ContainerWriter implements ContainerWriter {
+
+  private static final int STATE_IDLE = 0x00;
+  private static final int STATE_PROGRESS = 0x01;
+  private static final int STATE_STOPPED = 0x02;
+
+  private static final int MOVIE_TIMESCALE = 1000;
+  private static final int MDAT_HEADER_SIZE = 16; // with 64 bit size
+  private static final int MOVE_BUFFER_SIZE = 1024 * 1024; // 1 mb
+
+  private final List<Mp4Track> tracks = new ArrayList<>(2);
+  private final Mp4BoxWriter box = new Mp4BoxWriter(4096);
+
+  private final Mp4Options options;
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final LeakTracker.Resource resource;
+
+  private int orientation;
+  private int state = STATE_IDLE;
+
+  private long reservedStart;
+  private int reservedBytes;
+  private long mdatStart;
+  // end of what is written so far
+  private long position;
+
+  Mp4ContainerWriter(File output, Mp4Options options) throws IOException {
+    if (options.layout != MP4_LAYOUT_MOOV_LAST && options.layout != MP4_LAYOUT_RESERVED
+        && options.layout != MP4_LAYOUT_TWO_PASS) {
+      throw new IllegalArgumentException("can not determine mp4 layout " + options.layout);
+    }
+    if (options.layout == MP4_LAYOUT_RESERVED && options.reservedMoovBytes < Mp4BoxWriter.HEADER_SIZE) {
+      throw new IllegalArgumentException("reserved moov must hold at least a box header " + options.reservedMoovBytes);
+    }
+    this.options = options;
+    file = new RandomAccessFile(output, "rw");
+    file.setLength(0);
+    channel = file.getChannel();
+    resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this);
+  }
+
+  @Override public int addTrack(MediaFormat format) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("tracks can not be added after start");
+    }
+    tracks.add(new Mp4Track(tracks.size() + 1, format, options.chunkBufferSize));
+    return tracks.size() - 1;
+  }
+
+  @Override public void setOrientationHint(int degrees) {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("orientation can not be set after start");
+    }
+    if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+      throw new IllegalArgumentException("orientation must be a multiple of 90 degrees " + degrees);
+    }
+    orientation = degrees;
+  }
+
+  @Override public void start() {
+    if (state != STATE_IDLE) {
+      throw new IllegalStateException("writer is already started");
+    }
+    if (tracks.isEmpty()) {
+      throw new IllegalStateException("writer has no tracks");
+    }
+    box.reset();
+    box.begin("ftyp")
+        .fourcc("isom")
+        .u32(0x200)
+        .fourcc("isom")
+        .fourcc("iso2")
+        .fourcc("avc1")
+        .fourcc("mp41")
+        .end();
+    reservedStart = box.size();
+    if (options.layout == MP4_LAYOUT_RESERVED) {
+      // free box holding space moov is written over
+      reservedBytes = options.reservedMoovBytes;
+      box.u32(reservedBytes).fourcc("free").zeros(reservedBytes - Mp4BoxWriter.HEADER_SIZE);
+    }
+    mdatStart = box.size();
+    // size is filled in at stop
+    box.u32(1).fourcc("mdat").u64(0);
+    try {
+      position = 0;
+      write(box.buffer());
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    state = STATE_PROGRESS;
+  }
+
+  @Override public void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    if (trackIndex < 0 || trackIndex >= tracks.size()) {
+      throw new IllegalArgumentException("can not determine track " + trackIndex);
+    }
+    if (bufferInfo.size <= 0 || (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) return;
+
+    final Mp4Track track = tracks.get(trackIndex);
+    track.append(byteBuffer, bufferInfo);
+    if (track.pendingDurationUs() >= options.chunkDurationUs) {
+      try {
+        writeChunk(track);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+  }
+
+  @Override public void stop() {
+    if (state != STATE_PROGRESS) {
+      throw new IllegalStateException("writer is not started");
+    }
+    state = STATE_STOPPED;
+    try {
+      // what is left of each track, earliest first so tracks stay interleaved
+      Mp4Track next;
+      while ((next = earliestPending()) != null) {
+        writeChunk(next);
+      }
+      final long mdatEnd = position;
+      write(ByteBuffer.allocate(8).putLong(0, mdatEnd - mdatStart), mdatStart + 8);
+
+      if (options.layout == MP4_LAYOUT_MOOV_LAST) {
+        write(moov(0));
+      } else {
+        writeMoovBeforeMdat(mdatEnd);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    } finally {
+      close();
+    }
+  }
+
+  @Override public void release() {
+    close();
+  }
+
+  /**
+   * Moov goes in to space between ftyp and mdat, mdat is moved further when moov does not fit. What moov leaves of
+   * that space becomes a free box, which needs at least its header, so mdat may move a few bytes more than moov needs.
+   */
+  private void writeMoovBeforeMdat(long mdatEnd) throws IOException {
+    long shift = 0;
+    ByteBuffer moov = moov(0);
+    long left;
+    while ((left = reservedBytes + shift - moov.remaining()) != 0 && left < Mp4BoxWriter.HEADER_SIZE) {
+      shift += left < 0 ? -left : Mp4BoxWriter.HEADER_SIZE - left;
+      // moov grows if chunk offsets no longer fit 32 bits once moved
+      moov = moov(shift);
+    }
+    if (shift > 0) {
+      move(mdatStart, mdatEnd, shift);
+    }
+    final int moovSize = moov.remaining();
+    write(moov, reservedStart);
+    if (left > 0) {
+      ByteBuffer free = ByteBuffer.allocate(Mp4BoxWriter.HEADER_SIZE);
+      free.putInt((int) left).put((byte) 'f').put((byte) 'r').put((byte) 'e').put((byte) 'e').flip();
+      write(free, reservedStart + moovSize);
+    }
+  }
+
+  private ByteBuffer moov(long chunkOffsetShift) {
+    long movieStartUs = Long.MAX_VALUE;
+    for (Mp4Track track : tracks) {
+      if (track.sampleCount() > 0) movieStartUs = Math.min(movieStartUs, track.firstTimeUs());
+    }
+    if (movieStartUs == Long.MAX_VALUE) movieStartUs = 0;
+    long durationUs = 0;
+    for (Mp4Track track : tracks) {
+      durationUs = Math.max(durationUs, track.firstTimeUs() - movieStartUs + track.durationUs());
+    }
+
+    box.reset();
+    box.begin("moov");
+    box.beginFull("mvhd", 0, 0)
+        .u32(0) // creation time
+        .u32(0) // modification time
+        .u32(MOVIE_TIMESCALE)
+        .u32(durationUs * MOVIE_TIMESCALE / 1000000)
+        .u32(0x00010000) // rate
+        .u16(0x0100) // volume
+        .zeros(10)
+        .u32(0x00010000).u32(0).u32(0)
+        .u32(0).u32(0x00010000).u32(0)
+        .u32(0).u32(0).u32(0x40000000)
+        .zeros(24)
+        .u32(tracks.size() + 1) // next track id
+        .end();
+    for (Mp4Track track : tracks) {
+      track.writeTrak(box, MOVIE_TIMESCALE, movieStartUs, chunkOffsetShift, orientation);
+    }
+    box.end();
+    return box.buffer();
+  }
+
+  private Mp4Track earliestPending() {
+    Mp4Track earliest = null;
+    for (Mp4Track track : tracks) {
+      if (track.hasPending() && (earliest == null || track.pendingStartUs() < earliest.pendingStartUs())) {
+        earliest = track;
+      }
+    }
+    return earliest;
+  }
+
+  private void writeChunk(Mp4Track track) throws IOException {
+    final long offset = position;
+    write(track.pending());
+    track.chunkWritten(offset);
+  }
+
+  // moves bytes of range further in file by shift, from its end so nothing is overwritten before it is moved
+  private void move(long start, long end, long shift) throws IOException {
+    final DirectBufferPool pool = DirectBufferPool.shared();
+    final ByteBuffer buffer = pool.lease(MOVE_BUFFER_SIZE);
+    try {
+      while (end > start) {
+        final int length = (int) Math.min(MOVE_BUFFER_SIZE, end - start);
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, end - length + buffer.position()) < 0) {
+            throw new IOException("file ended before " + end);
+          }
+        }
+        buffer.flip();
+        write(buffer, end - length + shift);
+        end -= length;
+      }
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  // appends at end of what is written so far
+  private void write(ByteBuffer buffer) throws IOException {
+    final int length = buffer.remaining();
+    write(buffer, position);
+    position += length;
+  }
+
+  private void write(ByteBuffer buffer, long at) throws IOException {
+    while (buffer.hasRemaining()) {
+      at += channel.write(buffer, at);
+    }
+  }
+
+  private void close() {
+    for (Mp4Track track : tracks) {
+      track.release();
+    }
+    resource.release();
+    try {
+      file.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
@@ -0,0 +1,675 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.fs.compress.buffer.DirectBufferPool;
+
+import static org.fs.compress.util.Constants.KEY_CSD_0;
+import static org.fs.compress.util.Constants.KEY_CSD_1;
+import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO_AAC;
+import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO_AVC;
+
+/**
+ * Track of {@link Mp4ContainerWriter} and {@link FragmentedMp4ContainerWriter}, gathers samples of a chunk or fragment
+ * and keeps sample table of samples written in primitive columns, in decode order. Avc samples are turned from annex b
+ * start codes to length prefixed nal units.
+ */
+final class Mp4Track {
+
+  static final int VIDEO_TIMESCALE = 90000;
+
+  private static final int NAL_LENGTH_SIZE = 4;
+  private static final int NAL_TYPE_SPS = 7;
+  private static final int NAL_TYPE_PPS = 8;
+
+  private static final int AAC_OBJECT_TYPE_LC = 2;
+  private static final int[] AAC_SAMPLE_RATES = {
+      96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+  };
+
+  // depends on no other sample, or depends on others and is not sync
+  private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+  private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+
+  private static final int LANGUAGE_UNDETERMINED = 0x55c4; // und, packed iso 639-2
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  final int id;
+  final boolean video;
+  final int timescale;
+
+  private final MediaFormat format;
+  private final String mime;
+
+  // sample table in decode order
+  private int sampleCount;
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  private long[] timesUs = new long[INITIAL_CAPACITY];
+  private int syncCount;
+  private int[] syncSamples = new int[INITIAL_CAPACITY];
+  private int maxSampleSize;
+
+  private int chunkCount;
+  private long[] chunkOffsets = new long[INITIAL_CAPACITY];
+  private int[] chunkSamples = new int[INITIAL_CAPACITY];
+
+  // chunk being gathered, written as one when it is long enough
+  private ByteBuffer pending;
+  private int pendingSamples;
+  private long pendingStartUs;
+
+  // duration of last sample of a fragment, carried over to next when it has only one
+  private int lastSampleDuration;
+
+  Mp4Track(int id, MediaFormat format, int chunkBufferSize) {
+    this.id = id;
+    this.format = format;
+    this.mime = format.getString(MediaFormat.KEY_MIME);
+    if (MIME_TYPE_VIDEO_AVC.equals(mime)) {
+      video = true;
+      timescale = VIDEO_TIMESCALE;
+    } else if (MIME_TYPE_AUDIO_AAC.equals(mime)) {
+      video = false;
+      timescale = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+    } else {
+      throw new IllegalArgumentException("mp4 writer does not support " + mime);
+    }
+    pending = DirectBufferPool.shared().lease(chunkBufferSize);
+    pending.clear();
+  }
+
+  /**
+   * Appends sample to pending chunk, converting avc start codes to nal lengths on the way. Codec config samples are
+   * skipped, sample entry takes them from format instead.
+   */
+  void append(ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    final int start = bufferInfo.offset;
+    final int end = bufferInfo.offset + bufferInfo.size;
+    // every nal may grow a byte going from three byte start code to four byte length
+    ensurePending(bufferInfo.size + bufferInfo.size / 4 + NAL_LENGTH_SIZE);
+
+    final int before = pending.position();
+    final int limit = byteBuffer.limit();
+    final int position = byteBuffer.position();
+    try {
+      byteBuffer.limit(end);
+      int nal = video ? startCodeLength(byteBuffer, start, end) : 0;
+      if (nal == 0) {
+        copy(byteBuffer, start, end);
+      } else {
+        nal += start;
+        while (nal < end) {
+          final int next = nextStartCode(byteBuffer, nal, end);
+          int nalEnd = next;
+          // zeros before a start code are trailing bytes or first byte of a four byte start code
+          while (nalEnd > nal && byteBuffer.get(nalEnd - 1) == 0) nalEnd--;
+          if (nalEnd > nal) {
+            pending.putInt(nalEnd - nal);
+            copy(byteBuffer, nal, nalEnd);
+          }
+          nal = next + 3;
+        }
+      }
+    } finally {
+      byteBuffer.limit(limit);
+      byteBuffer.position(position);
+    }
+
+    final int size = pending.position() - before;
+    if (pendingSamples == 0) {
+      pendingStartUs = bufferInfo.presentationTimeUs;
+    }
+    pendingSamples++;
+    addSample(size, bufferInfo.presentationTimeUs, (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
+  }
+
+  boolean hasPending() {
+    return pendingSamples > 0;
+  }
+
+  long pendingStartUs() {
+    return pendingStartUs;
+  }
+
+  long pendingDurationUs() {
+    return pendingSamples == 0 ? 0 : timesUs[sampleCount - 1] - pendingStartUs;
+  }
+
+  // pending chunk ready to be written, followed by chunkWritten once it is
+  ByteBuffer pending() {
+    pending.flip();
+    return pending;
+  }
+
+  void chunkWritten(long offset) {
+    if (chunkCount == chunkOffsets.length) {
+      chunkOffsets = Arrays.copyOf(chunkOffsets, chunkCount * 2);
+      chunkSamples = Arrays.copyOf(chunkSamples, chunkCount * 2);
+    }
+    chunkOffsets[chunkCount] = offset;
+    chunkSamples[chunkCount] = pendingSamples;
+    chunkCount++;
+    pending.clear();
+    pendingSamples = 0;
+  }
+
+  int pendingSize() {
+    return pending.position();
+  }
+
+  /**
+   * Writes traf of samples gathered since last fragment as a single run, data of them starts {@code dataOffset} bytes
+   * from start of moof. Decode times count from {@code originUs}.
+   */
+  void writeTraf(Mp4BoxWriter box, long originUs, int dataOffset) {
+    // fragments start at sync samples, so frames reorder only within one
+    final long[] decodeTimesUs = Arrays.copyOf(timesUs, sampleCount);
+    Arrays.sort(decodeTimesUs);
+    final long[] decodeTimes = new long[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      decodeTimes[i] = toTimescale(Math.max(0, decodeTimesUs[i] - originUs), timescale);
+    }
+    boolean compositionOffsets = false;
+    for (int i = 0; i < sampleCount; i++) {
+      compositionOffsets |= timesUs[i] != decodeTimesUs[i];
+    }
+
+    box.begin("traf");
+    box.beginFull("tfhd", 0, 0x020000) // default base is moof
+        .u32(id)
+        .end();
+    box.beginFull("tfdt", 1, 0)
+        .u64(sampleCount == 0 ? 0 : decodeTimes[0])
+        .end();
+    box.beginFull("trun", 1, 0x000701 | (compositionOffsets ? 0x000800 : 0)) // offset, durations, sizes, flags
+        .u32(sampleCount)
+        .u32(dataOffset);
+    int sync = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      // last sample lasts as long as one before it, next fragment starts where its own time says
+      if (i < sampleCount - 1) {
+        lastSampleDuration = (int) (decodeTimes[i + 1] - decodeTimes[i]);
+      }
+      box.u32(lastSampleDuration).u32(sizes[i]);
+      if (sync < syncCount && syncSamples[sync] == i + 1) {
+        box.u32(SAMPLE_FLAGS_SYNC);
+        sync++;
+      } else {
+        box.u32(SAMPLE_FLAGS_NON_SYNC);
+      }
+      if (compositionOffsets) {
+        box.u32(toTimescale(Math.max(0, timesUs[i] - originUs), timescale) - decodeTimes[i]);
+      }
+    }
+    box.end().end();
+  }
+
+  // samples of fragment are written, next one starts empty
+  void fragmentWritten() {
+    pending.clear();
+    pendingSamples = 0;
+    sampleCount = 0;
+    syncCount = 0;
+  }
+
+  // where samples since last fragment end, last of them lasting as long as one before it
+  long pendingEndUs() {
+    if (sampleCount == 0) return 0;
+    final long[] decodeTimesUs = Arrays.copyOf(timesUs, sampleCount);
+    Arrays.sort(decodeTimesUs);
+    final long lastDurationUs = sampleCount > 1
+        ? decodeTimesUs[sampleCount - 1] - decodeTimesUs[sampleCount - 2]
+        : lastSampleDuration * 1000000L / timescale;
+    return decodeTimesUs[sampleCount - 1] + lastDurationUs;
+  }
+
+  // rfc 6381 name of codec, as playlists and manifests declare it
+  String codec() {
+    if (video) {
+      final List<byte[]> sps = new ArrayList<>(1);
+      final List<byte[]> pps = new ArrayList<>(1);
+      splitParameterSets(format.getByteBuffer(KEY_CSD_0), sps, pps);
+      splitParameterSets(format.getByteBuffer(KEY_CSD_1), sps, pps);
+      if (sps.isEmpty() || sps.get(0).length < 4) return "avc1";
+      final byte[] first = sps.get(0);
+      return String.format(Locale.US, "avc1.%02x%02x%02x", first[1] & 0xff, first[2] & 0xff, first[3] & 0xff);
+    }
+    final byte[] config = audioSpecificConfig(format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+    return "mp4a.40." + ((config[0] & 0xff) >> 3);
+  }
+
+  int sampleCount() {
+    return sampleCount;
+  }
+
+  long firstTimeUs() {
+    return sampleCount == 0 ? 0 : min(timesUs, sampleCount);
+  }
+
+  long maxChunkOffset() {
+    return chunkCount == 0 ? 0 : chunkOffsets[chunkCount - 1];
+  }
+
+  void release() {
+    if (pending != null) {
+      DirectBufferPool.shared().release(pending);
+      pending = null;
+    }
+  }
+
+  /**
+   * Writes trak of this track. Chunk offsets are moved by {@code chunkOffsetShift}, tracks starting after
+   * {@code movieStartUs} get an empty edit before their media.
+   */
+  void writeTrak(Mp4BoxWriter box, int movieTimescale, long movieStartUs, long chunkOffsetShift, int orientation) {
+    // presentation times are in decode order, sorted they are decode times of same samples
+    final long[] decodeTimesUs = Arrays.copyOf(timesUs, sampleCount);
+    Arrays.sort(decodeTimesUs);
+    final long originUs = sampleCount == 0 ? 0 : decodeTimesUs[0];
+
+    final long[] decodeTimes = new long[sampleCount];
+    final int[] offsets = new int[sampleCount];
+    int minOffset = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      decodeTimes[i] = toTimescale(decodeTimesUs[i] - originUs, timescale);
+      offsets[i] = (int) (toTimescale(timesUs[i] - originUs, timescale) - decodeTimes[i]);
+      minOffset = Math.min(minOffset, offsets[i]);
+    }
+    // b frames present before they decode, offsets are moved up so none is negative and edit skips what it adds
+    boolean compositionOffsets = false;
+    for (int i = 0; i < sampleCount; i++) {
+      offsets[i] -= minOffset;
+      compositionOffsets |= offsets[i] != 0;
+    }
+    final int[] durations = new int[sampleCount];
+    for (int i = 0; i < sampleCount - 1; i++) {
+      durations[i] = (int) (decodeTimes[i + 1] - decodeTimes[i]);
+    }
+    if (sampleCount > 1) {
+      durations[sampleCount - 1] = durations[sampleCount - 2];
+    }
+    final long mediaDuration = sampleCount == 0 ? 0 : decodeTimes[sampleCount - 1] + durations[sampleCount - 1];
+    final long mediaStart = -minOffset;
+    final long emptyDuration = toTimescale(originUs - movieStartUs, movieTimescale);
+    final long segmentDuration = mediaDuration * movieTimescale / timescale;
+
+    box.begin("trak");
+
+    box.beginFull("tkhd", 0, 0x03) // enabled and in movie
+        .u32(0) // creation time
+        .u32(0) // modification time
+        .u32(id)
+        .u32(0)
+        .u32(emptyDuration + segmentDuration)
+        .zeros(8)
+        .u16(0) // layer
+        .u16(0) // alternate group
+        .u16(video ? 0 : 0x0100) // volume
+        .u16(0);
+    writeMatrix(box, video ? orientation : 0);
+    box.u32(video ? (long) format.getInteger(MediaFormat.KEY_WIDTH) << 16 : 0)
+        .u32(video ? (long) format.getInteger(MediaFormat.KEY_HEIGHT) << 16 : 0)
+        .end();
+
+    if (emptyDuration > 0 || mediaStart > 0) {
+      box.begin("edts").beginFull("elst", 0, 0);
+      box.u32(emptyDuration > 0 ? 2 : 1);
+      if (emptyDuration > 0) {
+        box.u32(emptyDuration).u32(-1).u32(0x00010000);
+      }
+      box.u32(segmentDuration).u32(mediaStart).u32(0x00010000);
+      box.end().end();
+    }
+
+    box.begin("mdia");
+    box.beginFull("mdhd", 0, 0)
+        .u32(0)
+        .u32(0)
+        .u32(timescale)
+        .u32(mediaDuration)
+        .u16(LANGUAGE_UNDETERMINED)
+        .u16(0)
+        .end();
+    box.beginFull("hdlr", 0, 0)
+        .u32(0)
+        .fourcc(video ? "vide" : "soun")
+        .zeros(12)
+        .bytes(video ? "VideoHandler\0".getBytes() : "SoundHandler\0".getBytes())
+        .end();
+
+    box.begin("minf");
+    if (video) {
+      box.beginFull("vmhd", 0, 0x01).zeros(8).end();
+    } else {
+      box.beginFull("smhd", 0, 0).zeros(4).end();
+    }
+    box.begin("dinf")
+        .beginFull("dref", 0, 0).u32(1).beginFull("url ", 0, 0x01).end().end()
+        .end();
+
+    box.begin("stbl");
+    box.beginFull("stsd", 0, 0).u32(1);
+    writeSampleEntry(box);
+    box.end();
+
+    // runs of equal durations
+    box.beginFull("stts", 0, 0);
+    writeRuns(box, durations, sampleCount);
+    box.end();
+
+    if (compositionOffsets) {
+      box.beginFull("ctts", 0, 0);
+      writeRuns(box, offsets, sampleCount);
+      box.end();
+    }
+
+    if (video && syncCount < sampleCount) {
+      box.beginFull("stss", 0, 0).u32(syncCount);
+      for (int i = 0; i < syncCount; i++) {
+        box.u32(syncSamples[i]);
+      }
+      box.end();
+    }
+
+    box.beginFull("stsz", 0, 0).u32(0).u32(sampleCount);
+    for (int i = 0; i < sampleCount; i++) {
+      box.u32(sizes[i]);
+    }
+    box.end();
+
+    // one entry per run of chunks with same sample count, chunks are numbered from one
+    box.beginFull("stsc", 0, 0);
+    int entries = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      if (i == 0 || chunkSamples[i] != chunkSamples[i - 1]) entries++;
+    }
+    box.u32(entries);
+    for (int i = 0; i < chunkCount; i++) {
+      if (i == 0 || chunkSamples[i] != chunkSamples[i - 1]) {
+        box.u32(i + 1).u32(chunkSamples[i]).u32(1);
+      }
+    }
+    box.end();
+
+    final boolean largeOffsets = maxChunkOffset() + chunkOffsetShift > 0xffffffffL;
+    box.beginFull(largeOffsets ? "co64" : "stco", 0, 0).u32(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      if (largeOffsets) {
+        box.u64(chunkOffsets[i] + chunkOffsetShift);
+      } else {
+        box.u32(chunkOffsets[i] + chunkOffsetShift);
+      }
+    }
+    box.end();
+
+    box.end(); // stbl
+    box.end(); // minf
+    box.end(); // mdia
+    box.end(); // trak
+  }
+
+  // from first presented sample to end of last one
+  long durationUs() {
+    if (sampleCount == 0) return 0;
+    final long[] sorted = Arrays.copyOf(timesUs, sampleCount);
+    Arrays.sort(sorted);
+    final long last = sampleCount > 1 ? sorted[sampleCount - 1] - sorted[sampleCount - 2] : 0;
+    return sorted[sampleCount - 1] - sorted[0] + last;
+  }
+
+  private void writeSampleEntry(Mp4BoxWriter box) {
+    if (video) {
+      box.begin("avc1")
+          .zeros(6)
+          .u16(1) // data reference index
+          .zeros(16)
+          .u16(format.getInteger(MediaFormat.KEY_WIDTH))
+          .u16(format.getInteger(MediaFormat.KEY_HEIGHT))
+          .u32(0x00480000) // 72 dpi
+          .u32(0x00480000)
+          .u32(0)
+          .u16(1) // frame count
+          .zeros(32) // compressor name
+          .u16(0x0018) // depth
+          .u16(0xffff);
+      writeAvcConfiguration(box);
+      box.end();
+    } else {
+      final int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+      box.begin("mp4a")
+          .zeros(6)
+          .u16(1)
+          .zeros(8)
+          .u16(channelCount)
+          .u16(16) // sample size
+          .u16(0)
+          .u16(0)
+          .u32((long) Math.min(timescale, 0xffff) << 16);
+      writeEsDescriptor(box, channelCount);
+      box.end();
+    }
+  }
+
+  private void writeAvcConfiguration(Mp4BoxWriter box) {
+    final List<byte[]> sps = new ArrayList<>(1);
+    final List<byte[]> pps = new ArrayList<>(1);
+    splitParameterSets(format.getByteBuffer(KEY_CSD_0), sps, pps);
+    splitParameterSets(format.getByteBuffer(KEY_CSD_1), sps, pps);
+    if (sps.isEmpty() || pps.isEmpty()) {
+      throw new IllegalArgumentException("avc track needs sps and pps in its csd");
+    }
+    final byte[] first = sps.get(0);
+    if (first.length < 4) throw new IllegalArgumentException("sps is too short " + first.length);
+
+    box.begin("avcC")
+        .u8(1) // configuration version
+        .u8(first[1]) // profile
+        .u8(first[2]) // profile compatibility
+        .u8(first[3]) // level
+        .u8(0xfc | (NAL_LENGTH_SIZE - 1))
+        .u8(0xe0 | sps.size());
+    for (byte[] set : sps) {
+      box.u16(set.length).bytes(set);
+    }
+    box.u8(pps.size());
+    for (byte[] set : pps) {
+      box.u16(set.length).bytes(set);
+    }
+    box.end();
+  }
+
+  private void writeEsDescriptor(Mp4BoxWriter box, int channelCount) {
+    final byte[] config = audioSpecificConfig(channelCount);
+    final int bitRate = format.getInteger(MediaFormat.KEY_BIT_RATE, 0);
+
+    box.beginFull("esds", 0, 0);
+    // descriptor lengths take four bytes each, so they are known without measuring what they hold
+    descriptor(box, 0x03, 3 + 5 + 13 + 5 + config.length + 5 + 1)
+        .u16(0) // es id
+        .u8(0);
+    descriptor(box, 0x04, 13 + 5 + config.length)
+        .u8(0x40) // mpeg 4 audio
+        .u8(0x15) // audio stream
+        .u24(maxSampleSize)
+        .u32(bitRate)
+        .u32(bitRate);
+    descriptor(box, 0x05, config.length)
+        .bytes(config);
+    descriptor(box, 0x06, 1)
+        .u8(0x02);
+    box.end();
+  }
+
+  private byte[] audioSpecificConfig(int channelCount) {
+    final ByteBuffer csd = format.getByteBuffer(KEY_CSD_0);
+    if (csd != null && csd.remaining() > 0) {
+      final byte[] config = new byte[csd.remaining()];
+      csd.duplicate().get(config);
+      return config;
+    }
+    int index = -1;
+    for (int i = 0; i < AAC_SAMPLE_RATES.length; i++) {
+      if (AAC_SAMPLE_RATES[i] == timescale) index = i;
+    }
+    if (index < 0) throw new IllegalArgumentException("aac track without csd has unsupported sample rate " + timescale);
+    return new byte[] {
+        (byte) (AAC_OBJECT_TYPE_LC << 3 | index >> 1),
+        (byte) ((index & 0x01) << 7 | channelCount << 3)
+    };
+  }
+
+  private void addSample(int size, long timeUs, boolean sync) {
+    if (sampleCount == sizes.length) {
+      sizes = Arrays.copyOf(sizes, sampleCount * 2);
+      timesUs = Arrays.copyOf(timesUs, sampleCount * 2);
+    }
+    sizes[sampleCount] = size;
+    timesUs[sampleCount] = timeUs;
+    sampleCount++;
+    maxSampleSize = Math.max(maxSampleSize, size);
+    if (sync) {
+      if (syncCount == syncSamples.length) {
+        syncSamples = Arrays.copyOf(syncSamples, syncCount * 2);
+      }
+      syncSamples[syncCount++] = sampleCount; // numbered from one
+    }
+  }
+
+  private void ensurePending(int size) {
+    if (pending.remaining() >= size) return;
+    ByteBuffer grown = DirectBufferPool.shared().lease(Math.max(pending.capacity() * 2, pending.position() + size));
+    grown.clear();
+    pending.flip();
+    grown.put(pending);
+    DirectBufferPool.shared().release(pending);
+    pending = grown;
+  }
+
+  // limit of byteBuffer is left as it was, nal units after are still read through it
+  private void copy(ByteBuffer byteBuffer, int from, int to) {
+    final int limit = byteBuffer.limit();
+    byteBuffer.limit(to);
+    byteBuffer.position(from);
+    pending.put(byteBuffer);
+    byteBuffer.limit(limit);
+  }
+
+  private static Mp4BoxWriter descriptor(Mp4BoxWriter box, int tag, int length) {
+    return box.u8(tag)
+        .u8(0x80 | (length >>> 21) & 0x7f)
+        .u8(0x80 | (length >>> 14) & 0x7f)
+        .u8(0x80 | (length >>> 7) & 0x7f)
+        .u8(length & 0x7f);
+  }
+
+  private static void writeMatrix(Mp4BoxWriter box, int orientation) {
+    final int cos;
+    final int sin;
+    switch (orientation) {
+      case 90: cos = 0; sin = 0x00010000; break;
+      case 180: cos = -0x00010000; sin = 0; break;
+      case 270: cos = 0; sin = -0x00010000; break;
+      default: cos = 0x00010000; sin = 0; break;
+    }
+    box.u32(cos).u32(sin).u32(0)
+        .u32(-sin).u32(cos).u32(0)
+        .u32(0).u32(0).u32(0x40000000);
+  }
+
+  // count of run followed by its value, for each run of equal values
+  private static void writeRuns(Mp4BoxWriter box, int[] values, int count) {
+    int runs = 0;
+    for (int i = 0; i < count; i++) {
+      if (i == 0 || values[i] != values[i - 1]) runs++;
+    }
+    box.u32(runs);
+    int run = 0;
+    for (int i = 0; i < count; i++) {
+      run++;
+      if (i == count - 1 || values[i + 1] != values[i]) {
+        box.u32(run).u32(values[i]);
+        run = 0;
+      }
+    }
+  }
+
+  // nal units of csd sorted in to sps and pps, start codes stripped
+  private static void splitParameterSets(ByteBuffer csd, List<byte[]> sps, List<byte[]> pps) {
+    if (csd == null) return;
+    final ByteBuffer buffer = csd.duplicate();
+    final int end = buffer.limit();
+    int nal = buffer.position() + startCodeLength(buffer, buffer.position(), end);
+    while (nal < end) {
+      final int next = nextStartCode(buffer, nal, end);
+      int nalEnd = next;
+      while (nalEnd > nal && buffer.get(nalEnd - 1) == 0) nalEnd--;
+      if (nalEnd > nal) {
+        final byte[] set = new byte[nalEnd - nal];
+        for (int i = 0; i < set.length; i++) {
+          set[i] = buffer.get(nal + i);
+        }
+        final int type = set[0] & 0x1f;
+        if (type == NAL_TYPE_SPS) {
+          sps.add(set);
+        } else if (type == NAL_TYPE_PPS) {
+          pps.add(set);
+        }
+      }
+      nal = next + 3;
+    }
+  }
+
+  // length of start code at index, zero if there is none
+  private static int startCodeLength(ByteBuffer buffer, int index, int end) {
+    if (end - index >= 3 && buffer.get(index) == 0 && buffer.get(index + 1) == 0) {
+      if (buffer.get(index + 2) == 1) return 3;
+      if (end - index >= 4 && buffer.get(index + 2) == 0 && buffer.get(index + 3) == 1) return 4;
+    }
+    return 0;
+  }
+
+  // index of next three byte start code, end if there is none
+  private static int nextStartCode(ByteBuffer buffer, int from, int end) {
+    for (int i = from; i + 2 < end; i++) {
+      if ((buffer.get(i + 2) & 0xff) > 1) {
+        i += 2; // no start code can end before this byte
+      } else if (buffer.get(i) == 0 && buffer.get(i + 1) == 0 && buffer.get(i + 2) == 1) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  private static long toTimescale(long timeUs, int timescale) {
+    return (timeUs * timescale + 500000) / 1000000;
+  }
+
+  private static long min(long[] values, int count) {
+    long min = Long.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      min = Math.min(min, values[i]);
+    }
+    return min;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.view.Surface;
+import java.nio.ByteBuffer;
+import org.fs.compress.buffer.MediaCodecBuffer;
+import org.fs.compress.buffer.MediaCodecQueue;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_CODEC;
+
+final class PlatformCodec implements Codec {
+
+  private final MediaCodec codec;
+  private final Surface surface;
+  private final EventLoop eventLoop;
+  private final LeakTracker.Resource resource;
+
+  private MediaCodecQueue queue;
+  private MediaCodecBuffer buffers;
+
+  PlatformCodec(MediaCodec codec, Surface surface, EventLoop eventLoop) {
+    this.codec = codec;
+    this.surface = surface;
+    this.eventLoop = eventLoop;
+    this.resource = LeakTracker.shared().track(RESOURCE_CODEC, this);
+  }
+
+  @Override public String name() {
+    return codec.getName();
+  }
+
+  @Override public void configure(MediaFormat format, int flags) {
+    // queue must be set before configure, since it might register async callback
+    queue = MediaCodecQueue.newInstance(codec, eventLoop);
+    codec.configure(format, surface, null, flags);
+  }
+
+  @Override public void start() {
+    codec.start();
+    // buffers are only there after start pre 21
+    buffers = MediaCodecBuffer.newInstance(codec);
+  }
+
+  Surface createInputSurface() {
+    return codec.createInputSurface();
+  }
+
+  @Override public int dequeueInputBuffer(long timeoutUs) {
+    return queue.dequeueInputBuffer(timeoutUs);
+  }
+
+  @Override public ByteBuffer getInputBuffer(int index) {
+    return buffers.getInputBuffer(index);
+  }
+
+  @Override public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+    codec.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+  }
+
+  @Override public int dequeueOutputBuffer(MediaCodec.BufferInfo bufferInfo, long timeoutUs) {
+    int result = queue.dequeueOutputBuffer(bufferInfo, timeoutUs);
+    if (result == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+      buffers.clear();
+    }
+    return result;
+  }
+
+  @Override public ByteBuffer getOutputBuffer(int index) {
+    return buffers.getOutputBuffer(index);
+  }
+
+  @Override public void releaseOutputBuffer(int index, boolean render) {
+    codec.releaseOutputBuffer(index, render);
+  }
+
+  @Override public void signalEndOfInputStream() {
+    codec.signalEndOfInputStream();
+  }
+
+  @Override public MediaFormat getOutputFormat() {
+    return codec.getOutputFormat();
+  }
+
+  @Override public void stop() {
+    codec.stop();
+  }
+
+  @Override public void release() {
+    codec.release();
+    resource.release();
+  }
+}
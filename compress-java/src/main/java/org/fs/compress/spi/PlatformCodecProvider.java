@@ -0,0 +1,80 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaMuxer;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import org.fs.compress.event.EventLoop;
+import org.fs.compress.io.InputSurface;
+import org.fs.compress.io.OutputSurface;
+
+final class PlatformCodecProvider implements CodecProvider {
+
+  static final PlatformCodecProvider INSTANCE = new PlatformCodecProvider();
+
+  private PlatformCodecProvider() {
+  }
+
+  @Override public boolean limited() {
+    return true;
+  }
+
+  @Override public Codec newDecoder(String mime, OutputSurface surface, EventLoop eventLoop) {
+    try {
+      return new PlatformCodec(MediaCodec.createDecoderByType(mime), surface != null ? surface.surface() : null, eventLoop);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  @Override public Codec newEncoder(String mime, EventLoop eventLoop) {
+    try {
+      return new PlatformCodec(MediaCodec.createEncoderByType(mime), null, eventLoop);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  @Override public InputSurface newInputSurface(Codec encoder, InputSurface shared) {
+    if (!(encoder instanceof PlatformCodec)) {
+      throw new IllegalArgumentException("encoder is not created by platform provider " + encoder);
+    }
+    return InputSurface.newInstance(((PlatformCodec) encoder).createInputSurface(), shared);
+  }
+
+  @Override public OutputSurface newOutputSurface() {
+    return OutputSurface.newInstance();
+  }
+
+  @Override public Extractor newExtractor(FileDescriptor input) throws IOException {
+    MediaExtractor extractor = new MediaExtractor();
+    try {
+      extractor.setDataSource(input);
+    } catch (IOException e) {
+      extractor.release();
+      throw e;
+    }
+    return new PlatformExtractor(extractor, input);
+  }
+
+  @Override public ContainerWriter newWriter(File output, int format) throws IOException {
+    return new PlatformContainerWriter(new MediaMuxer(output.getAbsolutePath(), format));
+  }
+}
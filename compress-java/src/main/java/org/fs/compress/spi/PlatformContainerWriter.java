@@ -0,0 +1,60 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import java.nio.ByteBuffer;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+final class PlatformContainerWriter implements ContainerWriter {
+
+  private final MediaMuxer muxer;
+  private final LeakTracker.Resource resource;
+
+  PlatformContainerWriter(MediaMuxer muxer) {
+    this.muxer = muxer;
+    this.resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this);
+  }
+
+  @Override public int addTrack(MediaFormat format) {
+    return muxer.addTrack(format);
+  }
+
+  @Override public void setOrientationHint(int degrees) {
+    muxer.setOrientationHint(degrees);
+  }
+
+  @Override public void start() {
+    muxer.start();
+  }
+
+  @Override public void writeSampleData(int trackIndex, ByteBuffer byteBuffer, MediaCodec.BufferInfo bufferInfo) {
+    muxer.writeSampleData(trackIndex, byteBuffer, bufferInfo);
+  }
+
+  @Override public void stop() {
+    muxer.stop();
+  }
+
+  @Override public void release() {
+    muxer.release();
+    resource.release();
+  }
+}
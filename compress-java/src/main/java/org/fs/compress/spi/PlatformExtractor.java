@@ -0,0 +1,131 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import org.fs.compress.leak.LeakTracker;
+
+import static android.media.MediaMetadataRetriever.METADATA_KEY_DURATION;
+import static android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION;
+import static org.fs.compress.util.Constants.KEY_ROTATION_DEGREES;
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+final class PlatformExtractor implements Extractor {
+
+  private final MediaExtractor extractor;
+  private final FileDescriptor input;
+  private final LeakTracker.Resource resource;
+
+  private boolean retrieved;
+  private int orientation;
+  private long durationTimeUs = -1;
+
+  PlatformExtractor(MediaExtractor extractor, FileDescriptor input) {
+    this.extractor = extractor;
+    this.input = input;
+    this.resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this);
+  }
+
+  @Override public int getTrackCount() {
+    return extractor.getTrackCount();
+  }
+
+  @Override public MediaFormat getTrackFormat(int index) {
+    return extractor.getTrackFormat(index);
+  }
+
+  @Override public void selectTrack(int index) {
+    extractor.selectTrack(index);
+  }
+
+  @Override public int getSampleTrackIndex() {
+    return extractor.getSampleTrackIndex();
+  }
+
+  @Override public long getSampleTime() {
+    return extractor.getSampleTime();
+  }
+
+  @Override public int getSampleFlags() {
+    return extractor.getSampleFlags();
+  }
+
+  @Override public int readSampleData(ByteBuffer byteBuffer, int offset) {
+    return extractor.readSampleData(byteBuffer, offset);
+  }
+
+  @Override public boolean advance() {
+    return extractor.advance();
+  }
+
+  @Override public void seekTo(long timeUs, int mode) {
+    extractor.seekTo(timeUs, mode);
+  }
+
+  @Override public int orientation() {
+    retrieve();
+    return orientation;
+  }
+
+  @Override public long durationTimeUs() {
+    retrieve();
+    return durationTimeUs;
+  }
+
+  private void retrieve() {
+    if (retrieved) return;
+    retrieved = true;
+    if (input != null) {
+      MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+      try {
+        retriever.setDataSource(input);
+        try {
+          orientation = Integer.parseInt(retriever.extractMetadata(METADATA_KEY_VIDEO_ROTATION));
+        } catch (NumberFormatException ignored) {
+          /*no opt*/
+        }
+        try {
+          // metadata duration is in milliseconds
+          durationTimeUs = Long.parseLong(retriever.extractMetadata(METADATA_KEY_DURATION)) * 1000;
+        } catch (NumberFormatException ignored) {
+          /*no opt*/
+        }
+      } finally {
+        retriever.release();
+      }
+    } else {
+      // without a source, tracks tell what they know
+      for (int i = 0, count = extractor.getTrackCount(); i < count; i++) {
+        MediaFormat format = extractor.getTrackFormat(i);
+        if (format.containsKey(KEY_ROTATION_DEGREES)) {
+          orientation = format.getInteger(KEY_ROTATION_DEGREES);
+        }
+        if (format.containsKey(MediaFormat.KEY_DURATION)) {
+          durationTimeUs = Math.max(durationTimeUs, format.getLong(MediaFormat.KEY_DURATION));
+        }
+      }
+    }
+  }
+
+  @Override public void release() {
+    extractor.release();
+    resource.release();
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.spi;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import org.fs.compress.data.StreamingOptions;
+import org.fs.compress.leak.LeakTracker;
+
+import static org.fs.compress.util.Constants.RESOURCE_DESCRIPTOR;
+
+/**
+ * Init segment and every fragment in a file of its own under a directory, with hls playlist and dash manifest next to
+ * them. Each file is written under a temporary name and renamed once complete, so a reader of directory sees whole
+ * segments and playlists only.
+ */
+final class SegmentFragmentSink implements FragmentSink {
+
+  static final String INIT_SEGMENT_NAME = "init.mp4";
+  static final String SEGMENT_PREFIX = "segment_";
+  static final String SEGMENT_SUFFIX = ".m4s";
+
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final File directory;
+  private final StreamingOptions options;
+  private final long targetDurationUs;
+  private final LeakTracker.Resource resource;
+
+  // file being written and name it is published under
+  private FileOutputStream out;
+  private File temporary;
+  private File target;
+
+  // segments published so far, numbered from one
+  private int segmentCount;
+  private long[] startsUs = new long[INITIAL_CAPACITY];
+  private long[] durationsUs = new long[INITIAL_CAPACITY];
+  private long[] sizes = new long[INITIAL_CAPACITY];
+
+  private boolean released;
+
+  SegmentFragmentSink(File directory, StreamingOptions options, long targetDurationUs) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("can not create directory " + directory);
+    }
+    this.directory = directory;
+    this.options = options;
+    this.targetDurationUs = targetDurationUs;
+    resource = LeakTracker.shared().track(RESOURCE_DESCRIPTOR, this);
+  }
+
+  @Override public WritableByteChannel open(int sequenceNumber) throws IOException {
+    target = new File(directory, sequenceNumber == 0 ? INIT_SEGMENT_NAME : segmentName(sequenceNumber));
+    temporary = new File(directory, target.getName() + TEMPORARY_SUFFIX);
+    out = new FileOutputStream(temporary);
+    return out.getChannel();
+  }
+
+  @Override public void close(int sequenceNumber, long startUs, long durationUs) throws IOException {
+    final long size = out.getChannel().size();
+    out.close();
+    out = null;
+    publish(temporary, target);
+    if (sequenceNumber == 0) return;
+
+    if (segmentCount == startsUs.length) {
+      startsUs = Arrays.copyOf(startsUs, segmentCount * 2);
+      durationsUs = Arrays.copyOf(durationsUs, segmentCount * 2);
+      sizes = Arrays.copyOf(sizes, segmentCount * 2);
+    }
+    startsUs[segmentCount] = startUs;
+    durationsUs[segmentCount] = durationUs;
+    sizes[segmentCount] = size;
+    segmentCount++;
+    if (options.hls) {
+      write(options.playlistName, playlist(false));
+    }
+  }
+
+  @Override public void finish(String codecs) throws IOException {
+    if (options.hls) {
+      write(options.playlistName, playlist(true));
+    }
+    if (options.dash) {
+      write(options.manifestName, manifest(codecs));
+    }
+  }
+
+  @Override public void release() {
+    if (released) return;
+    released = true;
+    resource.release();
+    if (out == null) return;
+    // segment of a failed job is never published
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    } finally {
+      out = null;
+      temporary.delete();
+    }
+  }
+
+  /**
+   * Hls media playlist of segments so far, an event playlist players may follow until it is complete. Target duration
+   * covers longest segment, which is longer than target only when key frames are further apart.
+   */
+  String playlist(boolean complete) {
+    long longestUs = targetDurationUs;
+    for (int i = 0; i < segmentCount; i++) {
+      longestUs = Math.max(longestUs, durationsUs[i]);
+    }
+    final StringBuilder builder = new StringBuilder(128 + segmentCount * 40)
+        .append("#EXTM3U\n")
+        .append("#EXT-X-VERSION:7\n")
+        .append("#EXT-X-TARGETDURATION:").append((longestUs + 999999) / 1000000).append('\n')
+        .append("#EXT-X-PLAYLIST-TYPE:").append(complete ? "VOD" : "EVENT").append('\n')
+        .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+        .append("#EXT-X-MAP:URI=\"").append(INIT_SEGMENT_NAME).append("\"\n");
+    for (int i = 0; i < segmentCount; i++) {
+      builder.append("#EXTINF:").append(String.format(Locale.US, "%.6f", durationsUs[i] / 1000000.0)).append(",\n")
+          .append(segmentName(i + 1)).append('\n');
+    }
+    if (complete) {
+      builder.append("#EXT-X-ENDLIST\n");
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Static dash manifest with one representation holding all tracks, segments follow each other on a timeline in
+   * milliseconds so rounding never leaves a gap between them.
+   */
+  String manifest(String codecs) {
+    final long endUs = segmentCount == 0 ? 0 : startsUs[segmentCount - 1] + durationsUs[segmentCount - 1];
+    long bandwidth = 0;
+    for (int i = 0; i < segmentCount; i++) {
+      if (durationsUs[i] > 0) bandwidth = Math.max(bandwidth, sizes[i] * 8 * 1000000 / durationsUs[i]);
+    }
+    final String mimeType = codecs.contains("avc1") ? "video/mp4" : "audio/mp4";
+    final StringBuilder builder = new StringBuilder(1024 + segmentCount * 32)
+        .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+        .append(" type=\"static\" mediaPresentationDuration=\"").append(isoDuration(endUs)).append('"')
+        .append(" minBufferTime=\"").append(isoDuration(targetDurationUs)).append("\">\n")
+        .append("  <Period id=\"0\" start=\"PT0S\">\n")
+        .append("    <AdaptationSet segmentAlignment=\"true\" startWithSAP=\"1\">\n")
+        .append("      <Representation id=\"0\" mimeType=\"").append(mimeType).append('"')
+        .append(" codecs=\"").append(codecs).append('"')
+        .append(" bandwidth=\"").append(bandwidth).append("\">\n")
+        .append("        <SegmentTemplate timescale=\"1000\" initialization=\"").append(INIT_SEGMENT_NAME).append('"')
+        .append(" media=\"").append(SEGMENT_PREFIX).append("$Number$").append(SEGMENT_SUFFIX).append('"')
+        .append(" startNumber=\"1\">\n")
+        .append("          <SegmentTimeline>\n");
+    int i = 0;
+    while (i < segmentCount) {
+      final long startMs = (startsUs[i] + 500) / 1000;
+      final long durationMs = endMs(i) - startMs;
+      // equal segments in a row share one entry
+      int repeat = 0;
+      while (i + repeat + 1 < segmentCount && endMs(i + repeat + 1) - endMs(i + repeat) == durationMs) {
+        repeat++;
+      }
+      builder.append("            <S t=\"").append(startMs).append("\" d=\"").append(durationMs).append('"');
+      if (repeat > 0) {
+        builder.append(" r=\"").append(repeat).append('"');
+      }
+      builder.append("/>\n");
+      i += repeat + 1;
+    }
+    return builder
+        .append("          </SegmentTimeline>\n")
+        .append("        </SegmentTemplate>\n")
+        .append("      </Representation>\n")
+        .append("    </AdaptationSet>\n")
+        .append("  </Period>\n")
+        .append("</MPD>\n")
+        .toString();
+  }
+
+  // segment ends where next one starts, last one with its own duration
+  private long endMs(int index) {
+    final long endUs = index + 1 < segmentCount ? startsUs[index + 1] : startsUs[index] + durationsUs[index];
+    return (endUs + 500) / 1000;
+  }
+
+  private void write(String name, String text) throws IOException {
+    final File file = new File(directory, name);
+    final File temporary = new File(directory, name + TEMPORARY_SUFFIX);
+    try (FileOutputStream out = new FileOutputStream(temporary)) {
+      out.write(text.getBytes(UTF_8));
+    }
+    publish(temporary, file);
+  }
+
+  static String segmentName(int sequenceNumber) {
+    return SEGMENT_PREFIX + sequenceNumber + SEGMENT_SUFFIX;
+  }
+
+  private static String isoDuration(long timeUs) {
+    return String.format(Locale.US, "PT%.3fS", timeUs / 1000000.0);
+  }
+
+  // rename replaces target in one step, readers see old file or new one
+  private static void publish(File temporary, File target) throws IOException {
+    if (!temporary.renameTo(target)) {
+      temporary.delete();
+      throw new IOException("can not publish " + target);
+    }
+  }
+}
@@ -34,4 +34,7 @@ public interface TextureRenderer {
   int createProgram(String vertexSource, String fragmentSource);
 
   void checkEglError(String msg);
+
+  // returns vertex buffer to pool, renderer does not draw after
+  void release();
 }
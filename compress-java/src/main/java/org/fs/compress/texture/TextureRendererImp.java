@@ -22,6 +22,7 @@ import android.opengl.Matrix;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import org.fs.compress.buffer.DirectBufferPool;
 
 final class TextureRendererImp implements TextureRenderer {
 
@@ -63,6 +64,8 @@ final class TextureRendererImp implements TextureRenderer {
       -1.0f,  1.0f, 0, 0.f, 1.f,
       1.0f,  1.0f, 0, 1.f, 1.f,
   };
+  // leased buffer behind float view of vertices, returned to pool on release
+  private ByteBuffer triangleVerticesBuffer;
   private FloatBuffer triangleVertices;
 
   private float[] mVPMatrix = new float[16];
@@ -76,14 +79,22 @@ final class TextureRendererImp implements TextureRenderer {
   private int aTexturePtr;
 
   TextureRendererImp() {
-    triangleVertices = ByteBuffer.allocateDirect(triangleVerticesData.length * FLOAT_SIZE_BYTES)
-        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    triangleVerticesBuffer = DirectBufferPool.shared().lease(triangleVerticesData.length * FLOAT_SIZE_BYTES);
+    triangleVertices = triangleVerticesBuffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
 
     triangleVertices.put(triangleVerticesData).position(0);
 
     Matrix.setIdentityM(sTMatrix, 0);
   }
 
+  @Override public void release() {
+    if (triangleVerticesBuffer != null) {
+      DirectBufferPool.shared().release(triangleVerticesBuffer);
+      triangleVerticesBuffer = null;
+      triangleVertices = null;
+    }
+  }
+
   @Override public int getTextureId() {
     return textureId;
   }
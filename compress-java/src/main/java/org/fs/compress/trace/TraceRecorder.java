@@ -0,0 +1,56 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import org.fs.compress.metrics.PipelineProbe;
+
+/**
+ * Records pipeline stages of a job as spans in to a preallocated ring buffer, oldest spans are overwritten once it is
+ * full. Recording never allocates and is a single volatile read while disabled. Spans are written in Chrome trace
+ * event format, which chrome://tracing and Perfetto open as is.
+ */
+public interface TraceRecorder extends PipelineProbe {
+
+  static final int DEFAULT_CAPACITY = 32 * 1024;
+
+  static TraceRecorder newInstance() {
+    return newInstance(DEFAULT_CAPACITY);
+  }
+
+  static TraceRecorder newInstance(int capacity) {
+    return new TraceRecorderImp(capacity);
+  }
+
+  void enabled(boolean enabled);
+
+  boolean enabled();
+
+  // spans recorded so far, capped by capacity
+  int size();
+
+  void clear();
+
+  /**
+   * Writes recorded spans as trace json, spans still being recorded might be skipped; disable recorder or let job
+   * finish for a complete trace.
+   */
+  void write(Writer writer) throws IOException;
+
+  void dump(File file) throws IOException;
+}
@@ -0,0 +1,153 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.trace;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fs.compress.util.Constants.SAMPLE_AUDIO;
+
+final class TraceRecorderImp implements TraceRecorder {
+
+  // indexed by stage constants
+  private static final String[] STAGE_NAMES = {
+      "drainExtractor", "drainDecoder", "awaitFrame", "drawFrame", "drainEncoder", "encodeAudio", "writeSample"
+  };
+
+  private final int capacity;
+  private final AtomicLong cursor = new AtomicLong();
+  // stage and sample type of a span share one slot
+  private final int[] kinds;
+  private final long[] startsNs;
+  private final long[] endsNs;
+  // reference is stored rather than id, so names can be written without a lookup
+  private final Thread[] threads;
+  private final long originNs;
+
+  private volatile boolean enabled;
+
+  TraceRecorderImp(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+    }
+    this.capacity = capacity;
+    kinds = new int[capacity];
+    startsNs = new long[capacity];
+    endsNs = new long[capacity];
+    threads = new Thread[capacity];
+    originNs = System.nanoTime();
+  }
+
+  @Override public void record(int stage, int sampleType, long startNs, long endNs) {
+    if (!enabled) return;
+    int slot = (int) (cursor.getAndIncrement() % capacity);
+    kinds[slot] = (stage << 8) | sampleType;
+    startsNs[slot] = startNs;
+    endsNs[slot] = endNs;
+    threads[slot] = Thread.currentThread();
+  }
+
+  @Override public void enabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override public boolean enabled() {
+    return enabled;
+  }
+
+  @Override public int size() {
+    return (int) Math.min(cursor.get(), capacity);
+  }
+
+  @Override public synchronized void clear() {
+    cursor.set(0);
+    for (int i = 0; i < capacity; i++) {
+      threads[i] = null;
+    }
+  }
+
+  @Override public synchronized void write(Writer writer) throws IOException {
+    final long end = cursor.get();
+    final long begin = Math.max(0, end - capacity);
+
+    writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    boolean first = true;
+    List<Thread> named = new ArrayList<>();
+    for (long i = begin; i < end; i++) {
+      int slot = (int) (i % capacity);
+      Thread thread = threads[slot];
+      if (thread == null) continue;
+
+      if (!named.contains(thread)) {
+        named.add(thread);
+        first = separate(writer, first);
+        writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+        writer.write(Long.toString(thread.getId()));
+        writer.write(",\"args\":{\"name\":\"");
+        writer.write(escape(thread.getName()));
+        writer.write("\"}}");
+      }
+
+      int kind = kinds[slot];
+      int stage = kind >>> 8;
+      int sampleType = kind & 0xFF;
+      first = separate(writer, first);
+      writer.write("{\"name\":\"");
+      writer.write(stage < STAGE_NAMES.length ? STAGE_NAMES[stage] : "stage" + stage);
+      writer.write("\",\"cat\":\"");
+      writer.write(sampleType == SAMPLE_AUDIO ? "audio" : "video");
+      writer.write("\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+      writer.write(Long.toString(thread.getId()));
+      writer.write(",\"ts\":");
+      writer.write(micros(startsNs[slot] - originNs));
+      writer.write(",\"dur\":");
+      writer.write(micros(endsNs[slot] - startsNs[slot]));
+      writer.write("}");
+    }
+    writer.write("]}");
+    writer.flush();
+  }
+
+  @Override public void dump(File file) throws IOException {
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")))) {
+      write(writer);
+    }
+  }
+
+  private static boolean separate(Writer writer, boolean first) throws IOException {
+    if (!first) writer.write(',');
+    return false;
+  }
+
+  // trace timestamps are microseconds, fraction keeps nanosecond precision
+  private static String micros(long nanos) {
+    if (nanos < 0) nanos = 0;
+    long fraction = nanos % 1000;
+    return (nanos / 1000) + (fraction < 10 ? ".00" : fraction < 100 ? ".0" : ".") + fraction;
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
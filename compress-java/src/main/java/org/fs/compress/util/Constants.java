@@ -22,6 +22,49 @@ public final class Constants {
 
   public static final int CONFIGURE_FLAG_DECODE = 0x00;
 
+  // job priorities, higher runs first and may preempt lower ones
+  public static final int PRIORITY_BACKGROUND = 0x00;
+  public static final int PRIORITY_NORMAL = 0x01;
+  public static final int PRIORITY_IMMEDIATE = 0x02;
+
+  // job states
+  public static final int JOB_STATE_QUEUED = 0x01;
+  public static final int JOB_STATE_RUNNING = 0x02;
+  public static final int JOB_STATE_PREEMPTED = 0x03;
+  public static final int JOB_STATE_COMPLETED = 0x04;
+  public static final int JOB_STATE_FAILED = 0x05;
+  public static final int JOB_STATE_CANCELED = 0x06;
+
+  // pipeline stages timed by probes, used as index so they start from zero
+  public static final int STAGE_DRAIN_EXTRACTOR = 0x00;
+  public static final int STAGE_DRAIN_DECODER = 0x01;
+  public static final int STAGE_FRAME_WAIT = 0x02;
+  public static final int STAGE_FRAME_DRAW = 0x03;
+  public static final int STAGE_DRAIN_ENCODER = 0x04;
+  public static final int STAGE_AUDIO_ENCODE = 0x05;
+  public static final int STAGE_MUXER_WRITE = 0x06;
+  public static final int STAGE_COUNT = 0x07;
+
+  // records of a sample recording
+  public static final int RECORD_FORMAT = 0x01;
+  public static final int RECORD_EXTRACTED = 0x02;
+  public static final int RECORD_ENCODED = 0x03;
+
+  // resources leak tracker follows
+  public static final int RESOURCE_CODEC = 0x01;
+  public static final int RESOURCE_SURFACE = 0x02;
+  public static final int RESOURCE_EGL_CONTEXT = 0x03;
+  public static final int RESOURCE_DESCRIPTOR = 0x04;
+  public static final int RESOURCE_BUFFER = 0x05;
+
+  // samples muxer holds in memory until formats of all tracks are known, more of them go to a spill file
+  public static final long DEFAULT_MUXER_QUEUE_BYTES = 8 * 1024 * 1024; // 8 mb
+
+  // layouts of mp4 writer, all but moov last put moov before mdat so playback can start before whole file is read
+  public static final int MP4_LAYOUT_MOOV_LAST = 0x00;
+  public static final int MP4_LAYOUT_RESERVED = 0x01;
+  public static final int MP4_LAYOUT_TWO_PASS = 0x02;
+
   // public static final String KEY_PROFILE = "profile";
 
   // public static final String KEY_LEVEL = "level";
@@ -30,6 +73,10 @@ public final class Constants {
   static final String KEY_AVC_SPS = "csd-0";
   // static final String KEY_AVC_PPS = "csd-1";
 
+  // codec specific data, sps and pps of avc or audio specific config of aac
+  public static final String KEY_CSD_0 = "csd-0";
+  public static final String KEY_CSD_1 = "csd-1";
+
   public static final String KEY_ROTATION_DEGREES = "rotation-degrees";
 
   // Video formats
@@ -18,6 +18,7 @@ package org.fs.compress.util;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import org.fs.compress.data.Track;
+import org.fs.compress.spi.Extractor;
 
 import static org.fs.compress.util.Constants.MIME_TYPE_AUDIO;
 import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO;
@@ -25,6 +26,10 @@ import static org.fs.compress.util.Constants.MIME_TYPE_VIDEO;
 public final class ExtractorUtil {
 
   public static Track videoAndAudioTrack(MediaExtractor extractor) {
+    return videoAndAudioTrack(Extractor.newInstance(extractor));
+  }
+
+  public static Track videoAndAudioTrack(Extractor extractor) {
     final Track track = new Track();
 
     int count = extractor.getTrackCount();
@@ -49,6 +54,36 @@ public final class ExtractorUtil {
     return track;
   }
 
+  /**
+   * Start times of at most {@code count} ranges of video track, every range starts on a sync sample. Extractor is left
+   * with video track selected.
+   */
+  public static long[] syncBoundaries(MediaExtractor extractor, Track track, long durationTimeUs, int count) {
+    return syncBoundaries(Extractor.newInstance(extractor), track, durationTimeUs, count);
+  }
+
+  public static long[] syncBoundaries(Extractor extractor, Track track, long durationTimeUs, int count) {
+    extractor.selectTrack(track.videoTrackIndex);
+    long[] boundaries = new long[Math.max(1, count)];
+    int size = 1;
+    for (int i = 1; i < count; i++) {
+      extractor.seekTo(durationTimeUs * i / count, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+      long syncUs = extractor.getSampleTime();
+      // short gops may collapse boundaries, those ranges are merged
+      if (syncUs > boundaries[size - 1]) {
+        boundaries[size++] = syncUs;
+      }
+    }
+    if (size == boundaries.length) return boundaries;
+    long[] merged = new long[size];
+    System.arraycopy(boundaries, 0, merged, 0, size);
+    return merged;
+  }
+
+  public static long durationTimeUs(MediaFormat format) {
+    return format != null && format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : -1;
+  }
+
   private ExtractorUtil() {
     throw new IllegalArgumentException("creating new instance of this object is forbidden.");
   }
@@ -0,0 +1,29 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.util;
+
+import androidx.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static org.fs.compress.util.Constants.PRIORITY_BACKGROUND;
+import static org.fs.compress.util.Constants.PRIORITY_NORMAL;
+import static org.fs.compress.util.Constants.PRIORITY_IMMEDIATE;
+
+@Retention(RetentionPolicy.RUNTIME)
+@IntDef(value = { PRIORITY_BACKGROUND, PRIORITY_NORMAL, PRIORITY_IMMEDIATE })
+public @interface JobPriority {
+}
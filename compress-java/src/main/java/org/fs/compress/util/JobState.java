@@ -0,0 +1,32 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.util;
+
+import androidx.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static org.fs.compress.util.Constants.JOB_STATE_QUEUED;
+import static org.fs.compress.util.Constants.JOB_STATE_RUNNING;
+import static org.fs.compress.util.Constants.JOB_STATE_PREEMPTED;
+import static org.fs.compress.util.Constants.JOB_STATE_COMPLETED;
+import static org.fs.compress.util.Constants.JOB_STATE_FAILED;
+import static org.fs.compress.util.Constants.JOB_STATE_CANCELED;
+
+@Retention(RetentionPolicy.RUNTIME)
+@IntDef(value = { JOB_STATE_QUEUED, JOB_STATE_RUNNING, JOB_STATE_PREEMPTED, JOB_STATE_COMPLETED, JOB_STATE_FAILED, JOB_STATE_CANCELED })
+public @interface JobState {
+}
@@ -0,0 +1,162 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.util;
+
+import android.media.MediaFormat;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.fs.compress.util.Constants.KEY_ROTATION_DEGREES;
+
+/**
+ * Copies and serializes media formats, jvm backend and sample recordings keep formats with it. Keys of a format can
+ * not be listed pre 29, so a fixed set of keys the engine uses is carried, with whatever value type each of them holds.
+ */
+public final class MediaFormatUtil {
+
+  private static final String[] KEYS = {
+      MediaFormat.KEY_MIME, MediaFormat.KEY_WIDTH, MediaFormat.KEY_HEIGHT, MediaFormat.KEY_COLOR_FORMAT,
+      MediaFormat.KEY_BIT_RATE, MediaFormat.KEY_FRAME_RATE, MediaFormat.KEY_I_FRAME_INTERVAL,
+      MediaFormat.KEY_MAX_INPUT_SIZE, MediaFormat.KEY_SAMPLE_RATE, MediaFormat.KEY_CHANNEL_COUNT,
+      MediaFormat.KEY_AAC_PROFILE, MediaFormat.KEY_DURATION, MediaFormat.KEY_LANGUAGE, KEY_ROTATION_DEGREES,
+      "profile", "level", "csd-0", "csd-1", "csd-2"
+  };
+
+  private static final byte TYPE_INTEGER = 1;
+  private static final byte TYPE_LONG = 2;
+  private static final byte TYPE_FLOAT = 3;
+  private static final byte TYPE_STRING = 4;
+  private static final byte TYPE_BYTE_BUFFER = 5;
+
+  public static MediaFormat copy(MediaFormat format) {
+    MediaFormat copy = new MediaFormat();
+    for (String key : KEYS) {
+      if (!format.containsKey(key)) continue;
+      Object value = value(format, key);
+      if (value instanceof Integer) {
+        copy.setInteger(key, (Integer) value);
+      } else if (value instanceof Long) {
+        copy.setLong(key, (Long) value);
+      } else if (value instanceof Float) {
+        copy.setFloat(key, (Float) value);
+      } else if (value instanceof String) {
+        copy.setString(key, (String) value);
+      } else if (value instanceof ByteBuffer) {
+        copy.setByteBuffer(key, copyOf((ByteBuffer) value));
+      }
+    }
+    return copy;
+  }
+
+  public static void write(DataOutput out, MediaFormat format) throws IOException {
+    int count = 0;
+    for (String key : KEYS) {
+      if (format.containsKey(key) && value(format, key) != null) count++;
+    }
+    out.writeInt(count);
+    for (String key : KEYS) {
+      if (!format.containsKey(key)) continue;
+      Object value = value(format, key);
+      if (value == null) continue;
+      out.writeUTF(key);
+      if (value instanceof Integer) {
+        out.writeByte(TYPE_INTEGER);
+        out.writeInt((Integer) value);
+      } else if (value instanceof Long) {
+        out.writeByte(TYPE_LONG);
+        out.writeLong((Long) value);
+      } else if (value instanceof Float) {
+        out.writeByte(TYPE_FLOAT);
+        out.writeFloat((Float) value);
+      } else if (value instanceof String) {
+        out.writeByte(TYPE_STRING);
+        out.writeUTF((String) value);
+      } else {
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        out.writeByte(TYPE_BYTE_BUFFER);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  public static MediaFormat read(DataInput in) throws IOException {
+    MediaFormat format = new MediaFormat();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String key = in.readUTF();
+      byte type = in.readByte();
+      switch (type) {
+        case TYPE_INTEGER: format.setInteger(key, in.readInt()); break;
+        case TYPE_LONG: format.setLong(key, in.readLong()); break;
+        case TYPE_FLOAT: format.setFloat(key, in.readFloat()); break;
+        case TYPE_STRING: format.setString(key, in.readUTF()); break;
+        case TYPE_BYTE_BUFFER:
+          byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          format.setByteBuffer(key, ByteBuffer.wrap(bytes));
+          break;
+        default: throw new IOException("can not determine value type " + type + " of " + key);
+      }
+    }
+    return format;
+  }
+
+  // value type of a key is only told on 29 and above, so each getter is tried in turn
+  private static Object value(MediaFormat format, String key) {
+    try {
+      return format.getInteger(key);
+    } catch (ClassCastException ignored) {
+      /*no opt*/
+    }
+    try {
+      return format.getLong(key);
+    } catch (ClassCastException ignored) {
+      /*no opt*/
+    }
+    try {
+      return format.getFloat(key);
+    } catch (ClassCastException ignored) {
+      /*no opt*/
+    }
+    try {
+      return format.getString(key);
+    } catch (ClassCastException ignored) {
+      /*no opt*/
+    }
+    try {
+      return format.getByteBuffer(key);
+    } catch (ClassCastException ignored) {
+      return null;
+    }
+  }
+
+  private static ByteBuffer copyOf(ByteBuffer buffer) {
+    ByteBuffer source = buffer.duplicate();
+    ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+    copy.put(source);
+    copy.flip();
+    return copy;
+  }
+
+  private MediaFormatUtil() {
+    throw new IllegalArgumentException("creating new instance of this object is forbidden.");
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Moves moov of a finished mp4 ahead of its mdat, so players can start before whole file arrives. Only moov passes
+ * through heap to have its chunk offsets patched, everything else is transferred between channels by kernel.
+ */
+public final class Mp4FaststartUtil {
+
+  private static final int HEADER_SIZE = 8;
+  private static final int MOOV = 0x6d6f6f76; // moov
+  private static final int MDAT = 0x6d646174; // mdat
+  private static final int TRAK = 0x7472616b; // trak
+  private static final int MDIA = 0x6d646961; // mdia
+  private static final int MINF = 0x6d696e66; // minf
+  private static final int STBL = 0x7374626c; // stbl
+  private static final int STCO = 0x7374636f; // stco
+  private static final int CO64 = 0x636f3634; // co64
+
+  // moov is read whole, anything larger is not an mp4 this library wrote
+  private static final long MAX_MOOV_SIZE = 64 * 1024 * 1024;
+  private static final String TEMPORARY_SUFFIX = ".faststart";
+
+  /**
+   * Rewrites {@code file} with moov before first mdat and returns true, or leaves it as is and returns false when moov
+   * is already there or when a 32 bit chunk offset would overflow once moved. Rewritten file replaces original in one
+   * rename, a failure leaves original untouched.
+   */
+  public static boolean faststart(File file) throws IOException {
+    final File temporary = new File(file.getParentFile(), file.getName() + TEMPORARY_SUFFIX);
+    try (FileInputStream in = new FileInputStream(file)) {
+      final FileChannel source = in.getChannel();
+      final long size = source.size();
+      long moovOffset = -1;
+      long moovSize = 0;
+      long mdatOffset = -1;
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE * 2);
+      long offset = 0;
+      while (offset + HEADER_SIZE <= size) {
+        header.clear();
+        readFully(source, header, offset);
+        long boxSize = header.getInt(0) & 0xffffffffL;
+        final int type = header.getInt(4);
+        if (boxSize == 1) {
+          boxSize = header.getLong(8);
+        } else if (boxSize == 0) {
+          boxSize = size - offset;
+        }
+        if (boxSize < HEADER_SIZE || offset + boxSize > size) {
+          throw new IllegalArgumentException("broken box at " + offset + " of " + file);
+        }
+        if (type == MOOV && moovOffset < 0) {
+          moovOffset = offset;
+          moovSize = boxSize;
+        } else if (type == MDAT && mdatOffset < 0) {
+          mdatOffset = offset;
+        }
+        offset += boxSize;
+      }
+      if (moovOffset < 0 || mdatOffset < 0 || moovOffset < mdatOffset) return false;
+      if (moovSize > MAX_MOOV_SIZE) {
+        throw new IllegalArgumentException("moov is too large " + moovSize);
+      }
+
+      final ByteBuffer moov = ByteBuffer.allocate((int) moovSize);
+      readFully(source, moov, moovOffset);
+      // samples between first mdat and moov move forward by size of moov, those after moov stay where they are
+      final int moovHeaderSize = moov.getInt(0) == 1 ? HEADER_SIZE * 2 : HEADER_SIZE;
+      if (!shiftChunkOffsets(moov, moovHeaderSize, moov.capacity(), mdatOffset, moovOffset, moovSize)) return false;
+
+      try (FileOutputStream out = new FileOutputStream(temporary)) {
+        final FileChannel target = out.getChannel();
+        transferFully(source, 0, mdatOffset, target);
+        moov.clear();
+        while (moov.hasRemaining()) {
+          target.write(moov);
+        }
+        transferFully(source, mdatOffset, moovOffset - mdatOffset, target);
+        transferFully(source, moovOffset + moovSize, size - moovOffset - moovSize, target);
+      }
+    } catch (IOException | RuntimeException e) {
+      temporary.delete();
+      throw e;
+    }
+    if (!temporary.renameTo(file)) {
+      temporary.delete();
+      throw new IOException("can not replace " + file);
+    }
+    return true;
+  }
+
+  /**
+   * Adds {@code shift} to chunk offsets within [{@code from}, {@code to}) in stco and co64 boxes between
+   * {@code start} and {@code end} of moov, false when a stco offset would not fit in 32 bits anymore.
+   */
+  private static boolean shiftChunkOffsets(ByteBuffer moov, int start, int end, long from, long to, long shift) {
+    int offset = start;
+    while (offset + HEADER_SIZE <= end) {
+      final int boxSize = moov.getInt(offset);
+      final int type = moov.getInt(offset + 4);
+      if (boxSize < HEADER_SIZE || offset + boxSize > end) {
+        throw new IllegalArgumentException("broken box in moov at " + offset);
+      }
+      if (type == TRAK || type == MDIA || type == MINF || type == STBL) {
+        if (!shiftChunkOffsets(moov, offset + HEADER_SIZE, offset + boxSize, from, to, shift)) return false;
+      } else if (type == STCO) {
+        final int count = moov.getInt(offset + 12);
+        for (int i = 0; i < count; i++) {
+          final int index = offset + 16 + i * 4;
+          final long chunk = moov.getInt(index) & 0xffffffffL;
+          if (chunk < from || chunk >= to) continue;
+          if (chunk + shift > 0xffffffffL) return false;
+          moov.putInt(index, (int) (chunk + shift));
+        }
+      } else if (type == CO64) {
+        final int count = moov.getInt(offset + 12);
+        for (int i = 0; i < count; i++) {
+          final int index = offset + 16 + i * 8;
+          final long chunk = moov.getLong(index);
+          if (chunk >= from && chunk < to) moov.putLong(index, chunk + shift);
+        }
+      }
+      offset += boxSize;
+    }
+    return true;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) break;
+    }
+    buffer.flip();
+  }
+
+  // transferTo may move less than asked, file to file it is still done by kernel without a copy in heap
+  private static void transferFully(FileChannel source, long position, long count, FileChannel target)
+      throws IOException {
+    long done = 0;
+    while (done < count) {
+      done += source.transferTo(position + done, count - done, target);
+    }
+  }
+
+  private Mp4FaststartUtil() {
+    throw new IllegalArgumentException("can not have instance of this class");
+  }
+}
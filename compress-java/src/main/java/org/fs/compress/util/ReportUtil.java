@@ -0,0 +1,49 @@
+/*
+ * Compression Android Java Copyright (C) 2020 Fatih, Open Source.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fs.compress.util;
+
+import org.fs.compress.data.CompressionReport;
+import org.fs.compress.data.TrackReport;
+
+public final class ReportUtil {
+
+  // sizes are -1 when unknown, ratio is left -1 then
+  public static void complete(CompressionReport report, long inputBytes, long outputBytes, long elapsedNs, long mediaTimeUs) {
+    report.inputBytes = inputBytes;
+    report.outputBytes = outputBytes;
+    report.compressionRatio = inputBytes > 0 && outputBytes > 0 ? inputBytes / (double) outputBytes : -1;
+    report.elapsedMs = elapsedNs / 1000000;
+    report.mediaTimeUs = Math.max(0, mediaTimeUs);
+    report.realtimeFactor = elapsedNs > 0 ? report.mediaTimeUs * 1000.0 / elapsedNs : 0;
+  }
+
+  // adds a part of track, as segments of a segmented job, in to report of whole track
+  public static void merge(TrackReport report, TrackReport part) {
+    report.sampleType = part.sampleType;
+    report.transcoded |= part.transcoded;
+    if (report.decoderName == null) report.decoderName = part.decoderName;
+    if (report.encoderName == null) report.encoderName = part.encoderName;
+    report.framesDecoded += part.framesDecoded;
+    report.framesRendered += part.framesRendered;
+    report.framesEncoded += part.framesEncoded;
+    report.peakDecodeQueueSize = Math.max(report.peakDecodeQueueSize, part.peakDecodeQueueSize);
+    report.peakEncodeQueueSize = Math.max(report.peakEncodeQueueSize, part.peakEncodeQueueSize);
+  }
+
+  private ReportUtil() {
+    throw new IllegalArgumentException("creating new instance of this object is forbidden.");
+  }
+}
@@ -15,6 +15,12 @@
  */
 package org.fs.compress.util;
 
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import java.io.File;
+import java.io.FileDescriptor;
+
 public final class Utils {
 
   public interface Callback {
@@ -22,12 +28,59 @@ public final class Utils {
     void close();
   }
 
-  public static void closeQuietly(Callback callback) {
+  /**
+   * @return failure of callback, or null. It is never thrown, so one failing release does not skip ones after it.
+   */
+  public static Exception closeQuietly(Callback callback) {
     try {
       callback.close();
+      return null;
     } catch (Exception e) {
-      throw new IllegalArgumentException(e);
+      return e;
+    }
+  }
+
+  /**
+   * Runs every callback even when some of them fail. Failures are suppressed in to {@code failure} when job itself
+   * failed, otherwise first of them is thrown once all callbacks ran, with the rest suppressed in to it.
+   */
+  public static void closeAll(Throwable failure, Callback... callbacks) {
+    IllegalArgumentException error = null;
+    for (Callback callback : callbacks) {
+      Exception e = closeQuietly(callback);
+      if (e == null) continue;
+      if (failure != null) {
+        failure.addSuppressed(e);
+      } else if (error == null) {
+        error = new IllegalArgumentException(e);
+      } else {
+        error.addSuppressed(e);
+      }
+    }
+    if (error != null) throw error;
+  }
+
+  /**
+   * @return size of file behind descriptor, or -1 when it can not be told.
+   */
+  public static long sizeOf(FileDescriptor descriptor) {
+    if (!BuildOsVersionUtil.isOsAvailable(Build.VERSION_CODES.LOLLIPOP)) return -1;
+    try {
+      return Os.fstat(descriptor).st_size;
+    } catch (ErrnoException e) {
+      return -1;
+    }
+  }
+
+  // size of file, or of files in it when it is a directory of segments
+  public static long sizeOf(File file) {
+    final File[] files = file.listFiles();
+    if (files == null) return file.length();
+    long size = 0;
+    for (File each : files) {
+      size += each.length();
     }
+    return size;
   }
 
   private Utils() {
@@ -20,7 +20,9 @@ import android.os.Handler
 import android.os.Looper
 import org.fs.compress.common.engine.MediaCoderEngine
 import org.fs.compress.common.engine.MediaCoderEngineProgressCallback
+import org.fs.compress.common.engine.ProgressDispatcher
 import org.fs.compress.common.format.MediaFormatStrategy
+import java.io.Closeable
 import java.io.File
 import java.io.FileDescriptor
 import java.io.FileInputStream
@@ -55,22 +57,28 @@ class Compression private constructor(){
       factory)
   }
 
-  fun submit(input: File, output: File, strategy: MediaFormatStrategy): Future<*> {
+  fun submit(input: File, output: File, strategy: MediaFormatStrategy): Future<*> =
+    submit(input, output, strategy, null)
+
+  fun submit(input: File, output: File, strategy: MediaFormatStrategy, callback: MediaCoderEngineProgressCallback?): Future<*> {
     val stream = FileInputStream(input)
-    val descriptor = stream.fd
-    return submit(descriptor, output, strategy)
+    try {
+      return submit(stream.fd, output, strategy, callback, stream)
+    } catch (e: RejectedExecutionException) {
+      stream.close()
+      throw e
+    }
   }
 
-  // might want to put error here
-  private fun submit(input: FileDescriptor, output: File, strategy: MediaFormatStrategy): Future<*> {
+  // might want to put error here, stream is closed once task is done with its descriptor
+  private fun submit(input: FileDescriptor, output: File, strategy: MediaFormatStrategy, callback: MediaCoderEngineProgressCallback?, stream: Closeable): Future<*> {
     val reference = AtomicReference<Future<*>>()
     val future: Future<*> = executor.submit {
       var error: Throwable? = null
       try {
         val engine = MediaCoderEngine()
-        engine.setCallback(MediaCoderEngineProgressCallback { percent ->
-          print("percent $percent")
-        })
+        // coalesced on main thread, slow consumers never stall the coders
+        callback?.let { engine.setCallback(ProgressDispatcher(handler, it)) }
         engine.setDataSource(input)
         engine.compress(output, strategy)
       } catch (e: IOException) {
@@ -82,10 +90,19 @@ class Compression private constructor(){
       } catch (e: IllegalArgumentException) {
         e.printStackTrace()
         error = e
+      } finally {
+        stream.closeQuietly()
       }
     }
 
     reference.set(future)
     return future
   }
+
+  private fun Closeable.closeQuietly() {
+    try {
+      close()
+    } catch (ignored: IOException) {
+    }
+  }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ package org.fs.compress.common.engine
 import android.media.MediaExtractor
 import android.media.MediaMetadataRetriever
 import android.media.MediaMuxer
+import android.os.SystemClock
 import org.fs.compress.common.coder.AudioCoder
 import org.fs.compress.common.coder.Coder
 import org.fs.compress.common.coder.PassThroughCoder
@@ -41,7 +42,7 @@ class MediaCoderEngine {
   companion object {
 
     private const val WAIT_CODERS = 10L
-    private const val PROGRESS_STEP = 10
+    private const val PROGRESS_INTERVAL_MS = 250L
   }
 
   private var fileDescriptor: FileDescriptor? = null
@@ -103,8 +104,12 @@ class MediaCoderEngine {
     }
   }
 
+  /**
+   * Still polls, coders dequeue with timeouts and engine sleeps [WAIT_CODERS] when a step moves nothing. Java engine
+   * waits on codec callbacks through MediaCodecQueue and EventLoop instead, this module has neither of them yet.
+   */
   private fun step() {
-    var loop = 0L
+    var reportedMs = 0L
     if (durationTimeUs <= 0) {
       callback?.progress(-1.0)
     }
@@ -112,9 +117,10 @@ class MediaCoderEngine {
     while (!((videoCoder?.finished() == true) || (audioCoder?.finished() == true))) {
       val stepped = (videoCoder?.stepPipeline() ?: false) || (audioCoder?.stepPipeline() ?: false)
 
-      loop++
-
-      if (durationTimeUs > 0 && loop % PROGRESS_STEP == 0L) {
+      // paced by wall time, not by how many steps coders take
+      val nowMs = SystemClock.elapsedRealtime()
+      if (durationTimeUs > 0 && nowMs - reportedMs >= PROGRESS_INTERVAL_MS) {
+        reportedMs = nowMs
 
         var videoProgress = 1.0
         videoCoder?.let { coder ->
@@ -136,6 +142,7 @@ class MediaCoderEngine {
         callback?.progress(percent)
       }
 
+      // TODO wait on codec callbacks instead of sleeping, as BaseCoderEngine of compress-java does on Lollipop
       if (!stepped) Thread.sleep(WAIT_CODERS)
     }
   }
@@ -151,7 +158,8 @@ class MediaCoderEngine {
         muxer?.setOrientationHint(degree)
 
         val duration = r.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)
-        durationTimeUs = duration.toLongOrNull() ?: 0L
+        // metadata duration is in milliseconds
+        durationTimeUs = (duration.toLongOrNull() ?: 0L) * 1000L
       }
     }
   }
@@ -0,0 +1,44 @@
+/*
+ * Compression Android Kotlin Copyright (C) 2019 Fatih, Open Source.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fs.compress.common.engine
+
+import android.os.Handler
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Hands progress to the main thread keeping only the latest value, at most one post is in flight at a time
+ */
+class ProgressDispatcher(
+  private val handler: Handler,
+  private val callback: MediaCoderEngineProgressCallback): MediaCoderEngineProgressCallback {
+
+  @Volatile private var latest = 0.0
+  private val posted = AtomicBoolean(false)
+
+  private val deliver = Runnable {
+    posted.set(false)
+    callback.progress(latest)
+  }
+
+  override fun progress(percent: Double) {
+    latest = percent
+    // value is overwritten while a post is pending, main thread reads the newest one
+    if (posted.compareAndSet(false, true)) {
+      handler.post(deliver)
+    }
+  }
+}
@@ -19,14 +19,10 @@ package org.fs.compress.common.muxer
 import android.media.MediaCodec
 import android.media.MediaFormat
 import android.media.MediaMuxer
-import org.fs.compress.model.SampleInfo
 import org.fs.compress.util.C.Companion.SAMPLE_TYPE_AUDIO
 import org.fs.compress.util.C.Companion.SAMPLE_TYPE_VIDEO
-import org.fs.compress.util.toSampleInfo
-import org.fs.compress.util.writeToBufferInfo
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
-import java.util.ArrayList
 
 class QueuedMuxer(
   private val muxer: MediaMuxer,
@@ -34,6 +30,7 @@ class QueuedMuxer(
 
   companion object {
     private const val DEFAULT_BUFFER_SIZE = 64 * 1024
+    private const val DEFAULT_QUEUE_CAPACITY = 64
   }
 
   private var videoFormat: MediaFormat? = null
@@ -44,7 +41,9 @@ class QueuedMuxer(
   private var videoTrackIndex: Int = -1
   private var audioTrackIndex: Int = -1
 
-  private val samples = ArrayList<SampleInfo>()
+  // samples written before start, payloads of them are back to back in byteBuffer
+  private val samples = SampleQueue(DEFAULT_QUEUE_CAPACITY)
+  private val bufferInfo = MediaCodec.BufferInfo()
 
   private var started: Boolean = false
 
@@ -75,19 +74,16 @@ class QueuedMuxer(
     byteBuffer = byteBuffer ?: ByteBuffer.allocate(0)
     byteBuffer?.flip()
 
-    val bufferInfo = MediaCodec.BufferInfo()
     var offset = 0
-    if (samples.isNotEmpty()) {
-      for (sample in samples) {
-        sample.writeToBufferInfo(bufferInfo, offset)
-        val trackIndex = trackIndexForSampleType(sample.sampleType)
-        byteBuffer?.let { buffer ->
-          muxer.writeSampleData(trackIndex, buffer, bufferInfo)
-        }
-        offset += sample.size
+    val buffer = byteBuffer
+    if (buffer != null) {
+      for (index in 0 until samples.size) {
+        samples.read(index, bufferInfo, offset)
+        muxer.writeSampleData(trackIndexForSampleType(samples.sampleType(index)), buffer, bufferInfo)
+        offset += bufferInfo.size
       }
-      samples.clear()
     }
+    samples.clear()
     byteBuffer = null
   }
 
@@ -98,11 +94,22 @@ class QueuedMuxer(
     } else {
       buffer.limit(bufferInfo.offset + bufferInfo.size)
       buffer.position(bufferInfo.offset)
-      byteBuffer = byteBuffer ?: ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE)
-        .order(ByteOrder.nativeOrder())
+      val queued = byteBuffer
+      byteBuffer = when {
+        queued == null -> ByteBuffer.allocateDirect(maxOf(DEFAULT_BUFFER_SIZE, bufferInfo.size))
+          .order(ByteOrder.nativeOrder())
+        // doubles like sample queue does, a long wait for second track would overflow a fixed buffer
+        queued.remaining() < bufferInfo.size -> ByteBuffer.allocateDirect(maxOf(queued.capacity() * 2, queued.position() + bufferInfo.size))
+          .order(ByteOrder.nativeOrder())
+          .also { grown ->
+            queued.flip()
+            grown.put(queued)
+          }
+        else -> queued
+      }
 
       byteBuffer?.put(buffer)
-      samples.add(bufferInfo.toSampleInfo(sampleType))
+      samples.offer(sampleType, bufferInfo)
     }
   }
 
@@ -0,0 +1,74 @@
+/*
+ * Compression Android Kotlin Copyright (C) 2019 Fatih, Open Source.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fs.compress.common.muxer
+
+import android.media.MediaCodec
+
+/**
+ * Metadata of samples held back until muxer starts, kept in primitive columns so queueing a sample allocates nothing
+ * once columns are grown. Payloads are expected back to back in a buffer of their own, in order they were offered.
+ */
+internal class SampleQueue(capacity: Int) {
+
+  private var sampleTypes = IntArray(capacity)
+  private var sizes = IntArray(capacity)
+  private var flags = IntArray(capacity)
+  private var timesUs = LongArray(capacity)
+
+  var size: Int = 0
+    private set
+
+  init {
+    if (capacity <= 0) throw IllegalArgumentException("capacity must be positive $capacity")
+  }
+
+  fun offer(sampleType: Int, bufferInfo: MediaCodec.BufferInfo) {
+    if (size == sizes.size) {
+      // columns double, so growth is amortized over samples it makes room for
+      val capacity = size * 2
+      sampleTypes = sampleTypes.copyOf(capacity)
+      sizes = sizes.copyOf(capacity)
+      flags = flags.copyOf(capacity)
+      timesUs = timesUs.copyOf(capacity)
+    }
+    sampleTypes[size] = sampleType
+    sizes[size] = bufferInfo.size
+    flags[size] = bufferInfo.flags
+    timesUs[size] = bufferInfo.presentationTimeUs
+    size++
+  }
+
+  fun isEmpty(): Boolean = size == 0
+
+  fun sampleType(index: Int): Int = sampleTypes[checkIndex(index)]
+
+  // fills bufferInfo of sample at index, offset is where its payload starts
+  fun read(index: Int, bufferInfo: MediaCodec.BufferInfo, offset: Int) {
+    checkIndex(index)
+    bufferInfo.set(offset, sizes[index], timesUs[index], flags[index])
+  }
+
+  // keeps grown columns for reuse
+  fun clear() {
+    size = 0
+  }
+
+  private fun checkIndex(index: Int): Int {
+    if (index < 0 || index >= size) throw IllegalArgumentException("index out of queue $index, size $size")
+    return index
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Compression Android Kotlin Copyright (C) 2019 Fatih, Open Source.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fs.compress.common.replay
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import org.fs.compress.common.muxer.Muxer
+import java.io.BufferedInputStream
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Plays a recording written by compress-java sample recorder in to a muxer, formats as recorded and encoded samples
+ * with their size, flags and presentation time over a zeroed payload. No codec takes part, so muxer is measured alone.
+ */
+class SampleReplay(private val file: File) {
+
+  companion object {
+    private const val MAGIC = 0x434d5052 // CMPR
+    private const val VERSION = 1
+
+    private const val RECORD_FORMAT = 0x01
+    private const val RECORD_ENCODED = 0x03
+
+    private const val TYPE_INTEGER = 1
+    private const val TYPE_LONG = 2
+    private const val TYPE_FLOAT = 3
+    private const val TYPE_STRING = 4
+    private const val TYPE_BYTE_BUFFER = 5
+  }
+
+  /**
+   * @return count of samples written, paced replay waits for recorded time of each record before it.
+   */
+  fun replay(muxer: Muxer, paced: Boolean = false): Int {
+    val bufferInfo = MediaCodec.BufferInfo()
+    var buffer = ByteBuffer.allocateDirect(0)
+    var samples = 0
+    val startNs = System.nanoTime()
+    DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+      if (input.readInt() != MAGIC) throw IllegalArgumentException("not a sample recording $file")
+      val version = input.readInt()
+      if (version != VERSION) throw IllegalArgumentException("unsupported recording version $version")
+      try {
+        while (true) {
+          val kind = input.read()
+          if (kind < 0) break
+          val sampleType = input.readByte().toInt()
+          val timeNs = input.readLong()
+          if (paced) {
+            val waitNs = timeNs - (System.nanoTime() - startNs)
+            if (waitNs > 0) Thread.sleep(waitNs / 1000000, (waitNs % 1000000).toInt())
+          }
+          if (kind == RECORD_FORMAT) {
+            muxer.outputFormat(sampleType, readFormat(input))
+          } else {
+            val size = input.readInt()
+            val flags = input.readInt()
+            val presentationTimeUs = input.readLong()
+            // extracted records tell what was read only, muxer never sees them
+            if (kind != RECORD_ENCODED) continue
+            if (buffer.capacity() < size) {
+              buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder())
+            }
+            buffer.clear()
+            bufferInfo.set(0, size, presentationTimeUs, flags)
+            muxer.writeSampleData(sampleType, buffer, bufferInfo)
+            samples++
+          }
+        }
+      } catch (ignored: EOFException) {
+        // recorder did not get closed, records up to last whole one are played
+      }
+    }
+    return samples
+  }
+
+  private fun readFormat(input: DataInputStream): MediaFormat {
+    val format = MediaFormat()
+    repeat(input.readInt()) {
+      val key = input.readUTF()
+      when (val type = input.readByte().toInt()) {
+        TYPE_INTEGER -> format.setInteger(key, input.readInt())
+        TYPE_LONG -> format.setLong(key, input.readLong())
+        TYPE_FLOAT -> format.setFloat(key, input.readFloat())
+        TYPE_STRING -> format.setString(key, input.readUTF())
+        TYPE_BYTE_BUFFER -> {
+          val bytes = ByteArray(input.readInt())
+          input.readFully(bytes)
+          format.setByteBuffer(key, ByteBuffer.wrap(bytes))
+        }
+        else -> throw IllegalArgumentException("can not determine value type $type of $key")
+      }
+    }
+    return format
+  }
+}